@@ -1,23 +1,46 @@
 package com.mindoo.domino.jna;
 
 import java.io.Serializable;
-import java.util.Collections;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.mindoo.domino.jna.CollectionDataCacheStore.MappedCacheFile;
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback;
 import com.mindoo.domino.jna.NotesViewEntryData.CacheableViewEntryData;
 import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.structs.NotesTimeDate;
 
 /**
- * LRU cache class to be returned in {@link ViewLookupCallback#createDataCache()} in order to let NIF
+ * Cache class to be returned in {@link ViewLookupCallback#createDataCache()} in order to let NIF
  * improve lookup performance by skipping already known collection data.<br>
  * <br>
+ * Entries are stored in an open addressing hash table with primitive int note id keys.
+ * Cache reads do not acquire any lock, so that many threads sharing one cache instance
+ * do not block each other. Writes are serialized. When the cache exceeds its maximum number of entries
+ * or its maximum size in bytes, entries are evicted with the CLOCK algorithm, an approximation of
+ * LRU that only needs to set a flag on read access.<br>
+ * <br>
+ * The cache can either store the values of all view columns or, for lookups that read a single column
+ * via {@link ViewLookupCallback#getNameForSingleColumnRead()}, the values of one column. The cache
+ * is flushed when it is filled with data of another column.<br>
+ * <br>
+ * Usage counters for all threads are available via {@link #getStats()} and can be published
+ * via JMX with {@link #registerMBean(ObjectName)}.<br>
+ * <br>
+ * Use {@link CollectionDataCacheStore} to store the cache content on disk and reuse it after a restart
+ * and {@link CollectionDataCacheRegistry} to share one cache per view between all users of the view.<br>
+ * <br>
  * Please note that according to IBM dev, this optimized view reading (differential view reads) does
  * only work in views that are not permuted (where documents do not appear multiple times, because
  * "Show multiple values as separate entries" has been set on any view column).
@@ -27,11 +50,40 @@ import com.mindoo.domino.jna.structs.NotesTimeDate;
 public class CollectionDataCache implements Serializable {
 	private static final long serialVersionUID = 522152090817358117L;
 	
+	/** marker for removed entries in the hash table, detected by its null data so that it survives serialization */
+	private static final CacheNode TOMBSTONE = new CacheNode(0, null, 0);
+	private static final int MIN_TABLE_CAPACITY = 16;
+	
 	private int m_maxSize;
-	private Map<Integer,CacheableViewEntryData> m_cacheEntries;
+	private long m_maxSizeInBytes;
+	/** hash table, replaced on resize; only modified while holding {@link #m_writeLock} */
+	private volatile AtomicReferenceArray<CacheNode> m_table;
+	private volatile int m_size;
+	private volatile long m_sizeInBytes;
+	private int m_tombstones;
+	private int m_clockHand;
 	private NotesTimeDate m_diffTime;
-	private ReentrantReadWriteLock m_rwLock = new ReentrantReadWriteLock();
 	private EnumSet<ReadMask> m_readMask;
+	/** index of the column for single column reads, null if the values of all columns are cached */
+	private Integer m_columnIndex;
+	/** cache data loaded from disk, entries are decoded and added to the table on first access */
+	private transient volatile MappedCacheFile m_mappedFile;
+	/** registry that manages this cache or null */
+	private transient volatile CollectionDataCacheRegistry m_registry;
+	private transient volatile long m_lastAccess;
+	/** name of the registered {@link CollectionDataCacheMXBean} or null */
+	private transient ObjectName m_mbeanName;
+	
+	//usage counters for all threads
+	private final AtomicLong m_statsEntriesRead = new AtomicLong();
+	private final AtomicLong m_statsHits = new AtomicLong();
+	private final AtomicLong m_statsMisses = new AtomicLong();
+	private final AtomicLong m_statsEntriesAdded = new AtomicLong();
+	private final AtomicLong m_statsEvictions = new AtomicLong();
+	private final AtomicLong m_statsDiffTimeFlushes = new AtomicLong();
+	private final AtomicLong m_statsReadMaskFlushes = new AtomicLong();
+	private final AtomicLong m_statsManualFlushes = new AtomicLong();
+	private ReentrantLock m_writeLock = new ReentrantLock();
 	private static ThreadLocal<Long> m_cacheUseCounter = new ThreadLocal<Long>();
 	
 	/**
@@ -44,26 +96,27 @@ public class CollectionDataCache implements Serializable {
 	/**
 	 * Creates a new instance
 	 * 
-	 * @param maxSize maximum number of entries in the LRU cache
+	 * @param maxSize maximum number of entries in the cache
+	 */
+	public CollectionDataCache(int maxSize) {
+		this(maxSize, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param maxSize maximum number of entries in the cache
+	 * @param maxSizeInBytes maximum estimated heap memory used by the cached entries
 	 */
-	public CollectionDataCache(final int maxSize) {
+	public CollectionDataCache(int maxSize, long maxSizeInBytes) {
 		if (maxSize <= 0)
 			throw new IllegalArgumentException("Max size must be greater than 0: "+maxSize);
+		if (maxSizeInBytes <= 0)
+			throw new IllegalArgumentException("Max size in bytes must be greater than 0: "+maxSizeInBytes);
 		
 		m_maxSize = maxSize;
-		
-		//set up LRU cache map
-		m_cacheEntries = Collections.synchronizedMap(new LinkedHashMap<Integer, CacheableViewEntryData>(16, 0.75f, true) {
-			@Override
-			protected boolean removeEldestEntry(java.util.Map.Entry<Integer, CacheableViewEntryData> eldest) {
-				if (size() > maxSize) {
-					return true;
-				}
-				else {
-					return false;
-				}
-			}
-		});
+		m_maxSizeInBytes = maxSizeInBytes;
+		m_table = new AtomicReferenceArray<CacheNode>(MIN_TABLE_CAPACITY);
 	}
 	
 	/**
@@ -75,13 +128,40 @@ public class CollectionDataCache implements Serializable {
 		return m_maxSize;
 	}
 	
+	/**
+	 * Returns the maximum estimated heap memory used by the cached entries
+	 * 
+	 * @return size in bytes
+	 */
+	public long getMaxCacheSizeInBytes() {
+		return m_maxSizeInBytes;
+	}
+	
 	/**
 	 * Returns the current number of entries in the cache
 	 * 
 	 * @return size
 	 */
 	public int size() {
-		return m_cacheEntries.size();
+		return m_size;
+	}
+	
+	/**
+	 * Returns the estimated heap memory used by the cached entries
+	 * 
+	 * @return size in bytes
+	 */
+	public long getSizeInBytes() {
+		return m_sizeInBytes;
+	}
+	
+	/**
+	 * Returns the time of the last cache read or write access
+	 * 
+	 * @return time in milliseconds
+	 */
+	public long getLastAccess() {
+		return m_lastAccess;
 	}
 	
 	/**
@@ -93,7 +173,7 @@ public class CollectionDataCache implements Serializable {
 			m_cacheUseCounter.set(Long.valueOf(0));
 		}
 	}
-
+	
 	/**
 	 * Disables taking cache usage stats for the current thread
 	 */
@@ -134,55 +214,158 @@ public class CollectionDataCache implements Serializable {
 		}
 	}
 	
+	/**
+	 * Returns a snapshot of the usage counters of all threads using this cache
+	 * 
+	 * @return stats
+	 */
+	public CollectionDataCacheStats getStats() {
+		return new CollectionDataCacheStats(m_statsEntriesRead.get(), m_statsHits.get(), m_statsMisses.get(),
+				m_statsEntriesAdded.get(), m_statsEvictions.get(), m_statsDiffTimeFlushes.get(), m_statsReadMaskFlushes.get(),
+				m_statsManualFlushes.get(), m_size, m_sizeInBytes, m_maxSize, m_maxSizeInBytes);
+	}
+	
+	/**
+	 * Sets the usage counters returned by {@link #getStats()} to 0
+	 */
+	public void resetStats() {
+		m_statsEntriesRead.set(0);
+		m_statsHits.set(0);
+		m_statsMisses.set(0);
+		m_statsEntriesAdded.set(0);
+		m_statsEvictions.set(0);
+		m_statsDiffTimeFlushes.set(0);
+		m_statsReadMaskFlushes.set(0);
+		m_statsManualFlushes.set(0);
+	}
+	
+	/**
+	 * Publishes the usage counters of this cache as {@link CollectionDataCacheMXBean} in the
+	 * platform MBean server
+	 * 
+	 * @param name object name, e.g. <code>com.mindoo.domino.jna:type=CollectionDataCache,name=people</code>
+	 */
+	public synchronized void registerMBean(ObjectName name) {
+		if (m_mbeanName!=null) {
+			unregisterMBean();
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(new CacheMBean(this), name);
+		} catch (JMException e) {
+			throw new NotesError(0, "Error registering MBean "+name, e);
+		}
+		m_mbeanName = name;
+	}
+	
+	/**
+	 * Removes the {@link CollectionDataCacheMXBean} registered with {@link #registerMBean(ObjectName)}
+	 */
+	public synchronized void unregisterMBean() {
+		if (m_mbeanName==null) {
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(m_mbeanName)) {
+				server.unregisterMBean(m_mbeanName);
+			}
+		} catch (JMException e) {
+			throw new NotesError(0, "Error unregistering MBean "+m_mbeanName, e);
+		}
+		finally {
+			m_mbeanName = null;
+		}
+	}
+	
+	/**
+	 * Returns the name of the registered {@link CollectionDataCacheMXBean}
+	 * 
+	 * @return name or null if not registered
+	 */
+	public synchronized ObjectName getMBeanName() {
+		return m_mbeanName;
+	}
+	
 	/**
 	 * Removes all data from the cache
 	 */
 	public void flush() {
-		m_rwLock.writeLock().lock();
+		m_statsManualFlushes.incrementAndGet();
+		
+		m_writeLock.lock();
 		try {
 			m_diffTime = null;
 			m_readMask = null;
-			m_cacheEntries.clear();
+			m_columnIndex = null;
+			clearTable();
 		}
 		finally {
-			m_rwLock.writeLock().unlock();
+			m_writeLock.unlock();
 		}
 	}
 	
 	/**
-	 * Method to fill the cache with data read from the collection
+	 * Method to fill the cache with data read from the collection. Since the cache may be
+	 * shared between concurrent lookups, data read with an older diff time than the one
+	 * of the current cache content is ignored.
 	 * 
+	 * @param readMask read mask used to read the entries
+	 * @param columnIndex index of the column for single column reads or null
 	 * @param diffTime diff time returned from the read operation
 	 * @param entries collection entries read
 	 */
-	void addCacheValues(EnumSet<ReadMask> readMask, NotesTimeDate diffTime, List<NotesViewEntryData> entries) {
-		m_rwLock.writeLock().lock();
+	void addCacheValues(EnumSet<ReadMask> readMask, Integer columnIndex, NotesTimeDate diffTime, List<NotesViewEntryData> entries) {
+		m_lastAccess = System.currentTimeMillis();
+		
+		m_writeLock.lock();
 		try {
 			boolean flush = false;
 			
 			if (m_diffTime!=null && !m_diffTime.equals(diffTime)) {
+				if (isOlder(diffTime, m_diffTime)) {
+					//another lookup already stored more recent data
+					return;
+				}
 				flush = true;
+				m_statsDiffTimeFlushes.incrementAndGet();
 			}
 			else if (m_readMask!=null && !m_readMask.equals(readMask)) {
 				flush = true;
+				m_statsReadMaskFlushes.incrementAndGet();
+			}
+			else if (m_readMask!=null && !isSameColumn(m_columnIndex, columnIndex)) {
+				flush = true;
+				m_statsReadMaskFlushes.incrementAndGet();
 			}
 			if (flush) {
-				m_cacheEntries.clear();
+				clearTable();
 				cacheFlushed();
 			}
 			
 			m_readMask = readMask;
+			m_columnIndex = columnIndex;
 			m_diffTime = diffTime;
 			
+			int entriesAdded = 0;
 			for (NotesViewEntryData currEntry : entries) {
 				if (currEntry.hasAnyColumnValues()) {
 					CacheableViewEntryData cacheableData = currEntry.getCacheableData();
-					m_cacheEntries.put(currEntry.getNoteId(), cacheableData);
+					put(currEntry.getNoteId(), cacheableData);
+					entriesAdded++;
 				}
 			}
+			m_statsEntriesAdded.addAndGet(entriesAdded);
+			
+			evictIfRequired();
 		}
 		finally {
-			m_rwLock.writeLock().unlock();
+			m_writeLock.unlock();
+		}
+		
+		CollectionDataCacheRegistry registry = m_registry;
+		if (registry!=null) {
+			registry.cacheGrown(this);
 		}
 	}
 	
@@ -197,46 +380,86 @@ public class CollectionDataCache implements Serializable {
 	/**
 	 * For every {@link NotesViewEntryData} in the specified list, this method checks whether
 	 * NIF returned any column data. If not, the entry was skipped by NIF, because it already exists
-	 * in the cache. We can then copy the data of our current cache object.
+	 * in the cache. We can then copy the data of our current cache object.<br>
+	 * <br>
+	 * If the cache is shared, another lookup may have flushed or evicted an entry after NIF
+	 * skipped it. The method returns false in that case and the caller needs to read the
+	 * data again without using the cache content.
 	 * 
 	 * @param entries entries to scan
+	 * @param diffNoteIds sorted note ids passed to NIF for the differential read or null
+	 * @return true if all stubs that NIF skipped could be populated
 	 */
-	void populateEntryStubsWithData(List<NotesViewEntryData> entries) {
-		boolean hasAnyMissingData = false;
-		for (NotesViewEntryData currEntry : entries) {
-			if (!currEntry.hasAnyColumnValues()) {
-				hasAnyMissingData = true;
-				break;
-			}
-		}
+	boolean populateEntryStubsWithData(List<NotesViewEntryData> entries, int[] diffNoteIds) {
+		m_lastAccess = System.currentTimeMillis();
 		
 		Long usageStats = m_cacheUseCounter.get();
 		long usageStatsPrim = usageStats==null ? -1 : usageStats.longValue();
+		boolean cacheUsed = false;
+		boolean allPopulated = true;
+		//count locally to update the shared counters only once
+		int hits = 0;
+		int misses = 0;
 		
-		if (hasAnyMissingData) {
-			m_rwLock.readLock().lock();
-			try {
-				for (NotesViewEntryData currEntry : entries) {
-					if (!currEntry.hasAnyColumnValues()) {
-						CacheableViewEntryData cacheData = m_cacheEntries.get(currEntry.getNoteId());
-						if (cacheData!=null) {
-							//updating data of stub entry from cache
-							currEntry.updateFromCache(cacheData);
-							
-							if (usageStatsPrim!=-1) {
-								usageStatsPrim++;
-							}
-						}
+		for (NotesViewEntryData currEntry : entries) {
+			if (!currEntry.hasAnyColumnValues()) {
+				CacheableViewEntryData cacheData = get(currEntry.getNoteId());
+				if (cacheData!=null) {
+					//updating data of stub entry from cache
+					currEntry.updateFromCache(cacheData);
+					cacheUsed = true;
+					hits++;
+					
+					if (usageStatsPrim!=-1) {
+						usageStatsPrim++;
 					}
 				}
-				
-				if (usageStatsPrim!=-1) {
-					m_cacheUseCounter.set(usageStatsPrim);
+				else if (diffNoteIds!=null && Arrays.binarySearch(diffNoteIds, currEntry.getNoteId())>=0) {
+					allPopulated = false;
+					misses++;
 				}
 			}
-			finally {
-				m_rwLock.readLock().unlock();
-			}
+		}
+		
+		m_statsEntriesRead.addAndGet(entries.size());
+		if (hits>0) {
+			m_statsHits.addAndGet(hits);
+		}
+		if (misses>0) {
+			m_statsMisses.addAndGet(misses);
+		}
+		
+		if (cacheUsed && usageStatsPrim!=-1) {
+			m_cacheUseCounter.set(usageStatsPrim);
+		}
+		return allPopulated;
+	}
+	
+	/**
+	 * Sets the registry that manages this cache
+	 * 
+	 * @param registry registry
+	 */
+	void setRegistry(CollectionDataCacheRegistry registry) {
+		m_registry = registry;
+	}
+	
+	/**
+	 * Evicts entries with the CLOCK algorithm to release memory for other caches of a
+	 * {@link CollectionDataCacheRegistry}
+	 * 
+	 * @param bytesToFree number of bytes to release
+	 * @return number of bytes released
+	 */
+	long trim(long bytesToFree) {
+		m_writeLock.lock();
+		try {
+			long oldSizeInBytes = m_sizeInBytes;
+			evict(m_maxSize, Math.max(0, oldSizeInBytes - bytesToFree));
+			return oldSizeInBytes - m_sizeInBytes;
+		}
+		finally {
+			m_writeLock.unlock();
 		}
 	}
 	
@@ -246,12 +469,474 @@ public class CollectionDataCache implements Serializable {
 	 * @return state
 	 */
 	CacheState getCacheState() {
-		m_rwLock.readLock().lock();
+		m_writeLock.lock();
 		try {
-			return new CacheState(m_readMask, m_diffTime, new HashMap<Integer, NotesViewEntryData.CacheableViewEntryData>(m_cacheEntries));
+			return new CacheState(m_readMask, m_columnIndex, m_diffTime, getAllNoteIds());
 		}
 		finally {
-			m_rwLock.readLock().unlock();
+			m_writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Copies the current content of the cache, including entries of a loaded cache file
+	 * that have not been accessed yet
+	 * 
+	 * @return snapshot
+	 */
+	CacheSnapshot getSnapshot() {
+		m_writeLock.lock();
+		try {
+			int[] noteIds = getAllNoteIds();
+			CacheableViewEntryData[] entries = new CacheableViewEntryData[noteIds.length];
+			for (int i=0; i<noteIds.length; i++) {
+				entries[i] = getFromTable(noteIds[i]);
+				if (entries[i]==null) {
+					entries[i] = m_mappedFile.get(noteIds[i]);
+				}
+			}
+			return new CacheSnapshot(m_readMask, m_columnIndex, m_diffTime, noteIds, entries);
+		}
+		finally {
+			m_writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Replaces the cache content with data loaded from disk
+	 * 
+	 * @param readMask read mask of the stored data
+	 * @param diffTime diff time of the stored data
+	 * @param mappedFile file
+	 */
+	void attachMappedFile(EnumSet<ReadMask> readMask, NotesTimeDate diffTime, MappedCacheFile mappedFile) {
+		m_writeLock.lock();
+		try {
+			clearTable();
+			m_readMask = readMask;
+			m_columnIndex = null;
+			m_diffTime = diffTime;
+			m_mappedFile = mappedFile;
+		}
+		finally {
+			m_writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Returns the sorted note ids of the hash table and the loaded cache file. Must be called
+	 * while holding {@link #m_writeLock}.
+	 * 
+	 * @return note ids
+	 */
+	private int[] getAllNoteIds() {
+		AtomicReferenceArray<CacheNode> table = m_table;
+		int[] tableNoteIds = new int[m_size];
+		int idx = 0;
+		for (int i=0; i<table.length(); i++) {
+			CacheNode currNode = table.get(i);
+			if (currNode!=null && !currNode.isRemoved()) {
+				tableNoteIds[idx++] = currNode.m_noteId;
+			}
+		}
+		Arrays.sort(tableNoteIds);
+		
+		MappedCacheFile mappedFile = m_mappedFile;
+		if (mappedFile==null) {
+			return tableNoteIds;
+		}
+		
+		//merge both sorted arrays
+		int[] fileNoteIds = mappedFile.getNoteIds();
+		int[] noteIds = new int[tableNoteIds.length + fileNoteIds.length];
+		int i=0, j=0, k=0;
+		while (i<tableNoteIds.length || j<fileNoteIds.length) {
+			if (j==fileNoteIds.length || (i<tableNoteIds.length && tableNoteIds[i]<fileNoteIds[j])) {
+				noteIds[k++] = tableNoteIds[i++];
+			}
+			else if (i==tableNoteIds.length || fileNoteIds[j]<tableNoteIds[i]) {
+				noteIds[k++] = fileNoteIds[j++];
+			}
+			else {
+				noteIds[k++] = tableNoteIds[i++];
+				j++;
+			}
+		}
+		return k==noteIds.length ? noteIds : Arrays.copyOf(noteIds, k);
+	}
+	
+	/**
+	 * Looks up a cache entry without locking
+	 * 
+	 * @param noteId note id
+	 * @return entry or null
+	 */
+	private CacheableViewEntryData get(int noteId) {
+		CacheableViewEntryData data = getFromTable(noteId);
+		if (data==null) {
+			MappedCacheFile mappedFile = m_mappedFile;
+			if (mappedFile!=null) {
+				data = mappedFile.get(noteId);
+				//move the entry to the table if this does not block the reader
+				if (data!=null && m_writeLock.tryLock()) {
+					try {
+						if (m_mappedFile==mappedFile) {
+							put(noteId, data);
+							evictIfRequired();
+						}
+					}
+					finally {
+						m_writeLock.unlock();
+					}
+				}
+			}
+		}
+		return data;
+	}
+	
+	/**
+	 * Looks up a cache entry in the hash table without locking
+	 * 
+	 * @param noteId note id
+	 * @return entry or null
+	 */
+	private CacheableViewEntryData getFromTable(int noteId) {
+		AtomicReferenceArray<CacheNode> table = m_table;
+		int mask = table.length() - 1;
+		int idx = hash(noteId) & mask;
+		for (int i=0; i<=mask; i++) {
+			CacheNode currNode = table.get(idx);
+			if (currNode==null) {
+				return null;
+			}
+			if (!currNode.isRemoved() && currNode.m_noteId==noteId) {
+				//mark as recently used for CLOCK eviction; only write if needed to keep the cache line shared
+				if (!currNode.m_referenced) {
+					currNode.m_referenced = true;
+				}
+				return currNode.m_data;
+			}
+			idx = (idx + 1) & mask;
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds or replaces a cache entry. Must be called while holding {@link #m_writeLock}.
+	 * 
+	 * @param noteId note id
+	 * @param data entry data
+	 */
+	private void put(int noteId, CacheableViewEntryData data) {
+		AtomicReferenceArray<CacheNode> table = m_table;
+		if ((m_size + m_tombstones + 1) * 2 > table.length()) {
+			table = rehash();
+		}
+		
+		CacheNode newNode = new CacheNode(noteId, data, data.getEstimatedSizeInBytes());
+		
+		int mask = table.length() - 1;
+		int idx = hash(noteId) & mask;
+		int firstTombstoneIdx = -1;
+		while (true) {
+			CacheNode currNode = table.get(idx);
+			if (currNode==null) {
+				if (firstTombstoneIdx!=-1) {
+					table.set(firstTombstoneIdx, newNode);
+					m_tombstones--;
+				}
+				else {
+					table.set(idx, newNode);
+				}
+				m_size++;
+				m_sizeInBytes += newNode.m_sizeInBytes;
+				return;
+			}
+			else if (currNode.isRemoved()) {
+				if (firstTombstoneIdx==-1) {
+					firstTombstoneIdx = idx;
+				}
+			}
+			else if (currNode.m_noteId==noteId) {
+				//keep the reference flag of the replaced entry
+				newNode.m_referenced = currNode.m_referenced;
+				table.set(idx, newNode);
+				m_sizeInBytes += newNode.m_sizeInBytes - currNode.m_sizeInBytes;
+				return;
+			}
+			idx = (idx + 1) & mask;
+		}
+	}
+	
+	/**
+	 * Evicts entries until the cache is within its bounds. Must be called while holding {@link #m_writeLock}.
+	 */
+	private void evictIfRequired() {
+		evict(m_maxSize, m_maxSizeInBytes);
+	}
+	
+	/**
+	 * Evicts entries with the CLOCK algorithm until the cache is within the specified bounds: the clock hand
+	 * moves over the table, clears the reference flag of recently used entries and removes the
+	 * first entry without reference flag. Must be called while holding {@link #m_writeLock}.
+	 * 
+	 * @param maxSize maximum number of entries
+	 * @param maxSizeInBytes maximum estimated heap memory
+	 */
+	private void evict(int maxSize, long maxSizeInBytes) {
+		AtomicReferenceArray<CacheNode> table = m_table;
+		int capacity = table.length();
+		
+		while (m_size > 0 && (m_size > maxSize || m_sizeInBytes > maxSizeInBytes)) {
+			int idx = m_clockHand;
+			m_clockHand = (m_clockHand + 1) % capacity;
+			
+			CacheNode currNode = table.get(idx);
+			if (currNode==null || currNode.isRemoved()) {
+				continue;
+			}
+			if (currNode.m_referenced) {
+				//second chance
+				currNode.m_referenced = false;
+			}
+			else {
+				table.set(idx, TOMBSTONE);
+				m_tombstones++;
+				m_size--;
+				m_sizeInBytes -= currNode.m_sizeInBytes;
+				m_statsEvictions.incrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Copies all entries into a new table without tombstones and publishes it for
+	 * readers. Must be called while holding {@link #m_writeLock}.
+	 * 
+	 * @return new table
+	 */
+	private AtomicReferenceArray<CacheNode> rehash() {
+		AtomicReferenceArray<CacheNode> oldTable = m_table;
+		
+		int newCapacity = MIN_TABLE_CAPACITY;
+		while (newCapacity < (m_size + 1) * 4) {
+			newCapacity <<= 1;
+		}
+		AtomicReferenceArray<CacheNode> newTable = new AtomicReferenceArray<CacheNode>(newCapacity);
+		int mask = newCapacity - 1;
+		for (int i=0; i<oldTable.length(); i++) {
+			CacheNode currNode = oldTable.get(i);
+			if (currNode!=null && !currNode.isRemoved()) {
+				int idx = hash(currNode.m_noteId) & mask;
+				while (newTable.get(idx)!=null) {
+					idx = (idx + 1) & mask;
+				}
+				newTable.set(idx, currNode);
+			}
+		}
+		m_tombstones = 0;
+		m_clockHand = 0;
+		m_table = newTable;
+		return newTable;
+	}
+	
+	/**
+	 * Removes all entries. Must be called while holding {@link #m_writeLock}.
+	 */
+	private void clearTable() {
+		m_mappedFile = null;
+		m_table = new AtomicReferenceArray<CacheNode>(MIN_TABLE_CAPACITY);
+		m_size = 0;
+		m_sizeInBytes = 0;
+		m_tombstones = 0;
+		m_clockHand = 0;
+	}
+	
+	/**
+	 * Compares the column indexes of single column reads
+	 * 
+	 * @param columnIndex1 first index or null
+	 * @param columnIndex2 second index or null
+	 * @return true if equal
+	 */
+	static boolean isSameColumn(Integer columnIndex1, Integer columnIndex2) {
+		return columnIndex1==null ? columnIndex2==null : columnIndex1.equals(columnIndex2);
+	}
+	
+	/**
+	 * Checks whether a diff time is older than another one
+	 * 
+	 * @param td1 first diff time
+	 * @param td2 second diff time
+	 * @return true if <code>td1</code> is older than <code>td2</code>
+	 */
+	private static boolean isOlder(NotesTimeDate td1, NotesTimeDate td2) {
+		//Innards[1] contains the julian day in the lower 24 bits, Innards[0] the ticks since midnight
+		int day1 = td1.Innards[1] & 0xFFFFFF;
+		int day2 = td2.Innards[1] & 0xFFFFFF;
+		if (day1!=day2) {
+			return day1 < day2;
+		}
+		return td1.Innards[0] < td2.Innards[0];
+	}
+	
+	/**
+	 * Spreads the note id bits; note ids are multiples of 4 and category ids share the high bits
+	 * 
+	 * @param noteId note id
+	 * @return hash
+	 */
+	private static int hash(int noteId) {
+		int h = noteId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * Implementation of {@link CollectionDataCacheMXBean} that reads the counters of a cache.
+	 * Only keeps a weak reference to the cache, so that a registered MBean does not
+	 * prevent garbage collection of the cache data.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private static class CacheMBean implements CollectionDataCacheMXBean {
+		private WeakReference<CollectionDataCache> m_cacheRef;
+		
+		public CacheMBean(CollectionDataCache cache) {
+			m_cacheRef = new WeakReference<CollectionDataCache>(cache);
+		}
+		
+		private CollectionDataCacheStats getStats() {
+			CollectionDataCache cache = m_cacheRef.get();
+			return cache==null ? new CollectionDataCacheStats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0) : cache.getStats();
+		}
+		
+		@Override
+		public long getEntriesRead() {
+			return getStats().getEntriesRead();
+		}
+		
+		@Override
+		public long getHits() {
+			return getStats().getHits();
+		}
+		
+		@Override
+		public long getMisses() {
+			return getStats().getMisses();
+		}
+		
+		@Override
+		public double getHitRatio() {
+			return getStats().getHitRatio();
+		}
+		
+		@Override
+		public long getEntriesAdded() {
+			return getStats().getEntriesAdded();
+		}
+		
+		@Override
+		public long getEvictions() {
+			return getStats().getEvictions();
+		}
+		
+		@Override
+		public long getDiffTimeFlushes() {
+			return getStats().getDiffTimeFlushes();
+		}
+		
+		@Override
+		public long getReadMaskFlushes() {
+			return getStats().getReadMaskFlushes();
+		}
+		
+		@Override
+		public long getManualFlushes() {
+			return getStats().getManualFlushes();
+		}
+		
+		@Override
+		public int getSize() {
+			return getStats().getSize();
+		}
+		
+		@Override
+		public long getSizeInBytes() {
+			return getStats().getSizeInBytes();
+		}
+		
+		@Override
+		public int getMaxSize() {
+			return getStats().getMaxSize();
+		}
+		
+		@Override
+		public long getMaxSizeInBytes() {
+			return getStats().getMaxSizeInBytes();
+		}
+		
+		@Override
+		public void resetStats() {
+			CollectionDataCache cache = m_cacheRef.get();
+			if (cache!=null) {
+				cache.resetStats();
+			}
+		}
+		
+		@Override
+		public void flush() {
+			CollectionDataCache cache = m_cacheRef.get();
+			if (cache!=null) {
+				cache.flush();
+			}
+		}
+	}
+	
+	/**
+	 * Hash table entry
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private static class CacheNode implements Serializable {
+		private static final long serialVersionUID = -2687541622386497262L;
+		
+		private final int m_noteId;
+		private final CacheableViewEntryData m_data;
+		private final int m_sizeInBytes;
+		/** CLOCK reference flag, set on read access */
+		private volatile boolean m_referenced;
+		
+		public CacheNode(int noteId, CacheableViewEntryData data, int sizeInBytes) {
+			m_noteId = noteId;
+			m_data = data;
+			m_sizeInBytes = sizeInBytes;
+		}
+		
+		public boolean isRemoved() {
+			return m_data==null;
+		}
+	}
+	
+	/**
+	 * Data object with a copy of all cache entries
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	static class CacheSnapshot extends CacheState {
+		private CacheableViewEntryData[] m_entries;
+		
+		private CacheSnapshot(EnumSet<ReadMask> readMask, Integer columnIndex, NotesTimeDate diffTime, int[] noteIds, CacheableViewEntryData[] entries) {
+			super(readMask, columnIndex, diffTime, noteIds);
+			m_entries = entries;
+		}
+		
+		/**
+		 * Returns the entries in the same order as {@link #getNoteIds()}
+		 * 
+		 * @return entries
+		 */
+		public CacheableViewEntryData[] getEntries() {
+			return m_entries;
 		}
 	}
 	
@@ -262,27 +947,43 @@ public class CollectionDataCache implements Serializable {
 	 */
 	static class CacheState {
 		private NotesTimeDate m_diffTime;
-		private Map<Integer,CacheableViewEntryData> m_cacheEntries;
+		private int[] m_noteIds;
 		private EnumSet<ReadMask> m_readMask;
+		private Integer m_columnIndex;
 		
-		private CacheState(EnumSet<ReadMask> readMask, NotesTimeDate diffTime, Map<Integer,CacheableViewEntryData> cacheEntries) {
+		private CacheState(EnumSet<ReadMask> readMask, Integer columnIndex, NotesTimeDate diffTime, int[] noteIds) {
 			m_readMask = readMask;
+			m_columnIndex = columnIndex;
 			m_diffTime = diffTime;
-			m_cacheEntries = cacheEntries;
+			m_noteIds = noteIds;
 		}
 		
 		public EnumSet<ReadMask> getReadMask() {
 			return m_readMask;
 		}
 		
+		/**
+		 * Returns the index of the cached column for single column reads
+		 * 
+		 * @return index or null if the values of all columns are cached
+		 */
+		public Integer getColumnIndex() {
+			return m_columnIndex;
+		}
+		
 		public NotesTimeDate getDiffTime() {
 			return m_diffTime;
 		}
 		
-		public Map<Integer,CacheableViewEntryData> getCacheEntries() {
-			return m_cacheEntries;
+		/**
+		 * Returns the note ids of all cached entries
+		 * 
+		 * @return note ids
+		 */
+		public int[] getNoteIds() {
+			return m_noteIds;
 		}
 	}
-	
+
 
 }
@@ -0,0 +1,50 @@
+package com.mindoo.domino.jna;
+
+/**
+ * JMX management interface of a {@link CollectionDataCache}, registered with
+ * {@link CollectionDataCache#registerMBean(javax.management.ObjectName)} or automatically
+ * for the caches of a {@link CollectionDataCacheRegistry} after calling
+ * {@link CollectionDataCacheRegistry#setMBeansEnabled(boolean)}. See
+ * {@link CollectionDataCacheStats} for a description of the attributes.
+ * 
+ * @author Karsten Lehmann
+ */
+public interface CollectionDataCacheMXBean {
+	
+	public long getEntriesRead();
+	
+	public long getHits();
+	
+	public long getMisses();
+	
+	public double getHitRatio();
+	
+	public long getEntriesAdded();
+	
+	public long getEvictions();
+	
+	public long getDiffTimeFlushes();
+	
+	public long getReadMaskFlushes();
+	
+	public long getManualFlushes();
+	
+	public int getSize();
+	
+	public long getSizeInBytes();
+	
+	public int getMaxSize();
+	
+	public long getMaxSizeInBytes();
+	
+	/**
+	 * Sets all usage counters to 0
+	 */
+	public void resetStats();
+	
+	/**
+	 * Removes all data from the cache
+	 */
+	public void flush();
+
+}
@@ -0,0 +1,475 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+
+/**
+ * Process-wide registry of {@link CollectionDataCache} objects. Instead of creating a separate cache
+ * in {@link NotesCollection.ViewLookupCallback#createDataCache()} for every lookup, all users of the same
+ * view get one shared cache per server, database replica id, view UNID, read mask and, for single column
+ * reads, column index, so that each
+ * lookup benefits from the data that the previous lookups have read.<br>
+ * <br>
+ * The registry has a global memory budget. When the estimated heap memory of all caches exceeds the
+ * budget, entries are evicted from the caches that have not been accessed for the longest time.<br>
+ * <br>
+ * The usage counters of all caches can be read with {@link #getStats()} or published via JMX
+ * with {@link #setMBeansEnabled(boolean)}.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * final EnumSet&lt;ReadMask&gt; returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES);
+ * col.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT), Integer.MAX_VALUE, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE) {
+ * 
+ * 	public CollectionDataCache createDataCache() {
+ * 		return CollectionDataCacheRegistry.getInstance().getCache(col, returnMask);
+ * 	}
+ * });
+ * </pre>
+ * 
+ * @author Karsten Lehmann
+ */
+public class CollectionDataCacheRegistry {
+	private static final CollectionDataCacheRegistry m_instance = new CollectionDataCacheRegistry();
+	
+	private ConcurrentHashMap<CacheKey, CollectionDataCache> m_caches;
+	private volatile long m_maxTotalSizeInBytes;
+	private volatile int m_maxCacheSize;
+	private ReentrantLock m_evictionLock;
+	private volatile boolean m_mbeansEnabled;
+	
+	/**
+	 * Returns the process-wide registry instance
+	 * 
+	 * @return registry
+	 */
+	public static CollectionDataCacheRegistry getInstance() {
+		return m_instance;
+	}
+	
+	/**
+	 * Creates a new registry. Use {@link #getInstance()} to share caches in the whole process.
+	 */
+	public CollectionDataCacheRegistry() {
+		m_caches = new ConcurrentHashMap<CacheKey, CollectionDataCache>();
+		m_maxTotalSizeInBytes = Long.MAX_VALUE;
+		m_maxCacheSize = Integer.MAX_VALUE;
+		m_evictionLock = new ReentrantLock();
+	}
+	
+	/**
+	 * Returns the memory budget for all caches of this registry
+	 * 
+	 * @return size in bytes
+	 */
+	public long getMaxTotalSizeInBytes() {
+		return m_maxTotalSizeInBytes;
+	}
+	
+	/**
+	 * Sets the memory budget for all caches of this registry and evicts entries if the
+	 * caches currently use more memory
+	 * 
+	 * @param maxTotalSizeInBytes size in bytes
+	 */
+	public void setMaxTotalSizeInBytes(long maxTotalSizeInBytes) {
+		if (maxTotalSizeInBytes <= 0)
+			throw new IllegalArgumentException("Max size in bytes must be greater than 0: "+maxTotalSizeInBytes);
+		
+		m_maxTotalSizeInBytes = maxTotalSizeInBytes;
+		evictIfRequired(true);
+	}
+	
+	/**
+	 * Returns the maximum number of entries of caches created by this registry
+	 * 
+	 * @return maximum number
+	 */
+	public int getMaxCacheSize() {
+		return m_maxCacheSize;
+	}
+	
+	/**
+	 * Sets the maximum number of entries of caches created by this registry. Existing
+	 * caches are not changed.
+	 * 
+	 * @param maxCacheSize maximum number
+	 */
+	public void setMaxCacheSize(int maxCacheSize) {
+		if (maxCacheSize <= 0)
+			throw new IllegalArgumentException("Max size must be greater than 0: "+maxCacheSize);
+		
+		m_maxCacheSize = maxCacheSize;
+	}
+	
+	/**
+	 * Returns the shared cache for a collection
+	 * 
+	 * @param col collection
+	 * @param readMask read mask used to read the view data
+	 * @return cache
+	 */
+	public CollectionDataCache getCache(NotesCollection col, EnumSet<ReadMask> readMask) {
+		return getCache(col, readMask, null);
+	}
+	
+	/**
+	 * Returns the shared cache for single column reads of a collection, see
+	 * {@link NotesCollection.ViewLookupCallback#getNameForSingleColumnRead()}
+	 * 
+	 * @param col collection
+	 * @param readMask read mask used to read the view data
+	 * @param singleColumnName programmatic name or title of the column or null to cache the values of all columns
+	 * @return cache
+	 */
+	public CollectionDataCache getCache(NotesCollection col, EnumSet<ReadMask> readMask, String singleColumnName) {
+		Integer columnIndex = null;
+		if (singleColumnName!=null) {
+			int idx = col.getColumnValuesIndex(singleColumnName);
+			if (idx==-1)
+				throw new IllegalArgumentException("Column "+singleColumnName+" not found in collection");
+			columnIndex = Integer.valueOf(idx);
+		}
+		NotesDatabase parentDb = col.getParent();
+		return getCache(parentDb.getServer(), parentDb.getReplicaID(), col.getUNID(), readMask, columnIndex);
+	}
+	
+	/**
+	 * Returns the shared cache for a view, creating it if it does not exist yet
+	 * 
+	 * @param server server of the database, null or empty string for local
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 * @param readMask read mask used to read the view data; {@link ReadMask#NOTEID} is added automatically like in {@link NotesCollection#getAllEntries(String, int, EnumSet, int, EnumSet, com.mindoo.domino.jna.NotesCollection.ViewLookupCallback)}
+	 * @return cache
+	 */
+	public CollectionDataCache getCache(String server, String replicaId, String viewUNID, EnumSet<ReadMask> readMask) {
+		return getCache(server, replicaId, viewUNID, readMask, null);
+	}
+	
+	/**
+	 * Returns the shared cache for a view, creating it if it does not exist yet
+	 * 
+	 * @param server server of the database, null or empty string for local
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 * @param readMask read mask used to read the view data; {@link ReadMask#NOTEID} is added automatically like in {@link NotesCollection#getAllEntries(String, int, EnumSet, int, EnumSet, com.mindoo.domino.jna.NotesCollection.ViewLookupCallback)}
+	 * @param columnIndex column values index for single column reads or null to cache the values of all columns
+	 * @return cache
+	 */
+	public CollectionDataCache getCache(String server, String replicaId, String viewUNID, EnumSet<ReadMask> readMask, Integer columnIndex) {
+		CacheKey key = new CacheKey(server, replicaId, viewUNID, readMask, columnIndex);
+		CollectionDataCache cache = m_caches.get(key);
+		if (cache==null) {
+			CollectionDataCache newCache = createCache(key);
+			cache = m_caches.putIfAbsent(key, newCache);
+			if (cache==null) {
+				cache = newCache;
+				cache.setRegistry(this);
+				if (m_mbeansEnabled) {
+					cache.registerMBean(createMBeanName(key));
+				}
+			}
+		}
+		return cache;
+	}
+	
+	/**
+	 * Creates a new cache instance. Can be overridden to return a subclass, e.g. to
+	 * log calls of {@link CollectionDataCache#cacheFlushed()}.
+	 * 
+	 * @param key cache key
+	 * @return cache
+	 */
+	protected CollectionDataCache createCache(CacheKey key) {
+		return new CollectionDataCache(m_maxCacheSize);
+	}
+	
+	/**
+	 * Removes the caches of a view for all read masks and columns
+	 * 
+	 * @param server server of the database, null or empty string for local
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 */
+	public void remove(String server, String replicaId, String viewUNID) {
+		CacheKey viewKey = new CacheKey(server, replicaId, viewUNID, EnumSet.noneOf(ReadMask.class), null);
+		
+		Iterator<Entry<CacheKey,CollectionDataCache>> entriesIt = m_caches.entrySet().iterator();
+		while (entriesIt.hasNext()) {
+			Entry<CacheKey,CollectionDataCache> currEntry = entriesIt.next();
+			if (currEntry.getKey().isSameView(viewKey)) {
+				currEntry.getValue().setRegistry(null);
+				currEntry.getValue().unregisterMBean();
+				entriesIt.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Removes all caches from the registry
+	 */
+	public void clear() {
+		for (CollectionDataCache currCache : m_caches.values()) {
+			currCache.setRegistry(null);
+			currCache.unregisterMBean();
+		}
+		m_caches.clear();
+	}
+	
+	/**
+	 * Returns whether the caches of this registry are published as {@link CollectionDataCacheMXBean}
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isMBeansEnabled() {
+		return m_mbeansEnabled;
+	}
+	
+	/**
+	 * Publishes all current and future caches of this registry as {@link CollectionDataCacheMXBean} in
+	 * the platform MBean server or removes them from the server. The object names have the format
+	 * <code>com.mindoo.domino.jna:type=CollectionDataCache,server=...,replicaId=...,view=...,readMask=...,column=...</code>.
+	 * 
+	 * @param enabled true to register the MBeans
+	 */
+	public synchronized void setMBeansEnabled(boolean enabled) {
+		m_mbeansEnabled = enabled;
+		
+		for (Entry<CacheKey,CollectionDataCache> currEntry : m_caches.entrySet()) {
+			CollectionDataCache currCache = currEntry.getValue();
+			if (enabled) {
+				if (currCache.getMBeanName()==null) {
+					currCache.registerMBean(createMBeanName(currEntry.getKey()));
+				}
+			}
+			else {
+				currCache.unregisterMBean();
+			}
+		}
+	}
+	
+	/**
+	 * Creates the JMX object name for a cache
+	 * 
+	 * @param key cache key
+	 * @return name
+	 */
+	protected ObjectName createMBeanName(CacheKey key) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("com.mindoo.domino.jna:type=CollectionDataCache");
+		sb.append(",server=").append(ObjectName.quote(key.getServer()));
+		sb.append(",replicaId=").append(key.getReplicaId());
+		sb.append(",view=").append(key.getViewUNID());
+		sb.append(",readMask=").append(Integer.toHexString(ReadMask.toBitMask(key.getReadMask())));
+		if (key.getColumnIndex()!=null) {
+			sb.append(",column=").append(key.getColumnIndex());
+		}
+		try {
+			return new ObjectName(sb.toString());
+		} catch (MalformedObjectNameException e) {
+			throw new NotesError(0, "Invalid MBean name: "+sb, e);
+		}
+	}
+	
+	/**
+	 * Returns a snapshot of the usage counters of all caches in the registry
+	 * 
+	 * @return stats per cache
+	 */
+	public Map<CacheKey,CollectionDataCacheStats> getStats() {
+		Map<CacheKey,CollectionDataCacheStats> stats = new HashMap<CacheKey,CollectionDataCacheStats>();
+		for (Entry<CacheKey,CollectionDataCache> currEntry : m_caches.entrySet()) {
+			stats.put(currEntry.getKey(), currEntry.getValue().getStats());
+		}
+		return stats;
+	}
+	
+	/**
+	 * Returns the number of caches in the registry
+	 * 
+	 * @return number
+	 */
+	public int getNumberOfCaches() {
+		return m_caches.size();
+	}
+	
+	/**
+	 * Returns the estimated heap memory used by all caches of the registry
+	 * 
+	 * @return size in bytes
+	 */
+	public long getTotalSizeInBytes() {
+		long totalSize = 0;
+		for (CollectionDataCache currCache : m_caches.values()) {
+			totalSize += currCache.getSizeInBytes();
+		}
+		return totalSize;
+	}
+	
+	/**
+	 * Called by a cache of this registry after new data has been added
+	 * 
+	 * @param cache cache
+	 */
+	void cacheGrown(CollectionDataCache cache) {
+		evictIfRequired(false);
+	}
+	
+	/**
+	 * Evicts entries if the caches exceed the memory budget, starting with the
+	 * least recently used cache
+	 * 
+	 * @param wait true to wait for an eviction running in another thread, false to skip eviction in that case
+	 */
+	private void evictIfRequired(boolean wait) {
+		long maxTotalSize = m_maxTotalSizeInBytes;
+		if (maxTotalSize==Long.MAX_VALUE) {
+			return;
+		}
+		
+		if (wait) {
+			m_evictionLock.lock();
+		}
+		else if (!m_evictionLock.tryLock()) {
+			//another thread is already evicting entries
+			return;
+		}
+		
+		try {
+			//copy the access times, because they change while sorting
+			List<CacheAccess> caches = new ArrayList<CacheAccess>(m_caches.size());
+			long totalSize = 0;
+			for (CollectionDataCache currCache : m_caches.values()) {
+				caches.add(new CacheAccess(currCache));
+				totalSize += currCache.getSizeInBytes();
+			}
+			if (totalSize <= maxTotalSize) {
+				return;
+			}
+			
+			Collections.sort(caches, new Comparator<CacheAccess>() {
+				
+				@Override
+				public int compare(CacheAccess o1, CacheAccess o2) {
+					return o1.m_lastAccess < o2.m_lastAccess ? -1 : (o1.m_lastAccess==o2.m_lastAccess ? 0 : 1);
+				}
+			});
+			
+			for (CacheAccess currCache : caches) {
+				if (totalSize <= maxTotalSize) {
+					break;
+				}
+				totalSize -= currCache.m_cache.trim(totalSize - maxTotalSize);
+			}
+		}
+		finally {
+			m_evictionLock.unlock();
+		}
+	}
+	
+	/**
+	 * Cache with its last access time
+	 */
+	private static class CacheAccess {
+		private CollectionDataCache m_cache;
+		private long m_lastAccess;
+		
+		private CacheAccess(CollectionDataCache cache) {
+			m_cache = cache;
+			m_lastAccess = cache.getLastAccess();
+		}
+	}
+	
+	/**
+	 * Key of a cache in the registry
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static class CacheKey {
+		private String m_server;
+		private String m_replicaId;
+		private String m_viewUNID;
+		private EnumSet<ReadMask> m_readMask;
+		private Integer m_columnIndex;
+		private int m_hashCode;
+		
+		private CacheKey(String server, String replicaId, String viewUNID, EnumSet<ReadMask> readMask, Integer columnIndex) {
+			m_server = server==null || server.length()==0 ? "" : NotesNamingUtils.toCanonicalName(server).toLowerCase(Locale.ENGLISH);
+			m_replicaId = replicaId.toUpperCase(Locale.ENGLISH);
+			m_viewUNID = viewUNID.toUpperCase(Locale.ENGLISH);
+			m_readMask = readMask.clone();
+			m_readMask.add(ReadMask.NOTEID);
+			m_columnIndex = columnIndex;
+			
+			int result = 1;
+			result = 31 * result + m_server.hashCode();
+			result = 31 * result + m_replicaId.hashCode();
+			result = 31 * result + m_viewUNID.hashCode();
+			result = 31 * result + m_readMask.hashCode();
+			result = 31 * result + (m_columnIndex==null ? 0 : m_columnIndex.hashCode());
+			m_hashCode = result;
+		}
+		
+		public String getServer() {
+			return m_server;
+		}
+		
+		public String getReplicaId() {
+			return m_replicaId;
+		}
+		
+		public String getViewUNID() {
+			return m_viewUNID;
+		}
+		
+		public EnumSet<ReadMask> getReadMask() {
+			return m_readMask.clone();
+		}
+		
+		public Integer getColumnIndex() {
+			return m_columnIndex;
+		}
+		
+		private boolean isSameView(CacheKey other) {
+			return m_server.equals(other.m_server) && m_replicaId.equals(other.m_replicaId) && m_viewUNID.equals(other.m_viewUNID);
+		}
+		
+		@Override
+		public int hashCode() {
+			return m_hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CacheKey))
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return isSameView(other) && m_readMask.equals(other.m_readMask) && CollectionDataCache.isSameColumn(m_columnIndex, other.m_columnIndex);
+		}
+		
+		@Override
+		public String toString() {
+			return "CacheKey [server="+m_server+", replicaId="+m_replicaId+", viewUNID="+m_viewUNID+", readMask="+m_readMask+", columnIndex="+m_columnIndex+"]";
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.mindoo.domino.jna;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the usage counters of a {@link CollectionDataCache}, returned by
+ * {@link CollectionDataCache#getStats()}. In contrast to {@link CollectionDataCache#getCacheUsageStats()},
+ * the counters are collected for all threads using the cache.
+ * 
+ * @author Karsten Lehmann
+ */
+public class CollectionDataCacheStats implements Serializable {
+	private static final long serialVersionUID = -1853350427751209815L;
+	
+	private long m_entriesRead;
+	private long m_hits;
+	private long m_misses;
+	private long m_entriesAdded;
+	private long m_evictions;
+	private long m_diffTimeFlushes;
+	private long m_readMaskFlushes;
+	private long m_manualFlushes;
+	private int m_size;
+	private long m_sizeInBytes;
+	private int m_maxSize;
+	private long m_maxSizeInBytes;
+	
+	CollectionDataCacheStats(long entriesRead, long hits, long misses, long entriesAdded, long evictions,
+			long diffTimeFlushes, long readMaskFlushes, long manualFlushes, int size, long sizeInBytes,
+			int maxSize, long maxSizeInBytes) {
+		m_entriesRead = entriesRead;
+		m_hits = hits;
+		m_misses = misses;
+		m_entriesAdded = entriesAdded;
+		m_evictions = evictions;
+		m_diffTimeFlushes = diffTimeFlushes;
+		m_readMaskFlushes = readMaskFlushes;
+		m_manualFlushes = manualFlushes;
+		m_size = size;
+		m_sizeInBytes = sizeInBytes;
+		m_maxSize = maxSize;
+		m_maxSizeInBytes = maxSizeInBytes;
+	}
+	
+	/**
+	 * Returns the number of view entries read by lookups using the cache
+	 * 
+	 * @return count
+	 */
+	public long getEntriesRead() {
+		return m_entriesRead;
+	}
+	
+	/**
+	 * Returns the number of cache hits, which is the number of entries where NIF skipped
+	 * reading the column values, because they were already cached, and where the
+	 * entry stub could be filled with the cached data
+	 * 
+	 * @return count
+	 */
+	public long getHits() {
+		return m_hits;
+	}
+	
+	/**
+	 * Returns the number of cache misses, which is the number of entry stubs that could not be filled,
+	 * because the entry has been removed from the cache by another lookup. The lookup is then repeated
+	 * without differential view read.
+	 * 
+	 * @return count
+	 */
+	public long getMisses() {
+		return m_misses;
+	}
+	
+	/**
+	 * Returns the ratio of view entries that have been filled from the cache
+	 * 
+	 * @return ratio between 0 and 1
+	 */
+	public double getHitRatio() {
+		return m_entriesRead==0 ? 0 : (double) m_hits / (double) m_entriesRead;
+	}
+	
+	/**
+	 * Returns the number of entries added to the cache or replaced
+	 * 
+	 * @return count
+	 */
+	public long getEntriesAdded() {
+		return m_entriesAdded;
+	}
+	
+	/**
+	 * Returns the number of entries removed because the cache exceeded its bounds
+	 * 
+	 * @return count
+	 */
+	public long getEvictions() {
+		return m_evictions;
+	}
+	
+	/**
+	 * Returns the number of cache flushes caused by a changed view index (new diff time)
+	 * 
+	 * @return count
+	 */
+	public long getDiffTimeFlushes() {
+		return m_diffTimeFlushes;
+	}
+	
+	/**
+	 * Returns the number of cache flushes caused by lookups with another read mask or single column
+	 * 
+	 * @return count
+	 */
+	public long getReadMaskFlushes() {
+		return m_readMaskFlushes;
+	}
+	
+	/**
+	 * Returns the number of calls of {@link CollectionDataCache#flush()}
+	 * 
+	 * @return count
+	 */
+	public long getManualFlushes() {
+		return m_manualFlushes;
+	}
+	
+	/**
+	 * Returns the number of entries in the cache
+	 * 
+	 * @return size
+	 */
+	public int getSize() {
+		return m_size;
+	}
+	
+	/**
+	 * Returns the estimated heap memory used by the cached entries
+	 * 
+	 * @return size in bytes
+	 */
+	public long getSizeInBytes() {
+		return m_sizeInBytes;
+	}
+	
+	/**
+	 * Returns the maximum number of entries in the cache
+	 * 
+	 * @return maximum number
+	 */
+	public int getMaxSize() {
+		return m_maxSize;
+	}
+	
+	/**
+	 * Returns the maximum estimated heap memory used by the cached entries
+	 * 
+	 * @return size in bytes
+	 */
+	public long getMaxSizeInBytes() {
+		return m_maxSizeInBytes;
+	}
+	
+	@Override
+	public String toString() {
+		return "CollectionDataCacheStats [entriesRead="+m_entriesRead+", hits="+m_hits+", misses="+m_misses+
+				", entriesAdded="+m_entriesAdded+", evictions="+m_evictions+", diffTimeFlushes="+m_diffTimeFlushes+
+				", readMaskFlushes="+m_readMaskFlushes+", manualFlushes="+m_manualFlushes+", size="+m_size+
+				", sizeInBytes="+m_sizeInBytes+"]";
+	}
+}
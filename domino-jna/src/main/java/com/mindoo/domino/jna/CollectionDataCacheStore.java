@@ -0,0 +1,546 @@
+package com.mindoo.domino.jna;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.mindoo.domino.jna.CollectionDataCache.CacheSnapshot;
+import com.mindoo.domino.jna.NotesViewEntryData.CacheableViewEntryData;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.structs.NotesTimeDate;
+import com.mindoo.domino.jna.utils.LMBCSString;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+
+/**
+ * Stores the content of a {@link CollectionDataCache} on disk, so that differential view reads
+ * can continue after a JVM restart instead of reading the whole view again.<br>
+ * <br>
+ * Cache files are stored per database replica id, view UNID and read mask in a compact binary
+ * format with a sorted note id index. Loading a cache file only reads this index; the file is
+ * memory-mapped and cache entries are decoded on first access.<br>
+ * <br>
+ * Since a memory-mapped file cannot be deleted or replaced on all platforms (e.g. Windows) before
+ * the mapping has been garbage collected, each save writes a new file with an increasing generation
+ * number. Older generations are deleted if possible, otherwise on a later save.<br>
+ * <br>
+ * Usage: load the cache before the first lookup and save it when the application shuts down:
+ * <pre>
+ * CollectionDataCacheStore store = new CollectionDataCacheStore(new File("/tmp/viewcache"));
+ * final CollectionDataCache cache = new CollectionDataCache(10000);
+ * store.load(collection, returnMask, cache);
+ * ...
+ * store.save(collection, cache);
+ * </pre>
+ * 
+ * @author Karsten Lehmann
+ */
+public class CollectionDataCacheStore {
+	private static final int FILE_MAGIC = 0x4E434443; //NCDC
+	private static final short FILE_VERSION = 1;
+	private static final int HEADER_SIZE = 4 /* magic */ + 2 /* version */ + 4 /* read mask */ + 8 /* diff time */ + 4 /* count */;
+	
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_LMBCSSTRING = 2;
+	private static final byte TYPE_DOUBLE = 3;
+	private static final byte TYPE_CALENDAR = 4;
+	private static final byte TYPE_LIST = 5;
+	private static final byte TYPE_DOUBLE_PAIR = 6;
+	private static final byte TYPE_CALENDAR_PAIR = 7;
+	
+	private static final String FILE_SUFFIX = ".cache";
+	
+	private File m_directory;
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param directory base directory for the cache files, created if it does not exist
+	 */
+	public CollectionDataCacheStore(File directory) {
+		m_directory = directory;
+	}
+	
+	/**
+	 * Returns the base directory for the cache files
+	 * 
+	 * @return directory
+	 */
+	public File getDirectory() {
+		return m_directory;
+	}
+	
+	/**
+	 * Returns the file with the latest stored cache of a view
+	 * 
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 * @param readMask read mask used to read the view data; {@link ReadMask#NOTEID} is added automatically like in {@link NotesCollection#getAllEntries(String, int, EnumSet, int, EnumSet, com.mindoo.domino.jna.NotesCollection.ViewLookupCallback)}
+	 * @return file, the file of the first generation if no cache has been stored yet
+	 */
+	public File getCacheFile(String replicaId, String viewUNID, EnumSet<ReadMask> readMask) {
+		File replicaDir = getReplicaDirectory(replicaId);
+		String baseName = getBaseName(viewUNID, readMask);
+		
+		File[] cacheFiles = listCacheFiles(replicaDir, baseName);
+		if (cacheFiles.length==0) {
+			return new File(replicaDir, baseName + ".1" + FILE_SUFFIX);
+		}
+		return cacheFiles[cacheFiles.length-1];
+	}
+	
+	private File getReplicaDirectory(String replicaId) {
+		return new File(m_directory, replicaId.replace(':', '_'));
+	}
+	
+	private static String getBaseName(String viewUNID, EnumSet<ReadMask> readMask) {
+		EnumSet<ReadMask> fileReadMask = readMask.clone();
+		fileReadMask.add(ReadMask.NOTEID);
+		return viewUNID + "_" + Integer.toHexString(ReadMask.toBitMask(fileReadMask));
+	}
+	
+	/**
+	 * Returns all stored generations of a cache file
+	 * 
+	 * @param replicaDir directory of the database replica
+	 * @param baseName file name without generation and suffix
+	 * @return files sorted by generation, oldest first
+	 */
+	private static File[] listCacheFiles(File replicaDir, final String baseName) {
+		File[] files = replicaDir.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && getGeneration(file, baseName)>0;
+			}
+		});
+		if (files==null) {
+			return new File[0];
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				long gen1 = getGeneration(f1, baseName);
+				long gen2 = getGeneration(f2, baseName);
+				return gen1 < gen2 ? -1 : (gen1 == gen2 ? 0 : 1);
+			}
+		});
+		return files;
+	}
+	
+	/**
+	 * Parses the generation from a cache file name "&lt;baseName&gt;.&lt;generation&gt;.cache"
+	 * 
+	 * @param file file
+	 * @param baseName file name without generation and suffix
+	 * @return generation or -1 if the file is no cache file for the base name
+	 */
+	private static long getGeneration(File file, String baseName) {
+		String name = file.getName();
+		if (!name.startsWith(baseName + ".") || !name.endsWith(FILE_SUFFIX)) {
+			return -1;
+		}
+		String generationStr = name.substring(baseName.length() + 1, name.length() - FILE_SUFFIX.length());
+		try {
+			return Long.parseLong(generationStr);
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Saves the content of a cache for a collection
+	 * 
+	 * @param col collection
+	 * @param cache cache
+	 * @return true if data has been written, false if the cache did not contain differential read data yet or contains data of a single column read
+	 * @throws IOException in case of I/O errors
+	 */
+	public boolean save(NotesCollection col, CollectionDataCache cache) throws IOException {
+		return save(col.getParent().getReplicaID(), col.getUNID(), cache);
+	}
+	
+	/**
+	 * Saves the content of a cache
+	 * 
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 * @param cache cache
+	 * @return true if data has been written, false if the cache did not contain differential read data yet or contains data of a single column read
+	 * @throws IOException in case of I/O errors
+	 */
+	public boolean save(String replicaId, String viewUNID, CollectionDataCache cache) throws IOException {
+		CacheSnapshot snapshot = cache.getSnapshot();
+		if (snapshot.getDiffTime()==null || snapshot.getReadMask()==null) {
+			return false;
+		}
+		if (snapshot.getColumnIndex()!=null) {
+			//cache files are only stored for the values of all columns
+			return false;
+		}
+		
+		int[] noteIds = snapshot.getNoteIds();
+		CacheableViewEntryData[] entries = snapshot.getEntries();
+		
+		//encode the entries first to compute the offsets for the index
+		ByteArrayOutputStream entriesBytesOut = new ByteArrayOutputStream();
+		DataOutputStream entriesOut = new DataOutputStream(entriesBytesOut);
+		int[] offsets = new int[noteIds.length];
+		int dataStart = HEADER_SIZE + 8 * noteIds.length;
+		for (int i=0; i<noteIds.length; i++) {
+			offsets[i] = dataStart + entriesOut.size();
+			NotesViewEntryData.writeCacheableData(entries[i], entriesOut);
+		}
+		entriesOut.flush();
+		
+		File dir = getReplicaDirectory(replicaId);
+		if (!dir.exists() && !dir.mkdirs())
+			throw new IOException("Could not create cache directory "+dir.getAbsolutePath());
+		
+		//never overwrite an existing file, it may still be memory-mapped by a loaded cache
+		String baseName = getBaseName(viewUNID, snapshot.getReadMask());
+		File[] oldCacheFiles = listCacheFiles(dir, baseName);
+		long generation = oldCacheFiles.length==0 ? 1 : getGeneration(oldCacheFiles[oldCacheFiles.length-1], baseName) + 1;
+		File cacheFile = new File(dir, baseName + "." + generation + FILE_SUFFIX);
+		
+		//write to a temp file first so that a crash does not leave a corrupt cache file
+		File tmpFile = new File(dir, cacheFile.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(FILE_MAGIC);
+			out.writeShort(FILE_VERSION);
+			out.writeInt(ReadMask.toBitMask(snapshot.getReadMask()));
+			out.writeInt(snapshot.getDiffTime().Innards[0]);
+			out.writeInt(snapshot.getDiffTime().Innards[1]);
+			out.writeInt(noteIds.length);
+			for (int i=0; i<noteIds.length; i++) {
+				out.writeInt(noteIds[i]);
+				out.writeInt(offsets[i]);
+			}
+			entriesBytesOut.writeTo(out);
+		}
+		finally {
+			out.close();
+		}
+		
+		if (!tmpFile.renameTo(cacheFile))
+			throw new IOException("Could not rename "+tmpFile.getAbsolutePath()+" to "+cacheFile.getAbsolutePath());
+		
+		for (File currOldCacheFile : oldCacheFiles) {
+			//fails while the file is still mapped; it is deleted on a later save then
+			currOldCacheFile.delete();
+		}
+		return true;
+	}
+	
+	/**
+	 * Loads stored cache data for a collection into a cache. The cache entries are read
+	 * lazily from a memory-mapped file.
+	 * 
+	 * @param col collection
+	 * @param readMask read mask that will be used to read the view data
+	 * @param cache cache to populate; existing content is replaced
+	 * @return true if data has been found
+	 * @throws IOException in case of I/O errors
+	 */
+	public boolean load(NotesCollection col, EnumSet<ReadMask> readMask, CollectionDataCache cache) throws IOException {
+		return load(col.getParent().getReplicaID(), col.getUNID(), readMask, cache);
+	}
+	
+	/**
+	 * Loads stored cache data into a cache. The cache entries are read lazily from
+	 * a memory-mapped file.
+	 * 
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 * @param readMask read mask that will be used to read the view data
+	 * @param cache cache to populate; existing content is replaced
+	 * @return true if data has been found
+	 * @throws IOException in case of I/O errors
+	 */
+	public boolean load(String replicaId, String viewUNID, EnumSet<ReadMask> readMask, CollectionDataCache cache) throws IOException {
+		File cacheFile = getCacheFile(replicaId, viewUNID, readMask);
+		if (!cacheFile.exists()) {
+			return false;
+		}
+		
+		MappedByteBuffer buf;
+		RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			//the mapping stays valid after the channel has been closed
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally {
+			raf.close();
+		}
+		
+		if (buf.capacity() < HEADER_SIZE || buf.getInt(0)!=FILE_MAGIC || buf.getShort(4)!=FILE_VERSION) {
+			//unknown format, e.g. from an older version
+			return false;
+		}
+		
+		int readMaskBitMask = buf.getInt(6);
+		EnumSet<ReadMask> fileReadMask = EnumSet.noneOf(ReadMask.class);
+		for (ReadMask currMask : ReadMask.values()) {
+			if ((readMaskBitMask & currMask.getValue()) == currMask.getValue()) {
+				fileReadMask.add(currMask);
+			}
+		}
+		
+		NotesTimeDate diffTime = new NotesTimeDate(new int[] {buf.getInt(10), buf.getInt(14)});
+		
+		int count = buf.getInt(18);
+		long dataStart = HEADER_SIZE + 8L * count;
+		if (count<0 || dataStart > buf.capacity()) {
+			//corrupt file
+			return false;
+		}
+		int[] noteIds = new int[count];
+		int[] offsets = new int[count];
+		for (int i=0; i<count; i++) {
+			noteIds[i] = buf.getInt(HEADER_SIZE + 8*i);
+			offsets[i] = buf.getInt(HEADER_SIZE + 8*i + 4);
+			
+			if (offsets[i] < dataStart || offsets[i] >= buf.capacity() || (i>0 && noteIds[i] <= noteIds[i-1])) {
+				//corrupt file; the index needs to be sorted for the binary search
+				return false;
+			}
+		}
+		
+		cache.attachMappedFile(fileReadMask, diffTime, new MappedCacheFile(buf, noteIds, offsets));
+		return true;
+	}
+	
+	/**
+	 * Deletes the stored cache data of a view
+	 * 
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 * @param readMask read mask
+	 * @return true if a file has been deleted
+	 */
+	public boolean delete(String replicaId, String viewUNID, EnumSet<ReadMask> readMask) {
+		boolean deleted = false;
+		for (File currCacheFile : listCacheFiles(getReplicaDirectory(replicaId), getBaseName(viewUNID, readMask))) {
+			if (currCacheFile.delete()) {
+				deleted = true;
+			}
+		}
+		return deleted;
+	}
+	
+	/**
+	 * Memory-mapped cache file with a sorted note id index; entries are decoded on demand
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	static class MappedCacheFile {
+		private ByteBuffer m_buffer;
+		private int[] m_noteIds;
+		private int[] m_offsets;
+		
+		private MappedCacheFile(ByteBuffer buffer, int[] noteIds, int[] offsets) {
+			m_buffer = buffer;
+			m_noteIds = noteIds;
+			m_offsets = offsets;
+		}
+		
+		/**
+		 * Returns the sorted note ids of all entries in the file
+		 * 
+		 * @return note ids
+		 */
+		public int[] getNoteIds() {
+			return m_noteIds;
+		}
+		
+		/**
+		 * Decodes the entry for a note id
+		 * 
+		 * @param noteId note id
+		 * @return entry or null if not found
+		 */
+		public CacheableViewEntryData get(int noteId) {
+			int idx = java.util.Arrays.binarySearch(m_noteIds, noteId);
+			if (idx<0) {
+				return null;
+			}
+			//use a separate buffer position for each read to support concurrent access
+			ByteBuffer buf = m_buffer.duplicate();
+			buf.position(m_offsets[idx]);
+			try {
+				return NotesViewEntryData.readCacheableData(buf);
+			}
+			catch (RuntimeException e) {
+				//corrupt entry (e.g. BufferUnderflowException or unknown value type), it is read from the view again
+				return null;
+			}
+		}
+	}
+	
+	static void writeString(DataOutput out, String str) throws IOException {
+		byte[] data = str.getBytes("UTF-8");
+		out.writeInt(data.length);
+		out.write(data);
+	}
+	
+	/**
+	 * Reads the length of an array or list and checks that the buffer contains enough data for it
+	 * 
+	 * @param buf buffer
+	 * @param minElementSize minimum number of bytes per element
+	 * @return length
+	 * @throws BufferUnderflowException if the length is invalid
+	 */
+	static int readLength(ByteBuffer buf, int minElementSize) {
+		int length = buf.getInt();
+		if (length<0 || (long) length * minElementSize > buf.remaining())
+			throw new BufferUnderflowException();
+		return length;
+	}
+	
+	static String readString(ByteBuffer buf) {
+		byte[] data = new byte[readLength(buf, 1)];
+		buf.get(data);
+		try {
+			return new String(data, "UTF-8");
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	static void writeIntArray(DataOutput out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int i=0; i<values.length; i++) {
+			out.writeInt(values[i]);
+		}
+	}
+	
+	static int[] readIntArray(ByteBuffer buf) {
+		int[] values = new int[readLength(buf, 4)];
+		for (int i=0; i<values.length; i++) {
+			values[i] = buf.getInt();
+		}
+		return values;
+	}
+	
+	private static void writeCalendar(DataOutput out, Calendar cal) throws IOException {
+		int[] innards = NotesDateTimeUtils.calendarToInnards(cal);
+		out.writeInt(innards[0]);
+		out.writeInt(innards[1]);
+	}
+	
+	private static Calendar readCalendar(ByteBuffer buf) {
+		int[] innards = new int[] {buf.getInt(), buf.getInt()};
+		return NotesDateTimeUtils.innardsToCalendar(NotesDateTimeUtils.isDaylightTime(), NotesDateTimeUtils.getGMTOffset(), innards);
+	}
+	
+	/**
+	 * Writes a decoded view column or summary value
+	 * 
+	 * @param out output
+	 * @param value value, see {@link NotesViewEntryData#get(String)} for the supported types
+	 * @throws IOException in case of I/O errors
+	 */
+	static void writeValue(DataOutput out, Object value) throws IOException {
+		if (value==null) {
+			out.writeByte(TYPE_NULL);
+		}
+		else if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof LMBCSString) {
+			//keep the lazy string conversion
+			byte[] data = ((LMBCSString) value).getData();
+			out.writeByte(TYPE_LMBCSSTRING);
+			out.writeInt(data.length);
+			out.write(data);
+		}
+		else if (value instanceof Number) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble(((Number) value).doubleValue());
+		}
+		else if (value instanceof Calendar) {
+			out.writeByte(TYPE_CALENDAR);
+			writeCalendar(out, (Calendar) value);
+		}
+		else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeByte(TYPE_LIST);
+			out.writeInt(list.size());
+			for (Object currValue : list) {
+				writeValue(out, currValue);
+			}
+		}
+		else if (value instanceof double[]) {
+			double[] pair = (double[]) value;
+			out.writeByte(TYPE_DOUBLE_PAIR);
+			out.writeDouble(pair[0]);
+			out.writeDouble(pair[1]);
+		}
+		else if (value instanceof Calendar[]) {
+			Calendar[] pair = (Calendar[]) value;
+			out.writeByte(TYPE_CALENDAR_PAIR);
+			writeCalendar(out, pair[0]);
+			writeCalendar(out, pair[1]);
+		}
+		else {
+			throw new IllegalArgumentException("Unsupported value type: "+value.getClass().getName());
+		}
+	}
+	
+	/**
+	 * Reads a value written by {@link #writeValue(DataOutput, Object)}
+	 * 
+	 * @param buf buffer
+	 * @return value
+	 */
+	static Object readValue(ByteBuffer buf) {
+		byte type = buf.get();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_STRING:
+			return readString(buf);
+		case TYPE_LMBCSSTRING:
+			byte[] data = new byte[readLength(buf, 1)];
+			buf.get(data);
+			return new LMBCSString(data);
+		case TYPE_DOUBLE:
+			return Double.valueOf(buf.getDouble());
+		case TYPE_CALENDAR:
+			return readCalendar(buf);
+		case TYPE_LIST:
+			int size = readLength(buf, 1);
+			List<Object> list = new ArrayList<Object>(size);
+			for (int i=0; i<size; i++) {
+				list.add(readValue(buf));
+			}
+			return list;
+		case TYPE_DOUBLE_PAIR:
+			return new double[] {buf.getDouble(), buf.getDouble()};
+		case TYPE_CALENDAR_PAIR:
+			return new Calendar[] {readCalendar(buf), readCalendar(buf)};
+		default:
+			throw new IllegalStateException("Unknown value type in cache file: "+type);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.mindoo.domino.jna;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Aggregated data of a category of a categorized view, computed by
+ * {@link NotesCollection#getCategoryCounts(int, String...)} from the category entry
+ * without reading the documents
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCategoryCount {
+	private String m_position;
+	private int m_level;
+	private Object m_value;
+	private String m_path;
+	private int m_descendantCount;
+	private int m_subcategoryCount;
+	private Map<String,Object> m_totals;
+	
+	NotesCategoryCount(String position, int level, Object value, String path, int descendantCount, Map<String,Object> totals) {
+		m_position = position;
+		m_level = level;
+		m_value = value;
+		m_path = path;
+		m_descendantCount = descendantCount;
+		m_totals = totals;
+	}
+	
+	/**
+	 * Increments the number of subcategories below this category
+	 */
+	void addSubcategory() {
+		m_subcategoryCount++;
+	}
+	
+	/**
+	 * Returns the view position of the category entry
+	 * 
+	 * @return position
+	 */
+	public String getPosition() {
+		return m_position;
+	}
+	
+	/**
+	 * Returns the level of the category (0 for top level categories)
+	 * 
+	 * @return level
+	 */
+	public int getLevel() {
+		return m_level;
+	}
+	
+	/**
+	 * Returns the category value of this level
+	 * 
+	 * @return value
+	 */
+	public Object getValue() {
+		return m_value;
+	}
+	
+	/**
+	 * Returns the category path, e.g. catlevel1\catlevel2
+	 * 
+	 * @return path
+	 */
+	public String getPath() {
+		return m_path;
+	}
+	
+	/**
+	 * Returns the number of all entries below the category (subcategories, documents and responses)
+	 * 
+	 * @return count
+	 */
+	public int getDescendantCount() {
+		return m_descendantCount;
+	}
+	
+	/**
+	 * Returns the number of subcategories on all levels below the category
+	 * 
+	 * @return count
+	 */
+	public int getSubcategoryCount() {
+		return m_subcategoryCount;
+	}
+	
+	/**
+	 * Returns the number of documents (including responses) on all levels below the category
+	 * 
+	 * @return count
+	 */
+	public int getDocumentCount() {
+		return m_descendantCount - m_subcategoryCount;
+	}
+	
+	/**
+	 * Returns the value of a totals column for this category
+	 * 
+	 * @param columnNameOrTitle programmatic column name or title as passed to {@link NotesCollection#getCategoryCounts(int, String...)}
+	 * @return value, e.g. a {@link Double}, or null
+	 */
+	public Object getTotal(String columnNameOrTitle) {
+		return m_totals.get(columnNameOrTitle.toLowerCase());
+	}
+	
+	/**
+	 * Returns the values of all requested totals columns
+	 * 
+	 * @return map with lowercase column names as keys
+	 */
+	public Map<String,Object> getTotals() {
+		return Collections.unmodifiableMap(m_totals);
+	}
+	
+	@Override
+	public String toString() {
+		return "NotesCategoryCount [path="+m_path+", position="+m_position+", documents="+getDocumentCount()+
+				", descendants="+m_descendantCount+", totals="+m_totals+"]";
+	}
+}
@@ -0,0 +1,455 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mindoo.domino.jna.NotesCollection.EntriesAsListCallback;
+import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.structs.NotesCollectionPosition;
+
+/**
+ * In-memory model of the categories of a categorized {@link NotesCollection} for outline-style
+ * user interfaces.<br>
+ * <br>
+ * All category entries are read with one scan of the view (positions, child, descendant and
+ * sibling counts and category column values). Expanding, collapsing and finding categories
+ * is then done in memory. Only the documents of expanded categories are read from the view,
+ * once per category. The whole model is rebuilt as soon as the view index sequence number
+ * changes (see {@link NotesCollection#getIndexModifiedSequenceNo()}); the expand state of
+ * categories that still exist is kept.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCategoryTree {
+	private static final EnumSet<ReadMask> CATEGORY_READMASK = EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION,
+			ReadMask.INDEXCHILDREN, ReadMask.INDEXDESCENDANTS, ReadMask.INDEXSIBLINGS, ReadMask.SUMMARYVALUES);
+	private static final int MAX_REBUILDS = 10;
+	
+	private NotesCollection m_col;
+	private int m_indexModifiedSequenceNo;
+	private List<CategoryNode> m_rootCategories;
+	private Map<String,CategoryNode> m_categoriesByPosition;
+	private Map<String,CategoryNode> m_categoriesByPath;
+	private Set<String> m_expandedPaths;
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param col categorized collection
+	 */
+	public NotesCategoryTree(NotesCollection col) {
+		m_col = col;
+		m_indexModifiedSequenceNo = -1;
+		m_expandedPaths = new HashSet<String>();
+	}
+	
+	/**
+	 * Returns the collection
+	 * 
+	 * @return collection
+	 */
+	public NotesCollection getCollection() {
+		return m_col;
+	}
+	
+	/**
+	 * Returns the top level categories
+	 * 
+	 * @return categories
+	 */
+	public synchronized List<CategoryNode> getRootCategories() {
+		validate();
+		return Collections.unmodifiableList(m_rootCategories);
+	}
+	
+	/**
+	 * Finds a category by its path
+	 * 
+	 * @param category category or catlevel1\catlevel2 structure (case insensitive)
+	 * @return category or null if not found
+	 */
+	public synchronized CategoryNode findCategory(String category) {
+		validate();
+		return m_categoriesByPath.get(category.toLowerCase());
+	}
+	
+	/**
+	 * Finds a category by its view position
+	 * 
+	 * @param position position string, e.g. 1.2
+	 * @return category or null if there is no category at this position
+	 */
+	public synchronized CategoryNode findCategoryAtPosition(String position) {
+		validate();
+		return m_categoriesByPosition.get(position);
+	}
+	
+	/**
+	 * Expands a category
+	 * 
+	 * @param node category
+	 */
+	public synchronized void expand(CategoryNode node) {
+		m_expandedPaths.add(node.getPath().toLowerCase());
+	}
+	
+	/**
+	 * Collapses a category
+	 * 
+	 * @param node category
+	 */
+	public synchronized void collapse(CategoryNode node) {
+		m_expandedPaths.remove(node.getPath().toLowerCase());
+	}
+	
+	/**
+	 * Expands all categories
+	 */
+	public synchronized void expandAll() {
+		validate();
+		m_expandedPaths.addAll(m_categoriesByPath.keySet());
+	}
+	
+	/**
+	 * Collapses all categories
+	 */
+	public synchronized void collapseAll() {
+		m_expandedPaths.clear();
+	}
+	
+	/**
+	 * Checks if a category is expanded
+	 * 
+	 * @param node category
+	 * @return true if expanded
+	 */
+	public synchronized boolean isExpanded(CategoryNode node) {
+		return m_expandedPaths.contains(node.getPath().toLowerCase());
+	}
+	
+	/**
+	 * Returns the entries currently visible in the outline: all top level categories, and
+	 * for each expanded category its subcategories and documents in view order. Documents of
+	 * expanded categories are read from the view the first time they are needed.
+	 * 
+	 * @param documentReadMask values to read for documents; note id and position are always read
+	 * @return entries
+	 */
+	public synchronized List<NotesViewEntryData> getVisibleEntries(EnumSet<ReadMask> documentReadMask) {
+		validate();
+		
+		List<NotesViewEntryData> entries = new ArrayList<NotesViewEntryData>();
+		for (CategoryNode currRoot : m_rootCategories) {
+			addVisibleEntries(currRoot, documentReadMask, entries);
+		}
+		return entries;
+	}
+	
+	private void addVisibleEntries(CategoryNode node, EnumSet<ReadMask> documentReadMask, List<NotesViewEntryData> entries) {
+		entries.add(node.getEntry());
+		if (!isExpanded(node)) {
+			return;
+		}
+		
+		//merge subcategories and documents by their position within the category
+		List<NotesViewEntryData> documents = readDocuments(node, documentReadMask);
+		Iterator<CategoryNode> childCategoriesIt = node.getChildCategories().iterator();
+		Iterator<NotesViewEntryData> documentsIt = documents.iterator();
+		CategoryNode nextChildCategory = childCategoriesIt.hasNext() ? childCategoriesIt.next() : null;
+		NotesViewEntryData nextDocument = documentsIt.hasNext() ? documentsIt.next() : null;
+		int level = node.getLevel() + 1;
+		
+		while (nextChildCategory!=null || nextDocument!=null) {
+			if (nextDocument==null || (nextChildCategory!=null &&
+					nextChildCategory.getEntry().getPosition()[level] < nextDocument.getPosition()[level])) {
+				addVisibleEntries(nextChildCategory, documentReadMask, entries);
+				nextChildCategory = childCategoriesIt.hasNext() ? childCategoriesIt.next() : null;
+			}
+			else {
+				entries.add(nextDocument);
+				nextDocument = documentsIt.hasNext() ? documentsIt.next() : null;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the documents directly contained in a category (without the documents of subcategories).
+	 * The result is cached until the view index changes.
+	 * 
+	 * @param node category
+	 * @param returnMask values to read; note id and position are always read
+	 * @return documents
+	 */
+	public synchronized List<NotesViewEntryData> getDocuments(CategoryNode node, EnumSet<ReadMask> returnMask) {
+		validate();
+		if (m_categoriesByPosition.get(node.getPosition())!=node) {
+			//node is from an outdated tree
+			node = m_categoriesByPath.get(node.getPath().toLowerCase());
+			if (node==null) {
+				return Collections.emptyList();
+			}
+		}
+		return readDocuments(node, returnMask);
+	}
+	
+	/**
+	 * Reads the documents directly contained in a category of the current tree if they are not cached yet
+	 * 
+	 * @param node category
+	 * @param returnMask values to read
+	 * @return documents
+	 */
+	private List<NotesViewEntryData> readDocuments(CategoryNode node, EnumSet<ReadMask> returnMask) {
+		EnumSet<ReadMask> useReturnMask = returnMask.clone();
+		useReturnMask.add(ReadMask.NOTEID);
+		useReturnMask.add(ReadMask.INDEXPOSITION);
+		
+		if (node.m_documents!=null && node.m_documentsReadMask.equals(useReturnMask)) {
+			return node.m_documents;
+		}
+		
+		List<NotesViewEntryData> documents = new ArrayList<NotesViewEntryData>();
+		if (node.getChildCount() > node.getChildCategories().size()) {
+			//read the children of the category as peers of the first child
+			NotesCollectionPosition pos = NotesCollectionPosition.toPosition(node.getPosition()+".1");
+			NotesViewLookupResultData data = m_col.readEntries(pos, EnumSet.of(Navigate.CURRENT), 0, EnumSet.of(Navigate.NEXT_PEER),
+					node.getChildCount(), useReturnMask);
+			while (true) {
+				for (NotesViewEntryData currEntry : data.getEntries()) {
+					if (!currEntry.isCategory()) {
+						documents.add(currEntry);
+					}
+				}
+				if (!data.hasMoreToDo() || data.getReturnCount()==0) {
+					break;
+				}
+				data = m_col.readEntries(pos, EnumSet.of(Navigate.NEXT_PEER), 1, EnumSet.of(Navigate.NEXT_PEER),
+						node.getChildCount(), useReturnMask);
+			}
+		}
+		node.m_documents = Collections.unmodifiableList(documents);
+		node.m_documentsReadMask = useReturnMask;
+		return node.m_documents;
+	}
+	
+	/**
+	 * Rebuilds the tree if it has not been read yet or if the view index has changed
+	 * 
+	 * @throws NotesError if the view index keeps changing while reading the categories
+	 */
+	private void validate() {
+		int currIndexModifiedSequenceNo = m_col.getIndexModifiedSequenceNo();
+		if (m_rootCategories!=null && currIndexModifiedSequenceNo==m_indexModifiedSequenceNo) {
+			return;
+		}
+		
+		int rebuilds = 0;
+		while (true) {
+			m_indexModifiedSequenceNo = currIndexModifiedSequenceNo;
+			build();
+			
+			currIndexModifiedSequenceNo = m_col.getIndexModifiedSequenceNo();
+			if (currIndexModifiedSequenceNo==m_indexModifiedSequenceNo) {
+				break;
+			}
+			//view index changed while reading the categories
+			if (++rebuilds > MAX_REBUILDS) {
+				//make sure the next call reads the categories again
+				m_rootCategories = null;
+				throw new NotesError(0, "View index keeps changing while reading the categories");
+			}
+		}
+	}
+	
+	/**
+	 * Reads all category entries of the view and builds the tree
+	 */
+	private void build() {
+		List<String> categoryColumnNames = new ArrayList<String>();
+		Iterator<String> columnNames = m_col.getColumnNames();
+		while (columnNames.hasNext()) {
+			String currColumnName = columnNames.next();
+			if (m_col.isCategoryColumn(currColumnName)) {
+				categoryColumnNames.add(currColumnName);
+			}
+		}
+		
+		List<CategoryNode> rootCategories = new ArrayList<CategoryNode>();
+		Map<String,CategoryNode> categoriesByPosition = new HashMap<String,CategoryNode>();
+		Map<String,CategoryNode> categoriesByPath = new HashMap<String,CategoryNode>();
+		
+		if (!categoryColumnNames.isEmpty()) {
+			//only decode the category columns
+			final boolean[] decodeColumns = m_col.getColumnsToDecode(categoryColumnNames.toArray(new String[categoryColumnNames.size()]));
+			EntriesAsListCallback callback = new EntriesAsListCallback(Integer.MAX_VALUE) {
+				@Override
+				public boolean[] getColumnsToDecode() {
+					return decodeColumns;
+				}
+			};
+			
+			List<NotesViewEntryData> categoryEntries = m_col.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_CATEGORY),
+					Integer.MAX_VALUE, CATEGORY_READMASK, callback);
+			
+			for (NotesViewEntryData currEntry : categoryEntries) {
+				if (!currEntry.isCategory() || currEntry.isTotal()) {
+					continue;
+				}
+				String currPos = currEntry.getPositionStr();
+				int level = currEntry.getLevel();
+				String columnName = categoryColumnNames.get(Math.min(level, categoryColumnNames.size()-1));
+				Object value = currEntry.get(columnName);
+				
+				int lastDotIdx = currPos.lastIndexOf('.');
+				CategoryNode parent = lastDotIdx==-1 ? null : categoriesByPosition.get(currPos.substring(0, lastDotIdx));
+				String path = (parent==null ? "" : parent.getPath()+"\\") + (value==null ? "" : value.toString());
+				
+				CategoryNode node = new CategoryNode(parent, currEntry, value, path);
+				categoriesByPosition.put(currPos, node);
+				if (!categoriesByPath.containsKey(path.toLowerCase())) {
+					categoriesByPath.put(path.toLowerCase(), node);
+				}
+				if (parent==null) {
+					rootCategories.add(node);
+				}
+				else {
+					parent.m_childCategories.add(node);
+				}
+			}
+		}
+		
+		m_rootCategories = rootCategories;
+		m_categoriesByPosition = categoriesByPosition;
+		m_categoriesByPath = categoriesByPath;
+		//forget the expand state of removed categories
+		m_expandedPaths.retainAll(categoriesByPath.keySet());
+	}
+	
+	/**
+	 * Category of a {@link NotesCategoryTree}
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static class CategoryNode {
+		private CategoryNode m_parent;
+		private NotesViewEntryData m_entry;
+		private Object m_value;
+		private String m_path;
+		private List<CategoryNode> m_childCategories;
+		private List<NotesViewEntryData> m_documents;
+		private EnumSet<ReadMask> m_documentsReadMask;
+		
+		private CategoryNode(CategoryNode parent, NotesViewEntryData entry, Object value, String path) {
+			m_parent = parent;
+			m_entry = entry;
+			m_value = value;
+			m_path = path;
+			m_childCategories = new ArrayList<CategoryNode>();
+		}
+		
+		/**
+		 * Returns the parent category
+		 * 
+		 * @return parent or null for top level categories
+		 */
+		public CategoryNode getParent() {
+			return m_parent;
+		}
+		
+		/**
+		 * Returns the category entry read from the view
+		 * 
+		 * @return entry
+		 */
+		public NotesViewEntryData getEntry() {
+			return m_entry;
+		}
+		
+		/**
+		 * Returns the category value of this level
+		 * 
+		 * @return value
+		 */
+		public Object getValue() {
+			return m_value;
+		}
+		
+		/**
+		 * Returns the category path, e.g. catlevel1\catlevel2
+		 * 
+		 * @return path
+		 */
+		public String getPath() {
+			return m_path;
+		}
+		
+		/**
+		 * Returns the view position
+		 * 
+		 * @return position
+		 */
+		public String getPosition() {
+			return m_entry.getPositionStr();
+		}
+		
+		/**
+		 * Returns the level of the category (0 for top level categories)
+		 * 
+		 * @return level
+		 */
+		public int getLevel() {
+			return m_entry.getLevel();
+		}
+		
+		/**
+		 * Returns the number of direct children (subcategories and documents)
+		 * 
+		 * @return count
+		 */
+		public int getChildCount() {
+			return m_entry.getChildCount();
+		}
+		
+		/**
+		 * Returns the number of all descendants
+		 * 
+		 * @return count
+		 */
+		public int getDescendantCount() {
+			return m_entry.getDescendantCount();
+		}
+		
+		/**
+		 * Returns the number of documents directly contained in this category
+		 * 
+		 * @return count
+		 */
+		public int getDocumentCount() {
+			return m_entry.getChildCount() - m_childCategories.size();
+		}
+		
+		/**
+		 * Returns the subcategories
+		 * 
+		 * @return subcategories
+		 */
+		public List<CategoryNode> getChildCategories() {
+			return Collections.unmodifiableList(m_childCategories);
+		}
+		
+		@Override
+		public String toString() {
+			return "CategoryNode [path="+m_path+", position="+getPosition()+", children="+getChildCount()+
+					", descendants="+getDescendantCount()+"]";
+		}
+	}
+}
@@ -2,7 +2,9 @@ package com.mindoo.domino.jna;
 
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -16,9 +18,21 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.mindoo.domino.jna.CollectionDataCache.CacheState;
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback.Action;
+import com.mindoo.domino.jna.NotesCollectionLookupCache.CachedLookupResult;
 import com.mindoo.domino.jna.NotesViewEntryData.CacheableViewEntryData;
 import com.mindoo.domino.jna.constants.FTSearch;
 import com.mindoo.domino.jna.constants.Find;
@@ -37,7 +51,9 @@ import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder.ItemTableDa
 import com.mindoo.domino.jna.internal.NotesSearchKeyEncoder;
 import com.mindoo.domino.jna.queries.condition.Selection;
 import com.mindoo.domino.jna.structs.NotesCollectionPosition;
+import com.mindoo.domino.jna.structs.NotesCollectionStats;
 import com.mindoo.domino.jna.structs.NotesTimeDate;
+import com.mindoo.domino.jna.utils.ByteArrayHashKey;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.sun.jna.Memory;
 import com.sun.jna.Pointer;
@@ -46,6 +62,8 @@ import com.sun.jna.ptr.LongByReference;
 import com.sun.jna.ptr.ShortByReference;
 
 import lotus.domino.Database;
+import lotus.domino.NotesThread;
+import lotus.domino.Session;
 import lotus.domino.View;
 import lotus.domino.ViewColumn;
 
@@ -55,6 +73,11 @@ import lotus.domino.ViewColumn;
  * @author Karsten Lehmann
  */
 public class NotesCollection implements IRecyclableNotesObject {
+	private static final int MAX_CACHED_KEY_COUNTS = 500;
+	private static final int MAX_KEY_LOOKUP_RETRIES = 10;
+	/** threads for prefetch reads in getAllEntries, shared by all collections */
+	private static ExecutorService m_prefetchExecutor;
+	
 	private int m_hDB32;
 	private long m_hDB64;
 	private int m_hCollection32;
@@ -78,6 +101,19 @@ public class NotesCollection implements IRecyclableNotesObject {
 	private Map<Integer, Boolean> m_columnIsCategoryByIndex;
 	private Map<Integer, String> m_columnTitlesLCByIndex;
 	private Map<Integer, String> m_columnTitlesByIndex;
+	private String m_defaultSortColumnName;
+	private Direction m_defaultSortDirection;
+	private NotesCollectionLookupCache m_lookupCache;
+	private final AtomicLong m_nifReadCallCount = new AtomicLong();
+	/** results of {@link #getEntryCountByKey(EnumSet, Object...)} for the current collation, values are index modified sequence number and count */
+	private final Map<ByteArrayHashKey,int[]> m_keyCountCache = new LinkedHashMap<ByteArrayHashKey,int[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 5283447151836622094L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteArrayHashKey,int[]> eldest) {
+			return size() > MAX_CACHED_KEY_COUNTS;
+		}
+	};
 	
 	/**
 	 * Creates a new instance, 32 bit mode
@@ -192,6 +228,30 @@ public class NotesCollection implements IRecyclableNotesObject {
 		return idx==null ? -1 : idx.intValue();
 	}
 	
+	/**
+	 * Computes the array for column projection, e.g. for {@link ViewLookupCallback#getColumnsToDecode()}
+	 * or {@link NotesCollectionReader}, to only decode the values of the specified columns
+	 * 
+	 * @param columnNamesOrTitles programmatic column names or column titles
+	 * @return array with a flag for each column values index
+	 */
+	public boolean[] getColumnsToDecode(String... columnNamesOrTitles) {
+		boolean[] decodeColumns = new boolean[getNumberOfColumns()];
+		for (String currColumnName : columnNamesOrTitles) {
+			int colValuesIndex = getColumnValuesIndex(currColumnName);
+			if (colValuesIndex==-1)
+				throw new IllegalArgumentException("Column not found: "+currColumnName);
+			
+			if (colValuesIndex >= decodeColumns.length) {
+				boolean[] newDecodeColumns = new boolean[colValuesIndex+1];
+				System.arraycopy(decodeColumns, 0, newDecodeColumns, 0, decodeColumns.length);
+				decodeColumns = newDecodeColumns;
+			}
+			decodeColumns[colValuesIndex] = true;
+		}
+		return decodeColumns;
+	}
+	
 	/**
 	 * Returns whether the view automatically handles view index updates while reading from the view.<br>
 	 * <br>
@@ -227,6 +287,47 @@ public class NotesCollection implements IRecyclableNotesObject {
 		m_autoUpdate = update;
 	}
 	
+	/**
+	 * Returns the cache for key lookup results
+	 * 
+	 * @return cache or null if not set
+	 */
+	public NotesCollectionLookupCache getLookupCache() {
+		return m_lookupCache;
+	}
+	
+	/**
+	 * Sets an optional cache for the results of {@link #findByKey(EnumSet, Object...)},
+	 * {@link #findByKeyExtended2(EnumSet, EnumSet, Object...)} and
+	 * {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}.
+	 * Repeated lookups of the same keys are then answered without calling NIF
+	 * as long as the view index and the collation have not changed.
+	 * 
+	 * @param lookupCache cache or null to disable caching
+	 */
+	public void setLookupCache(NotesCollectionLookupCache lookupCache) {
+		m_lookupCache = lookupCache;
+	}
+	
+	/**
+	 * Encodes search keys for NIF. The returned buffer is either the buffer of a
+	 * precompiled {@link NotesSearchKey} or the per-thread buffer of the {@link NotesSearchKeyEncoder},
+	 * so it must be passed to NIF before encoding other keys in the same thread.
+	 * 
+	 * @param keys lookup keys
+	 * @return key buffer
+	 */
+	private Memory encodeKeys(Object[] keys) {
+		if (keys.length==1 && keys[0] instanceof NotesSearchKey) {
+			return ((NotesSearchKey) keys[0]).getEncodedKeys();
+		}
+		try {
+			return NotesSearchKeyEncoder.encodeKeysInThreadBuffer(keys);
+		} catch (Throwable e) {
+			throw new NotesError(0, "Could not encode search keys", e);
+		}
+	}
+	
 	/**
 	 * Returns the index modified sequence number that can be used to track view changes.
 	 * The method calls {@link #getLastModifiedTime()} and returns part of the result (Innards[0]).
@@ -239,6 +340,17 @@ public class NotesCollection implements IRecyclableNotesObject {
 		return ndtModified.Innards[0];
 	}
 	
+	/**
+	 * Returns the number of NIF calls made so far to locate and read collection data
+	 * (e.g. NIFReadEntries, NIFFindByKey, NIFLocateNote or NIFGetIDTableExtended), e.g. to
+	 * compare the costs of different lookup strategies
+	 * 
+	 * @return count
+	 */
+	public long getNIFReadCallCount() {
+		return m_nifReadCallCount.get();
+	}
+	
 	/**
 	 * Each time the number of documents in a collection is modified, a sequence number
 	 * is incremented.  This function will return the modification sequence number, which
@@ -836,6 +948,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		NotesCollectionPosition foundPos = new NotesCollectionPosition();
 		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
 		short result;
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
 			result = notesAPI.b64_NIFLocateNote(m_hCollection64, foundPos, noteId);
 		}
@@ -891,6 +1004,107 @@ public class NotesCollection implements IRecyclableNotesObject {
 		return noteIds;
 	}
 	
+	/**
+	 * Returns the number of view entries matching the specified search key(s) without reading
+	 * the entries, e.g. to display the total of a paged lookup result.<br>
+	 * <br>
+	 * For lookups where {@link #canFindExactNumberOfMatches(EnumSet)} is true, the count
+	 * is returned by NIFFindByKey. For inequality searches where the sort direction of the
+	 * view matches the find flags, all entries after the first match are counted by
+	 * skipping them in a single NIFReadEntries call. For other inequality searches, the
+	 * matches are counted with a lookup that only reads note ids.<br>
+	 * <br>
+	 * Counts are cached per collection until {@link #getIndexModifiedSequenceNo()} or the collation changes.
+	 * The result is the number of entries {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}
+	 * returns for the same arguments.
+	 * 
+	 * @param findFlags find flags, see {@link Find}
+	 * @param keys lookup keys
+	 * @return number of matching entries
+	 */
+	public int getEntryCountByKey(EnumSet<Find> findFlags, Object... keys) {
+		checkHandle();
+		
+		if (keys==null || keys.length==0)
+			throw new IllegalArgumentException("No search keys specified");
+		
+		ByteArrayHashKey cacheKey = NotesCollectionLookupCache.createKey(NotesCollectionLookupCache.TYPE_COUNTBYKEY, findFlags,
+				null, null, encodeKeys(keys));
+		
+		while (true) {
+			int indexModifiedSequenceNo = getIndexModifiedSequenceNo();
+			synchronized (m_keyCountCache) {
+				int[] cachedCount = m_keyCountCache.get(cacheKey);
+				if (cachedCount!=null && cachedCount[0]==indexModifiedSequenceNo) {
+					return cachedCount[1];
+				}
+			}
+			
+			int count = computeEntryCountByKey(findFlags, keys);
+			
+			if (getIndexModifiedSequenceNo()!=indexModifiedSequenceNo) {
+				//view index changed while counting
+				if (isAutoUpdate()) {
+					update();
+					continue;
+				}
+				return count;
+			}
+			synchronized (m_keyCountCache) {
+				m_keyCountCache.put(cacheKey, new int[] {indexModifiedSequenceNo, count});
+			}
+			return count;
+		}
+	}
+	
+	/**
+	 * Implementation of {@link #getEntryCountByKey(EnumSet, Object...)} without caching
+	 * 
+	 * @param findFlags find flags
+	 * @param keys lookup keys
+	 * @return number of matching entries
+	 */
+	private int computeEntryCountByKey(EnumSet<Find> findFlags, Object... keys) {
+		//count more than 65535 matches
+		EnumSet<Find> countFindFlags = findFlags.clone();
+		countFindFlags.add(Find.RETURN_DWORD);
+		
+		FindResult findResult = findByKey(countFindFlags, keys);
+		if (findResult.getEntriesFound()==0 || findResult.hasExactNumberOfMatches()) {
+			return findResult.getEntriesFound();
+		}
+		
+		Direction currSortDirection = getCurrentSortDirection();
+		if ((currSortDirection==Direction.Ascending && findFlags.contains(Find.GREATER_THAN)) ||
+				(currSortDirection==Direction.Descending && findFlags.contains(Find.LESS_THAN))) {
+			//all entries from the first match to the end of the view match; skip them to count them
+			NotesCollectionPosition startPos = NotesCollectionPosition.toPosition(findResult.getPosition());
+			NotesViewLookupResultData data = readEntries(startPos, EnumSet.of(Navigate.NEXT_NONCATEGORY), Integer.MAX_VALUE,
+					EnumSet.of(Navigate.NEXT_NONCATEGORY), 0, EnumSet.of(ReadMask.NOTEID));
+			return 1 + data.getSkipCount();
+		}
+		
+		return getAllEntriesByKey(findFlags, EnumSet.of(ReadMask.NOTEID), new ViewLookupCallback<int[]>() {
+			
+			@Override
+			public int[] startingLookup() {
+				return new int[1];
+			}
+			
+			@Override
+			public Action entryRead(int[] result, NotesViewEntryData entryData) {
+				result[0]++;
+				return Action.Continue;
+			}
+			
+			@Override
+			public int[] lookupDone(int[] result) {
+				return result;
+			}
+			
+		}, keys)[0];
+	}
+	
 	/**
 	 * Method to check whether an optimized  view lookup method can be used for
 	 * a set of find/return flags and the current Domino version
@@ -960,6 +1174,58 @@ public class NotesCollection implements IRecyclableNotesObject {
 			return null;
 		}
 		
+		/**
+		 * Override this method and return true to let {@link NotesCollection#getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)}
+		 * read and decode the next buffer of collection data in a shared background thread while
+		 * {@link #entryRead(Object, NotesViewEntryData)} is still processing the entries of the current
+		 * buffer. This overlaps native view reading with the processing in Java and speeds up
+		 * full view scans where both take about the same time.<br>
+		 * <br>
+		 * Please note that the collection handle is shared with the prefetch thread, so the callback
+		 * should not run other operations on the same collection while reading data.
+		 * 
+		 * @return true to use prefetching, false by default
+		 */
+		public boolean isPrefetchEnabled() {
+			return false;
+		}
+		
+		/**
+		 * Override this method and return true to continue reading after a view index change
+		 * instead of restarting the whole lookup in {@link NotesCollection#getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)}
+		 * and {@link NotesCollection#getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}.<br>
+		 * <br>
+		 * {@link #startingLookup()} is then only called once. After the view has been updated,
+		 * reading continues after the most recently delivered document that still exists in the
+		 * view (key lookups search the key again) and documents that have already been passed
+		 * to {@link #entryRead(Object, NotesViewEntryData)} are skipped by their note id.
+		 * Reading a large view with frequent index updates does not start from the beginning
+		 * over and over again, but the result is not a consistent snapshot of the view:
+		 * documents moved before the resume position are missed and documents contained in
+		 * multiple categories are only reported once after a resume. Category entries
+		 * may be reported twice if none of the recent documents can be found any more and reading
+		 * needs to start again at the start position.
+		 * 
+		 * @return true to resume, false by default
+		 */
+		public boolean isResumeOnViewIndexChange() {
+			return false;
+		}
+		
+		/**
+		 * Override this method to only decode the values of specific columns. Values of the
+		 * other columns are skipped in the read buffer without string or date conversion and
+		 * are returned as null. Use {@link NotesCollection#getColumnsToDecode(String...)} to
+		 * compute the array from column names.<br>
+		 * <br>
+		 * The data cache ({@link #getDataCache()}) is not used when only some columns are decoded.
+		 * 
+		 * @return array with a flag for each column values index or null to decode all columns (default)
+		 */
+		public boolean[] getColumnsToDecode() {
+			return null;
+		}
+		
 		/**
 		 * Implement this method to process a read entry directly or add it to a result object.<br>
 		 * Please note: If you process the entry directly, keep in mind that the lookup
@@ -1055,6 +1321,21 @@ public class NotesCollection implements IRecyclableNotesObject {
 			return m_innerCallback.getNameForSingleColumnRead();
 		}
 		
+		@Override
+		public boolean isPrefetchEnabled() {
+			return m_innerCallback.isPrefetchEnabled();
+		}
+		
+		@Override
+		public boolean isResumeOnViewIndexChange() {
+			return m_innerCallback.isResumeOnViewIndexChange();
+		}
+		
+		@Override
+		public boolean[] getColumnsToDecode() {
+			return m_innerCallback.getColumnsToDecode();
+		}
+		
 		@Override
 		public T startingLookup() {
 			return m_innerCallback.startingLookup();
@@ -1092,6 +1373,52 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 	}
 	
+	/**
+	 * Callback base class used to process collection entries with a reusable {@link NotesViewEntryCursor}
+	 * instead of creating a {@link NotesViewEntryData} object for each entry
+	 * 
+	 * @param <T> type of lookup result object
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static abstract class ViewCursorCallback<T> {
+		
+		/**
+		 * The method is called when the view lookup is (re-)started. If the view
+		 * index is modified while reading, the view read operation restarts from
+		 * the beginning.
+		 * 
+		 * @return result object
+		 */
+		public abstract T startingLookup();
+		
+		/**
+		 * Implement this method to process a read entry. The cursor is moved to the next
+		 * entry after this method returns, so do not store a reference to it; use
+		 * {@link NotesViewEntryCursor#toEntryData()} to get a copy of the entry data.
+		 * 
+		 * @param result result object
+		 * @param cursor cursor positioned on the current entry
+		 * @return action, either continue or stop
+		 */
+		public abstract Action entryRead(T result, NotesViewEntryCursor cursor);
+		
+		/**
+		 * Method is called when a view index change has been detected and the lookup
+		 * is restarted
+		 */
+		public void viewIndexChangeDetected() {
+		}
+		
+		/**
+		 * Method is called when the lookup process is done
+		 * 
+		 * @param result result object
+		 * @return result or transformed result
+		 */
+		public abstract T lookupDone(T result);
+	}
+	
 	/**
 	 * Subclass of {@link ViewLookupCallback} that uses an optimized view lookup to
 	 * only read the value of a single collection column. This results in much
@@ -1223,6 +1550,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		checkHandle();
 		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
 		
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
 			short result = notesAPI.b64_NIFGetIDTableExtended(m_hCollection64, Navigate.toBitMask(EnumSet.of(navigator)),
 					(short) (filterTable ? 0 : 1), idTable.getHandle64());
@@ -1266,6 +1594,84 @@ public class NotesCollection implements IRecyclableNotesObject {
 		return ids;
 	}
 	
+	/**
+	 * Computes the number of documents per category of a categorized view without reading
+	 * the document entries. Only the category entries are read (via {@link Navigate#NEXT_CATEGORY}),
+	 * because their descendant counts already contain all documents, responses and subcategories
+	 * below them. Subcategories are counted while reading and subtracted. Values of totals columns
+	 * are read from the category entries as well.
+	 * 
+	 * @param maxLevel maximum category level to return (0 for top level categories only), use {@link Integer#MAX_VALUE} for all levels; deeper category entries are still read to compute the document counts
+	 * @param totalsColumns optional programmatic names or titles of totals columns to return
+	 * @return categories in view order
+	 */
+	public List<NotesCategoryCount> getCategoryCounts(int maxLevel, String... totalsColumns) {
+		List<String> categoryColumnNames = new ArrayList<String>();
+		Iterator<String> columnNames = getColumnNames();
+		while (columnNames.hasNext()) {
+			String currColumnName = columnNames.next();
+			if (isCategoryColumn(currColumnName)) {
+				categoryColumnNames.add(currColumnName);
+			}
+		}
+		List<NotesCategoryCount> categories = new ArrayList<NotesCategoryCount>();
+		if (categoryColumnNames.isEmpty()) {
+			return categories;
+		}
+		
+		//only decode the values of category and totals columns
+		List<String> decodeColumnNames = new ArrayList<String>(categoryColumnNames);
+		if (totalsColumns!=null) {
+			decodeColumnNames.addAll(Arrays.asList(totalsColumns));
+		}
+		final boolean[] decodeColumns = getColumnsToDecode(decodeColumnNames.toArray(new String[decodeColumnNames.size()]));
+		
+		//the note id is required for isCategory() and isTotal()
+		List<NotesViewEntryData> categoryEntries = getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_CATEGORY), Integer.MAX_VALUE,
+				EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION, ReadMask.INDEXDESCENDANTS, ReadMask.SUMMARYVALUES),
+				new EntriesAsListCallback(Integer.MAX_VALUE) {
+			
+			@Override
+			public boolean[] getColumnsToDecode() {
+				return decodeColumns;
+			}
+		});
+		
+		//categories on the path to the current entry
+		List<NotesCategoryCount> parents = new ArrayList<NotesCategoryCount>();
+		
+		for (NotesViewEntryData currEntry : categoryEntries) {
+			if (!currEntry.isCategory() || currEntry.isTotal()) {
+				continue;
+			}
+			int level = currEntry.getLevel();
+			while (!parents.isEmpty() && parents.get(parents.size()-1).getLevel() >= level) {
+				parents.remove(parents.size()-1);
+			}
+			for (NotesCategoryCount currParent : parents) {
+				currParent.addSubcategory();
+			}
+			
+			Object value = currEntry.get(categoryColumnNames.get(Math.min(level, categoryColumnNames.size()-1)));
+			String path = (parents.isEmpty() ? "" : parents.get(parents.size()-1).getPath()+"\\") + (value==null ? "" : value.toString());
+			
+			Map<String,Object> totals = new LinkedHashMap<String,Object>();
+			if (totalsColumns!=null) {
+				for (String currTotalsColumn : totalsColumns) {
+					totals.put(currTotalsColumn.toLowerCase(), currEntry.get(currTotalsColumn));
+				}
+			}
+			
+			NotesCategoryCount category = new NotesCategoryCount(currEntry.getPositionStr(), level, value, path,
+					currEntry.getDescendantCount(), totals);
+			parents.add(category);
+			if (level <= maxLevel) {
+				categories.add(category);
+			}
+		}
+		return categories;
+	}
+	
 	/**
 	 * Reads all values of a collection column
 	 * 
@@ -1413,7 +1819,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 	/**
 	 * The method reads a number of entries from the collection/view. It internally takes care
 	 * of view index changes while reading view data and restarts reading if such a change has been
-	 * detected.
+	 * detected (or continues reading, see {@link ViewLookupCallback#isResumeOnViewIndexChange()}).
 	 * 
 	 * @param startPosStr start position; use "0" or null to start before the first entry
 	 * @param skipCount number entries to skip before reading
@@ -1448,8 +1854,9 @@ public class NotesCollection implements IRecyclableNotesObject {
 		
 		Integer readSingleColumnIndex = readSingleColumnName==null ? null : getColumnValuesIndex(readSingleColumnName);
 		
-		if (readSingleColumnName!=null) {
-			//TODO view row caching currently disabled for single column reads, needs more work
+		boolean[] decodeColumns = callback.getColumnsToDecode();
+		if (decodeColumns!=null) {
+			//cache entries need the values of all columns
 			dataCache = null;
 		}
 
@@ -1461,129 +1868,1318 @@ public class NotesCollection implements IRecyclableNotesObject {
 			}
 		}
 		
-		while (true) {
-			T result = callback.startingLookup();
-			
-			if (preloadEntryCount==0) {
-				//nothing to do
-				result = callback.lookupDone(result);
-				return result;
-			}
-			
-			boolean viewModified = false;
-			boolean firstLoopRun = true;
-			
-			NotesTimeDate retDiffTime = null;
-			
-			NotesTimeDate diffTime = null;
-			NotesIDTable diffIDTable = null;
-			
-			if (dataCache!=null) {
-				CacheState cacheState = dataCache.getCacheState();
-				
-				//only use cache content if read masks are compatible
-				Map<Integer,CacheableViewEntryData> cacheEntries = cacheState.getCacheEntries();
-				if (cacheEntries!=null && !cacheEntries.isEmpty()) {
-					EnumSet<ReadMask> cacheReadMask = cacheState.getReadMask();
-					if (returnMask.equals(cacheReadMask)) {
-						diffTime = cacheState.getDiffTime();
-
-						diffIDTable = new NotesIDTable();
-						diffIDTable.addNotes(cacheEntries.keySet());
-					}
-				}
+		ResumeState resumeState = null;
+		if (callback.isResumeOnViewIndexChange()) {
+			//we need the note ids to find the resume position and to skip entries already delivered
+			if (!returnMask.contains(ReadMask.NOTEID)) {
+				returnMask = returnMask.clone();
+				returnMask.add(ReadMask.NOTEID);
 			}
-			
-			List<NotesViewEntryData> entriesToUpdateCache = dataCache==null ? null : new ArrayList<NotesViewEntryData>();
+			resumeState = new ResumeState();
+		}
+		
+		//optional thread that reads the next buffer while the callback processes the current one
+		ExecutorService prefetchExecutor = null;
+		Future<NotesViewLookupResultData> prefetchedData = null;
+		String readSingleColumnLookupName = null;
+		if (callback.isPrefetchEnabled()) {
+			prefetchExecutor = getPrefetchExecutor();
+			readSingleColumnLookupName = readSingleColumnIndex==null ? null : getColumnName(readSingleColumnIndex);
+		}
+		
+		try {
+			boolean useCacheContent = true;
+			int firstSkipCount = skipCount;
+			T resumedResult = null;
 			
 			while (true) {
+				T result = resumeState!=null && resumeState.isResumed() ? resumedResult : callback.startingLookup();
+				
 				if (preloadEntryCount==0) {
-					break;
+					//nothing to do
+					result = callback.lookupDone(result);
+					return result;
 				}
-
-				NotesViewLookupResultData data;
-				data = readEntriesExt(pos, returnNav, firstLoopRun ? skipCount : 1, returnNav, preloadEntryCount, returnMask,
-						diffTime, diffIDTable, readSingleColumnIndex);
 				
-				retDiffTime = data.getReturnedDiffTime();
+				boolean viewModified = false;
+				boolean cacheIncomplete = false;
+				boolean firstLoopRun = true;
 				
-				if (dataCache!=null) {
-					//if data cache is used, we fill in missing gaps in cases where NIF skipped producing
-					//the summary data, because the corresponding cache entry was already
-					//up to date
-					List<NotesViewEntryData> entries = data.getEntries();
-					dataCache.populateEntryStubsWithData(entries);
-					
-					entriesToUpdateCache.addAll(entries);
-				}
-
-				if (data.getReturnCount()==0) {
-					//no more data found
-					result = callback.lookupDone(result);
+				NotesTimeDate retDiffTime = null;
+				
+				NotesTimeDate diffTime = null;
+				NotesIDTable diffIDTable = null;
+				int[] diffNoteIds = null;
+				
+				if (dataCache!=null && useCacheContent) {
+					CacheState cacheState = dataCache.getCacheState();
 					
-					if (dataCache!=null && retDiffTime!=null) {
-						if (!entriesToUpdateCache.isEmpty()) {
-							dataCache.addCacheValues(returnMask, retDiffTime, entriesToUpdateCache);
+					//only use cache content if read masks are compatible
+					int[] cachedNoteIds = cacheState.getNoteIds();
+					if (cachedNoteIds.length>0) {
+						EnumSet<ReadMask> cacheReadMask = cacheState.getReadMask();
+						//for single column reads, the cache needs to contain values of the same column
+						if (returnMask.equals(cacheReadMask) && CollectionDataCache.isSameColumn(readSingleColumnIndex, cacheState.getColumnIndex())) {
+							diffTime = cacheState.getDiffTime();
+	
+							diffNoteIds = cachedNoteIds;
+							diffIDTable = new NotesIDTable(cachedNoteIds);
 						}
-						callback.setNewDiffTime(retDiffTime);
 					}
-
-					return result;
 				}
 				
-				firstLoopRun = false;
+				List<NotesViewEntryData> entriesToUpdateCache = dataCache==null ? null : new ArrayList<NotesViewEntryData>();
 				
-				if (isAutoUpdate()) {
-					if (data.hasAnyNonDataConflicts()) {
-						//refresh the view and restart the lookup
-						viewModified=true;
+				prefetchedData = null;
+				
+				while (true) {
+					if (preloadEntryCount==0) {
 						break;
 					}
-				}
-				
-				List<NotesViewEntryData> entries = data.getEntries();
-				for (NotesViewEntryData currEntry : entries) {
-					Action action = callback.entryRead(result, currEntry);
-					if (action==Action.Stop) {
+	
+					NotesViewLookupResultData data;
+					if (prefetchedData!=null) {
+						data = getPrefetchedData(prefetchedData);
+						prefetchedData = null;
+					}
+					else {
+						data = readEntriesExt(pos, returnNav, firstLoopRun ? firstSkipCount : 1, returnNav, preloadEntryCount, returnMask,
+								diffTime, diffIDTable, readSingleColumnIndex, decodeColumns);
+					}
+					
+					retDiffTime = data.getReturnedDiffTime();
+					
+					if (dataCache!=null) {
+						//if data cache is used, we fill in missing gaps in cases where NIF skipped producing
+						//the summary data, because the corresponding cache entry was already
+						//up to date
+						List<NotesViewEntryData> entries = data.getEntries();
+						if (!dataCache.populateEntryStubsWithData(entries, diffNoteIds)) {
+							//a shared cache has been flushed by another lookup after we
+							//passed its note ids to NIF; read again without the cache content
+							cacheIncomplete = true;
+							break;
+						}
+						
+						entriesToUpdateCache.addAll(entries);
+					}
+	
+					if (data.getReturnCount()==0) {
+						//no more data found
 						result = callback.lookupDone(result);
 						
 						if (dataCache!=null && retDiffTime!=null) {
 							if (!entriesToUpdateCache.isEmpty()) {
-								dataCache.addCacheValues(returnMask, retDiffTime, entriesToUpdateCache);
+								dataCache.addCacheValues(returnMask, readSingleColumnIndex, retDiffTime, entriesToUpdateCache);
 							}
 							callback.setNewDiffTime(retDiffTime);
 						}
+	
 						return result;
 					}
-				}
-			}
-
-			if (dataCache!=null && retDiffTime!=null) {
-				if (!entriesToUpdateCache.isEmpty()) {
-					dataCache.addCacheValues(returnMask, retDiffTime, entriesToUpdateCache);
-				}
-				callback.setNewDiffTime(retDiffTime);
-			}
-
-			if (diffIDTable!=null) {
-				diffIDTable.recycle();
-			}
-			
-			if (viewModified) {
-				//view index was changed while reading; restart scan
-				callback.viewIndexChangeDetected();
-				update();
-				continue;
-			}
-			
-			return result;
-		}
-	}
+					
+					firstLoopRun = false;
+					
+					if (isAutoUpdate()) {
+						if (data.hasAnyNonDataConflicts()) {
+							//refresh the view and restart the lookup
+							viewModified=true;
+							break;
+						}
+					}
+					
+					if (prefetchExecutor!=null && data.hasMoreToDo()) {
+						//read the next buffer in the background while the callback processes this one;
+						//the position has already been moved forward by the last read
+						prefetchedData = prefetchExecutor.submit(new PrefetchReadCallable(pos, returnNav, preloadEntryCount,
+								returnMask, diffTime, diffIDTable, readSingleColumnIndex, readSingleColumnLookupName, decodeColumns));
+					}
+					
+					List<NotesViewEntryData> entries = data.getEntries();
+					for (NotesViewEntryData currEntry : entries) {
+						if (resumeState!=null && !resumeState.entryDelivered(currEntry)) {
+							//already passed to the callback before the view index change
+							continue;
+						}
+						Action action = callback.entryRead(result, currEntry);
+						if (action==Action.Stop) {
+							result = callback.lookupDone(result);
+							
+							if (dataCache!=null && retDiffTime!=null) {
+								if (!entriesToUpdateCache.isEmpty()) {
+									dataCache.addCacheValues(returnMask, readSingleColumnIndex, retDiffTime, entriesToUpdateCache);
+								}
+								callback.setNewDiffTime(retDiffTime);
+							}
+							return result;
+						}
+					}
+				}
+	
+				if (dataCache!=null && retDiffTime!=null) {
+					if (!entriesToUpdateCache.isEmpty()) {
+						dataCache.addCacheValues(returnMask, readSingleColumnIndex, retDiffTime, entriesToUpdateCache);
+					}
+					callback.setNewDiffTime(retDiffTime);
+				}
+	
+				if (diffIDTable!=null) {
+					diffIDTable.recycle();
+				}
+				
+				if (cacheIncomplete) {
+					useCacheContent = false;
+				}
+				else if (viewModified) {
+					//view index was changed while reading; restart scan
+					callback.viewIndexChangeDetected();
+					update();
+				}
+				else {
+					return result;
+				}
+				
+				NotesCollectionPosition resumePos = null;
+				if (resumeState!=null) {
+					//continue after the last document we delivered
+					resumeState.setResumed();
+					resumedResult = result;
+					resumePos = findResumePosition(resumeState);
+				}
+				if (resumePos!=null) {
+					pos = resumePos;
+					firstSkipCount = 1;
+				}
+				else {
+					pos = NotesCollectionPosition.toPosition(startPosStr==null ? "0" : startPosStr);
+					firstSkipCount = skipCount;
+				}
+			}
+		}
+		finally {
+			if (resumeState!=null) {
+				resumeState.recycle();
+			}
+			if (prefetchedData!=null) {
+				//wait for a running prefetch read before the caller continues to use the collection
+				awaitPrefetch(prefetchedData);
+			}
+		}
+	}
+	
+	/**
+	 * Reads a page of view entries for keyset pagination, e.g. in web grids.<br>
+	 * <br>
+	 * Offset paging skips all entries of the previous pages, so its cost grows with the page number.
+	 * Instead, each page returned by this method contains an opaque continuation token with the
+	 * position, note id and sort column value of its last entry, and the next page is read
+	 * after that entry with a skip count of 1.<br>
+	 * <br>
+	 * If the last entry of the previous page is not found at its position any more, it is searched by
+	 * its note id and, if it has been deleted, by its value in the sort column of the current collation
+	 * (see {@link NotesViewPage#isAnchorMoved()}). Tokens can only be used with the same view,
+	 * sort order and navigator.
+	 * 
+	 * @param pageToken token of the previous page ({@link NotesViewPage#getNextPageToken()}) or null to read the first page
+	 * @param nav navigator, e.g. {@link Navigate#NEXT_NONCATEGORY}
+	 * @param pageSize maximum number of entries to read
+	 * @param returnMask values to be returned; note id and position are always read
+	 * @return page
+	 * @throws IllegalArgumentException if the token is invalid or has been created for another view, sort order or navigator
+	 */
+	public NotesViewPage readPage(String pageToken, EnumSet<Navigate> nav, int pageSize, EnumSet<ReadMask> returnMask) {
+		return readPage(pageToken, nav, pageSize, returnMask, null);
+	}
+	
+	/**
+	 * Reads a page of view entries for keyset pagination and only decodes the values of specific columns,
+	 * see {@link #readPage(String, EnumSet, int, EnumSet)}
+	 * 
+	 * @param pageToken token of the previous page ({@link NotesViewPage#getNextPageToken()}) or null to read the first page
+	 * @param nav navigator, e.g. {@link Navigate#NEXT_NONCATEGORY}
+	 * @param pageSize maximum number of entries to read
+	 * @param returnMask values to be returned; note id and position are always read
+	 * @param decodeColumns optional array to only decode specific view columns (see {@link #getColumnsToDecode(String...)}) or null to decode all
+	 * @return page
+	 * @throws IllegalArgumentException if the token is invalid or has been created for another view, sort order or navigator
+	 */
+	public NotesViewPage readPage(String pageToken, EnumSet<Navigate> nav, int pageSize, EnumSet<ReadMask> returnMask,
+			boolean[] decodeColumns) {
+		short collation = getCollation();
+		short navMask = Navigate.toBitMask(nav);
+		
+		NotesViewPageToken token = null;
+		if (pageToken!=null) {
+			token = NotesViewPageToken.decode(pageToken);
+			if (!getUNID().equals(token.getViewUNID()) || token.getCollation()!=collation || token.getNavigatorMask()!=navMask) {
+				throw new IllegalArgumentException("Page token has been created for a different view, sort order or navigator");
+			}
+		}
+		
+		//the value of the sort column is stored in the token to find the location of deleted entries
+		String keyColumnName = getPrimarySortColumnName();
+		Direction keyDirection = getPrimarySortDirection();
+		
+		EnumSet<ReadMask> pageReturnMask = returnMask.clone();
+		pageReturnMask.add(ReadMask.NOTEID);
+		pageReturnMask.add(ReadMask.INDEXPOSITION);
+		if (keyColumnName!=null) {
+			if (!pageReturnMask.contains(ReadMask.SUMMARY) && !pageReturnMask.contains(ReadMask.SUMMARYVALUES)) {
+				pageReturnMask.add(ReadMask.SUMMARYVALUES);
+			}
+			if (decodeColumns!=null) {
+				int keyColumnIndex = getColumnValuesIndex(keyColumnName);
+				if (keyColumnIndex>=0 && keyColumnIndex<decodeColumns.length && !decodeColumns[keyColumnIndex]) {
+					decodeColumns = decodeColumns.clone();
+					decodeColumns[keyColumnIndex] = true;
+				}
+			}
+		}
+		
+		while (true) {
+			NotesCollectionPosition startPos;
+			int skipCount;
+			boolean anchorMoved = false;
+			
+			if (token==null) {
+				startPos = NotesCollectionPosition.toPosition("0");
+				skipCount = 1;
+			}
+			else {
+				//continue after the last entry of the previous page
+				startPos = NotesCollectionPosition.toPosition(token.getPosition());
+				skipCount = 1;
+				
+				NotesViewLookupResultData anchorData = readEntries(NotesCollectionPosition.toPosition(token.getPosition()),
+						EnumSet.of(Navigate.CURRENT), 0, nav, 1, EnumSet.of(ReadMask.NOTEID));
+				List<NotesViewEntryData> anchorEntries = anchorData.getEntries();
+				if (anchorEntries.isEmpty() || anchorEntries.get(0).getNoteId()!=token.getNoteId()) {
+					anchorMoved = true;
+					
+					boolean isCategory = (token.getNoteId() & NotesCAPI.NOTEID_CATEGORY) == NotesCAPI.NOTEID_CATEGORY;
+					NotesCollectionPosition notePos = isCategory ? null : findNotePosition(token.getNoteId());
+					if (notePos!=null) {
+						startPos = notePos;
+					}
+					else if (token.getKey()!=null && keyDirection!=null) {
+						//entry has been deleted, continue at the first entry with the same or the next sort value
+						boolean forward = (keyDirection==Direction.Ascending) != isDescendingNav(nav);
+						FindResult findResult = findByKey(forward ? EnumSet.of(Find.GREATER_THAN, Find.EQUAL) : EnumSet.of(Find.LESS_THAN, Find.EQUAL),
+								token.getKey());
+						if (findResult.getEntriesFound()==0) {
+							//no more entries
+							return new NotesViewPage(new ArrayList<NotesViewEntryData>(0), null, anchorMoved);
+						}
+						startPos = NotesCollectionPosition.toPosition(findResult.getPosition());
+						skipCount = 0;
+					}
+					else {
+						//the next entry has probably moved to the position of the deleted one
+						skipCount = 0;
+					}
+				}
+			}
+			
+			NotesViewLookupResultData data = readEntries(startPos, nav, skipCount, nav, pageSize, pageReturnMask, decodeColumns);
+			if (isAutoUpdate()) {
+				if (data.hasAnyNonDataConflicts()) {
+					//refresh the view and locate the anchor again
+					update();
+					continue;
+				}
+			}
+			
+			List<NotesViewEntryData> entries = data.getEntries();
+			String nextPageToken = null;
+			if (data.hasMoreToDo() && !entries.isEmpty()) {
+				NotesViewEntryData lastEntry = entries.get(entries.size()-1);
+				Object key = keyColumnName==null ? null : lastEntry.get(keyColumnName);
+				nextPageToken = new NotesViewPageToken(getUNID(), collation, navMask, lastEntry.getPositionStr(),
+						lastEntry.getNoteId(), key).encode();
+			}
+			return new NotesViewPage(entries, nextPageToken, anchorMoved);
+		}
+	}
+	
+	/**
+	 * Reads view entries into column-oriented arrays instead of creating a {@link NotesViewEntryData}
+	 * object per entry, e.g. to aggregate number columns over a whole view. See {@link NotesViewColumnarData}
+	 * for the storage format.<br>
+	 * <br>
+	 * If the view index changes while reading and {@link #isAutoUpdate()} is true, the view is
+	 * updated and reading is restarted.
+	 * 
+	 * @param startPosStr start position, e.g. "0" to start before the first entry
+	 * @param skipCount number of entries to skip before reading
+	 * @param returnNav navigator to use for the read operation, e.g. {@link Navigate#NEXT_NONCATEGORY}
+	 * @param preloadEntryCount number of entries to read in one NIF call
+	 * @param returnMask values to be returned; {@link ReadMask#SUMMARYVALUES} is added automatically, {@link ReadMask#SUMMARY} is not supported and removed
+	 * @param decodeColumns optional array with flags for the column values to decode (see {@link #getColumnsToDecode(String...)}) or null to decode all values
+	 * @return column data
+	 */
+	public NotesViewColumnarData getAllEntriesColumnar(String startPosStr, int skipCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount, EnumSet<ReadMask> returnMask, boolean[] decodeColumns) {
+		EnumSet<ReadMask> useReturnMask = returnMask.clone();
+		useReturnMask.remove(ReadMask.SUMMARY);
+		useReturnMask.add(ReadMask.SUMMARYVALUES);
+		
+		NotesViewColumnarData columnarData = new NotesViewColumnarData();
+		
+		//we are leaving the loop when there is no more data to be read;
+		//while(true) is here to rerun the query in case of view index changes while reading
+		while (true) {
+			NotesCollectionPosition pos = NotesCollectionPosition.toPosition(startPosStr==null ? "0" : startPosStr);
+			boolean viewModified = false;
+			boolean firstLoopRun = true;
+			
+			while (preloadEntryCount>0) {
+				NotesViewLookupResultData data = readEntriesColumnar(pos, returnNav, firstLoopRun ? skipCount : 1, returnNav,
+						preloadEntryCount, useReturnMask, decodeColumns, columnarData);
+				firstLoopRun = false;
+				
+				if (isAutoUpdate() && data.hasAnyNonDataConflicts()) {
+					//refresh the view and restart reading
+					viewModified = true;
+					break;
+				}
+				if (data.getReturnCount()==0 || !data.hasMoreToDo()) {
+					break;
+				}
+			}
+			
+			if (viewModified) {
+				update();
+				columnarData.clear();
+				continue;
+			}
+			
+			columnarData.trimToSize();
+			return columnarData;
+		}
+	}
+	
+	/**
+	 * Change feed for the documents in the view, based on differential view reads of NIF.<br>
+	 * <br>
+	 * Returns the entries of all documents that have been added to the view or changed since the
+	 * checkpoint, the note ids of documents that have been removed from the view and a new checkpoint for
+	 * the next call. Unchanged documents are only returned by NIF as note id, so their column values
+	 * are not transferred. Without checkpoint, all entries are returned.<br>
+	 * <br>
+	 * Please note that differential view reads do not work in views with permutations (columns with
+	 * "show multiple values as separate entries"), so all entries are returned as changed for those views.<br>
+	 * <br>
+	 * If the view index changes while reading, reading is restarted (after updating the view if
+	 * {@link #isAutoUpdate()} is true).
+	 * 
+	 * @param checkpoint checkpoint returned by the last call or null to read all entries
+	 * @param returnMask values to be returned for added or changed entries; {@link ReadMask#NOTEID} is added automatically and {@link ReadMask#SUMMARYVALUES} if no summary data is requested
+	 * @param preloadEntryCount number of entries to read in one NIF call
+	 * @return changes and new checkpoint
+	 */
+	public NotesCollectionChanges getChanges(NotesCollectionCheckpoint checkpoint, EnumSet<ReadMask> returnMask, int preloadEntryCount) {
+		if (preloadEntryCount<1)
+			throw new IllegalArgumentException("Preload entry count must be greater than 0: "+preloadEntryCount);
+		
+		String viewUNID = getUNID();
+		if (checkpoint!=null && !viewUNID.equalsIgnoreCase(checkpoint.getViewUNID()))
+			throw new IllegalArgumentException("Checkpoint has been created for another view: "+checkpoint.getViewUNID());
+		
+		EnumSet<ReadMask> useReturnMask = returnMask.clone();
+		useReturnMask.add(ReadMask.NOTEID);
+		if (!useReturnMask.contains(ReadMask.SUMMARY) && !useReturnMask.contains(ReadMask.SUMMARYVALUES)) {
+			//we need column values to tell changed entries from the note id stubs of unchanged ones
+			useReturnMask.add(ReadMask.SUMMARYVALUES);
+		}
+		
+		int[] knownNoteIds = checkpoint==null ? new int[0] : checkpoint.getNoteIds();
+		NotesTimeDate diffTime = null;
+		if (checkpoint!=null && knownNoteIds.length>0 && useReturnMask.equals(checkpoint.getReadMask())) {
+			diffTime = checkpoint.getDiffTime();
+		}
+		
+		//we are leaving the loop when there is no more data to be read;
+		//while(true) is here to rerun the read in case of view index changes while reading
+		while (true) {
+			NotesIDTable diffIDTable = diffTime==null ? null : new NotesIDTable(knownNoteIds);
+			try {
+				NotesCollectionPosition pos = NotesCollectionPosition.toPosition("0");
+				List<NotesViewEntryData> changedEntries = new ArrayList<NotesViewEntryData>();
+				int[] currentNoteIds = new int[Math.max(16, knownNoteIds.length)];
+				int numCurrentNoteIds = 0;
+				
+				//use the diff time of the first read, so that changes during the read are returned again next time
+				NotesTimeDate newDiffTime = null;
+				boolean viewModified = false;
+				
+				while (true) {
+					NotesViewLookupResultData data = readEntriesExt(pos, EnumSet.of(Navigate.NEXT_NONCATEGORY), 1,
+							EnumSet.of(Navigate.NEXT_NONCATEGORY), preloadEntryCount, useReturnMask, diffTime, diffIDTable, null);
+					
+					if (newDiffTime==null) {
+						newDiffTime = data.getReturnedDiffTime();
+					}
+					if (data.hasAnyNonDataConflicts()) {
+						viewModified = true;
+						break;
+					}
+					
+					for (NotesViewEntryData currEntry : data.getEntries()) {
+						int currNoteId = currEntry.getNoteId();
+						if (numCurrentNoteIds == currentNoteIds.length) {
+							currentNoteIds = Arrays.copyOf(currentNoteIds, currentNoteIds.length * 2);
+						}
+						currentNoteIds[numCurrentNoteIds++] = currNoteId;
+						
+						//NIF returns stubs with the note id only for documents that did not change
+						boolean isUnchanged = diffTime!=null && !currEntry.hasAnyColumnValues() &&
+								Arrays.binarySearch(knownNoteIds, currNoteId)>=0;
+						if (!isUnchanged) {
+							changedEntries.add(currEntry);
+						}
+					}
+					
+					if (data.getReturnCount()==0 || !data.hasMoreToDo()) {
+						break;
+					}
+				}
+				
+				if (viewModified) {
+					if (isAutoUpdate()) {
+						update();
+					}
+					continue;
+				}
+				
+				int[] sortedNoteIds = toSortedUniqueNoteIds(currentNoteIds, numCurrentNoteIds);
+				int[] removedNoteIds = getMissingNoteIds(knownNoteIds, sortedNoteIds);
+				
+				NotesCollectionCheckpoint newCheckpoint = new NotesCollectionCheckpoint(viewUNID, useReturnMask, newDiffTime, sortedNoteIds);
+				return new NotesCollectionChanges(changedEntries, removedNoteIds, newCheckpoint, diffTime==null);
+			}
+			finally {
+				if (diffIDTable!=null) {
+					diffIDTable.recycle();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Sorts note ids and removes duplicates, e.g. of documents that appear multiple times in the view
+	 * 
+	 * @param noteIds note ids
+	 * @param length number of note ids in the array
+	 * @return sorted note ids
+	 */
+	private static int[] toSortedUniqueNoteIds(int[] noteIds, int length) {
+		int[] sortedNoteIds = Arrays.copyOf(noteIds, length);
+		Arrays.sort(sortedNoteIds);
+		
+		int uniqueLength = 0;
+		for (int i=0; i<sortedNoteIds.length; i++) {
+			if (uniqueLength==0 || sortedNoteIds[uniqueLength-1]!=sortedNoteIds[i]) {
+				sortedNoteIds[uniqueLength++] = sortedNoteIds[i];
+			}
+		}
+		return uniqueLength==sortedNoteIds.length ? sortedNoteIds : Arrays.copyOf(sortedNoteIds, uniqueLength);
+	}
+	
+	/**
+	 * Returns the note ids of the first array that are not contained in the second one
+	 * 
+	 * @param sortedNoteIds sorted note ids
+	 * @param sortedNoteIdsToRemove sorted note ids to remove
+	 * @return sorted note ids
+	 */
+	private static int[] getMissingNoteIds(int[] sortedNoteIds, int[] sortedNoteIdsToRemove) {
+		int[] result = new int[sortedNoteIds.length];
+		int resultLength = 0;
+		int idx = 0;
+		for (int currNoteId : sortedNoteIds) {
+			while (idx<sortedNoteIdsToRemove.length && sortedNoteIdsToRemove[idx]<currNoteId) {
+				idx++;
+			}
+			if (idx==sortedNoteIdsToRemove.length || sortedNoteIdsToRemove[idx]!=currNoteId) {
+				result[resultLength++] = currNoteId;
+			}
+		}
+		return Arrays.copyOf(result, resultLength);
+	}
+	
+	/**
+	 * Creates an executor used to read collection data in the background. The threads
+	 * are {@link NotesThread}s so that the Notes C API is initialized for them.
+	 * 
+	 * @param numThreads number of threads
+	 * @param threadName name of the threads
+	 * @return executor
+	 */
+	private static ExecutorService createNotesThreadExecutor(int numThreads, final String threadName) {
+		return Executors.newFixedThreadPool(numThreads, createNotesThreadFactory(threadName));
+	}
+	
+	/**
+	 * Creates a factory for daemon {@link NotesThread}s
+	 * 
+	 * @param threadName name of the threads
+	 * @return factory
+	 */
+	private static ThreadFactory createNotesThreadFactory(final String threadName) {
+		return new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new NotesThread(r, threadName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the executor shared by all prefetch reads, which is created on first use.
+	 * It starts a new thread if all existing ones are busy, so that concurrent lookups
+	 * do not wait for each other, and ends threads that have been idle for a minute.
+	 * 
+	 * @return executor
+	 */
+	private static synchronized ExecutorService getPrefetchExecutor() {
+		if (m_prefetchExecutor==null) {
+			m_prefetchExecutor = Executors.newCachedThreadPool(createNotesThreadFactory("NotesCollection prefetch"));
+		}
+		return m_prefetchExecutor;
+	}
+	
+	/**
+	 * Shuts down an executor and waits until running read operations are done
+	 * 
+	 * @param executor executor
+	 */
+	private static void shutdownExecutor(ExecutorService executor) {
+		executor.shutdown();
+		boolean interrupted = false;
+		while (!executor.isTerminated()) {
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Waits until a prefetch read is done, ignoring its result
+	 * 
+	 * @param prefetchedData future of the read operation
+	 */
+	private static void awaitPrefetch(Future<NotesViewLookupResultData> prefetchedData) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				prefetchedData.get();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			} catch (ExecutionException e) {
+				//the read failed, nothing left to wait for
+				break;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Waits for the result of a prefetch read
+	 * 
+	 * @param prefetchedData future of the read operation
+	 * @return read data
+	 */
+	private static NotesViewLookupResultData getPrefetchedData(Future<NotesViewLookupResultData> prefetchedData) {
+		try {
+			return prefetchedData.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for prefetched collection data", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new NotesError(0, "Error reading prefetched collection data", cause);
+		}
+	}
+	
+	/**
+	 * Reads the next buffer of collection data in the prefetch thread, continuing
+	 * at the current position with a skip count of 1
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private class PrefetchReadCallable implements Callable<NotesViewLookupResultData> {
+		private NotesCollectionPosition m_pos;
+		private EnumSet<Navigate> m_returnNav;
+		private int m_preloadEntryCount;
+		private EnumSet<ReadMask> m_returnMask;
+		private NotesTimeDate m_diffTime;
+		private NotesIDTable m_diffIDTable;
+		private Integer m_columnNumber;
+		private String m_singleColumnLookupName;
+		private boolean[] m_decodeColumns;
+		
+		public PrefetchReadCallable(NotesCollectionPosition pos, EnumSet<Navigate> returnNav, int preloadEntryCount,
+				EnumSet<ReadMask> returnMask, NotesTimeDate diffTime, NotesIDTable diffIDTable, Integer columnNumber,
+				String singleColumnLookupName, boolean[] decodeColumns) {
+			m_pos = pos;
+			m_returnNav = returnNav;
+			m_preloadEntryCount = preloadEntryCount;
+			m_returnMask = returnMask;
+			m_diffTime = diffTime;
+			m_diffIDTable = diffIDTable;
+			m_columnNumber = columnNumber;
+			m_singleColumnLookupName = singleColumnLookupName;
+			m_decodeColumns = decodeColumns;
+		}
+		
+		@Override
+		public NotesViewLookupResultData call() throws Exception {
+			if (isRecycled())
+				throw new NotesError(0, "Collection already recycled");
+			
+			return readEntriesExtInternal(m_pos, m_returnNav, 1, m_returnNav, m_preloadEntryCount, m_returnMask,
+					m_diffTime, m_diffIDTable, m_columnNumber, m_singleColumnLookupName, m_decodeColumns);
+		}
+	}
+	
+	/**
+	 * Keeps track of the documents passed to the callback of a lookup that continues
+	 * after view index changes, see {@link ViewLookupCallback#isResumeOnViewIndexChange()}
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private static class ResumeState {
+		/** number of recently delivered note ids we try to locate to find the resume position */
+		private static final int MAX_RECENT_NOTEIDS = 16;
+		
+		private NotesIDTable m_deliveredNoteIds;
+		private int[] m_recentNoteIds;
+		private int m_recentNoteIdsCount;
+		private boolean m_resumed;
+		
+		public ResumeState() {
+			m_deliveredNoteIds = new NotesIDTable();
+			m_recentNoteIds = new int[MAX_RECENT_NOTEIDS];
+		}
+		
+		/**
+		 * Records that an entry is about to be passed to the callback
+		 * 
+		 * @param entry entry
+		 * @return true if the entry should be delivered, false if this is a document that has already been delivered before a resume
+		 */
+		public boolean entryDelivered(NotesViewEntryData entry) {
+			if (entry.isCategory()) {
+				return true;
+			}
+			int noteId = entry.getNoteId();
+			boolean added = m_deliveredNoteIds.addNote(noteId);
+			if (!added && m_resumed) {
+				return false;
+			}
+			m_recentNoteIds[m_recentNoteIdsCount % MAX_RECENT_NOTEIDS] = noteId;
+			m_recentNoteIdsCount++;
+			return true;
+		}
+		
+		/**
+		 * Returns the recently delivered note ids, the last delivered first
+		 * 
+		 * @return note ids
+		 */
+		public int[] getRecentNoteIds() {
+			int count = Math.min(m_recentNoteIdsCount, MAX_RECENT_NOTEIDS);
+			int[] noteIds = new int[count];
+			for (int i=0; i<count; i++) {
+				noteIds[i] = m_recentNoteIds[(m_recentNoteIdsCount - 1 - i) % MAX_RECENT_NOTEIDS];
+			}
+			return noteIds;
+		}
+		
+		/**
+		 * Marks that the lookup continues after a view index change; from now on,
+		 * documents already delivered are skipped
+		 */
+		public void setResumed() {
+			m_resumed = true;
+		}
+		
+		public boolean isResumed() {
+			return m_resumed;
+		}
+		
+		public void recycle() {
+			m_deliveredNoteIds.recycle();
+		}
+	}
+	
+	/**
+	 * Searches the collection for the documents most recently passed to the callback
+	 * of a lookup to continue reading after a view index change
+	 * 
+	 * @param resumeState lookup state
+	 * @return position of the last delivered document that still exists in the view or null if none has been found
+	 */
+	private NotesCollectionPosition findResumePosition(ResumeState resumeState) {
+		for (int currNoteId : resumeState.getRecentNoteIds()) {
+			NotesCollectionPosition foundPos = findNotePosition(currNoteId);
+			if (foundPos!=null) {
+				return foundPos;
+			}
+			//document has been deleted or does not match the view selection any more
+		}
+		return null;
+	}
+	
+	/**
+	 * Locates a note in the collection like {@link #locateNote(int)}, but does not
+	 * throw an error if the note cannot be found
+	 * 
+	 * @param noteId note id
+	 * @return position or null if not found
+	 */
+	private NotesCollectionPosition findNotePosition(int noteId) {
+		checkHandle();
+		
+		NotesCollectionPosition foundPos = new NotesCollectionPosition();
+		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
+		short result;
+		m_nifReadCallCount.incrementAndGet();
+		if (NotesJNAContext.is64Bit()) {
+			result = notesAPI.b64_NIFLocateNote(m_hCollection64, foundPos, noteId);
+		}
+		else {
+			result = notesAPI.b32_NIFLocateNote(m_hCollection32, foundPos, noteId);
+		}
+		return result==0 ? foundPos : null;
+	}
+	
+	/**
+	 * Reads all entries of the collection in parallel, using multiple threads with their own
+	 * database and collection handles. The collection is split into ranges of top level entries
+	 * (top level categories in categorized views, documents in flat views), each range is
+	 * read by a worker thread and the results are passed to the callback in view order
+	 * from the calling thread, as soon as all previous ranges have been delivered.<br>
+	 * <br>
+	 * Workers hand over their entries in chunks of <code>preloadEntryCount</code> entries and wait
+	 * while the calling thread has not taken the previous chunk of their range, so memory consumption
+	 * is bounded by about three chunks per thread, and no more data is read after the callback
+	 * has returned {@link Action#Stop}.<br>
+	 * <br>
+	 * The worker threads reopen the database with the same server, filepath and user names list
+	 * as the parent database of this collection and apply the current sort column of this collection.
+	 * Selected list, unread table and FT search results of this collection are not used by the workers,
+	 * {@link ViewLookupCallback#getDataCache()} is not used as well.<br>
+	 * <br>
+	 * If the view index changes while reading, the whole scan restarts like in
+	 * {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)}.
+	 * Falls back to a standard read operation if the collection has too few top level
+	 * entries to be split.
+	 * 
+	 * @param numThreads number of worker threads
+	 * @param returnNav navigator to specify how to move in the collection, only forward navigators are supported
+	 * @param preloadEntryCount amount of entries that is read from the view in each worker
+	 * @param returnMask values to extract; {@link ReadMask#NOTEID} and {@link ReadMask#INDEXPOSITION} are added automatically
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	public <T> T getAllEntriesParallel(int numThreads, EnumSet<Navigate> returnNav, int preloadEntryCount,
+			EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
+		checkHandle();
+		
+		if (numThreads<1)
+			throw new IllegalArgumentException("Number of threads must be greater than 0: "+numThreads);
+		if (isDescendingNav(returnNav))
+			throw new IllegalArgumentException("Only forward navigators are supported for parallel reads: "+returnNav);
+		
+		EnumSet<ReadMask> useReturnMask = returnMask.clone();
+		//we need the position to find the end of each range and the note id to filter categories
+		useReturnMask.add(ReadMask.NOTEID);
+		useReturnMask.add(ReadMask.INDEXPOSITION);
+
+		//collect the data the worker threads need to reopen this collection
+		String server = m_parentDb.getServer();
+		String filePath = m_parentDb.getRelativeFilePath();
+		List<String> namesList = m_parentDb.m_namesList==null ? null : m_parentDb.m_namesList.getNames();
+		short collation = getCollation();
+		String readSingleColumnName = callback.getNameForSingleColumnRead();
+		boolean[] decodeColumns = callback.getColumnsToDecode();
+		
+		while (true) {
+			int topLevelEntries = getTopLevelEntryCount();
+			
+			if (numThreads==1 || topLevelEntries < numThreads*2) {
+				//not worth the effort
+				return getAllEntries("0", 1, returnNav, preloadEntryCount, returnMask, callback);
+			}
+			
+			T result = callback.startingLookup();
+			
+			AtomicBoolean stopWorkers = new AtomicBoolean();
+			ExecutorService executor = createNotesThreadExecutor(numThreads, "NotesCollection parallel read");
+			try {
+				List<ParallelReadRange> ranges = new ArrayList<ParallelReadRange>(numThreads);
+				List<Future<ParallelReadRange>> rangeFutures = new ArrayList<Future<ParallelReadRange>>(numThreads);
+				for (int i=0; i<numThreads; i++) {
+					int firstTopLevelPos = (int) (((long) topLevelEntries * i) / numThreads) + 1;
+					int lastTopLevelPos = (int) (((long) topLevelEntries * (i+1)) / numThreads);
+					
+					ParallelReadRange range = new ParallelReadRange(m_parentDb.getSession(), server, filePath, namesList, m_name,
+							m_viewNoteId, collation, firstTopLevelPos, lastTopLevelPos, returnNav, preloadEntryCount,
+							useReturnMask, readSingleColumnName, decodeColumns, stopWorkers);
+					ranges.add(range);
+					rangeFutures.add(executor.submit(range));
+				}
+				
+				boolean viewModified = false;
+				Integer indexModifiedSequenceNo = null;
+				
+				//deliver the entries in view order
+				for (int i=0; i<ranges.size() && !viewModified; i++) {
+					ParallelReadRange currRange = ranges.get(i);
+					
+					List<NotesViewEntryData> currChunk;
+					while ((currChunk = currRange.takeChunk()) != ParallelReadRange.END_OF_RANGE) {
+						if (indexModifiedSequenceNo==null) {
+							indexModifiedSequenceNo = currRange.getIndexModifiedSequenceNo();
+						}
+						else if (indexModifiedSequenceNo.intValue() != currRange.getIndexModifiedSequenceNo()) {
+							//ranges have been read from different view index versions
+							viewModified = true;
+							break;
+						}
+						
+						for (NotesViewEntryData currEntry : currChunk) {
+							//the collection of the worker thread may already have been recycled
+							currEntry.setParent(this);
+							
+							Action action = callback.entryRead(result, currEntry);
+							if (action==Action.Stop) {
+								stopWorkers.set(true);
+								result = callback.lookupDone(result);
+								return result;
+							}
+						}
+					}
+					if (viewModified) {
+						break;
+					}
+					
+					//throws errors of the worker thread
+					getParallelReadResult(rangeFutures.get(i));
+					if (currRange.isViewModified()) {
+						viewModified = true;
+					}
+				}
+				
+				if (viewModified) {
+					//view index was changed while reading; restart scan
+					callback.viewIndexChangeDetected();
+					update();
+					continue;
+				}
+				
+				result = callback.lookupDone(result);
+				return result;
+			}
+			finally {
+				stopWorkers.set(true);
+				shutdownExecutor(executor);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of top level entries in the collection
+	 * 
+	 * @return count
+	 */
+	private int getTopLevelEntryCount() {
+		NotesViewLookupResultData data = readEntries(NotesCollectionPosition.toPosition("0"), EnumSet.of(Navigate.NEXT), 1,
+				EnumSet.of(Navigate.NEXT), 1, EnumSet.of(ReadMask.NOTEID, ReadMask.COLLECTIONSTATS));
+		NotesCollectionStats stats = data.getStats();
+		return stats==null ? 0 : stats.TopLevelEntries;
+	}
+	
+	/**
+	 * Waits for the result of a parallel read operation
+	 * 
+	 * @param future future of the read operation
+	 * @return read data
+	 */
+	private static ParallelReadRange getParallelReadResult(Future<ParallelReadRange> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for collection data", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new NotesError(0, "Error reading collection data in parallel", cause);
+		}
+	}
+	
+	/**
+	 * Reads a range of top level entries in a worker thread of
+	 * {@link NotesCollection#getAllEntriesParallel(int, EnumSet, int, EnumSet, ViewLookupCallback)}.
+	 * The worker opens its own database and collection handles.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private static class ParallelReadRange implements Callable<ParallelReadRange> {
+		/** marks the end of the chunks of a range */
+		static final List<NotesViewEntryData> END_OF_RANGE = new ArrayList<NotesViewEntryData>(0);
+		
+		private Session m_session;
+		private String m_server;
+		private String m_filePath;
+		private List<String> m_namesList;
+		private String m_viewName;
+		private int m_viewNoteId;
+		private short m_collation;
+		private int m_firstTopLevelPos;
+		private int m_lastTopLevelPos;
+		private EnumSet<Navigate> m_returnNav;
+		private int m_preloadEntryCount;
+		private EnumSet<ReadMask> m_returnMask;
+		private String m_readSingleColumnName;
+		private boolean[] m_decodeColumns;
+		private AtomicBoolean m_stop;
+		
+		/** chunks of entries read, taken by the calling thread in view order */
+		private BlockingQueue<List<NotesViewEntryData>> m_chunks;
+		private List<NotesViewEntryData> m_currChunk;
+		private volatile boolean m_viewModified;
+		private volatile int m_indexModifiedSequenceNo;
+		
+		public ParallelReadRange(Session session, String server, String filePath, List<String> namesList,
+				String viewName, int viewNoteId, short collation, int firstTopLevelPos, int lastTopLevelPos,
+				EnumSet<Navigate> returnNav, int preloadEntryCount, EnumSet<ReadMask> returnMask,
+				String readSingleColumnName, boolean[] decodeColumns, AtomicBoolean stop) {
+			m_session = session;
+			m_server = server;
+			m_filePath = filePath;
+			m_namesList = namesList;
+			m_viewName = viewName;
+			m_viewNoteId = viewNoteId;
+			m_collation = collation;
+			m_firstTopLevelPos = firstTopLevelPos;
+			m_lastTopLevelPos = lastTopLevelPos;
+			m_returnNav = returnNav;
+			m_preloadEntryCount = preloadEntryCount;
+			m_returnMask = returnMask;
+			m_readSingleColumnName = readSingleColumnName;
+			m_decodeColumns = decodeColumns;
+			m_stop = stop;
+			//one chunk is waiting for the calling thread while the worker fills the next one
+			m_chunks = new ArrayBlockingQueue<List<NotesViewEntryData>>(1);
+		}
+		
+		/**
+		 * Waits for the next chunk of entries of the range
+		 * 
+		 * @return chunk or {@link #END_OF_RANGE} if the worker is done
+		 */
+		public List<NotesViewEntryData> takeChunk() {
+			try {
+				return m_chunks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new NotesError(0, "Interrupted while waiting for collection data", e);
+			}
+		}
+		
+		/**
+		 * Passes a chunk of entries to the calling thread, waits until it has taken the previous one
+		 * 
+		 * @param chunk chunk
+		 * @return false if the read operation has been stopped
+		 */
+		private boolean putChunk(List<NotesViewEntryData> chunk) {
+			try {
+				while (!m_chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+					if (m_stop.get()) {
+						return false;
+					}
+				}
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		
+		public boolean isViewModified() {
+			return m_viewModified;
+		}
+		
+		public int getIndexModifiedSequenceNo() {
+			return m_indexModifiedSequenceNo;
+		}
+		
+		@Override
+		public ParallelReadRange call() throws Exception {
+			try {
+				return NotesGC.runWithAutoGC(new Callable<ParallelReadRange>() {
+
+					@Override
+					public ParallelReadRange call() throws Exception {
+						readRange();
+						return ParallelReadRange.this;
+					}
+				});
+			}
+			finally {
+				//also sent on errors, so that the calling thread can fetch them from the future
+				putChunk(END_OF_RANGE);
+			}
+		}
+		
+		private void readRange() {
+			NotesDatabase db;
+			if (m_namesList!=null) {
+				db = new NotesDatabase(m_session, m_server, m_filePath, m_namesList);
+			}
+			else {
+				//open as server
+				db = new NotesDatabase(m_session, m_server, m_filePath, "");
+			}
+			NotesCollection col = db.openCollection(m_viewName, m_viewNoteId, null);
+			if (m_collation!=0) {
+				col.setCollation(m_collation);
+			}
+			
+			m_indexModifiedSequenceNo = col.getIndexModifiedSequenceNo();
+			
+			final boolean skipCategories = m_returnNav.contains(Navigate.NEXT_NONCATEGORY);
+			final boolean skipDocuments = m_returnNav.contains(Navigate.NEXT_CATEGORY);
+			
+			m_currChunk = new ArrayList<NotesViewEntryData>();
+			
+			//start at the first top level entry of the range with skip count 0 to not miss its descendants
+			col.getAllEntries(Integer.toString(m_firstTopLevelPos), 0, m_returnNav, m_preloadEntryCount,
+					m_returnMask, new ViewLookupCallback<Void>() {
+
+				@Override
+				public String getNameForSingleColumnRead() {
+					return m_readSingleColumnName;
+				}
+				
+				@Override
+				public boolean[] getColumnsToDecode() {
+					return m_decodeColumns;
+				}
+				
+				@Override
+				public Void startingLookup() {
+					return null;
+				}
+				
+				@Override
+				public void viewIndexChangeDetected() {
+					//ranges would not fit together anymore; the whole scan gets restarted
+					m_viewModified = true;
+				}
+
+				@Override
+				public Action entryRead(Void result, NotesViewEntryData entryData) {
+					if (m_stop.get() || m_viewModified) {
+						return Action.Stop;
+					}
+					
+					int[] pos = entryData.getPosition();
+					if (pos!=null && pos.length>0 && pos[0] > m_lastTopLevelPos) {
+						//reached the next range
+						return Action.Stop;
+					}
+					
+					//skip count 0 returns the start entry even if it does not match the navigator
+					if (skipCategories && entryData.isCategory()) {
+						return Action.Continue;
+					}
+					if (skipDocuments && !entryData.isCategory()) {
+						return Action.Continue;
+					}
+					
+					m_currChunk.add(entryData);
+					if (m_currChunk.size() >= m_preloadEntryCount) {
+						if (!putChunk(m_currChunk)) {
+							return Action.Stop;
+						}
+						m_currChunk = new ArrayList<NotesViewEntryData>();
+					}
+					return Action.Continue;
+				}
+
+				@Override
+				public Void lookupDone(Void result) {
+					return null;
+				}
+			});
+			
+			if (col.getIndexModifiedSequenceNo() != m_indexModifiedSequenceNo) {
+				m_viewModified = true;
+			}
+			if (!m_currChunk.isEmpty()) {
+				putChunk(m_currChunk);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a lazy {@link NotesCollectionIterator} over the entries of this collection. Collection
+	 * data is read one buffer at a time while the caller iterates, so memory consumption is bounded
+	 * by <code>bufferSize</code> and no data is read after the caller stops iterating.<br>
+	 * <br>
+	 * In contrast to {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)}, the
+	 * iterator does not restart reading when the view index changes.
+	 * 
+	 * @param startPosStr start position; use "0" or null to start before the first entry
+	 * @param skipCount number entries to skip before reading
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param bufferSize number of entries to read in one API call
+	 * @param returnMask values to extract
+	 * @return iterator
+	 */
+	public NotesCollectionIterator getAllEntriesIterator(String startPosStr, int skipCount, EnumSet<Navigate> returnNav,
+			int bufferSize, EnumSet<ReadMask> returnMask) {
+		checkHandle();
+		return new NotesCollectionIterator(this, startPosStr, skipCount, returnNav, bufferSize, returnMask);
+	}
+	
+	/**
+	 * Reads all entries like {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)},
+	 * but does not decode the NIF buffer into {@link NotesViewEntryData} objects. Instead, a single
+	 * {@link NotesViewEntryCursor} is moved over the locked buffer and passed to the callback for each entry,
+	 * so that scans which only need note ids, positions, counts or number column values do not allocate
+	 * objects per entry. The method takes care of view index changes while reading and restarts reading
+	 * if such a change has been detected.
+	 * 
+	 * @param startPosStr start position; use "0" or null to start before the first entry
+	 * @param skipCount number entries to skip before reading
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param preloadEntryCount amount of entries that is read from the view in one API call
+	 * @param returnMask values to extract
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	public <T> T getAllEntriesWithCursor(String startPosStr, int skipCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount, EnumSet<ReadMask> returnMask, ViewCursorCallback<T> callback) {
+		checkHandle();
+		
+		NotesViewEntryCursor cursor = new NotesViewEntryCursor(this, returnMask);
+		
+		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
+		short navBitMask = Navigate.toBitMask(returnNav);
+		int readMaskBitMask = ReadMask.toBitMask(returnMask);
+
+		IntByReference retNumEntriesSkipped = new IntByReference();
+		IntByReference retNumEntriesReturned = new IntByReference();
+		ShortByReference retSignalFlags = new ShortByReference();
+		ShortByReference retBufferLength = new ShortByReference();
+		
+		while (true) {
+			T result = callback.startingLookup();
+			
+			NotesCollectionPosition pos = NotesCollectionPosition.toPosition(startPosStr==null ? "0" : startPosStr);
+			boolean firstLoopRun = true;
+			boolean viewModified = false;
+			
+			while (preloadEntryCount>0) {
+				long hBuffer;
+				short apiResult;
+				m_nifReadCallCount.incrementAndGet();
+				if (NotesJNAContext.is64Bit()) {
+					LongByReference retBuffer = new LongByReference();
+					apiResult = notesAPI.b64_NIFReadEntries(m_hCollection64, pos, navBitMask, firstLoopRun ? skipCount : 1,
+							navBitMask, preloadEntryCount, readMaskBitMask, retBuffer, retBufferLength,
+							retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags);
+					NotesErrorUtils.checkResult(apiResult);
+					hBuffer = retBuffer.getValue();
+				}
+				else {
+					IntByReference retBuffer = new IntByReference();
+					apiResult = notesAPI.b32_NIFReadEntries(m_hCollection32, pos, navBitMask, firstLoopRun ? skipCount : 1,
+							navBitMask, preloadEntryCount, readMaskBitMask, retBuffer, retBufferLength,
+							retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags);
+					NotesErrorUtils.checkResult(apiResult);
+					hBuffer = retBuffer.getValue();
+				}
+				firstLoopRun = false;
+				
+				int numEntriesReturned = retNumEntriesReturned.getValue();
+				int signalFlags = retSignalFlags.getValue();
+				
+				Action action = Action.Continue;
+				if (hBuffer!=0) {
+					Pointer bufferPtr = NotesJNAContext.is64Bit() ? notesAPI.b64_OSLockObject(hBuffer) : notesAPI.b32_OSLockObject((int) hBuffer);
+					try {
+						if (isAutoUpdate() && (signalFlags & NotesCAPI.SIGNAL_ANY_NONDATA_CONFLICT) != 0) {
+							//refresh the view and restart the lookup
+							viewModified = true;
+						}
+						else {
+							action = cursor.scanBuffer(bufferPtr, numEntriesReturned, callback, result);
+						}
+					}
+					finally {
+						if (NotesJNAContext.is64Bit()) {
+							notesAPI.b64_OSUnlockObject(hBuffer);
+							notesAPI.b64_OSMemFree(hBuffer);
+						}
+						else {
+							notesAPI.b32_OSUnlockObject((int) hBuffer);
+							notesAPI.b32_OSMemFree((int) hBuffer);
+						}
+					}
+				}
+				else if (isAutoUpdate() && (signalFlags & NotesCAPI.SIGNAL_ANY_NONDATA_CONFLICT) != 0) {
+					viewModified = true;
+				}
+				
+				if (viewModified || action==Action.Stop || numEntriesReturned==0 ||
+						(signalFlags & NotesCAPI.SIGNAL_MORE_TO_DO) != NotesCAPI.SIGNAL_MORE_TO_DO) {
+					break;
+				}
+			}
+			
+			if (viewModified) {
+				//view index was changed while reading; restart scan
+				callback.viewIndexChangeDetected();
+				update();
+				continue;
+			}
+			
+			return callback.lookupDone(result);
+		}
+	}
 	
 	/**
 	 * Returns all view entries matching the specified search key(s) in the collection.
 	 * It internally takes care of view index changes while reading view data and restarts
-	 * reading if such a change has been detected.
+	 * reading if such a change has been detected (or skips the entries already read,
+	 * see {@link ViewLookupCallback#isResumeOnViewIndexChange()}).
 	 * 
 	 * @param findFlags find flags, see {@link Find}
 	 * @param returnMask values to be returned
@@ -1594,10 +3190,72 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @param <T> type of lookup result object
 	 */
 	public <T> T getAllEntriesByKey(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback, Object... keys) {
+		boolean[] decodeColumns = callback.getColumnsToDecode();
+		
+		ResumeState resumeState = null;
+		if (callback.isResumeOnViewIndexChange()) {
+			//we need the note ids to skip entries already delivered
+			if (!returnMask.contains(ReadMask.NOTEID)) {
+				returnMask = returnMask.clone();
+				returnMask.add(ReadMask.NOTEID);
+			}
+			resumeState = new ResumeState();
+		}
+		try {
+			return getAllEntriesByKeyInternal(findFlags, returnMask, decodeColumns, callback, resumeState, keys);
+		}
+		finally {
+			if (resumeState!=null) {
+				resumeState.recycle();
+			}
+		}
+	}
+	
+	/**
+	 * Implementation of {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}
+	 * 
+	 * @param findFlags find flags
+	 * @param returnMask values to be returned
+	 * @param decodeColumns column projection or null
+	 * @param callback lookup callback
+	 * @param resumeState state to skip entries already delivered after view index changes or null to restart the lookup
+	 * @param keys lookup keys
+	 * @return lookup result
+	 */
+	private <T> T getAllEntriesByKeyInternal(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, boolean[] decodeColumns,
+			ViewLookupCallback<T> callback, ResumeState resumeState, Object... keys) {
+		NotesCollectionLookupCache lookupCache = m_lookupCache;
+		ByteArrayHashKey cacheKey = null;
+		if (lookupCache!=null) {
+			cacheKey = NotesCollectionLookupCache.createKey(NotesCollectionLookupCache.TYPE_ALLENTRIESBYKEY, findFlags, returnMask,
+					decodeColumns, encodeKeys(keys));
+		}
+		
+		T resumedResult = null;
+		
 		//we are leaving the loop when there is no more data to be read;
 		//while(true) is here to rerun the query in case of view index changes while reading
 		while (true) {
-			T result = callback.startingLookup();
+			NotesTimeDate indexModifiedTime = null;
+			List<NotesViewEntryData> entriesForCache = null;
+			//a resumed lookup does not deliver all entries, so it cannot be cached
+			if (lookupCache!=null && (resumeState==null || !resumeState.isResumed())) {
+				indexModifiedTime = getLastModifiedTime();
+				CacheableViewEntryData[] cachedEntries = (CacheableViewEntryData[]) lookupCache.get(cacheKey, indexModifiedTime);
+				if (cachedEntries!=null) {
+					T result = callback.startingLookup();
+					for (CacheableViewEntryData currData : cachedEntries) {
+						Action action = callback.entryRead(result, NotesViewEntryData.fromCacheableData(this, currData));
+						if (action==Action.Stop) {
+							break;
+						}
+					}
+					return callback.lookupDone(result);
+				}
+				entriesForCache = new ArrayList<NotesViewEntryData>();
+			}
+			
+			T result = resumeState!=null && resumeState.isResumed() ? resumedResult : callback.startingLookup();
 
 			NotesViewLookupResultData data;
 			//position of first match
@@ -1612,7 +3270,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 				findFlagsWithExtraBits.add(Find.AND_READ_MATCHES);
 				findFlagsWithExtraBits.add(Find.RETURN_DWORD);
 				
-				data = findByKeyExtended2(findFlagsWithExtraBits, returnMask, keys);
+				data = findByKeyExtended2(findFlagsWithExtraBits, returnMask, decodeColumns, false, keys);
 				
 				int numEntriesFound = data.getReturnCount();
 				if (numEntriesFound!=-1) {
@@ -1622,6 +3280,11 @@ public class NotesCollection implements IRecyclableNotesObject {
 							//refresh the view and restart the lookup
 							callback.viewIndexChangeDetected();
 							update();
+							if (resumeState!=null) {
+								//search the key again, but only deliver the entries we have not read yet
+								resumeState.setResumed();
+								resumedResult = result;
+							}
 							continue;
 						}
 					}
@@ -1629,16 +3292,24 @@ public class NotesCollection implements IRecyclableNotesObject {
 					//copy the data we have read
 					List<NotesViewEntryData> entries = data.getEntries();
 					for (NotesViewEntryData currEntryData : entries) {
+						if (resumeState!=null && !resumeState.entryDelivered(currEntryData)) {
+							//already passed to the callback before the view index change
+							continue;
+						}
 						Action action = callback.entryRead(result, currEntryData);
 						if (action==Action.Stop) {
 							result = callback.lookupDone(result);
 							return result;
 						}
 					}
+					if (entriesForCache!=null) {
+						entriesForCache.addAll(entries);
+					}
 					entriesToSkipOnFirstLoopRun = entries.size();
 					
 					if (!data.hasMoreToDo()) {
 						//we are done
+						putLookupResult(lookupCache, cacheKey, indexModifiedTime, data, entriesForCache);
 						result = callback.lookupDone(result);
 						return result;
 					}
@@ -1656,6 +3327,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 					FindResult findResult = findByKey(findFlags, keys);
 					remainingEntries = findResult.getEntriesFound();
 					if (remainingEntries==0) {
+						putLookupResult(lookupCache, cacheKey, indexModifiedTime, null, entriesForCache);
 						return result;
 					}
 					firstMatchPosStr = findResult.getPosition();
@@ -1666,6 +3338,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 				FindResult findResult = findByKey(findFlags, keys);
 				remainingEntries = findResult.getEntriesFound();
 				if (remainingEntries==0) {
+					putLookupResult(lookupCache, cacheKey, indexModifiedTime, null, entriesForCache);
 					return result;
 				}
 				firstMatchPosStr = findResult.getPosition();
@@ -1686,56 +3359,344 @@ public class NotesCollection implements IRecyclableNotesObject {
 						remainingEntries = Integer.MAX_VALUE;
 					}
 				}
-			}
-
-			if (firstMatchPosStr!=null) {
-				//position of the first match; we skip (entries.size()) to read the remaining entries
-				boolean isFirstLookup = true;
+			}
+
+			if (firstMatchPosStr!=null) {
+				//position of the first match; we skip (entries.size()) to read the remaining entries
+				boolean isFirstLookup = true;
+				
+				NotesCollectionPosition lookupPos = NotesCollectionPosition.toPosition(firstMatchPosStr);
+				
+				boolean viewModified = false;
+				
+				while (remainingEntries>0) {
+					//on first lookup, start at "posStr" and skip the amount of already read entries
+					data = readEntries(lookupPos, EnumSet.of(Navigate.NEXT_NONCATEGORY), isFirstLookup ? entriesToSkipOnFirstLoopRun : 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), remainingEntries, returnMask, decodeColumns);
+					
+					if (isFirstLookup || isAutoUpdate()) {
+						//for the first lookup, make sure we start at the right position
+						if (data.hasAnyNonDataConflicts()) {
+							//set viewModified to true and leave the inner loop; we will refresh the view and restart the lookup
+							viewModified=true;
+							break;
+						}
+					}
+					isFirstLookup=false;
+					
+					List<NotesViewEntryData> entries = data.getEntries();
+					if (entries.isEmpty()) {
+						//looks like we don't have any more data in the view
+						break;
+					}
+					
+					for (NotesViewEntryData currEntryData : entries) {
+						if (resumeState!=null && !resumeState.entryDelivered(currEntryData)) {
+							//already passed to the callback before the view index change
+							continue;
+						}
+						Action action = callback.entryRead(result, currEntryData);
+						if (action==Action.Stop) {
+							result = callback.lookupDone(result);
+							return result;
+						}
+					}
+					if (entriesForCache!=null) {
+						entriesForCache.addAll(entries);
+					}
+					remainingEntries = remainingEntries - entries.size();
+				}
+				
+				if (viewModified) {
+					//refresh view and redo the whole lookup
+					callback.viewIndexChangeDetected();
+					update();
+					if (resumeState!=null) {
+						//search the key again, but only deliver the entries we have not read yet
+						resumeState.setResumed();
+						resumedResult = result;
+					}
+					continue;
+				}
+			}
+			
+			putLookupResult(lookupCache, cacheKey, indexModifiedTime, null, entriesForCache);
+			result = callback.lookupDone(result);
+			return result;
+		}
+	}
+	
+	/**
+	 * Stores the complete result of {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}
+	 * in the lookup cache if the view index has not changed while reading the entries
+	 * 
+	 * @param lookupCache cache or null
+	 * @param cacheKey cache key
+	 * @param indexModifiedTime value of {@link #getLastModifiedTime()} before the lookup
+	 * @param data optional result of the last NIF call, used to check if the view is time-relative
+	 * @param entries entries read
+	 */
+	private void putLookupResult(NotesCollectionLookupCache lookupCache, ByteArrayHashKey cacheKey, NotesTimeDate indexModifiedTime,
+			NotesViewLookupResultData data, List<NotesViewEntryData> entries) {
+		if (lookupCache==null || entries==null) {
+			return;
+		}
+		if (data!=null && data.isViewTimeRelative()) {
+			return;
+		}
+		if (!indexModifiedTime.equals(getLastModifiedTime())) {
+			//entries have been read in multiple calls, so the result might not be consistent
+			return;
+		}
+		lookupCache.put(cacheKey, indexModifiedTime, NotesCollectionLookupCache.toCacheableData(entries));
+	}
+	
+	/**
+	 * Batch version of {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)} to
+	 * look up the view entries for many keys, e.g. to join document data against a lookup view.<br>
+	 * <br>
+	 * The keys are sorted in collation order, so that the collection is traversed forward. View entries
+	 * are read with a shared read-ahead buffer of <code>preloadEntryCount</code> entries: if the matches
+	 * of a key are already contained in the buffer read for a previous key, no NIFReadEntries call is
+	 * required.<br>
+	 * <br>
+	 * If the view index changes while reading and {@link #isAutoUpdate()} is true, the view is
+	 * updated and the lookup is restarted. Otherwise the lookup of the current key is repeated
+	 * against the changed view index.
+	 * 
+	 * @param findFlags find flags, see {@link Find}; inequality searches are not supported
+	 * @param returnMask values to be returned; {@link ReadMask#INDEXPOSITION} is added automatically
+	 * @param preloadEntryCount number of entries to read in one NIF call
+	 * @param keys lookup keys, either a single key value per view column or an <code>Object[]</code> for multiple sorted columns
+	 * @return list of matching entries for each key, in the same order as <code>keys</code>
+	 */
+	public List<List<NotesViewEntryData>> getAllEntriesByKeys(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask,
+			int preloadEntryCount, List<?> keys) {
+		if (!canFindExactNumberOfMatches(findFlags))
+			throw new IllegalArgumentException("Batch lookups do not support inequality searches: "+findFlags);
+		if (preloadEntryCount<1)
+			throw new IllegalArgumentException("Preload entry count must be greater than 0: "+preloadEntryCount);
+		
+		EnumSet<ReadMask> useReturnMask = returnMask.clone();
+		useReturnMask.add(ReadMask.INDEXPOSITION);
+		
+		//sort key indexes in collation order, so that we move forward in the collection
+		Integer[] sortedKeyIndexes = new Integer[keys.size()];
+		for (int i=0; i<sortedKeyIndexes.length; i++) {
+			sortedKeyIndexes[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(sortedKeyIndexes, new LookupKeyIndexComparator(keys));
+		
+		//we are leaving the loop when all keys have been processed;
+		//while(true) is here to rerun the lookup in case of view index changes while reading
+		while (true) {
+			List<List<NotesViewEntryData>> results = new ArrayList<List<NotesViewEntryData>>(keys.size());
+			for (int i=0; i<keys.size(); i++) {
+				results.add(null);
+			}
+			
+			int indexModifiedSequenceNo = getIndexModifiedSequenceNo();
+			boolean viewModified = false;
+			
+			//read-ahead buffer with entries at consecutive top level positions
+			List<NotesViewEntryData> buffer = new ArrayList<NotesViewEntryData>(0);
+			int bufferStartPos = -1;
+			int keyRetries = 0;
+			
+			for (int k=0; k<sortedKeyIndexes.length; k++) {
+				Integer currKeyIdx = sortedKeyIndexes[k];
+				Object currKey = keys.get(currKeyIdx.intValue());
+				Object[] currKeyValues = currKey instanceof Object[] ? (Object[]) currKey : new Object[] {currKey};
+				
+				FindResult findResult = findByKey(findFlags, currKeyValues);
+				if (getIndexModifiedSequenceNo()!=indexModifiedSequenceNo) {
+					//the find result refers to the new index, the buffer to the old one
+					if (isAutoUpdate()) {
+						viewModified = true;
+						break;
+					}
+					indexModifiedSequenceNo = getIndexModifiedSequenceNo();
+					buffer = new ArrayList<NotesViewEntryData>(0);
+					bufferStartPos = -1;
+				}
+				int numMatches = findResult.getEntriesFound();
+				if (numMatches==0) {
+					results.set(currKeyIdx.intValue(), new ArrayList<NotesViewEntryData>(0));
+					keyRetries = 0;
+					continue;
+				}
 				
-				NotesCollectionPosition lookupPos = NotesCollectionPosition.toPosition(firstMatchPosStr);
+				String firstMatchPosStr = findResult.getPosition();
+				List<NotesViewEntryData> matches = null;
 				
-				boolean viewModified = false;
+				int firstMatchTopLevelPos = -1;
+				if (firstMatchPosStr.indexOf('.')==-1) {
+					firstMatchTopLevelPos = Integer.parseInt(firstMatchPosStr);
+					matches = getEntriesFromBuffer(buffer, bufferStartPos, firstMatchTopLevelPos, numMatches);
+				}
 				
-				while (remainingEntries>0) {
-					//on first lookup, start at "posStr" and skip the amount of already read entries
-					data = readEntries(lookupPos, EnumSet.of(Navigate.NEXT_NONCATEGORY), isFirstLookup ? entriesToSkipOnFirstLoopRun : 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), remainingEntries, returnMask);
+				if (matches==null) {
+					//read the matches and the entries following them
+					NotesCollectionPosition lookupPos = NotesCollectionPosition.toPosition(firstMatchPosStr);
+					List<NotesViewEntryData> entries = new ArrayList<NotesViewEntryData>();
+					boolean isFirstLookup = true;
+					int entriesToRead = Math.max(numMatches, preloadEntryCount);
 					
-					if (isFirstLookup || isAutoUpdate()) {
-						//for the first lookup, make sure we start at the right position
-						if (data.hasAnyNonDataConflicts()) {
-							//set viewModified to true and leave the inner loop; we will refresh the view and restart the lookup
-							viewModified=true;
+					while (entries.size() < entriesToRead) {
+						NotesViewLookupResultData data = readEntries(lookupPos, EnumSet.of(Navigate.NEXT_NONCATEGORY), isFirstLookup ? 0 : 1,
+								EnumSet.of(Navigate.NEXT_NONCATEGORY), entriesToRead - entries.size(), useReturnMask);
+						isFirstLookup = false;
+						
+						if (data.hasAnyNonDataConflicts() || data.getIndexModifiedSequenceNo()!=indexModifiedSequenceNo) {
+							viewModified = true;
+							break;
+						}
+						
+						List<NotesViewEntryData> readEntries = data.getEntries();
+						entries.addAll(readEntries);
+						if (readEntries.isEmpty() || !data.hasMoreToDo()) {
 							break;
 						}
 					}
-					isFirstLookup=false;
 					
-					List<NotesViewEntryData> entries = data.getEntries();
-					if (entries.isEmpty()) {
-						//looks like we don't have any more data in the view
-						break;
+					if (viewModified) {
+						if (isAutoUpdate()) {
+							break;
+						}
+						//positions of the buffer are outdated; look up the current key again in the new index
+						if (++keyRetries > MAX_KEY_LOOKUP_RETRIES) {
+							throw new NotesError(0, "View index keeps changing while looking up key "+Arrays.toString(currKeyValues));
+						}
+						viewModified = false;
+						indexModifiedSequenceNo = getIndexModifiedSequenceNo();
+						buffer = new ArrayList<NotesViewEntryData>(0);
+						bufferStartPos = -1;
+						k--;
+						continue;
 					}
-					
-					for (NotesViewEntryData currEntryData : entries) {
-						Action action = callback.entryRead(result, currEntryData);
-						if (action==Action.Stop) {
-							result = callback.lookupDone(result);
-							return result;
+					else {
+						matches = new ArrayList<NotesViewEntryData>(entries.subList(0, Math.min(numMatches, entries.size())));
+						
+						if (firstMatchTopLevelPos!=-1) {
+							buffer = entries;
+							bufferStartPos = firstMatchTopLevelPos;
 						}
 					}
-					remainingEntries = remainingEntries - entries.size();
 				}
 				
-				if (viewModified) {
-					//refresh view and redo the whole lookup
-					callback.viewIndexChangeDetected();
-					update();
-					continue;
+				results.set(currKeyIdx.intValue(), matches);
+				keyRetries = 0;
+			}
+			
+			if (viewModified) {
+				//refresh view and redo the whole lookup
+				update();
+				continue;
+			}
+			
+			return results;
+		}
+	}
+	
+	/**
+	 * Returns the matches of a key lookup from the read-ahead buffer of
+	 * {@link #getAllEntriesByKeys(EnumSet, EnumSet, int, List)}
+	 * 
+	 * @param buffer buffer with entries at consecutive top level positions
+	 * @param bufferStartPos top level position of the first buffer entry
+	 * @param firstMatchPos top level position of the first match
+	 * @param numMatches number of matches
+	 * @return matches or null if not all matches are in the buffer
+	 */
+	private List<NotesViewEntryData> getEntriesFromBuffer(List<NotesViewEntryData> buffer, int bufferStartPos, int firstMatchPos, int numMatches) {
+		if (bufferStartPos==-1) {
+			return null;
+		}
+		int startIdx = firstMatchPos - bufferStartPos;
+		int endIdx = startIdx + numMatches;
+		if (startIdx<0 || endIdx>buffer.size()) {
+			return null;
+		}
+		
+		List<NotesViewEntryData> matches = new ArrayList<NotesViewEntryData>(numMatches);
+		for (int i=startIdx; i<endIdx; i++) {
+			NotesViewEntryData currEntry = buffer.get(i);
+			int[] currPos = currEntry.getPosition();
+			//make sure the buffer does not contain gaps, e.g. for categorized views
+			if (currPos==null || currPos.length!=1 || currPos[0]!=firstMatchPos+(i-startIdx)) {
+				return null;
+			}
+			matches.add(currEntry);
+		}
+		return matches;
+	}
+	
+	/**
+	 * Comparator to sort the keys of {@link NotesCollection#getAllEntriesByKeys(EnumSet, EnumSet, int, List)}
+	 * in collation order. Since the sort order only affects the efficiency of the read-ahead buffer, it
+	 * does not need to match the view collation exactly.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private static class LookupKeyIndexComparator implements Comparator<Integer> {
+		private List<?> m_keys;
+		private Collator m_collator;
+		
+		public LookupKeyIndexComparator(List<?> keys) {
+			m_keys = keys;
+			m_collator = Collator.getInstance(Locale.getDefault());
+			m_collator.setStrength(Collator.SECONDARY);
+		}
+		
+		@Override
+		public int compare(Integer o1, Integer o2) {
+			Object key1 = m_keys.get(o1.intValue());
+			Object key2 = m_keys.get(o2.intValue());
+			Object[] keyValues1 = NotesSearchKey.unwrap(key1 instanceof Object[] ? (Object[]) key1 : new Object[] {key1});
+			Object[] keyValues2 = NotesSearchKey.unwrap(key2 instanceof Object[] ? (Object[]) key2 : new Object[] {key2});
+			
+			for (int i=0; i<keyValues1.length && i<keyValues2.length; i++) {
+				int result = compareValues(keyValues1[i], keyValues2[i]);
+				if (result!=0) {
+					return result;
 				}
 			}
+			return keyValues1.length - keyValues2.length;
+		}
+		
+		private int compareValues(Object val1, Object val2) {
+			int typeOrder1 = getTypeOrder(val1);
+			int typeOrder2 = getTypeOrder(val2);
+			if (typeOrder1!=typeOrder2) {
+				return typeOrder1 - typeOrder2;
+			}
 			
-			result = callback.lookupDone(result);
-			return result;
+			if (val1 instanceof Number) {
+				return Double.compare(((Number) val1).doubleValue(), ((Number) val2).doubleValue());
+			}
+			else if (typeOrder1==1) {
+				return toDate(val1).compareTo(toDate(val2));
+			}
+			else if (val1 instanceof String) {
+				return m_collator.compare((String) val1, (String) val2);
+			}
+			return 0;
+		}
+		
+		private int getTypeOrder(Object val) {
+			if (val instanceof Number) {
+				return 0;
+			}
+			else if (val instanceof Date || val instanceof Calendar) {
+				return 1;
+			}
+			else if (val instanceof String) {
+				return 2;
+			}
+			return 3;
+		}
+		
+		private Date toDate(Object val) {
+			return val instanceof Calendar ? ((Calendar) val).getTime() : (Date) val;
 		}
 	}
 	
@@ -1798,11 +3759,60 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @return lookup result
 	 */
 	public NotesViewLookupResultData findByKeyExtended2(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, Object... keys) {
+		return findByKeyExtended2(findFlags, returnMask, null, true, keys);
+	}
+	
+	/**
+	 * Implementation of {@link #findByKeyExtended2(EnumSet, EnumSet, Object...)} with column projection
+	 * 
+	 * @param findFlags find flags ({@link Find})
+	 * @param returnMask mask specifying what information is to be returned on each entry ({link ReadMask})
+	 * @param decodeColumns optional array with flags for the column values to decode or null to decode all
+	 * @param useLookupCache true to use the cache set via {@link #setLookupCache(NotesCollectionLookupCache)}
+	 * @param keys lookup keys
+	 * @return lookup result
+	 */
+	private NotesViewLookupResultData findByKeyExtended2(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, boolean[] decodeColumns,
+			boolean useLookupCache, Object[] keys) {
 		checkHandle();
 		
 		if (keys==null || keys.length==0)
 			throw new IllegalArgumentException("No search keys specified");
 		
+		Memory keyBuffer = encodeKeys(keys);
+		
+		NotesCollectionLookupCache lookupCache = useLookupCache ? m_lookupCache : null;
+		ByteArrayHashKey cacheKey = null;
+		NotesTimeDate indexModifiedTime = null;
+		if (lookupCache!=null) {
+			indexModifiedTime = getLastModifiedTime();
+			cacheKey = NotesCollectionLookupCache.createKey(NotesCollectionLookupCache.TYPE_FINDBYKEYEXTENDED2, findFlags, returnMask,
+					decodeColumns, keyBuffer);
+			CachedLookupResult cachedResult = (CachedLookupResult) lookupCache.get(cacheKey, indexModifiedTime);
+			if (cachedResult!=null) {
+				return cachedResult.toLookupResult(this);
+			}
+		}
+		
+		NotesViewLookupResultData viewData = findByKeyExtended2(findFlags, returnMask, decodeColumns, keyBuffer);
+		
+		if (lookupCache!=null && !viewData.hasAnyNonDataConflicts() && !viewData.isViewTimeRelative()) {
+			lookupCache.put(cacheKey, indexModifiedTime, new CachedLookupResult(viewData));
+		}
+		return viewData;
+	}
+	
+	/**
+	 * Calls NIFFindByKeyExtended2 with encoded search keys
+	 * 
+	 * @param findFlags find flags ({@link Find})
+	 * @param returnMask mask specifying what information is to be returned on each entry ({link ReadMask})
+	 * @param decodeColumns optional array with flags for the column values to decode or null to decode all
+	 * @param keyBuffer encoded search keys
+	 * @return lookup result
+	 */
+	private NotesViewLookupResultData findByKeyExtended2(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, boolean[] decodeColumns,
+			Memory keyBuffer) {
 //		if (!canUseOptimizedLookupForKeyLookup(findFlags, returnMask, keys)) {
 //			throw new UnsupportedOperationException("This method cannot be used for the specified arguments (only noteids) or the current platform (only R9 and above)");
 //		}
@@ -1816,14 +3826,8 @@ public class NotesCollection implements IRecyclableNotesObject {
 		
 		ShortByReference retSignalFlags = new ShortByReference();
 		
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b64_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
-			
 			LongByReference retBuffer = new LongByReference();
 			IntByReference retSequence = new IntByReference();
 			
@@ -1845,19 +3849,12 @@ public class NotesCollection implements IRecyclableNotesObject {
 					boolean convertStringsLazily = true;
 					NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 							0, retNumMatches.getValue(), returnMask, retSignalFlags.getValue(), retIndexPos.toPosString(), retSequence.getValue(), null,
-							convertStringsLazily, null);
+							convertStringsLazily, null, decodeColumns);
 					return viewData;
 				}
 			}
 		}
 		else {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b32_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
-			
 			IntByReference retBuffer = new IntByReference();
 			IntByReference retSequence = new IntByReference();
 			
@@ -1878,7 +3875,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 					boolean convertStringsLazily = true;
 					NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 							0, retNumMatches.getValue(), returnMask, retSignalFlags.getValue(), retIndexPos.toPosString(), retSequence.getValue(), null,
-							convertStringsLazily, null);
+							convertStringsLazily, null, decodeColumns);
 					return viewData;
 				}
 			}
@@ -1957,7 +3954,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * value returned by {@link FindResult#getEntriesFound()}.
 
 	 * @param findFlags {@link Find}
-	 * @param keys lookup keys, can be {@link String}, double / {@link Double}, int / {@link Integer}, {@link Date}, {@link Calendar}, {@link Date}[] or {@link Calendar}[] with two elements for date ranges
+	 * @param keys lookup keys, can be {@link String}, double / {@link Double}, int / {@link Integer}, {@link Date}, {@link Calendar}, {@link Date}[] or {@link Calendar}[] with two elements for date ranges or a precompiled {@link NotesSearchKey}
 	 * @return result
 	 */
 	public FindResult findByKey(EnumSet<Find> findFlags, Object... keys) {
@@ -1966,31 +3963,38 @@ public class NotesCollection implements IRecyclableNotesObject {
 		if (keys==null || keys.length==0)
 			throw new IllegalArgumentException("No search keys specified");
 		
+		Memory keyBuffer = encodeKeys(keys);
+		
+		NotesCollectionLookupCache lookupCache = m_lookupCache;
+		ByteArrayHashKey cacheKey = null;
+		NotesTimeDate indexModifiedTime = null;
+		if (lookupCache!=null) {
+			indexModifiedTime = getLastModifiedTime();
+			cacheKey = NotesCollectionLookupCache.createKey(NotesCollectionLookupCache.TYPE_FINDBYKEY, findFlags, null, null, keyBuffer);
+			FindResult cachedResult = (FindResult) lookupCache.get(cacheKey, indexModifiedTime);
+			if (cachedResult!=null) {
+				return cachedResult;
+			}
+		}
+		
 		IntByReference retNumMatches = new IntByReference();
 		NotesCollectionPosition retIndexPos = new NotesCollectionPosition();
 		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
 		short findFlagsBitMask = Find.toBitMask(findFlags);
 		short result;
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b64_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
 			result = notesAPI.b64_NIFFindByKey(m_hCollection64, keyBuffer, findFlagsBitMask, retIndexPos, retNumMatches);
 		}
 		else {
-			Memory keyBuffer;
-			try {
-				keyBuffer = NotesSearchKeyEncoder.b32_encodeKeys(keys);
-			} catch (Throwable e) {
-				throw new NotesError(0, "Could not encode search keys", e);
-			}
 			result = notesAPI.b32_NIFFindByKey(m_hCollection32, keyBuffer, findFlagsBitMask, retIndexPos, retNumMatches);
 		}
 		if (result == 1028 || result == 17412) {
-			return new FindResult("", 0, canFindExactNumberOfMatches(findFlags));
+			FindResult findResult = new FindResult("", 0, canFindExactNumberOfMatches(findFlags));
+			if (lookupCache!=null) {
+				lookupCache.put(cacheKey, indexModifiedTime, findResult);
+			}
+			return findResult;
 		}
 		
 		NotesErrorUtils.checkResult(result);
@@ -2008,7 +4012,11 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 
 		String firstMatchPos = sb.toString();
-		return new FindResult(firstMatchPos, nMatchesFound, canFindExactNumberOfMatches(findFlags));
+		FindResult findResult = new FindResult(firstMatchPos, nMatchesFound, canFindExactNumberOfMatches(findFlags));
+		if (lookupCache!=null) {
+			lookupCache.put(cacheKey, indexModifiedTime, findResult);
+		}
+		return findResult;
 	}
 	
 	/**
@@ -2070,6 +4078,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
 		short findFlagsBitMask = Find.toBitMask(findFlags);
 		short result;
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
 			result = notesAPI.b64_NIFFindByName(m_hCollection64, nameLMBCS, findFlagsBitMask, retIndexPos, retNumMatches);
 		}
@@ -2187,6 +4196,28 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @return read data
 	 */
 	public NotesViewLookupResultData readEntries(NotesCollectionPosition startPos, EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator, int returnCount, EnumSet<ReadMask> returnMask) {
+		return readEntries(startPos, skipNavigator, skipCount, returnNavigator, returnCount, returnMask, null);
+	}
+	
+	/**
+	 * Very fast scan function that populates a {@link NotesViewLookupResultData} object with
+	 * view data and only decodes the values of specific columns.<br>
+	 * <br>
+	 * This method provides low-level API access. In general, it is safer to use high-level functions like
+	 * {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)} instead because
+	 * they handle view index update while reading.
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read
+	 * @param decodeColumns optional array with flags for the column values to decode (see {@link #getColumnsToDecode(String...)}); other values are returned as null, use null to decode all values
+	 * @return read data
+	 */
+	public NotesViewLookupResultData readEntries(NotesCollectionPosition startPos, EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator, int returnCount, EnumSet<ReadMask> returnMask,
+			boolean[] decodeColumns) {
 		checkHandle();
 
 		IntByReference retNumEntriesSkipped = new IntByReference();
@@ -2200,6 +4231,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		int readMaskBitMask = ReadMask.toBitMask(returnMask);
 		
 		short result;
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
 			LongByReference retBuffer = new LongByReference();
 			result = notesAPI.b64_NIFReadEntries(m_hCollection64, // hCollection
@@ -2227,7 +4259,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 				boolean convertStringsLazily = true;
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
-						indexModifiedSequenceNo, null, convertStringsLazily, null);
+						indexModifiedSequenceNo, null, convertStringsLazily, null, decodeColumns);
 				return viewData;
 			}
 		}
@@ -2258,12 +4290,75 @@ public class NotesCollection implements IRecyclableNotesObject {
 
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
-						indexModifiedSequenceNo, null, convertStringsLazily, null);
+						indexModifiedSequenceNo, null, convertStringsLazily, null, decodeColumns);
 				return viewData;
 			}
 		}
 	}
 
+	/**
+	 * Reads collection entries (using NIFReadEntries method) and appends them to the column-oriented arrays
+	 * of a {@link NotesViewColumnarData} object.<br>
+	 * <br>
+	 * This method provides low-level API access. In general, it is safer to use
+	 * {@link #getAllEntriesColumnar(String, int, EnumSet, int, EnumSet, boolean[])} instead because
+	 * it handles view index update while reading.
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read; only the note id and {@link ReadMask#SUMMARYVALUES} are stored
+	 * @param decodeColumns optional array with flags for the column values to decode (see {@link #getColumnsToDecode(String...)}) or null to decode all values
+	 * @param retData data object to append the entries to
+	 * @return read statistics without entries, e.g. to check {@link NotesViewLookupResultData#hasMoreToDo()}
+	 */
+	public NotesViewLookupResultData readEntriesColumnar(NotesCollectionPosition startPos, EnumSet<Navigate> skipNavigator, int skipCount,
+			EnumSet<Navigate> returnNavigator, int returnCount, EnumSet<ReadMask> returnMask, boolean[] decodeColumns,
+			NotesViewColumnarData retData) {
+		checkHandle();
+
+		IntByReference retNumEntriesSkipped = new IntByReference();
+		IntByReference retNumEntriesReturned = new IntByReference();
+		ShortByReference retSignalFlags = new ShortByReference();
+		ShortByReference retBufferLength = new ShortByReference();
+
+		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
+		short skipNavBitMask = Navigate.toBitMask(skipNavigator);
+		short returnNavBitMask = Navigate.toBitMask(returnNavigator);
+		int readMaskBitMask = ReadMask.toBitMask(returnMask);
+		
+		short result;
+		m_nifReadCallCount.incrementAndGet();
+		if (NotesJNAContext.is64Bit()) {
+			LongByReference retBuffer = new LongByReference();
+			result = notesAPI.b64_NIFReadEntries(m_hCollection64, startPos, skipNavBitMask, skipCount, returnNavBitMask, returnCount,
+					readMaskBitMask, retBuffer, retBufferLength, retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags);
+			NotesErrorUtils.checkResult(result);
+			
+			if ((retBufferLength.getValue() & 0xffff)!=0) {
+				NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBufferColumnar(retBuffer.getValue(),
+						retNumEntriesReturned.getValue(), returnMask, decodeColumns, retData);
+			}
+		}
+		else {
+			IntByReference retBuffer = new IntByReference();
+			result = notesAPI.b32_NIFReadEntries(m_hCollection32, startPos, skipNavBitMask, skipCount, returnNavBitMask, returnCount,
+					readMaskBitMask, retBuffer, retBufferLength, retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags);
+			NotesErrorUtils.checkResult(result);
+			
+			if (retBufferLength.getValue()!=0) {
+				NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBufferColumnar(retBuffer.getValue(),
+						retNumEntriesReturned.getValue(), returnMask, decodeColumns, retData);
+			}
+		}
+		
+		int indexModifiedSequenceNo = getIndexModifiedSequenceNo();
+		return new NotesViewLookupResultData(null, new ArrayList<NotesViewEntryData>(0), retNumEntriesSkipped.getValue(),
+				retNumEntriesReturned.getValue(), retSignalFlags.getValue(), null, indexModifiedSequenceNo, null);
+	}
+
 	/**
 	 * Reads collection entries with extended funcionality (using undocumented NIFReadEntriesExt method).<br>
 	 * <br>
@@ -2294,8 +4389,67 @@ public class NotesCollection implements IRecyclableNotesObject {
 			int returnCount, EnumSet<ReadMask> returnMask, NotesTimeDate diffTime,
 			NotesIDTable diffIDTable,
 			Integer columnNumber) {
+		return readEntriesExt(startPos, skipNavigator, skipCount, returnNavigator, returnCount, returnMask,
+				diffTime, diffIDTable, columnNumber, null);
+	}
+	
+	/**
+	 * Reads collection entries with extended funcionality (using undocumented NIFReadEntriesExt method)
+	 * and only decodes the values of specific columns.<br>
+	 * <br>
+	 * This method provides low-level API access. In general, it is safer to use high-level functions like
+	 * {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)} instead because
+	 * they handle view index update while reading.
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read
+	 * @param diffTime diff time for differential view reads or null, see {@link #readEntriesExt(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * @param diffIDTable ID table of notes the caller has current information on or null
+	 * @param columnNumber If not null, number of single column to return value for (0-based)
+	 * @param decodeColumns optional array with flags for the column values to decode (see {@link #getColumnsToDecode(String...)}); other values are returned as null, use null to decode all values
+	 * @return read data
+	 */
+	public NotesViewLookupResultData readEntriesExt(NotesCollectionPosition startPos,
+			EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator,
+			int returnCount, EnumSet<ReadMask> returnMask, NotesTimeDate diffTime,
+			NotesIDTable diffIDTable,
+			Integer columnNumber, boolean[] decodeColumns) {
 		checkHandle();
 
+		String singleColumnLookupName = columnNumber == null ? null : getColumnName(columnNumber);
+		
+		return readEntriesExtInternal(startPos, skipNavigator, skipCount, returnNavigator, returnCount, returnMask,
+				diffTime, diffIDTable, columnNumber, singleColumnLookupName, decodeColumns);
+	}
+	
+	/**
+	 * Internal implementation of {@link #readEntriesExt(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * that does not check the collection handle against the auto GC handles of the current thread. Used to read
+	 * data from a prefetch thread while the calling thread processes the previous buffer.
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read
+	 * @param diffTime diff time for differential view reads or null
+	 * @param diffIDTable ID table of notes the caller has current information on or null
+	 * @param columnNumber If not null, number of single column to return value for (0-based)
+	 * @param singleColumnLookupName programmatic name of the column with index <code>columnNumber</code> or null
+	 * @param decodeColumns optional array with flags for the column values to decode or null to decode all
+	 * @return read data
+	 */
+	private NotesViewLookupResultData readEntriesExtInternal(NotesCollectionPosition startPos,
+			EnumSet<Navigate> skipNavigator, int skipCount, EnumSet<Navigate> returnNavigator,
+			int returnCount, EnumSet<ReadMask> returnMask, NotesTimeDate diffTime,
+			NotesIDTable diffIDTable,
+			Integer columnNumber, String singleColumnLookupName, boolean[] decodeColumns) {
+		
 		IntByReference retNumEntriesSkipped = new IntByReference();
 		IntByReference retNumEntriesReturned = new IntByReference();
 		ShortByReference retSignalFlags = new ShortByReference();
@@ -2312,9 +4466,8 @@ public class NotesCollection implements IRecyclableNotesObject {
 		NotesTimeDate retModifiedTime = new NotesTimeDate();
 		IntByReference retSequence = new IntByReference();
 
-		String singleColumnLookupName = columnNumber == null ? null : getColumnName(columnNumber);
-		
 		short result;
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
 			LongByReference retBuffer = new LongByReference();
 			result = notesAPI.b64_NIFReadEntriesExt(m_hCollection64, startPos,
@@ -2338,7 +4491,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 				boolean convertStringsLazily = true;
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
-						indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName);
+						indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName, decodeColumns);
 				return viewData;
 			}
 		}
@@ -2364,7 +4517,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
-						indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName);
+						indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName, decodeColumns);
 				return viewData;
 			}
 		}
@@ -2414,6 +4567,37 @@ public class NotesCollection implements IRecyclableNotesObject {
 		return colInfo.getSortDirection(collation);
 	}
 	
+	/**
+	 * Returns the programmatic name of the column that defines the sort order of the
+	 * view entries, which is the column used for key lookups: either the column that has
+	 * last been used to resort the view or the first sorted column of the view design
+	 * 
+	 * @return column name in lowercase or null if the view is not sorted
+	 */
+	public String getPrimarySortColumnName() {
+		String sortColumnName = getCurrentSortColumnName();
+		if (sortColumnName!=null) {
+			return sortColumnName;
+		}
+		//reads the column design if not done yet
+		getCollationsInfo();
+		return m_defaultSortColumnName;
+	}
+	
+	/**
+	 * Returns the sort direction of the column returned by {@link #getPrimarySortColumnName()}
+	 * 
+	 * @return direction or null if the view is not sorted
+	 */
+	public Direction getPrimarySortDirection() {
+		Direction sortDirection = getCurrentSortDirection();
+		if (sortDirection!=null) {
+			return sortDirection;
+		}
+		getCollationsInfo();
+		return m_defaultSortDirection;
+	}
+	
 	/**
 	 * Returns the currently active collation
 	 * 
@@ -2464,6 +4648,8 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 */
 	private void setCollation(short collation) {
 		checkHandle();
+		short oldCollation = getCollation();
+		
 		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
 		short result;
 		
@@ -2474,6 +4660,17 @@ public class NotesCollection implements IRecyclableNotesObject {
 			result = notesAPI.b32_NIFSetCollation(m_hCollection32, collation);
 		}
 		NotesErrorUtils.checkResult(result);
+		
+		if (oldCollation!=collation) {
+			//key lookups search a different sort column now
+			NotesCollectionLookupCache lookupCache = m_lookupCache;
+			if (lookupCache!=null) {
+				lookupCache.clear();
+			}
+			synchronized (m_keyCountCache) {
+				m_keyCountCache.clear();
+			}
+		}
 	}
 
 	/**
@@ -2583,6 +4780,12 @@ public class NotesCollection implements IRecyclableNotesObject {
 						m_columnIsCategoryByIndex.put(currColumnValuesIndex, isCategory);
 					}
 					
+					if (m_defaultSortColumnName==null && currCol.isSorted()) {
+						//first sorted column of the default collation
+						m_defaultSortColumnName = currItemNameLC;
+						m_defaultSortDirection = currCol.isSortDescending() ? Direction.Descending : Direction.Ascending;
+					}
+					
 					boolean isResortAscending = currCol.isResortAscending();
 					boolean isResortDescending = currCol.isResortDescending();
 					
@@ -2822,6 +5025,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		short flagsBitmask = UpdateCollectionFilters.toBitMask(flags);
 		
 		short result;
+		m_nifReadCallCount.incrementAndGet();
 		if (NotesJNAContext.is64Bit()) {
 			result = notesAPI.b64_NIFUpdateFilters(m_hCollection64, flagsBitmask);
 			
@@ -2833,11 +5037,16 @@ public class NotesCollection implements IRecyclableNotesObject {
 	}
 	
 	/**
-	 * Unfinished alternative lookup method
+	 * Declarative query on the collection data, e.g.<br>
+	 * <br>
+	 * <code>col.select("firstname", "lastname").where(column("lastname", StartsWith, "A")).count(100)</code><br>
+	 * <br>
+	 * The query is turned into an execution plan that uses key lookups in the sort column of the
+	 * current collation, ID tables and NSFSearch to compute the candidate documents and reads them via
+	 * {@link Navigate#NEXT_SELECTED}, see {@link com.mindoo.domino.jna.queries.condition.Selection}.
 	 * 
 	 * @param column first column to return
 	 * @param columns other columns to return
-	 * @deprecated not ready for prime time, does nothing
 	 * @return selection
 	 */
 	public Selection select(String column, String... columns) {
@@ -2851,7 +5060,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 	
 		String[] columnsArr = columnsList.toArray(new String[columnsList.size()]);
-		return new Selection(columnsArr);
+		return new Selection(this, columnsArr);
 	}
 
 	@Override
@@ -0,0 +1,81 @@
+package com.mindoo.domino.jna;
+
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Result of {@link NotesCollection#getChanges(NotesCollectionCheckpoint, EnumSet, int)} with
+ * the view entries that have been added or changed and the note ids of documents that have
+ * been removed from the view since the last checkpoint.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionChanges {
+	private List<NotesViewEntryData> m_addedOrChangedEntries;
+	private int[] m_removedNoteIds;
+	private NotesCollectionCheckpoint m_checkpoint;
+	private boolean m_fullRead;
+	
+	NotesCollectionChanges(List<NotesViewEntryData> addedOrChangedEntries, int[] removedNoteIds,
+			NotesCollectionCheckpoint checkpoint, boolean fullRead) {
+		m_addedOrChangedEntries = addedOrChangedEntries;
+		m_removedNoteIds = removedNoteIds;
+		m_checkpoint = checkpoint;
+		m_fullRead = fullRead;
+	}
+	
+	/**
+	 * Returns the entries of documents that have been added to the view or changed
+	 * since the last checkpoint
+	 * 
+	 * @return entries
+	 */
+	public List<NotesViewEntryData> getAddedOrChangedEntries() {
+		return m_addedOrChangedEntries;
+	}
+	
+	/**
+	 * Returns the note ids of documents that have been deleted or removed from the view
+	 * since the last checkpoint
+	 * 
+	 * @return sorted note ids
+	 */
+	public int[] getRemovedNoteIds() {
+		return m_removedNoteIds.clone();
+	}
+	
+	/**
+	 * Returns the new checkpoint to be passed to the next call of
+	 * {@link NotesCollection#getChanges(NotesCollectionCheckpoint, EnumSet, int)}
+	 * 
+	 * @return checkpoint
+	 */
+	public NotesCollectionCheckpoint getCheckpoint() {
+		return m_checkpoint;
+	}
+	
+	/**
+	 * Returns true if all view entries have been returned, because no checkpoint was
+	 * specified or the read mask of the checkpoint differs
+	 * 
+	 * @return true for full read
+	 */
+	public boolean isFullRead() {
+		return m_fullRead;
+	}
+	
+	/**
+	 * Returns true if there are any changes
+	 * 
+	 * @return true if changed
+	 */
+	public boolean hasChanges() {
+		return !m_addedOrChangedEntries.isEmpty() || m_removedNoteIds.length>0;
+	}
+	
+	@Override
+	public String toString() {
+		return "NotesCollectionChanges [addedOrChanged="+m_addedOrChangedEntries.size()+", removed="+m_removedNoteIds.length+
+				", fullRead="+m_fullRead+", checkpoint="+m_checkpoint+"]";
+	}
+}
@@ -0,0 +1,105 @@
+package com.mindoo.domino.jna;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.structs.NotesTimeDate;
+
+/**
+ * Checkpoint of the change feed of a {@link NotesCollection}, returned by
+ * {@link NotesCollection#getChanges(NotesCollectionCheckpoint, EnumSet, int)}.<br>
+ * <br>
+ * The checkpoint contains the diff time of the differential view read and the note ids of
+ * all documents in the view at that time. It is serializable, so it can be stored together
+ * with the data that has been produced from the changes, e.g. in an external search index.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionCheckpoint implements Serializable {
+	private static final long serialVersionUID = 3175308286526283416L;
+	
+	private String m_viewUNID;
+	private EnumSet<ReadMask> m_readMask;
+	private int[] m_diffTimeInnards;
+	private int[] m_noteIds;
+	
+	/**
+	 * Creates a new checkpoint
+	 * 
+	 * @param viewUNID UNID of the view note
+	 * @param readMask read mask used to read the view data
+	 * @param diffTime diff time returned by NIF
+	 * @param noteIds sorted note ids of the documents in the view
+	 */
+	NotesCollectionCheckpoint(String viewUNID, EnumSet<ReadMask> readMask, NotesTimeDate diffTime, int[] noteIds) {
+		m_viewUNID = viewUNID;
+		m_readMask = readMask.clone();
+		m_diffTimeInnards = diffTime==null ? null : new int[] {diffTime.Innards[0], diffTime.Innards[1]};
+		m_noteIds = noteIds;
+	}
+	
+	/**
+	 * Returns the UNID of the view note
+	 * 
+	 * @return UNID
+	 */
+	public String getViewUNID() {
+		return m_viewUNID;
+	}
+	
+	/**
+	 * Returns the read mask used to read the view data
+	 * 
+	 * @return read mask
+	 */
+	public EnumSet<ReadMask> getReadMask() {
+		return m_readMask.clone();
+	}
+	
+	/**
+	 * Returns the diff time of the checkpoint; the next call of
+	 * {@link NotesCollection#getChanges(NotesCollectionCheckpoint, EnumSet, int)}
+	 * returns all entries that have been changed since then
+	 * 
+	 * @return diff time or null if NIF did not return a diff time
+	 */
+	public NotesTimeDate getDiffTime() {
+		return m_diffTimeInnards==null ? null : new NotesTimeDate(m_diffTimeInnards.clone());
+	}
+	
+	/**
+	 * Returns the note ids of the documents in the view
+	 * 
+	 * @return sorted note ids
+	 */
+	public int[] getNoteIds() {
+		return m_noteIds.clone();
+	}
+	
+	/**
+	 * Returns the number of documents in the view
+	 * 
+	 * @return count
+	 */
+	public int getNoteCount() {
+		return m_noteIds.length;
+	}
+	
+	/**
+	 * Checks if the view contained a document
+	 * 
+	 * @param noteId note id
+	 * @return true if contained
+	 */
+	public boolean containsNoteId(int noteId) {
+		return Arrays.binarySearch(m_noteIds, noteId)>=0;
+	}
+	
+	@Override
+	public String toString() {
+		return "NotesCollectionCheckpoint [viewUNID="+m_viewUNID+", readMask="+m_readMask+", diffTime="+
+				(m_diffTimeInnards==null ? "null" : Arrays.toString(m_diffTimeInnards))+", noteCount="+m_noteIds.length+"]";
+	}
+}
@@ -0,0 +1,165 @@
+package com.mindoo.domino.jna;
+
+import java.io.Closeable;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.structs.NotesCollectionPosition;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Lazy {@link Iterator} over the entries of a {@link NotesCollection}. In contrast to
+ * {@link NotesCollection#getAllEntries(String, int, EnumSet, int, EnumSet, com.mindoo.domino.jna.NotesCollection.ViewLookupCallback)},
+ * collection data is only read when the consumer asks for the next entry, one buffer at a time,
+ * so that memory consumption is bounded by the buffer size and reading stops as soon
+ * as the consumer stops iterating or calls {@link #close()}.<br>
+ * <br>
+ * Since entries are passed to the consumer directly, the iterator cannot restart reading
+ * when the view index changes. If {@link NotesCollection#isAutoUpdate()} is true, the
+ * collection is updated and reading continues at the current position, so entries may be
+ * skipped or returned twice in that case.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionIterator implements Iterator<NotesViewEntryData>, Closeable {
+	private NotesCollection m_col;
+	private NotesCollectionPosition m_pos;
+	private int m_skipCount;
+	private EnumSet<Navigate> m_returnNav;
+	private int m_bufferSize;
+	private EnumSet<ReadMask> m_returnMask;
+
+	private boolean m_firstRead;
+	private boolean m_noMoreData;
+	private boolean m_closed;
+	private List<NotesViewEntryData> m_buffer;
+	private int m_bufferIdx;
+	private int m_numEntriesRead;
+
+	/**
+	 * Creates a new instance
+	 *
+	 * @param col collection to read
+	 * @param startPosStr start position; use "0" or null to start before the first entry
+	 * @param skipCount number entries to skip before reading
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param bufferSize number of entries to read in one API call
+	 * @param returnMask values to extract
+	 */
+	public NotesCollectionIterator(NotesCollection col, String startPosStr, int skipCount, EnumSet<Navigate> returnNav,
+			int bufferSize, EnumSet<ReadMask> returnMask) {
+		if (bufferSize<1)
+			throw new IllegalArgumentException("Buffer size must be greater than 0: "+bufferSize);
+
+		m_col = col;
+		m_pos = NotesCollectionPosition.toPosition(StringUtil.isEmpty(startPosStr) ? "0" : startPosStr);
+		m_skipCount = skipCount;
+		m_returnNav = returnNav;
+		m_bufferSize = bufferSize;
+		m_returnMask = returnMask;
+		m_firstRead = true;
+	}
+
+	/**
+	 * Returns the collection that is read by this iterator
+	 *
+	 * @return collection
+	 */
+	public NotesCollection getCollection() {
+		return m_col;
+	}
+
+	/**
+	 * Returns the number of entries that have been read from the collection so far
+	 *
+	 * @return count
+	 */
+	public int getNumEntriesRead() {
+		return m_numEntriesRead;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (m_buffer!=null && m_bufferIdx < m_buffer.size()) {
+			return true;
+		}
+		return readNextBuffer();
+	}
+
+	@Override
+	public NotesViewEntryData next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		NotesViewEntryData entry = m_buffer.get(m_bufferIdx);
+		//release the reference so that processed entries can be garbage collected
+		m_buffer.set(m_bufferIdx, null);
+		m_bufferIdx++;
+		return entry;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stops reading collection data and releases the current buffer. Calling {@link #hasNext()}
+	 * after this method returns false.
+	 */
+	@Override
+	public void close() {
+		m_closed = true;
+		m_buffer = null;
+	}
+
+	/**
+	 * Returns whether {@link #close()} has been called
+	 *
+	 * @return true if closed
+	 */
+	public boolean isClosed() {
+		return m_closed;
+	}
+
+	/**
+	 * Reads the next buffer of collection data
+	 *
+	 * @return true if data has been read
+	 */
+	private boolean readNextBuffer() {
+		m_buffer = null;
+		m_bufferIdx = 0;
+
+		if (m_closed || m_noMoreData) {
+			return false;
+		}
+
+		NotesViewLookupResultData data = m_col.readEntries(m_pos, m_returnNav, m_firstRead ? m_skipCount : 1, m_returnNav,
+				m_bufferSize, m_returnMask);
+		m_firstRead = false;
+
+		if (m_col.isAutoUpdate() && data.hasAnyNonDataConflicts()) {
+			//we cannot restart reading, because the consumer already processed entries;
+			//refresh the view for the next read operation
+			m_col.update();
+		}
+
+		List<NotesViewEntryData> entries = data.getEntries();
+		if (data.getReturnCount()==0 || entries.isEmpty()) {
+			m_noMoreData = true;
+			return false;
+		}
+		if (!data.hasMoreToDo()) {
+			m_noMoreData = true;
+		}
+
+		m_buffer = entries;
+		m_numEntriesRead += entries.size();
+		return true;
+	}
+}
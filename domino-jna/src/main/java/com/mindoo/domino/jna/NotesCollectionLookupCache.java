@@ -0,0 +1,235 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mindoo.domino.jna.NotesViewEntryData.CacheableViewEntryData;
+import com.mindoo.domino.jna.constants.Find;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.internal.NotesSearchKeyEncoder;
+import com.mindoo.domino.jna.structs.NotesTimeDate;
+import com.mindoo.domino.jna.utils.ByteArrayHashKey;
+import com.sun.jna.Memory;
+
+/**
+ * Cache for the results of key lookups in a {@link NotesCollection}, set via
+ * {@link NotesCollection#setLookupCache(NotesCollectionLookupCache)}.<br>
+ * <br>
+ * Results of {@link NotesCollection#findByKey(EnumSet, Object...)},
+ * {@link NotesCollection#findByKeyExtended2(EnumSet, EnumSet, Object...)} and
+ * {@link NotesCollection#getAllEntriesByKey(EnumSet, EnumSet, com.mindoo.domino.jna.NotesCollection.ViewLookupCallback, Object...)}
+ * are stored by their encoded search keys, find flags and read mask. All entries are
+ * validated against {@link NotesCollection#getLastModifiedTime()}: as soon as the view index
+ * changes, the whole cache is cleared. The cache is also cleared when the collection is resorted,
+ * because key lookups then search a different column, so a cache must not be shared between
+ * collections. Results of time-relative views are not cached.<br>
+ * <br>
+ * The cache keeps the most recently used results up to a maximum number of lookups.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionLookupCache {
+	static final byte TYPE_FINDBYKEY = 1;
+	static final byte TYPE_FINDBYKEYEXTENDED2 = 2;
+	static final byte TYPE_ALLENTRIESBYKEY = 3;
+	static final byte TYPE_COUNTBYKEY = 4;
+	
+	private int m_maxEntries;
+	private LinkedHashMap<ByteArrayHashKey,Object> m_entries;
+	private NotesTimeDate m_indexModifiedTime;
+	private long m_hits;
+	private long m_misses;
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param maxEntries maximum number of cached lookup results
+	 */
+	public NotesCollectionLookupCache(int maxEntries) {
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("Max entries must be greater than 0: "+maxEntries);
+		
+		m_maxEntries = maxEntries;
+		m_entries = new LinkedHashMap<ByteArrayHashKey,Object>(16, 0.75f, true) {
+			private static final long serialVersionUID = -3419567412264934580L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteArrayHashKey,Object> eldest) {
+				return size() > m_maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the maximum number of cached lookup results
+	 * 
+	 * @return maximum number
+	 */
+	public int getMaxEntries() {
+		return m_maxEntries;
+	}
+	
+	/**
+	 * Returns the current number of cached lookup results
+	 * 
+	 * @return size
+	 */
+	public synchronized int size() {
+		return m_entries.size();
+	}
+	
+	/**
+	 * Removes all cached lookup results
+	 */
+	public synchronized void clear() {
+		m_entries.clear();
+		m_indexModifiedTime = null;
+	}
+	
+	/**
+	 * Returns the number of lookups that could be answered from the cache
+	 * 
+	 * @return count
+	 */
+	public synchronized long getHits() {
+		return m_hits;
+	}
+	
+	/**
+	 * Returns the number of lookups that needed to call NIF
+	 * 
+	 * @return count
+	 */
+	public synchronized long getMisses() {
+		return m_misses;
+	}
+	
+	/**
+	 * Creates the cache key for a lookup
+	 * 
+	 * @param type lookup type, e.g. {@link #TYPE_FINDBYKEY}
+	 * @param findFlags find flags
+	 * @param returnMask read mask or null
+	 * @param decodeColumns column projection or null
+	 * @param keyBuffer encoded search keys, may be larger than the encoded data
+	 * @return key
+	 */
+	static ByteArrayHashKey createKey(byte type, EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, boolean[] decodeColumns,
+			Memory keyBuffer) {
+		int keyBufferSize = NotesSearchKeyEncoder.getEncodedLength(keyBuffer);
+		int decodeColumnsSize = decodeColumns==null ? 0 : decodeColumns.length;
+		
+		byte[] data = new byte[1 + 4 + 4 + 4 + decodeColumnsSize + keyBufferSize];
+		int pos = 0;
+		data[pos++] = type;
+		pos = writeInt(data, pos, Find.toBitMaskInt(findFlags));
+		pos = writeInt(data, pos, returnMask==null ? 0 : ReadMask.toBitMask(returnMask));
+		pos = writeInt(data, pos, decodeColumns==null ? -1 : decodeColumnsSize);
+		for (int i=0; i<decodeColumnsSize; i++) {
+			data[pos++] = (byte) (decodeColumns[i] ? 1 : 0);
+		}
+		keyBuffer.read(0, data, pos, keyBufferSize);
+		return new ByteArrayHashKey(data);
+	}
+	
+	private static int writeInt(byte[] data, int pos, int value) {
+		data[pos++] = (byte) (value >>> 24);
+		data[pos++] = (byte) (value >>> 16);
+		data[pos++] = (byte) (value >>> 8);
+		data[pos++] = (byte) value;
+		return pos;
+	}
+	
+	/**
+	 * Looks up a cached result
+	 * 
+	 * @param key cache key
+	 * @param indexModifiedTime current value of {@link NotesCollection#getLastModifiedTime()}
+	 * @return result or null
+	 */
+	synchronized Object get(ByteArrayHashKey key, NotesTimeDate indexModifiedTime) {
+		if (m_indexModifiedTime!=null && !m_indexModifiedTime.equals(indexModifiedTime)) {
+			//view index has changed
+			m_entries.clear();
+			m_indexModifiedTime = null;
+		}
+		Object value = m_entries.get(key);
+		if (value!=null) {
+			m_hits++;
+		}
+		else {
+			m_misses++;
+		}
+		return value;
+	}
+	
+	/**
+	 * Stores a lookup result
+	 * 
+	 * @param key cache key
+	 * @param indexModifiedTime value of {@link NotesCollection#getLastModifiedTime()} before the lookup
+	 * @param value result
+	 */
+	synchronized void put(ByteArrayHashKey key, NotesTimeDate indexModifiedTime, Object value) {
+		if (m_indexModifiedTime==null || !m_indexModifiedTime.equals(indexModifiedTime)) {
+			m_entries.clear();
+			m_indexModifiedTime = indexModifiedTime;
+		}
+		m_entries.put(key, value);
+	}
+	
+	/**
+	 * Converts entries to an immutable form for the cache
+	 * 
+	 * @param entries entries
+	 * @return cacheable data
+	 */
+	static CacheableViewEntryData[] toCacheableData(List<NotesViewEntryData> entries) {
+		CacheableViewEntryData[] data = new CacheableViewEntryData[entries.size()];
+		for (int i=0; i<data.length; i++) {
+			data[i] = entries.get(i).getCacheableData();
+		}
+		return data;
+	}
+	
+	/**
+	 * Cached result of {@link NotesCollection#findByKeyExtended2(EnumSet, EnumSet, Object...)}
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	static class CachedLookupResult {
+		private CacheableViewEntryData[] m_entries;
+		private int m_numEntriesSkipped;
+		private int m_numEntriesReturned;
+		private short m_signalFlags;
+		private String m_pos;
+		private int m_indexModifiedSequenceNo;
+		
+		CachedLookupResult(NotesViewLookupResultData data) {
+			m_entries = toCacheableData(data.getEntries());
+			m_numEntriesSkipped = data.getSkipCount();
+			m_numEntriesReturned = data.getReturnCount();
+			m_signalFlags = data.getSignalFlags();
+			m_pos = data.getPosition();
+			m_indexModifiedSequenceNo = data.getIndexModifiedSequenceNo();
+		}
+		
+		/**
+		 * Creates a new result object with copies of the cached entries
+		 * 
+		 * @param parentCollection collection
+		 * @return result
+		 */
+		NotesViewLookupResultData toLookupResult(NotesCollection parentCollection) {
+			List<NotesViewEntryData> entries = new ArrayList<NotesViewEntryData>(m_entries.length);
+			for (CacheableViewEntryData currData : m_entries) {
+				entries.add(NotesViewEntryData.fromCacheableData(parentCollection, currData));
+			}
+			return new NotesViewLookupResultData(null, entries, m_numEntriesSkipped, m_numEntriesReturned, m_signalFlags,
+					m_pos, m_indexModifiedSequenceNo, null);
+		}
+	}
+}
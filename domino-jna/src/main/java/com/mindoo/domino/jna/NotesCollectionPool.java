@@ -0,0 +1,405 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.mindoo.domino.jna.constants.UpdateCollectionFilters;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+
+/**
+ * Pool of open {@link NotesCollection} handles to avoid the costs of
+ * {@link NotesDatabase#findCollection(String)} and NIFOpenCollection for short lookups.<br>
+ * <br>
+ * Collections are pooled per {@link NotesDatabase} instance and view note id. Since the database
+ * handle has been opened with the names list of its user, collections of different users
+ * are never shared. Pooled collections are only valid as long as their database is not recycled.<br>
+ * <br>
+ * A collection returned by {@link #lease(NotesDatabase, String)} is registered in the
+ * active {@link NotesGC} block like a newly opened collection. When it is passed to
+ * {@link #release(NotesCollection)}, the collection is reset (FT search, selected list,
+ * collapsed list and sorting) and removed from the {@link NotesGC} block together with its
+ * unread table, so that they are not recycled at the end of the block. Collections that have been idle for longer than the
+ * maximum idle time are closed by {@link #evictIdle()}, which is also called on every lease.<br>
+ * <br>
+ * {@link #lease(NotesDatabase, String)} and {@link #release(NotesCollection)} need to be called in a
+ * {@link NotesGC#runWithAutoGC(java.util.concurrent.Callable)} block. {@link #evictIdle()} and {@link #clear()}
+ * can also be called outside of such a block (from a thread initialized for the Notes C API), e.g. at shutdown
+ * or periodically from a scheduled task, so that a pool that is not used for a while does not keep its handles open.<br>
+ * <br>
+ * Idle collections have to be closed before their database is recycled, e.g. by calling {@link #clear(NotesDatabase)}.
+ * Collections of databases that have been recycled before are only removed from the pool, their handles cannot be closed
+ * anymore.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * NotesCollection col = pool.lease(db, "People");
+ * try {
+ * 	...
+ * }
+ * finally {
+ * 	pool.release(col);
+ * }
+ * </pre>
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionPool {
+	private int m_maxIdlePerView;
+	private long m_maxIdleMillis;
+	private Map<NotesDatabase, DatabaseEntry> m_entriesByDb;
+	private long m_leaseCount;
+	private long m_openCount;
+	
+	/**
+	 * Creates a new pool
+	 * 
+	 * @param maxIdlePerView maximum number of idle collections per database and view
+	 * @param maxIdleMillis time in milliseconds after which idle collections are closed
+	 */
+	public NotesCollectionPool(int maxIdlePerView, long maxIdleMillis) {
+		if (maxIdlePerView <= 0)
+			throw new IllegalArgumentException("Max idle collections per view must be greater than 0: "+maxIdlePerView);
+		if (maxIdleMillis <= 0)
+			throw new IllegalArgumentException("Max idle time must be greater than 0: "+maxIdleMillis);
+		
+		m_maxIdlePerView = maxIdlePerView;
+		m_maxIdleMillis = maxIdleMillis;
+		m_entriesByDb = new IdentityHashMap<NotesDatabase, DatabaseEntry>();
+	}
+	
+	/**
+	 * Returns the maximum number of idle collections per database and view
+	 * 
+	 * @return number
+	 */
+	public int getMaxIdlePerView() {
+		return m_maxIdlePerView;
+	}
+	
+	/**
+	 * Returns the time in milliseconds after which idle collections are closed
+	 * 
+	 * @return time
+	 */
+	public long getMaxIdleMillis() {
+		return m_maxIdleMillis;
+	}
+	
+	/**
+	 * Returns an open collection for a view, either an idle collection of the pool or
+	 * a newly opened one. The collection is updated if it has been taken from the pool.
+	 * 
+	 * @param db database
+	 * @param viewName name of the view/collection
+	 * @return collection
+	 */
+	public synchronized NotesCollection lease(NotesDatabase db, String viewName) {
+		if (!NotesGC.isAutoGCActive())
+			throw new IllegalStateException("Collections can only be leased in a NotesGC.runWithAutoGC block");
+		if (db.isRecycled())
+			throw new NotesError(0, "Database already recycled");
+		
+		evictIdle();
+		m_leaseCount++;
+		
+		DatabaseEntry dbEntry = m_entriesByDb.get(db);
+		if (dbEntry==null) {
+			dbEntry = new DatabaseEntry();
+			m_entriesByDb.put(db, dbEntry);
+		}
+		
+		String viewNameLC = viewName.toLowerCase();
+		Integer viewNoteId = dbEntry.m_viewNoteIdsByName.get(viewNameLC);
+		if (viewNoteId==null) {
+			viewNoteId = db.findCollection(viewName);
+			dbEntry.m_viewNoteIdsByName.put(viewNameLC, viewNoteId);
+		}
+		
+		LinkedList<IdleCollection> idleCollections = dbEntry.m_idleByViewNoteId.get(viewNoteId);
+		if (idleCollections!=null && !idleCollections.isEmpty()) {
+			//use the collection returned last, its data is most likely still cached by NIF
+			NotesCollection col = idleCollections.removeLast().m_collection;
+			registerInGC(col);
+			col.update();
+			return col;
+		}
+		
+		m_openCount++;
+		return db.openCollection(viewName, viewNoteId.intValue(), null);
+	}
+	
+	/**
+	 * Resets a collection returned by {@link #lease(NotesDatabase, String)} and stores it
+	 * in the pool. The collection must not be used by the caller afterwards.
+	 * Recycled collections and collections that cannot be reset are ignored or closed.
+	 * 
+	 * @param col collection
+	 */
+	public synchronized void release(NotesCollection col) {
+		if (!NotesGC.isAutoGCActive())
+			throw new IllegalStateException("Collections can only be released in a NotesGC.runWithAutoGC block");
+		if (col.isRecycled()) {
+			return;
+		}
+		NotesDatabase db = col.getParent();
+		DatabaseEntry dbEntry = m_entriesByDb.get(db);
+		if (dbEntry==null || db.isRecycled()) {
+			col.recycle();
+			return;
+		}
+		
+		Integer viewNoteId = Integer.valueOf(col.getNoteId());
+		LinkedList<IdleCollection> idleCollections = dbEntry.m_idleByViewNoteId.get(viewNoteId);
+		if (idleCollections==null) {
+			idleCollections = new LinkedList<IdleCollection>();
+			dbEntry.m_idleByViewNoteId.put(viewNoteId, idleCollections);
+		}
+		if (idleCollections.size() >= m_maxIdlePerView) {
+			col.recycle();
+			return;
+		}
+		
+		try {
+			reset(col);
+		}
+		catch (NotesError e) {
+			col.recycle();
+			return;
+		}
+		
+		//the pool now owns the handles, so they must not be recycled at the end of the NotesGC block
+		NotesGC.__objectBeeingBeRecycled(NotesCollection.class, col);
+		NotesIDTable unreadTable = col.getUnreadTable();
+		if (unreadTable!=null && !unreadTable.isRecycled()) {
+			NotesGC.__objectBeeingBeRecycled(NotesIDTable.class, unreadTable);
+		}
+		idleCollections.add(new IdleCollection(col, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Restores the state of a newly opened collection
+	 * 
+	 * @param col collection
+	 */
+	private void reset(NotesCollection col) {
+		col.clearSearch();
+		
+		EnumSet<UpdateCollectionFilters> filtersToUpdate = EnumSet.noneOf(UpdateCollectionFilters.class);
+		NotesIDTable selectedList = col.getSelectedList();
+		if (!selectedList.isEmpty() || selectedList.isInverted()) {
+			selectedList.clear();
+			selectedList.setInverted(false);
+			filtersToUpdate.add(UpdateCollectionFilters.FILTER_SELECTED);
+		}
+		NotesIDTable collapsedList = col.getCollapsedList();
+		if (!collapsedList.isEmpty() || collapsedList.isInverted()) {
+			collapsedList.clear();
+			collapsedList.setInverted(false);
+			filtersToUpdate.add(UpdateCollectionFilters.FILTER_COLLAPSED);
+		}
+		if (!filtersToUpdate.isEmpty()) {
+			col.updateFilters(filtersToUpdate);
+		}
+		
+		col.resetViewSortingToDefault();
+		col.setLookupCache(null);
+		col.setAutoUpdate(true);
+	}
+	
+	/**
+	 * Closes all collections that have been idle for longer than the maximum idle time
+	 * and removes the collections of recycled databases from the pool
+	 */
+	public synchronized void evictIdle() {
+		long minLastUsed = System.currentTimeMillis() - m_maxIdleMillis;
+		List<NotesCollection> collectionsToClose = new ArrayList<NotesCollection>();
+		
+		Iterator<Map.Entry<NotesDatabase, DatabaseEntry>> dbEntries = m_entriesByDb.entrySet().iterator();
+		while (dbEntries.hasNext()) {
+			Map.Entry<NotesDatabase, DatabaseEntry> currDbEntry = dbEntries.next();
+			if (currDbEntry.getKey().isRecycled()) {
+				//the database has been recycled without calling clear(NotesDatabase) first,
+				//so the collections cannot be closed anymore
+				dbEntries.remove();
+				continue;
+			}
+			
+			for (LinkedList<IdleCollection> currIdleCollections : currDbEntry.getValue().m_idleByViewNoteId.values()) {
+				//collections are sorted by the time they have been returned
+				while (!currIdleCollections.isEmpty() && currIdleCollections.getFirst().m_lastUsed < minLastUsed) {
+					collectionsToClose.add(currIdleCollections.removeFirst().m_collection);
+				}
+			}
+		}
+		close(collectionsToClose);
+	}
+	
+	/**
+	 * Closes all idle collections of the pool. Collections currently leased are not affected.
+	 */
+	public synchronized void clear() {
+		List<NotesCollection> collectionsToClose = new ArrayList<NotesCollection>();
+		for (Map.Entry<NotesDatabase, DatabaseEntry> currDbEntry : m_entriesByDb.entrySet()) {
+			collectIdleCollections(currDbEntry.getKey(), currDbEntry.getValue(), collectionsToClose);
+		}
+		m_entriesByDb.clear();
+		close(collectionsToClose);
+	}
+	
+	/**
+	 * Closes the idle collections of a database. Needs to be called before the database is recycled.
+	 * Collections of the database currently leased are not affected.
+	 * 
+	 * @param db database
+	 */
+	public synchronized void clear(NotesDatabase db) {
+		DatabaseEntry dbEntry = m_entriesByDb.remove(db);
+		if (dbEntry!=null) {
+			List<NotesCollection> collectionsToClose = new ArrayList<NotesCollection>();
+			collectIdleCollections(db, dbEntry, collectionsToClose);
+			close(collectionsToClose);
+		}
+	}
+	
+	/**
+	 * Removes the idle collections of a database from the pool
+	 * 
+	 * @param db database
+	 * @param dbEntry pooled data of the database
+	 * @param collectionsToClose list to add the collections that need to be closed
+	 */
+	private void collectIdleCollections(NotesDatabase db, DatabaseEntry dbEntry, List<NotesCollection> collectionsToClose) {
+		//collections of a recycled database cannot be closed anymore
+		boolean dbRecycled = db.isRecycled();
+		
+		for (LinkedList<IdleCollection> currIdleCollections : dbEntry.m_idleByViewNoteId.values()) {
+			if (!dbRecycled) {
+				for (IdleCollection currIdleCol : currIdleCollections) {
+					collectionsToClose.add(currIdleCol.m_collection);
+				}
+			}
+			currIdleCollections.clear();
+		}
+	}
+	
+	/**
+	 * Closes idle collections. Uses a temporary {@link NotesGC} block if none is active.
+	 * 
+	 * @param collections collections
+	 */
+	private void close(final List<NotesCollection> collections) {
+		if (collections.isEmpty()) {
+			return;
+		}
+		if (NotesGC.isAutoGCActive()) {
+			for (NotesCollection currCol : collections) {
+				close(currCol);
+			}
+			return;
+		}
+		
+		try {
+			NotesGC.runWithAutoGC(new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					for (NotesCollection currCol : collections) {
+						close(currCol);
+					}
+					return null;
+				}
+			});
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new NotesError(0, "Error closing idle collections", e);
+		}
+	}
+	
+	/**
+	 * Closes an idle collection
+	 * 
+	 * @param col collection
+	 */
+	private void close(NotesCollection col) {
+		//register the handles in the current NotesGC block, so that recycle() can remove them again
+		registerInGC(col);
+		col.recycle();
+	}
+	
+	/**
+	 * Registers an idle collection and its unread table in the current {@link NotesGC} block
+	 * 
+	 * @param col collection
+	 */
+	private void registerInGC(NotesCollection col) {
+		NotesGC.__objectCreated(NotesCollection.class, col);
+		NotesIDTable unreadTable = col.getUnreadTable();
+		if (unreadTable!=null && !unreadTable.isRecycled()) {
+			NotesGC.__objectCreated(NotesIDTable.class, unreadTable);
+		}
+	}
+	
+	/**
+	 * Returns the number of idle collections in the pool
+	 * 
+	 * @return count
+	 */
+	public synchronized int getIdleCount() {
+		int count = 0;
+		for (DatabaseEntry currDbEntry : m_entriesByDb.values()) {
+			for (LinkedList<IdleCollection> currIdleCollections : currDbEntry.m_idleByViewNoteId.values()) {
+				count += currIdleCollections.size();
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of calls to {@link #lease(NotesDatabase, String)}
+	 * 
+	 * @return count
+	 */
+	public synchronized long getLeaseCount() {
+		return m_leaseCount;
+	}
+	
+	/**
+	 * Returns the number of collections that have been opened by {@link #lease(NotesDatabase, String)}
+	 * because no idle collection was available
+	 * 
+	 * @return count
+	 */
+	public synchronized long getOpenCount() {
+		return m_openCount;
+	}
+	
+	/**
+	 * Pooled data of a database
+	 */
+	private static class DatabaseEntry {
+		private Map<String, Integer> m_viewNoteIdsByName = new HashMap<String, Integer>();
+		private Map<Integer, LinkedList<IdleCollection>> m_idleByViewNoteId = new HashMap<Integer, LinkedList<IdleCollection>>();
+	}
+	
+	/**
+	 * Collection in the pool with the time it has been returned
+	 */
+	private static class IdleCollection {
+		private NotesCollection m_collection;
+		private long m_lastUsed;
+		
+		IdleCollection(NotesCollection collection, long lastUsed) {
+			m_collection = collection;
+			m_lastUsed = lastUsed;
+		}
+	}
+}
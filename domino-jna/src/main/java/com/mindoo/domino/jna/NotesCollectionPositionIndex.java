@@ -0,0 +1,283 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.structs.NotesCollectionPosition;
+
+/**
+ * Index of collection positions for fast random access to view entries by their index,
+ * e.g. to display page 4,000 of a large view in a web grid.<br>
+ * <br>
+ * NIF can only move from a position by skipping entries one by one, so reading entry
+ * 100,000 of a view normally walks over all previous entries. This class records the position
+ * of every n-th entry (checkpoint) while moving through the view. Jumping to an entry then
+ * starts at the nearest checkpoint and only skips less than n entries. Checkpoints are
+ * computed on demand up to the requested entry and are discarded as soon as the view index
+ * sequence number changes (see {@link NotesCollection#getIndexModifiedSequenceNo()}).<br>
+ * <br>
+ * Entry indices are counted in the order of the navigator passed to the constructor, starting
+ * with 0 for the first entry.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionPositionIndex {
+	/** maximum number of index rebuilds in one call if the view index keeps changing */
+	private static final int MAX_REBUILDS = 10;
+	
+	private NotesCollection m_col;
+	private EnumSet<Navigate> m_nav;
+	private EnumSet<Navigate> m_skipNav;
+	private int m_interval;
+	
+	private int m_indexModifiedSequenceNo;
+	private List<String> m_checkpoints;
+	private boolean m_endReached;
+	private int m_entryCount;
+	private String m_lastPosition;
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param col collection
+	 * @param nav navigator that defines which entries are counted, e.g. {@link Navigate#NEXT} or {@link Navigate#NEXT_NONCATEGORY}
+	 * @param interval number of entries between two checkpoints
+	 */
+	public NotesCollectionPositionIndex(NotesCollection col, EnumSet<Navigate> nav, int interval) {
+		if (interval <= 0)
+			throw new IllegalArgumentException("Interval must be greater than 0: "+interval);
+		
+		m_col = col;
+		m_nav = nav.clone();
+		m_skipNav = nav.clone();
+		//skipping past the end of the view stops at the last entry
+		m_skipNav.add(Navigate.CONTINUE);
+		m_interval = interval;
+		m_checkpoints = new ArrayList<String>();
+		m_indexModifiedSequenceNo = -1;
+	}
+	
+	/**
+	 * Returns the collection
+	 * 
+	 * @return collection
+	 */
+	public NotesCollection getCollection() {
+		return m_col;
+	}
+	
+	/**
+	 * Returns the navigator used to count entries
+	 * 
+	 * @return navigator
+	 */
+	public EnumSet<Navigate> getNavigator() {
+		return m_nav.clone();
+	}
+	
+	/**
+	 * Returns the number of entries between two checkpoints
+	 * 
+	 * @return interval
+	 */
+	public int getInterval() {
+		return m_interval;
+	}
+	
+	/**
+	 * Returns the number of checkpoints computed so far
+	 * 
+	 * @return count
+	 */
+	public synchronized int getCheckpointCount() {
+		return m_checkpoints.size();
+	}
+	
+	/**
+	 * Discards all checkpoints
+	 */
+	public synchronized void clear() {
+		m_checkpoints.clear();
+		m_endReached = false;
+		m_entryCount = 0;
+		m_lastPosition = null;
+		m_indexModifiedSequenceNo = -1;
+	}
+	
+	/**
+	 * Returns the position of an entry
+	 * 
+	 * @param entryIndex 0 based entry index
+	 * @return position string or null if the view has less entries
+	 */
+	public synchronized String getPosition(int entryIndex) {
+		if (entryIndex < 0)
+			throw new IllegalArgumentException("Entry index must not be negative: "+entryIndex);
+		
+		validate();
+		
+		for (int i=0; ; i++) {
+			int checkpointIdx = findCheckpoint(entryIndex);
+			if (checkpointIdx==-1) {
+				return null;
+			}
+			int skipCount = entryIndex - checkpointIdx * m_interval;
+			if (skipCount==0) {
+				return m_checkpoints.get(checkpointIdx);
+			}
+			NotesCollectionPosition pos = NotesCollectionPosition.toPosition(m_checkpoints.get(checkpointIdx));
+			NotesViewLookupResultData data = m_col.readEntries(pos, m_nav, skipCount, m_nav, 1, EnumSet.of(ReadMask.INDEXPOSITION));
+			if (data.getIndexModifiedSequenceNo()==m_indexModifiedSequenceNo) {
+				List<NotesViewEntryData> entries = data.getEntries();
+				return entries.isEmpty() ? null : entries.get(0).getPositionStr();
+			}
+			
+			//index changed while reading
+			if (i >= MAX_REBUILDS) {
+				throw new NotesError(0, "View index keeps changing while computing position of entry "+entryIndex);
+			}
+			clear();
+			validate();
+		}
+	}
+	
+	/**
+	 * Reads entries starting at an entry index, e.g. to read a page of data
+	 * 
+	 * @param entryIndex 0 based index of the first entry to read
+	 * @param count number of entries to read
+	 * @param returnMask values to be returned
+	 * @param decodeColumns optional array to only decode specific view columns (see {@link NotesCollection#getColumnsToDecode(String...)}) or null for all columns
+	 * @return lookup result, empty if the view has less entries
+	 */
+	public NotesViewLookupResultData readEntries(int entryIndex, int count, EnumSet<ReadMask> returnMask, boolean[] decodeColumns) {
+		if (entryIndex < 0)
+			throw new IllegalArgumentException("Entry index must not be negative: "+entryIndex);
+		
+		String startPos;
+		int skipCount;
+		synchronized (this) {
+			validate();
+			
+			int checkpointIdx = findCheckpoint(entryIndex);
+			if (checkpointIdx==-1) {
+				//let NIF produce the empty result
+				startPos = "0";
+				skipCount = entryIndex==Integer.MAX_VALUE ? entryIndex : entryIndex + 1;
+			}
+			else {
+				startPos = m_checkpoints.get(checkpointIdx);
+				skipCount = entryIndex - checkpointIdx * m_interval;
+			}
+		}
+		NotesCollectionPosition pos = NotesCollectionPosition.toPosition(startPos);
+		//with a skip count of 0, NIF starts reading at the checkpoint entry
+		return m_col.readEntries(pos, m_nav, skipCount, m_nav, count, returnMask, decodeColumns);
+	}
+	
+	/**
+	 * Returns the number of entries in the view, computed by moving through the whole
+	 * view the first time
+	 * 
+	 * @return count
+	 */
+	public synchronized int getEntryCount() {
+		validate();
+		findCheckpoint(Integer.MAX_VALUE);
+		return m_entryCount;
+	}
+	
+	/**
+	 * Returns the position of the last entry, e.g. to read the view backwards
+	 * 
+	 * @return position string or null if the view is empty
+	 */
+	public synchronized String getLastPosition() {
+		validate();
+		findCheckpoint(Integer.MAX_VALUE);
+		return m_lastPosition;
+	}
+	
+	/**
+	 * Discards the checkpoints if the view index has changed
+	 */
+	private void validate() {
+		int currIndexModifiedSequenceNo = m_col.getIndexModifiedSequenceNo();
+		if (currIndexModifiedSequenceNo!=m_indexModifiedSequenceNo) {
+			clear();
+			m_indexModifiedSequenceNo = currIndexModifiedSequenceNo;
+		}
+	}
+	
+	/**
+	 * Computes missing checkpoints up to the specified entry
+	 * 
+	 * @param entryIndex 0 based entry index
+	 * @return index of the nearest checkpoint before or at the entry or -1 if the view has less entries
+	 */
+	private int findCheckpoint(int entryIndex) {
+		int targetCheckpointIdx = entryIndex / m_interval;
+		int rebuilds = 0;
+		
+		while (!m_endReached && m_checkpoints.size() <= targetCheckpointIdx) {
+			NotesCollectionPosition pos;
+			int skipCount;
+			if (m_checkpoints.isEmpty()) {
+				pos = NotesCollectionPosition.toPosition("0");
+				skipCount = 1;
+			}
+			else {
+				pos = NotesCollectionPosition.toPosition(m_checkpoints.get(m_checkpoints.size()-1));
+				skipCount = m_interval;
+			}
+			NotesViewLookupResultData data = m_col.readEntries(pos, m_skipNav, skipCount, m_nav, 1, EnumSet.of(ReadMask.INDEXPOSITION));
+			if (data.getIndexModifiedSequenceNo()!=m_indexModifiedSequenceNo) {
+				//index changed while moving through the view, start again
+				if (++rebuilds > MAX_REBUILDS) {
+					throw new NotesError(0, "View index keeps changing while computing collection positions");
+				}
+				clear();
+				m_indexModifiedSequenceNo = data.getIndexModifiedSequenceNo();
+				continue;
+			}
+			
+			List<NotesViewEntryData> entries = data.getEntries();
+			if (entries.isEmpty()) {
+				//empty view
+				m_endReached = true;
+				m_entryCount = 0;
+				break;
+			}
+			String entryPos = entries.get(0).getPositionStr();
+			if (m_checkpoints.isEmpty()) {
+				m_checkpoints.add(entryPos);
+				m_lastPosition = entryPos;
+				m_entryCount = 1;
+			}
+			else if (data.getSkipCount() < m_interval) {
+				//we hit the end of the view
+				m_endReached = true;
+				m_lastPosition = entryPos;
+				m_entryCount = (m_checkpoints.size()-1) * m_interval + data.getSkipCount() + 1;
+				break;
+			}
+			else {
+				m_checkpoints.add(entryPos);
+				m_lastPosition = entryPos;
+				m_entryCount = (m_checkpoints.size()-1) * m_interval + 1;
+			}
+		}
+		
+		if (m_checkpoints.isEmpty()) {
+			return -1;
+		}
+		if (m_endReached && entryIndex >= m_entryCount) {
+			return -1;
+		}
+		return Math.min(targetCheckpointIdx, m_checkpoints.size()-1);
+	}
+}
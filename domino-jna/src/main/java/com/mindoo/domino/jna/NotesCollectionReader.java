@@ -29,6 +29,8 @@ public abstract class NotesCollectionReader {
 	private int m_bufferSize;
 	private EnumSet<ReadMask> m_returnMask;
 	private boolean m_descending;
+	private boolean[] m_decodeColumns;
+	private NotesCollectionPositionIndex m_positionIndex;
 	
 	/**
 	 * Creates a new instance
@@ -56,7 +58,7 @@ public abstract class NotesCollectionReader {
 	 * @param returnNavigator navigator type that defines which collection entries should be read
 	 * @param bufferSize number of entries to read in one API call (used to improve performance when reading a lot of data)
 	 * @param returnMask bitmask of view data to be returned
-	 * @param decodeColumns optional array to only decode specific view columns
+	 * @param decodeColumns optional array to only decode specific view columns (see {@link NotesCollection#getColumnsToDecode(String...)}), values of other columns are returned as null
 	 */
 	public NotesCollectionReader(NotesCollection col, String startPos, int skipCount, EnumSet<Navigate> skipNavigator,
 			EnumSet<Navigate> returnNavigator, int bufferSize, EnumSet<ReadMask> returnMask, boolean[] decodeColumns) {
@@ -69,6 +71,38 @@ public abstract class NotesCollectionReader {
 		m_bufferSize = bufferSize;
 		m_returnMask = returnMask;
 		m_descending = NotesCollection.isDescendingNav(m_returnNav);
+		m_decodeColumns = decodeColumns;
+	}
+	
+	/**
+	 * Sets an optional position index to find the last view entry without moving
+	 * through the whole view, e.g. to start reading at position "last" or to read
+	 * backwards. The index must count all entries ({@link Navigate#NEXT}) and
+	 * can be shared between multiple readers of the same collection.
+	 * 
+	 * @param positionIndex index or null
+	 * @throws IllegalArgumentException if the index does not use {@link Navigate#NEXT} as navigator
+	 */
+	public void setPositionIndex(NotesCollectionPositionIndex positionIndex) {
+		if (positionIndex!=null && !EnumSet.of(Navigate.NEXT).equals(positionIndex.getNavigator())) {
+			throw new IllegalArgumentException("Position index needs to use navigator "+EnumSet.of(Navigate.NEXT)+": "+positionIndex.getNavigator());
+		}
+		m_positionIndex = positionIndex;
+	}
+	
+	/**
+	 * Returns the last view entry position, either from the position index or by
+	 * skipping to the end of the view
+	 * 
+	 * @return position or null if the view is empty
+	 */
+	private String findLastPosition() {
+		if (m_positionIndex!=null) {
+			return m_positionIndex.getLastPosition();
+		}
+		NotesViewLookupResultData viewData = m_col.readEntries(NotesCollectionPosition.toPosition("0"), EnumSet.of(Navigate.NEXT, Navigate.CONTINUE), Integer.MAX_VALUE, m_returnNav, 1, EnumSet.of(ReadMask.INDEXPOSITION));
+		List<NotesViewEntryData> entries = viewData.getEntries();
+		return entries.isEmpty() ? null : entries.get(0).getPositionStr();
 	}
 	
 	/**
@@ -94,23 +128,31 @@ public abstract class NotesCollectionReader {
 					hasFirst=true;
 					//skip 1 entry and start reading from the first relevant entry
 					m_pos = NotesCollectionPosition.toPosition("0");
-					viewData = m_col.readEntries(m_pos, m_skipNav, 1 + m_skipCount, m_returnNav, m_bufferSize, m_returnMask);
+					viewData = m_col.readEntries(m_pos, m_skipNav, 1 + m_skipCount, m_returnNav, m_bufferSize, m_returnMask, m_decodeColumns);
 				}
 				else {
-					viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.CURRENT), 0, m_returnNav, m_bufferSize, m_returnMask);
+					viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.CURRENT), 0, m_returnNav, m_bufferSize, m_returnMask, m_decodeColumns);
 				}
 			}
 			else if ("last".equals(m_posStr)) {
 				//start reading from the end of the view
 				if (firstRun) {
-					//move all the way to the end of the view and start reading from there
-					m_pos = NotesCollectionPosition.toPosition("0");
 					hasLast=true;
 					
-					viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.NEXT, Navigate.CONTINUE), Integer.MAX_VALUE, m_returnNav, m_bufferSize, m_returnMask);
+					String lastPos = m_positionIndex==null ? null : m_positionIndex.getLastPosition();
+					if (lastPos!=null) {
+						//jump to the last entry and start reading from there
+						m_pos = NotesCollectionPosition.toPosition(lastPos);
+						viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.CURRENT), 0, m_returnNav, m_bufferSize, m_returnMask, m_decodeColumns);
+					}
+					else {
+						//move all the way to the end of the view and start reading from there
+						m_pos = NotesCollectionPosition.toPosition("0");
+						viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.NEXT, Navigate.CONTINUE), Integer.MAX_VALUE, m_returnNav, m_bufferSize, m_returnMask, m_decodeColumns);
+					}
 				}
 				else {
-					viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.CURRENT), 0, m_returnNav, m_bufferSize, m_returnMask);
+					viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.CURRENT), 0, m_returnNav, m_bufferSize, m_returnMask, m_decodeColumns);
 				}
 			}
 			else {
@@ -118,13 +160,8 @@ public abstract class NotesCollectionReader {
 				if (firstRun) {
 					if (m_descending) {
 						//read the last view entry position to see where start here
-						m_pos = NotesCollectionPosition.toPosition("0");
-						
-						viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.NEXT, Navigate.CONTINUE), Integer.MAX_VALUE, m_returnNav, 1, EnumSet.of(ReadMask.INDEXPOSITION));
-						List<NotesViewEntryData> entries = viewData.getEntries();
-						if (entries.size()>0) {
-							NotesViewEntryData lastEntryData = entries.get(0);
-							String comparePos = lastEntryData.getPositionStr();
+						String comparePos = findLastPosition();
+						if (comparePos!=null) {
 							hasLast = comparePos.equals(m_posStr);
 						}
 					}
@@ -143,7 +180,7 @@ public abstract class NotesCollectionReader {
 					
 					m_pos = NotesCollectionPosition.toPosition(m_posStr);
 				}
-				viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.CURRENT), 0, m_returnNav, m_bufferSize, m_returnMask);
+				viewData = m_col.readEntries(m_pos, EnumSet.of(Navigate.CURRENT), 0, m_returnNav, m_bufferSize, m_returnMask, m_decodeColumns);
 			}
 			
 //			if (m_descending) {
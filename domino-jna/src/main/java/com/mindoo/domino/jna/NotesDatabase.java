@@ -338,6 +338,16 @@ public class NotesDatabase implements IRecyclableNotesObject {
 		return m_session;
 	}
 	
+	/**
+	 * Internal method to replace the session, used by {@link NotesDatabasePool} when a pooled
+	 * database is used with the session of another request
+	 * 
+	 * @param session session
+	 */
+	void setSession(Session session) {
+		m_session = session;
+	}
+	
 	/**
 	 * Returns the server of the database
 	 * 
@@ -0,0 +1,374 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+
+import lotus.domino.NotesException;
+import lotus.domino.Session;
+
+/**
+ * Pool of open {@link NotesDatabase} handles to avoid the costs of NSFDbOpenExtended,
+ * especially the network round trips to open remote databases, for short requests.<br>
+ * <br>
+ * Databases are pooled per server, file path and effective user, so the handles of
+ * different users, which have been opened with different names lists, are never shared.<br>
+ * <br>
+ * A database returned by {@link #lease(Session, String, String, String)} is registered in the
+ * active {@link NotesGC} block like a newly opened database. When it is passed to
+ * {@link #release(NotesDatabase)}, it is removed from the {@link NotesGC} block again, so that
+ * it is not recycled at the end of the block. Idle databases that have been recycled are discarded,
+ * idle databases that have not been used for longer than the maximum idle time are closed by
+ * {@link #evictIdle()}, which is also called on every lease.<br>
+ * <br>
+ * {@link #lease(Session, String, String, String)} and {@link #release(NotesDatabase)} need to be called in a
+ * {@link NotesGC#runWithAutoGC(java.util.concurrent.Callable)} block. {@link #evictIdle()} and {@link #clear()}
+ * can also be called outside of such a block (from a thread initialized for the Notes C API), e.g. at shutdown
+ * or periodically from a scheduled task, so that a pool that is not used for a while does not keep its handles open.<br>
+ * <br>
+ * If pooled databases are used with a {@link NotesCollectionPool}, pass it to {@link #setCollectionPool(NotesCollectionPool)},
+ * so that its idle collections are closed before a database is recycled by this pool.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * NotesDatabase db = pool.lease(session, "Server/Org", "names.nsf", "CN=John Doe/O=Org");
+ * try {
+ * 	...
+ * }
+ * finally {
+ * 	pool.release(db);
+ * }
+ * </pre>
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesDatabasePool {
+	private int m_maxIdlePerKey;
+	private long m_maxIdleMillis;
+	private Map<String, LinkedList<IdleDatabase>> m_idleByKey;
+	private Map<NotesDatabase, String> m_leasedKeys;
+	private long m_leaseCount;
+	private long m_openCount;
+	private NotesCollectionPool m_collectionPool;
+	
+	/**
+	 * Creates a new pool
+	 * 
+	 * @param maxIdlePerKey maximum number of idle databases per server, file path and user
+	 * @param maxIdleMillis time in milliseconds after which idle databases are closed
+	 */
+	public NotesDatabasePool(int maxIdlePerKey, long maxIdleMillis) {
+		if (maxIdlePerKey <= 0)
+			throw new IllegalArgumentException("Max idle databases per key must be greater than 0: "+maxIdlePerKey);
+		if (maxIdleMillis <= 0)
+			throw new IllegalArgumentException("Max idle time must be greater than 0: "+maxIdleMillis);
+		
+		m_maxIdlePerKey = maxIdlePerKey;
+		m_maxIdleMillis = maxIdleMillis;
+		m_idleByKey = new HashMap<String, LinkedList<IdleDatabase>>();
+		//databases recycled by the NotesGC block instead of being released must not be kept
+		m_leasedKeys = new WeakHashMap<NotesDatabase, String>();
+	}
+	
+	/**
+	 * Returns the maximum number of idle databases per server, file path and user
+	 * 
+	 * @return number
+	 */
+	public int getMaxIdlePerKey() {
+		return m_maxIdlePerKey;
+	}
+	
+	/**
+	 * Returns the time in milliseconds after which idle databases are closed
+	 * 
+	 * @return time
+	 */
+	public long getMaxIdleMillis() {
+		return m_maxIdleMillis;
+	}
+	
+	/**
+	 * Sets a pool for the collections of the pooled databases. Idle collections of a database
+	 * are closed via {@link NotesCollectionPool#clear(NotesDatabase)} before the database is recycled.
+	 * 
+	 * @param collectionPool collection pool or null
+	 */
+	public synchronized void setCollectionPool(NotesCollectionPool collectionPool) {
+		m_collectionPool = collectionPool;
+	}
+	
+	/**
+	 * Returns the pool for the collections of the pooled databases
+	 * 
+	 * @return collection pool or null
+	 */
+	public synchronized NotesCollectionPool getCollectionPool() {
+		return m_collectionPool;
+	}
+	
+	/**
+	 * Returns an open database for the effective user of the session, either an idle
+	 * database of the pool or a newly opened one
+	 * 
+	 * @param session session
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @return database
+	 */
+	public NotesDatabase lease(Session session, String server, String filePath) {
+		String effectiveUserName;
+		try {
+			effectiveUserName = session.getEffectiveUserName();
+		} catch (NotesException e) {
+			throw new NotesError(e.id, NotesErrorUtils.errToString((short) e.id));
+		}
+		return lease(session, server, filePath, effectiveUserName);
+	}
+	
+	/**
+	 * Returns an open database, either an idle database of the pool or a newly opened one
+	 * 
+	 * @param session session
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param asUserCanonical user context to open database or null to run as server
+	 * @return database
+	 */
+	public synchronized NotesDatabase lease(Session session, String server, String filePath, String asUserCanonical) {
+		if (filePath==null)
+			throw new NullPointerException("filePath is null");
+		if (!NotesGC.isAutoGCActive())
+			throw new IllegalStateException("Databases can only be leased in a NotesGC.runWithAutoGC block");
+		
+		evictIdle();
+		m_leaseCount++;
+		
+		String key = createKey(server, filePath, asUserCanonical);
+		LinkedList<IdleDatabase> idleDatabases = m_idleByKey.get(key);
+		while (idleDatabases!=null && !idleDatabases.isEmpty()) {
+			//use the database returned last
+			NotesDatabase db = idleDatabases.removeLast().m_database;
+			if (db.isRecycled()) {
+				continue;
+			}
+			NotesGC.__objectCreated(NotesDatabase.class, db);
+			if (db.m_namesList!=null) {
+				NotesGC.__memoryAllocated(db.m_namesList);
+			}
+			db.setSession(session);
+			m_leasedKeys.put(db, key);
+			return db;
+		}
+		
+		m_openCount++;
+		NotesDatabase db = new NotesDatabase(session, server, filePath, asUserCanonical);
+		m_leasedKeys.put(db, key);
+		return db;
+	}
+	
+	/**
+	 * Computes the pool key of a database
+	 * 
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param asUserCanonical user or null for server
+	 * @return key
+	 */
+	private static String createKey(String server, String filePath, String asUserCanonical) {
+		String serverCanonical = server==null ? "" : NotesNamingUtils.toCanonicalName(server);
+		String userCanonical = asUserCanonical==null ? "" : NotesNamingUtils.toCanonicalName(asUserCanonical);
+		return serverCanonical.toLowerCase()+"!!"+filePath.replace('\\', '/').toLowerCase()+"|"+userCanonical.toLowerCase();
+	}
+	
+	/**
+	 * Stores a database returned by {@link #lease(Session, String, String, String)} in the pool.
+	 * The database must not be used by the caller afterwards. Recycled databases are ignored,
+	 * databases that have not been leased from this pool are recycled.
+	 * 
+	 * @param db database
+	 */
+	public synchronized void release(NotesDatabase db) {
+		if (!NotesGC.isAutoGCActive())
+			throw new IllegalStateException("Databases can only be released in a NotesGC.runWithAutoGC block");
+		
+		String key = m_leasedKeys.remove(db);
+		if (db.isRecycled()) {
+			return;
+		}
+		if (key==null) {
+			recycle(db);
+			return;
+		}
+		
+		LinkedList<IdleDatabase> idleDatabases = m_idleByKey.get(key);
+		if (idleDatabases==null) {
+			idleDatabases = new LinkedList<IdleDatabase>();
+			m_idleByKey.put(key, idleDatabases);
+		}
+		if (idleDatabases.size() >= m_maxIdlePerKey) {
+			recycle(db);
+			return;
+		}
+		
+		//the pool now owns the handles, so they must not be recycled at the end of the NotesGC block
+		NotesGC.__objectBeeingBeRecycled(NotesDatabase.class, db);
+		if (db.m_namesList!=null && !db.m_namesList.isFreed()) {
+			NotesGC.__memoryBeeingFreed(db.m_namesList);
+		}
+		idleDatabases.add(new IdleDatabase(db, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Closes all databases that have been idle for longer than the maximum idle time
+	 */
+	public synchronized void evictIdle() {
+		long minLastUsed = System.currentTimeMillis() - m_maxIdleMillis;
+		List<NotesDatabase> databasesToClose = new ArrayList<NotesDatabase>();
+		
+		Iterator<LinkedList<IdleDatabase>> idleDatabasesIt = m_idleByKey.values().iterator();
+		while (idleDatabasesIt.hasNext()) {
+			LinkedList<IdleDatabase> currIdleDatabases = idleDatabasesIt.next();
+			//databases are sorted by the time they have been returned
+			while (!currIdleDatabases.isEmpty() && currIdleDatabases.getFirst().m_lastUsed < minLastUsed) {
+				databasesToClose.add(currIdleDatabases.removeFirst().m_database);
+			}
+			if (currIdleDatabases.isEmpty()) {
+				idleDatabasesIt.remove();
+			}
+		}
+		close(databasesToClose);
+	}
+	
+	/**
+	 * Closes all idle databases of the pool. Databases currently leased are not affected.
+	 */
+	public synchronized void clear() {
+		List<NotesDatabase> databasesToClose = new ArrayList<NotesDatabase>();
+		for (LinkedList<IdleDatabase> currIdleDatabases : m_idleByKey.values()) {
+			for (IdleDatabase currIdleDb : currIdleDatabases) {
+				databasesToClose.add(currIdleDb.m_database);
+			}
+		}
+		m_idleByKey.clear();
+		close(databasesToClose);
+	}
+	
+	/**
+	 * Closes idle databases. Uses a temporary {@link NotesGC} block if none is active.
+	 * 
+	 * @param databases databases
+	 */
+	private void close(final List<NotesDatabase> databases) {
+		if (databases.isEmpty()) {
+			return;
+		}
+		if (NotesGC.isAutoGCActive()) {
+			for (NotesDatabase currDb : databases) {
+				close(currDb);
+			}
+			return;
+		}
+		
+		try {
+			NotesGC.runWithAutoGC(new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					for (NotesDatabase currDb : databases) {
+						close(currDb);
+					}
+					return null;
+				}
+			});
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new NotesError(0, "Error closing idle databases", e);
+		}
+	}
+	
+	/**
+	 * Closes an idle database
+	 * 
+	 * @param db database
+	 */
+	private void close(NotesDatabase db) {
+		if (db.isRecycled()) {
+			return;
+		}
+		//register the handles in the current NotesGC block, so that recycle() can remove them again
+		NotesGC.__objectCreated(NotesDatabase.class, db);
+		if (db.m_namesList!=null && !db.m_namesList.isFreed()) {
+			NotesGC.__memoryAllocated(db.m_namesList);
+		}
+		recycle(db);
+	}
+	
+	/**
+	 * Recycles a database after closing its idle collections in the collection pool
+	 * 
+	 * @param db database
+	 */
+	private void recycle(NotesDatabase db) {
+		if (m_collectionPool!=null) {
+			m_collectionPool.clear(db);
+		}
+		db.recycle();
+	}
+	
+	/**
+	 * Returns the number of idle databases in the pool
+	 * 
+	 * @return count
+	 */
+	public synchronized int getIdleCount() {
+		int count = 0;
+		for (LinkedList<IdleDatabase> currIdleDatabases : m_idleByKey.values()) {
+			count += currIdleDatabases.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of calls to {@link #lease(Session, String, String, String)}
+	 * 
+	 * @return count
+	 */
+	public synchronized long getLeaseCount() {
+		return m_leaseCount;
+	}
+	
+	/**
+	 * Returns the number of databases that have been opened by {@link #lease(Session, String, String, String)}
+	 * because no idle database was available
+	 * 
+	 * @return count
+	 */
+	public synchronized long getOpenCount() {
+		return m_openCount;
+	}
+	
+	/**
+	 * Database in the pool with the time it has been returned
+	 */
+	private static class IdleDatabase {
+		private NotesDatabase m_database;
+		private long m_lastUsed;
+		
+		IdleDatabase(NotesDatabase database, long lastUsed) {
+			m_database = database;
+			m_lastUsed = lastUsed;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.mindoo.domino.jna;
+
+import java.util.Arrays;
+
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.internal.NotesJNAContext;
+import com.mindoo.domino.jna.internal.NotesSearchKeyEncoder;
+import com.sun.jna.Memory;
+
+/**
+ * Precompiled search keys for the key lookup methods of {@link NotesCollection}.<br>
+ * <br>
+ * The keys are encoded to the NIF format once in the constructor. Pass the object as the only
+ * lookup key, e.g. <code>findByKey(EnumSet.of(Find.EQUAL), searchKey)</code>, to skip encoding for
+ * lookups that are done repeatedly. Instances are immutable and can be shared between threads.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesSearchKey {
+	private Object[] m_keys;
+	private Memory m_encodedKeys;
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param keys lookup keys, can be {@link String}, double / {@link Double}, int / {@link Integer}, {@link java.util.Date}, {@link java.util.Calendar}, {@link java.util.Date}[] or {@link java.util.Calendar}[] with two elements for date ranges
+	 */
+	public NotesSearchKey(Object... keys) {
+		if (keys==null || keys.length==0)
+			throw new IllegalArgumentException("No search keys specified");
+		
+		m_keys = keys.clone();
+		try {
+			if (NotesJNAContext.is64Bit()) {
+				m_encodedKeys = NotesSearchKeyEncoder.b64_encodeKeys(m_keys);
+			}
+			else {
+				m_encodedKeys = NotesSearchKeyEncoder.b32_encodeKeys(m_keys);
+			}
+		} catch (Throwable e) {
+			throw new NotesError(0, "Could not encode search keys", e);
+		}
+	}
+	
+	/**
+	 * Returns a copy of the lookup keys
+	 * 
+	 * @return keys
+	 */
+	public Object[] getKeys() {
+		return m_keys.clone();
+	}
+	
+	/**
+	 * Returns the number of lookup keys
+	 * 
+	 * @return number of keys
+	 */
+	public int getKeyCount() {
+		return m_keys.length;
+	}
+	
+	/**
+	 * Returns the key at the specified index
+	 * 
+	 * @param index index
+	 * @return key
+	 */
+	public Object getKey(int index) {
+		return m_keys[index];
+	}
+	
+	/**
+	 * Returns the encoded keys. The buffer must not be modified.
+	 * 
+	 * @return key buffer for NIF
+	 */
+	Memory getEncodedKeys() {
+		return m_encodedKeys;
+	}
+	
+	/**
+	 * Returns the lookup keys, unwrapping precompiled keys passed to a lookup method
+	 * as the only key
+	 * 
+	 * @param keys lookup keys
+	 * @return keys
+	 */
+	static Object[] unwrap(Object[] keys) {
+		if (keys!=null && keys.length==1 && keys[0] instanceof NotesSearchKey) {
+			return ((NotesSearchKey) keys[0]).m_keys;
+		}
+		return keys;
+	}
+	
+	@Override
+	public String toString() {
+		return "NotesSearchKey [keys="+Arrays.toString(m_keys)+"]";
+	}
+}
@@ -0,0 +1,430 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.utils.LMBCSString;
+
+/**
+ * Column-oriented container for view data read via
+ * {@link NotesCollection#getAllEntriesColumnar(String, int, java.util.EnumSet, int, java.util.EnumSet, boolean[])}.<br>
+ * <br>
+ * Instead of creating a {@link NotesViewEntryData} object with an <code>Object[]</code> per row,
+ * the column values are stored in primitive arrays per column:<br>
+ * <ul>
+ * <li>numbers in a <code>double[]</code> array</li>
+ * <li>date/time values as milliseconds since 1970-01-01 00:00 GMT in a <code>long[]</code> array
+ * (see {@link com.mindoo.domino.jna.utils.NotesDateTimeUtils#innardsToEpochMillis(int, int)})</li>
+ * <li>strings dictionary-encoded as <code>int[]</code> array of indexes into a list of distinct values</li>
+ * </ul>
+ * Lists and ranges are stored as objects. Since a column may contain values of different data types,
+ * {@link ColumnData#getValueType(int)} returns the type of each row value.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesViewColumnarData {
+	/** row does not have a value in this column */
+	public static final byte VALUE_EMPTY = 0;
+	/** number value, see {@link ColumnData#getNumberArray()} */
+	public static final byte VALUE_NUMBER = 1;
+	/** date/time value, see {@link ColumnData#getDateArray()} */
+	public static final byte VALUE_DATE = 2;
+	/** string value, see {@link ColumnData#getStringIndexArray()} */
+	public static final byte VALUE_STRING = 3;
+	/** text list, number list/range or date list/range, see {@link ColumnData#getValue(int)} */
+	public static final byte VALUE_OTHER = 4;
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private int m_rowCount;
+	private int[] m_noteIds;
+	private List<ColumnData> m_columns;
+	
+	/**
+	 * Creates a new empty instance
+	 */
+	public NotesViewColumnarData() {
+		m_noteIds = new int[INITIAL_CAPACITY];
+		m_columns = new ArrayList<ColumnData>();
+	}
+	
+	/**
+	 * Returns the number of rows
+	 * 
+	 * @return rows
+	 */
+	public int getRowCount() {
+		return m_rowCount;
+	}
+	
+	/**
+	 * Returns the note id of a row. Only available if the data has been read with {@link ReadMask#NOTEID}.
+	 * 
+	 * @param row row index
+	 * @return note id or 0
+	 */
+	public int getNoteId(int row) {
+		checkRow(row);
+		return m_noteIds[row];
+	}
+	
+	/**
+	 * Returns the note ids of all rows
+	 * 
+	 * @return note ids, array with {@link #getRowCount()} elements
+	 */
+	public int[] getNoteIds() {
+		return Arrays.copyOf(m_noteIds, m_rowCount);
+	}
+	
+	/**
+	 * Returns the number of columns found in the view data
+	 * 
+	 * @return number of columns
+	 */
+	public int getColumnCount() {
+		return m_columns.size();
+	}
+	
+	/**
+	 * Returns the data of a column
+	 * 
+	 * @param columnIndex column index as returned by {@link NotesCollection#getColumnValuesIndex(String)}
+	 * @return column data, empty if the column does not exist in the view data
+	 */
+	public ColumnData getColumn(int columnIndex) {
+		if (columnIndex<0)
+			throw new IndexOutOfBoundsException("Invalid column index: "+columnIndex);
+		
+		if (columnIndex >= m_columns.size()) {
+			return new ColumnData(this);
+		}
+		return m_columns.get(columnIndex);
+	}
+	
+	/**
+	 * Adds a new row. Called by the decoder of the NIF result buffer.
+	 * 
+	 * @param noteId note id or 0 if not read
+	 * @return row index
+	 */
+	public int addRow(int noteId) {
+		if (m_rowCount == m_noteIds.length) {
+			m_noteIds = Arrays.copyOf(m_noteIds, m_noteIds.length * 2);
+		}
+		m_noteIds[m_rowCount] = noteId;
+		return m_rowCount++;
+	}
+	
+	/**
+	 * Returns the data of a column and creates it if it does not exist yet. Called by the
+	 * decoder of the NIF result buffer.
+	 * 
+	 * @param columnIndex column index
+	 * @return column data
+	 */
+	public ColumnData getOrCreateColumn(int columnIndex) {
+		while (m_columns.size() <= columnIndex) {
+			m_columns.add(new ColumnData(this));
+		}
+		return m_columns.get(columnIndex);
+	}
+	
+	/**
+	 * Removes all rows, e.g. to restart reading after a view index change
+	 */
+	public void clear() {
+		m_rowCount = 0;
+		m_noteIds = new int[INITIAL_CAPACITY];
+		m_columns.clear();
+	}
+	
+	/**
+	 * Shrinks all internal arrays to the number of rows to free unused memory
+	 */
+	public void trimToSize() {
+		m_noteIds = Arrays.copyOf(m_noteIds, m_rowCount);
+		for (ColumnData currColumn : m_columns) {
+			currColumn.trimToSize(m_rowCount);
+		}
+	}
+	
+	private void checkRow(int row) {
+		if (row<0 || row>=m_rowCount)
+			throw new IndexOutOfBoundsException("Invalid row index: "+row+", row count: "+m_rowCount);
+	}
+	
+	@Override
+	public String toString() {
+		return "NotesViewColumnarData [rows="+m_rowCount+", columns="+m_columns.size()+"]";
+	}
+	
+	/**
+	 * Values of a single view column. The arrays returned by {@link #getNumberArray()},
+	 * {@link #getDateArray()} and {@link #getStringIndexArray()} may be longer than the
+	 * number of rows and contain 0 for rows with other value types.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static class ColumnData {
+		private NotesViewColumnarData m_parent;
+		private byte[] m_valueTypes;
+		private double[] m_numbers;
+		private long[] m_dates;
+		private int[] m_stringIndexes;
+		private Object[] m_otherValues;
+		
+		private List<String> m_stringDictionary;
+		private Map<LMBCSString,Integer> m_stringDictionaryIndex;
+		
+		private int m_numberCount;
+		private double m_numberSum;
+		
+		private ColumnData(NotesViewColumnarData parent) {
+			m_parent = parent;
+			m_valueTypes = new byte[0];
+		}
+		
+		/**
+		 * Returns the type of a row value
+		 * 
+		 * @param row row index
+		 * @return type, e.g. {@link NotesViewColumnarData#VALUE_NUMBER}
+		 */
+		public byte getValueType(int row) {
+			m_parent.checkRow(row);
+			return row < m_valueTypes.length ? m_valueTypes[row] : VALUE_EMPTY;
+		}
+		
+		/**
+		 * Returns the number value of a row
+		 * 
+		 * @param row row index
+		 * @return number or 0 if the row does not contain a number
+		 */
+		public double getNumber(int row) {
+			return getValueType(row)==VALUE_NUMBER ? m_numbers[row] : 0;
+		}
+		
+		/**
+		 * Returns the date/time value of a row
+		 * 
+		 * @param row row index
+		 * @return milliseconds since 1970-01-01 00:00 GMT or 0 if the row does not contain a date/time
+		 */
+		public long getDate(int row) {
+			return getValueType(row)==VALUE_DATE ? m_dates[row] : 0;
+		}
+		
+		/**
+		 * Returns the string value of a row
+		 * 
+		 * @param row row index
+		 * @return string or null if the row does not contain a string
+		 */
+		public String getString(int row) {
+			return getValueType(row)==VALUE_STRING ? m_stringDictionary.get(m_stringIndexes[row]) : null;
+		}
+		
+		/**
+		 * Returns the row value as object
+		 * 
+		 * @param row row index
+		 * @return {@link Double}, {@link Date}, {@link String}, {@link List} or null for empty values
+		 */
+		public Object getValue(int row) {
+			switch (getValueType(row)) {
+			case VALUE_NUMBER:
+				return Double.valueOf(m_numbers[row]);
+			case VALUE_DATE:
+				return new Date(m_dates[row]);
+			case VALUE_STRING:
+				return m_stringDictionary.get(m_stringIndexes[row]);
+			case VALUE_OTHER:
+				return m_otherValues[row];
+			default:
+				return null;
+			}
+		}
+		
+		/**
+		 * Returns the internal array of number values for fast aggregation. Use
+		 * {@link #getValueType(int)} to check which rows contain numbers.
+		 * 
+		 * @return array, not a copy, or an empty array if the column does not contain numbers
+		 */
+		public double[] getNumberArray() {
+			return m_numbers==null ? new double[0] : m_numbers;
+		}
+		
+		/**
+		 * Returns the internal array of date/time values as milliseconds since 1970-01-01 00:00 GMT.
+		 * Use {@link #getValueType(int)} to check which rows contain date/time values.
+		 * 
+		 * @return array, not a copy, or an empty array if the column does not contain date/time values
+		 */
+		public long[] getDateArray() {
+			return m_dates==null ? new long[0] : m_dates;
+		}
+		
+		/**
+		 * Returns the internal array of indexes into {@link #getStringDictionary()}.
+		 * Use {@link #getValueType(int)} to check which rows contain strings.
+		 * 
+		 * @return array, not a copy, or an empty array if the column does not contain strings
+		 */
+		public int[] getStringIndexArray() {
+			return m_stringIndexes==null ? new int[0] : m_stringIndexes;
+		}
+		
+		/**
+		 * Returns the distinct string values of the column in the order they have been read
+		 * 
+		 * @return strings
+		 */
+		public List<String> getStringDictionary() {
+			if (m_stringDictionary==null) {
+				return new ArrayList<String>(0);
+			}
+			return new ArrayList<String>(m_stringDictionary);
+		}
+		
+		/**
+		 * Returns the number of rows containing a number
+		 * 
+		 * @return count
+		 */
+		public int getNumberCount() {
+			return m_numberCount;
+		}
+		
+		/**
+		 * Returns the sum of all number values in the column
+		 * 
+		 * @return sum
+		 */
+		public double getNumberSum() {
+			return m_numberSum;
+		}
+		
+		/**
+		 * Sets a number value. Called by the decoder of the NIF result buffer.
+		 * 
+		 * @param row row index
+		 * @param value value
+		 */
+		public void setNumber(int row, double value) {
+			setValueType(row, VALUE_NUMBER);
+			if (m_numbers==null) {
+				m_numbers = new double[m_valueTypes.length];
+			}
+			else if (m_numbers.length < m_valueTypes.length) {
+				m_numbers = Arrays.copyOf(m_numbers, m_valueTypes.length);
+			}
+			m_numbers[row] = value;
+			m_numberCount++;
+			m_numberSum += value;
+		}
+		
+		/**
+		 * Sets a date/time value. Called by the decoder of the NIF result buffer.
+		 * 
+		 * @param row row index
+		 * @param epochMillis milliseconds since 1970-01-01 00:00 GMT
+		 */
+		public void setDate(int row, long epochMillis) {
+			setValueType(row, VALUE_DATE);
+			if (m_dates==null) {
+				m_dates = new long[m_valueTypes.length];
+			}
+			else if (m_dates.length < m_valueTypes.length) {
+				m_dates = Arrays.copyOf(m_dates, m_valueTypes.length);
+			}
+			m_dates[row] = epochMillis;
+		}
+		
+		/**
+		 * Sets a string value. Called by the decoder of the NIF result buffer. The LMBCS data is
+		 * only converted to a Java string the first time the value occurs in the column.
+		 * 
+		 * @param row row index
+		 * @param value LMBCS encoded string
+		 */
+		public void setString(int row, LMBCSString value) {
+			setValueType(row, VALUE_STRING);
+			if (m_stringIndexes==null) {
+				m_stringIndexes = new int[m_valueTypes.length];
+				m_stringDictionary = new ArrayList<String>();
+				m_stringDictionaryIndex = new HashMap<LMBCSString,Integer>();
+			}
+			else if (m_stringIndexes.length < m_valueTypes.length) {
+				m_stringIndexes = Arrays.copyOf(m_stringIndexes, m_valueTypes.length);
+			}
+			
+			Integer idx = m_stringDictionaryIndex.get(value);
+			if (idx==null) {
+				idx = Integer.valueOf(m_stringDictionary.size());
+				m_stringDictionary.add(value.getData().length==0 ? "" : value.getValue());
+				m_stringDictionaryIndex.put(value, idx);
+			}
+			m_stringIndexes[row] = idx.intValue();
+		}
+		
+		/**
+		 * Sets a list or range value. Called by the decoder of the NIF result buffer.
+		 * 
+		 * @param row row index
+		 * @param value value
+		 */
+		public void setOtherValue(int row, Object value) {
+			setValueType(row, VALUE_OTHER);
+			if (value instanceof List) {
+				//store dates of lists like single values
+				List<?> list = (List<?>) value;
+				List<Object> convertedList = new ArrayList<Object>(list.size());
+				for (Object currListValue : list) {
+					convertedList.add(currListValue instanceof Calendar ? ((Calendar) currListValue).getTime() : currListValue);
+				}
+				value = convertedList;
+			}
+			if (m_otherValues==null) {
+				m_otherValues = new Object[m_valueTypes.length];
+			}
+			else if (m_otherValues.length < m_valueTypes.length) {
+				m_otherValues = Arrays.copyOf(m_otherValues, m_valueTypes.length);
+			}
+			m_otherValues[row] = value;
+		}
+		
+		private void setValueType(int row, byte type) {
+			if (row >= m_valueTypes.length) {
+				int newLength = Math.max(row + 1, Math.max(INITIAL_CAPACITY, m_valueTypes.length * 2));
+				m_valueTypes = Arrays.copyOf(m_valueTypes, newLength);
+			}
+			m_valueTypes[row] = type;
+		}
+		
+		private void trimToSize(int rowCount) {
+			int length = Math.min(rowCount, m_valueTypes.length);
+			m_valueTypes = Arrays.copyOf(m_valueTypes, length);
+			if (m_numbers!=null) {
+				m_numbers = Arrays.copyOf(m_numbers, Math.min(length, m_numbers.length));
+			}
+			if (m_dates!=null) {
+				m_dates = Arrays.copyOf(m_dates, Math.min(length, m_dates.length));
+			}
+			if (m_stringIndexes!=null) {
+				m_stringIndexes = Arrays.copyOf(m_stringIndexes, Math.min(length, m_stringIndexes.length));
+			}
+			if (m_otherValues!=null) {
+				m_otherValues = Arrays.copyOf(m_otherValues, Math.min(length, m_otherValues.length));
+			}
+		}
+	}
+}
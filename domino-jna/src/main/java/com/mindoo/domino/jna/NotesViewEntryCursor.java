@@ -0,0 +1,620 @@
+package com.mindoo.domino.jna;
+
+import java.util.EnumSet;
+import java.util.Map;
+
+import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback.Action;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.internal.ItemDecoder;
+import com.mindoo.domino.jna.internal.NotesCAPI;
+import com.mindoo.domino.jna.internal.NotesJNAContext;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder.ItemTableData;
+import com.mindoo.domino.jna.internal.NotesLookupResultBufferDecoder.ItemValueTableData;
+import com.mindoo.domino.jna.structs.NotesCollectionStats;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.sun.jna.Pointer;
+
+/**
+ * Flyweight view entry that reads its data directly from the locked buffer returned by
+ * NIFReadEntries. The same instance is moved from entry to entry, so reading note ids,
+ * positions, counts or number column values does not allocate any objects per entry.
+ * Only methods that return objects (e.g. {@link #getUNID()}, {@link #getColumnValue(int)}
+ * or {@link #toEntryData()}) allocate memory.<br>
+ * <br>
+ * The cursor is only valid within
+ * {@link NotesCollection.ViewCursorCallback#entryRead(Object, NotesViewEntryCursor)}. Do not
+ * store a reference to it, because the underlying buffer is freed after it has been processed.
+ * Use {@link #toEntryData()} to get a copy of the current entry.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesViewEntryCursor {
+	private NotesCollection m_parentCollection;
+	private EnumSet<ReadMask> m_returnMask;
+	private int m_gmtOffset;
+	private boolean m_useDayLight;
+
+	//offsets of the fixed size values relative to the entry start or -1 if not read
+	private int m_noteIdOffset = -1;
+	private int m_unidOffset = -1;
+	private int m_noteClassOffset = -1;
+	private int m_siblingsOffset = -1;
+	private int m_childrenOffset = -1;
+	private int m_descendantsOffset = -1;
+	private int m_anyUnreadOffset = -1;
+	private int m_indentLevelsOffset = -1;
+	private int m_scoreOffset = -1;
+	private int m_unreadOffset = -1;
+	private int m_fixedSize;
+	private int m_statsSize;
+
+	private boolean m_hasPosition;
+	private boolean m_hasSummaryValues;
+	private boolean m_hasSummary;
+
+	//state of the current entry
+	private Pointer m_bufferPtr;
+	private int m_entryStart;
+	private int m_positionOffset;
+	private int m_summaryValuesOffset;
+	private int m_summaryOffset;
+	private int m_nextEntryStart;
+	private int m_indexInBuffer;
+
+	//lazily computed column offsets of the current entry, reused for all entries
+	private boolean m_columnOffsetsComputed;
+	private int m_columnCount;
+	private int[] m_columnValueOffsets = new int[0];
+	private int[] m_columnValueLengths = new int[0];
+
+	/**
+	 * Creates a new instance
+	 *
+	 * @param parentCollection parent collection
+	 * @param returnMask read mask used to read the collection data
+	 */
+	NotesViewEntryCursor(NotesCollection parentCollection, EnumSet<ReadMask> returnMask) {
+		m_parentCollection = parentCollection;
+		m_returnMask = returnMask;
+		m_gmtOffset = NotesDateTimeUtils.getGMTOffset();
+		m_useDayLight = NotesDateTimeUtils.isDaylightTime();
+
+		if (returnMask.contains(ReadMask.COLLECTIONSTATS)) {
+			m_statsSize = new NotesCollectionStats().size();
+		}
+
+		//compute the offsets of the fixed size values, same order as in the NIF buffer
+		int offset = 0;
+		if (returnMask.contains(ReadMask.NOTEID)) {
+			m_noteIdOffset = offset;
+			offset += 4;
+		}
+		if (returnMask.contains(ReadMask.NOTEUNID)) {
+			m_unidOffset = offset;
+			offset += 16;
+		}
+		if (returnMask.contains(ReadMask.NOTECLASS)) {
+			m_noteClassOffset = offset;
+			offset += 2;
+		}
+		if (returnMask.contains(ReadMask.INDEXSIBLINGS)) {
+			m_siblingsOffset = offset;
+			offset += 4;
+		}
+		if (returnMask.contains(ReadMask.INDEXCHILDREN)) {
+			m_childrenOffset = offset;
+			offset += 4;
+		}
+		if (returnMask.contains(ReadMask.INDEXDESCENDANTS)) {
+			m_descendantsOffset = offset;
+			offset += 4;
+		}
+		if (returnMask.contains(ReadMask.INDEXANYUNREAD)) {
+			m_anyUnreadOffset = offset;
+			offset += 2;
+		}
+		if (returnMask.contains(ReadMask.INDENTLEVELS)) {
+			m_indentLevelsOffset = offset;
+			offset += 2;
+		}
+		if (returnMask.contains(ReadMask.SCORE)) {
+			m_scoreOffset = offset;
+			offset += 2;
+		}
+		if (returnMask.contains(ReadMask.INDEXUNREAD)) {
+			m_unreadOffset = offset;
+			offset += 2;
+		}
+		m_fixedSize = offset;
+
+		m_hasPosition = returnMask.contains(ReadMask.INDEXPOSITION);
+		m_hasSummaryValues = returnMask.contains(ReadMask.SUMMARYVALUES);
+		m_hasSummary = returnMask.contains(ReadMask.SUMMARY);
+	}
+
+	/**
+	 * Moves the cursor over all entries of a locked NIF buffer and calls the callback for each entry
+	 *
+	 * @param bufferPtr pointer to the locked buffer
+	 * @param numEntries number of entries in the buffer
+	 * @param callback callback
+	 * @param result result object of the callback
+	 * @return action returned by the callback
+	 *
+	 * @param <T> type of lookup result object
+	 */
+	<T> Action scanBuffer(Pointer bufferPtr, int numEntries, NotesCollection.ViewCursorCallback<T> callback, T result) {
+		m_bufferPtr = bufferPtr;
+		try {
+			int entryStart = m_statsSize;
+			for (int i=0; i<numEntries; i++) {
+				m_indexInBuffer = i;
+				moveTo(entryStart);
+
+				Action action = callback.entryRead(result, this);
+				if (action==Action.Stop) {
+					return action;
+				}
+				entryStart = m_nextEntryStart;
+			}
+			return Action.Continue;
+		}
+		finally {
+			m_bufferPtr = null;
+		}
+	}
+
+	/**
+	 * Moves the cursor to an entry and computes the offsets of its variable length data
+	 *
+	 * @param entryStart offset of the entry in the buffer
+	 */
+	private void moveTo(int entryStart) {
+		m_entryStart = entryStart;
+		m_columnOffsetsComputed = false;
+
+		int offset = entryStart + m_fixedSize;
+		if (m_hasPosition) {
+			m_positionOffset = offset;
+			int level = m_bufferPtr.getShort(offset) & 0xffff;
+			offset += 4 * (level + 2);
+		}
+		if (m_hasSummaryValues) {
+			//ITEM_VALUE_TABLE starts with the total length
+			m_summaryValuesOffset = offset;
+			offset += m_bufferPtr.getShort(offset) & 0xffff;
+		}
+		if (m_hasSummary) {
+			//ITEM_TABLE starts with the total length
+			m_summaryOffset = offset;
+			offset += m_bufferPtr.getShort(offset) & 0xffff;
+		}
+		m_nextEntryStart = offset;
+	}
+
+	private void checkValid() {
+		if (m_bufferPtr==null)
+			throw new IllegalStateException("Cursor can only be used while processing an entry");
+	}
+
+	/**
+	 * Returns the parent collection
+	 *
+	 * @return collection
+	 */
+	public NotesCollection getParent() {
+		return m_parentCollection;
+	}
+
+	/**
+	 * Returns the index of the current entry in the current NIF buffer
+	 *
+	 * @return index
+	 */
+	public int getIndexInBuffer() {
+		return m_indexInBuffer;
+	}
+
+	/**
+	 * Returns the note id of the entry. Only returns a value if {@link ReadMask#NOTEID} is used for the lookup
+	 *
+	 * @return note id or 0
+	 */
+	public int getNoteId() {
+		checkValid();
+		return m_noteIdOffset==-1 ? 0 : m_bufferPtr.getInt(m_entryStart + m_noteIdOffset);
+	}
+
+	/**
+	 * Method to check whether the entry is a category. Only returns a value if {@link ReadMask#NOTEID}
+	 * is used for the lookup
+	 *
+	 * @return true if category
+	 */
+	public boolean isCategory() {
+		return (getNoteId() & NotesCAPI.NOTEID_CATEGORY) == NotesCAPI.NOTEID_CATEGORY;
+	}
+
+	/**
+	 * Method to check whether the entry is a total value. Only returns a value if {@link ReadMask#NOTEID}
+	 * is used for the lookup
+	 *
+	 * @return true if total
+	 */
+	public boolean isTotal() {
+		return (getNoteId() & NotesCAPI.NOTEID_CATEGORY_TOTAL) == NotesCAPI.NOTEID_CATEGORY_TOTAL;
+	}
+
+	/**
+	 * Returns the UNID of the entry. Only returns a value if {@link ReadMask#NOTEUNID} is used for the lookup.
+	 * Allocates a new {@link String}.
+	 *
+	 * @return UNID or null
+	 */
+	public String getUNID() {
+		checkValid();
+		if (m_unidOffset==-1) {
+			return null;
+		}
+		long innardsFile = m_bufferPtr.getLong(m_entryStart + m_unidOffset);
+		long innardsNote = m_bufferPtr.getLong(m_entryStart + m_unidOffset + 8);
+		return NotesStringUtils.toUNID(innardsFile, innardsNote);
+	}
+
+	/**
+	 * Returns the note class. Only returns a value if {@link ReadMask#NOTECLASS} is used for the lookup
+	 *
+	 * @return note class or 0
+	 */
+	public int getNoteClass() {
+		checkValid();
+		return m_noteClassOffset==-1 ? 0 : (m_bufferPtr.getShort(m_entryStart + m_noteClassOffset) & 0xffff);
+	}
+
+	/**
+	 * Returns the sibling count. Only returns a value if {@link ReadMask#INDEXSIBLINGS} is used for the lookup
+	 *
+	 * @return count or 0
+	 */
+	public int getSiblingCount() {
+		checkValid();
+		return m_siblingsOffset==-1 ? 0 : m_bufferPtr.getInt(m_entryStart + m_siblingsOffset);
+	}
+
+	/**
+	 * Returns the child count. Only returns a value if {@link ReadMask#INDEXCHILDREN} is used for the lookup
+	 *
+	 * @return count or 0
+	 */
+	public int getChildCount() {
+		checkValid();
+		return m_childrenOffset==-1 ? 0 : m_bufferPtr.getInt(m_entryStart + m_childrenOffset);
+	}
+
+	/**
+	 * Returns the descendant count. Only returns a value if {@link ReadMask#INDEXDESCENDANTS} is used for the lookup
+	 *
+	 * @return count or 0
+	 */
+	public int getDescendantCount() {
+		checkValid();
+		return m_descendantsOffset==-1 ? 0 : m_bufferPtr.getInt(m_entryStart + m_descendantsOffset);
+	}
+
+	/**
+	 * Returns whether the entry or any descendant is unread. Only returns a value if {@link ReadMask#INDEXANYUNREAD} is used for the lookup
+	 *
+	 * @return true if any unread
+	 */
+	public boolean isAnyUnread() {
+		checkValid();
+		return m_anyUnreadOffset!=-1 && m_bufferPtr.getShort(m_entryStart + m_anyUnreadOffset) == 1;
+	}
+
+	/**
+	 * Returns the indent levels. Only returns a value if {@link ReadMask#INDENTLEVELS} is used for the lookup
+	 *
+	 * @return levels or 0
+	 */
+	public int getIndentLevels() {
+		checkValid();
+		return m_indentLevelsOffset==-1 ? 0 : m_bufferPtr.getShort(m_entryStart + m_indentLevelsOffset);
+	}
+
+	/**
+	 * Returns the fulltext search score. Only returns a value if {@link ReadMask#SCORE} is used for the lookup
+	 *
+	 * @return score or 0
+	 */
+	public int getFTScore() {
+		checkValid();
+		return m_scoreOffset==-1 ? 0 : m_bufferPtr.getShort(m_entryStart + m_scoreOffset);
+	}
+
+	/**
+	 * Returns whether the entry is unread. Only returns a value if {@link ReadMask#INDEXUNREAD} is used for the lookup
+	 *
+	 * @return true if unread
+	 */
+	public boolean isUnread() {
+		checkValid();
+		return m_unreadOffset!=-1 && m_bufferPtr.getShort(m_entryStart + m_unreadOffset) == 1;
+	}
+
+	/**
+	 * Returns the level of the entry in the view (position 1 = level 0, position 1.1 = level 1)
+	 *
+	 * @return level, only available if {@link ReadMask#INDEXPOSITION} is used for the lookup, otherwise the method returns -1
+	 */
+	public int getLevel() {
+		checkValid();
+		return m_hasPosition ? (m_bufferPtr.getShort(m_positionOffset) & 0xffff) : -1;
+	}
+
+	/**
+	 * Returns one element of the entry position without allocating the whole position array,
+	 * e.g. 2 for level 1 of position 1.2.3
+	 *
+	 * @param level level between 0 and {@link #getLevel()}
+	 * @return position element
+	 */
+	public int getPosition(int level) {
+		int entryLevel = getLevel();
+		if (level<0 || level>entryLevel)
+			throw new IndexOutOfBoundsException("Invalid level "+level+", entry level: "+entryLevel);
+
+		return m_bufferPtr.getInt(m_positionOffset + 2 /* level */ + 2 /* MinLevel+MaxLevel */ + 4*level);
+	}
+
+	/**
+	 * Returns the entry position in the view as an int array. Allocates a new array.
+	 *
+	 * @return position or null if {@link ReadMask#INDEXPOSITION} is not used for the lookup
+	 */
+	public int[] getPosition() {
+		int level = getLevel();
+		if (level==-1) {
+			return null;
+		}
+		int[] posArr = new int[level+1];
+		m_bufferPtr.read(m_positionOffset + 2 /* level */ + 2 /* MinLevel+MaxLevel */, posArr, 0, level+1);
+		return posArr;
+	}
+
+	/**
+	 * Returns the entry position in the view as a string (e.g. 1.2.3). Allocates a new {@link String}.
+	 *
+	 * @return position string or empty string if {@link ReadMask#INDEXPOSITION} is not used for the lookup
+	 */
+	public String getPositionStr() {
+		int level = getLevel();
+		if (level==-1) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<=level; i++) {
+			if (i>0)
+				sb.append(".");
+			sb.append(getPosition(i));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Computes the offsets of all column values in the ITEM_VALUE_TABLE of the current entry
+	 */
+	private void computeColumnOffsets() {
+		if (m_columnOffsetsComputed) {
+			return;
+		}
+		checkValid();
+		if (!m_hasSummaryValues) {
+			throw new IllegalStateException("Column values can only be read with ReadMask.SUMMARYVALUES");
+		}
+
+//		ITEM_VALUE_TABLE containing header information (total length of summary, number of items in summary)
+//		WORD containing the length of item #1 (including data type)
+//		WORD containing the length of item #2 (including data type)
+//		...
+//		USHORT containing the data type of item #1
+//		value of item #1
+//		....
+		int itemsCount = m_bufferPtr.getShort(m_summaryValuesOffset + 2) & 0xffff;
+		if (m_columnValueOffsets.length < itemsCount) {
+			m_columnValueOffsets = new int[itemsCount];
+			m_columnValueLengths = new int[itemsCount];
+		}
+
+		int lengthsOffset = m_summaryValuesOffset + NotesCAPI.itemValueTableSize;
+		int valueOffset = lengthsOffset + 2 * itemsCount;
+		for (int i=0; i<itemsCount; i++) {
+			int len = m_bufferPtr.getShort(lengthsOffset + 2*i) & 0xffff;
+			m_columnValueOffsets[i] = valueOffset;
+			m_columnValueLengths[i] = len;
+			valueOffset += len;
+		}
+		m_columnCount = itemsCount;
+		m_columnOffsetsComputed = true;
+	}
+
+	/**
+	 * Returns the number of column values of the entry. Only returns a value if {@link ReadMask#SUMMARYVALUES} is used for the lookup
+	 *
+	 * @return number of column values
+	 */
+	public int getNumberOfColumnsWithValues() {
+		computeColumnOffsets();
+		return m_columnCount;
+	}
+
+	/**
+	 * Returns the index of a column in the column values
+	 *
+	 * @param columnNameOrTitle programmatic column name or title
+	 * @return index or -1 if not found
+	 */
+	public int getColumnValuesIndex(String columnNameOrTitle) {
+		return m_parentCollection.getColumnValuesIndex(columnNameOrTitle);
+	}
+
+	/**
+	 * Returns the data type of a column value, e.g. {@link NotesItem#TYPE_TEXT} or {@link NotesItem#TYPE_NUMBER}
+	 *
+	 * @param columnIndex column values index
+	 * @return data type or 0 if the column value is empty
+	 */
+	public int getColumnDataType(int columnIndex) {
+		computeColumnOffsets();
+		if (columnIndex<0 || columnIndex>=m_columnCount || m_columnValueLengths[columnIndex]==0) {
+			return 0;
+		}
+		return m_bufferPtr.getShort(m_columnValueOffsets[columnIndex]) & 0xffff;
+	}
+
+	/**
+	 * Checks if the column value is empty
+	 *
+	 * @param columnIndex column values index
+	 * @return true if empty
+	 */
+	public boolean isColumnValueEmpty(int columnIndex) {
+		return getColumnDataType(columnIndex)==0;
+	}
+
+	/**
+	 * Reads a number column value without allocating objects
+	 *
+	 * @param columnIndex column values index
+	 * @param defaultValue value to return if the column value is not a number
+	 * @return number
+	 */
+	public double getColumnValueAsDouble(int columnIndex, double defaultValue) {
+		if (getColumnDataType(columnIndex)!=NotesItem.TYPE_NUMBER) {
+			return defaultValue;
+		}
+		return m_bufferPtr.getDouble(m_columnValueOffsets[columnIndex] + 2);
+	}
+
+	/**
+	 * Reads a text column value. Allocates a new {@link String}.
+	 *
+	 * @param columnIndex column values index
+	 * @param defaultValue value to return if the column value is not a text
+	 * @return text
+	 */
+	public String getColumnValueAsString(int columnIndex, String defaultValue) {
+		if (getColumnDataType(columnIndex)!=NotesItem.TYPE_TEXT) {
+			return defaultValue;
+		}
+		int textLen = m_columnValueLengths[columnIndex] - 2;
+		if (textLen<=0) {
+			return "";
+		}
+		return NotesStringUtils.fromLMBCS(m_bufferPtr.share(m_columnValueOffsets[columnIndex] + 2), textLen);
+	}
+
+	/**
+	 * Decodes a column value with the same types as {@link NotesViewEntryData#get(String)}. Allocates
+	 * the value object.
+	 *
+	 * @param columnIndex column values index
+	 * @return value or null if empty
+	 */
+	public Object getColumnValue(int columnIndex) {
+		int dataType = getColumnDataType(columnIndex);
+		if (dataType==0) {
+			return null;
+		}
+		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
+		Pointer valuePtr = m_bufferPtr.share(m_columnValueOffsets[columnIndex] + 2);
+		int valueLength = m_columnValueLengths[columnIndex] - 2;
+
+		if (dataType == NotesItem.TYPE_TEXT) {
+			return ItemDecoder.decodeTextValue(notesAPI, valuePtr, valueLength, false);
+		}
+		else if (dataType == NotesItem.TYPE_TEXT_LIST) {
+			return ItemDecoder.decodeTextListValue(notesAPI, valuePtr, valueLength, false);
+		}
+		else if (dataType == NotesItem.TYPE_NUMBER) {
+			return ItemDecoder.decodeNumber(notesAPI, valuePtr, valueLength);
+		}
+		else if (dataType == NotesItem.TYPE_TIME) {
+			return ItemDecoder.decodeTimeDate(notesAPI, valuePtr, valueLength, m_useDayLight, m_gmtOffset);
+		}
+		else if (dataType == NotesItem.TYPE_NUMBER_RANGE) {
+			return ItemDecoder.decodeNumberList(notesAPI, valuePtr, valueLength);
+		}
+		else if (dataType == NotesItem.TYPE_TIME_RANGE) {
+			return ItemDecoder.decodeTimeDateList(notesAPI, valuePtr, valueLength, m_useDayLight, m_gmtOffset);
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a {@link NotesViewEntryData} object with a copy of the data of the current entry
+	 *
+	 * @return entry data
+	 */
+	public NotesViewEntryData toEntryData() {
+		checkValid();
+
+		NotesViewEntryData data = new NotesViewEntryData(m_parentCollection);
+		if (m_noteIdOffset!=-1) {
+			data.setNoteId(getNoteId());
+		}
+		if (m_unidOffset!=-1) {
+			data.setUNID(m_bufferPtr.getLongArray(m_entryStart + m_unidOffset, 2));
+		}
+		if (m_noteClassOffset!=-1) {
+			data.setNoteClass(getNoteClass());
+		}
+		if (m_siblingsOffset!=-1) {
+			data.setSiblingCount(getSiblingCount());
+		}
+		if (m_childrenOffset!=-1) {
+			data.setChildCount(getChildCount());
+		}
+		if (m_descendantsOffset!=-1) {
+			data.setDescendantCount(getDescendantCount());
+		}
+		if (m_anyUnreadOffset!=-1) {
+			data.setAnyUnread(isAnyUnread());
+		}
+		if (m_indentLevelsOffset!=-1) {
+			data.setIndentLevels(getIndentLevels());
+		}
+		if (m_scoreOffset!=-1) {
+			data.setFTScore(getFTScore());
+		}
+		if (m_unreadOffset!=-1) {
+			data.setUnread(isUnread());
+		}
+		if (m_hasPosition) {
+			data.setPosition(getPosition());
+		}
+		if (m_hasSummaryValues) {
+			ItemValueTableData itemTableData = NotesLookupResultBufferDecoder.decodeItemValueTable(m_bufferPtr.share(m_summaryValuesOffset),
+					m_gmtOffset, m_useDayLight, false);
+			data.setColumnValues(itemTableData.getItemValues());
+			data.setColumnValueSizesInBytes(itemTableData.getItemValueLengthsInBytes());
+		}
+		if (m_hasSummary) {
+			ItemTableData itemTableData = NotesLookupResultBufferDecoder.decodeItemTable(m_bufferPtr.share(m_summaryOffset),
+					m_gmtOffset, m_useDayLight, false);
+			Map<String,Object> itemValues = itemTableData.asMap(false);
+			data.setSummaryData(itemValues);
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the read mask used to read the collection data
+	 *
+	 * @return read mask
+	 */
+	public EnumSet<ReadMask> getReturnMask() {
+		return m_returnMask;
+	}
+}
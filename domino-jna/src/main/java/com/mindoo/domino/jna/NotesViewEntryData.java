@@ -1,7 +1,10 @@
 package com.mindoo.domino.jna;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -9,6 +12,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.collections4.map.CaseInsensitiveMap;
 
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.internal.NotesCAPI;
@@ -74,6 +80,27 @@ public class NotesViewEntryData {
 		private Map<String, Object> m_summaryData;
 		private SoftReference<Map<String, Object>> m_convertedDataRef;
 		private String m_singleColumnLookupName;
+		
+		/**
+		 * Returns a rough estimate of the heap memory used by this entry, based on the
+		 * size of the column values in the NIF buffer
+		 * 
+		 * @return size in bytes
+		 */
+		int getEstimatedSizeInBytes() {
+			//object headers, position, UNID and boxed values
+			int size = 128;
+			if (m_columnValueSizes!=null) {
+				for (int i=0; i<m_columnValueSizes.length; i++) {
+					//decoded strings use two bytes per character
+					size += 2 * m_columnValueSizes[i];
+				}
+			}
+			if (m_summaryData!=null) {
+				size += 64 * m_summaryData.size();
+			}
+			return size;
+		}
 	}
 	
 	/**
@@ -113,6 +140,28 @@ public class NotesViewEntryData {
 		if (m_noteId.intValue()!=data.m_noteId.intValue())
 			throw new IllegalArgumentException("Note ids do not match: "+m_noteId+" != "+data.m_noteId);
 		
+		copyFrom(data);
+	}
+	
+	/**
+	 * Creates a new entry with the data of a cache entry
+	 * 
+	 * @param parentCollection parent notes collection
+	 * @param data cache entry data
+	 * @return entry
+	 */
+	static NotesViewEntryData fromCacheableData(NotesCollection parentCollection, CacheableViewEntryData data) {
+		NotesViewEntryData entry = new NotesViewEntryData(parentCollection);
+		entry.copyFrom(data);
+		return entry;
+	}
+	
+	/**
+	 * Copies all values of a cache entry
+	 * 
+	 * @param data cache entry data
+	 */
+	private void copyFrom(CacheableViewEntryData data) {
 		m_pos = data.m_pos;
 		m_posStr = data.m_posStr;
 		m_noteId = data.m_noteId;
@@ -133,6 +182,161 @@ public class NotesViewEntryData {
 		m_singleColumnLookupName = data.m_singleColumnLookupName;
 	}
 	
+	/**
+	 * Writes the data of a cache entry in the binary format of {@link CollectionDataCacheStore}
+	 * 
+	 * @param data cache entry data
+	 * @param out output
+	 * @throws IOException in case of I/O errors
+	 */
+	static void writeCacheableData(CacheableViewEntryData data, DataOutput out) throws IOException {
+		int flags = 0;
+		Object[] fields = new Object[] {data.m_pos, data.m_posStr, data.m_noteId, data.m_unid, data.m_unidAsLongs,
+				data.m_noteClass, data.m_siblingCount, data.m_childCount, data.m_descendantCount, data.m_isAnyUnread,
+				data.m_indentLevels, data.m_ftScore, data.m_isUnread, data.m_columnValues, data.m_columnValueSizes,
+				data.m_summaryData, data.m_singleColumnLookupName};
+		for (int i=0; i<fields.length; i++) {
+			if (fields[i]!=null) {
+				flags |= 1 << i;
+			}
+		}
+		out.writeInt(flags);
+		
+		if (data.m_pos!=null) {
+			CollectionDataCacheStore.writeIntArray(out, data.m_pos);
+		}
+		if (data.m_posStr!=null) {
+			CollectionDataCacheStore.writeString(out, data.m_posStr);
+		}
+		if (data.m_noteId!=null) {
+			out.writeInt(data.m_noteId.intValue());
+		}
+		if (data.m_unid!=null) {
+			CollectionDataCacheStore.writeString(out, data.m_unid);
+		}
+		if (data.m_unidAsLongs!=null) {
+			out.writeLong(data.m_unidAsLongs[0]);
+			out.writeLong(data.m_unidAsLongs[1]);
+		}
+		if (data.m_noteClass!=null) {
+			out.writeInt(data.m_noteClass.intValue());
+		}
+		if (data.m_siblingCount!=null) {
+			out.writeInt(data.m_siblingCount.intValue());
+		}
+		if (data.m_childCount!=null) {
+			out.writeInt(data.m_childCount.intValue());
+		}
+		if (data.m_descendantCount!=null) {
+			out.writeInt(data.m_descendantCount.intValue());
+		}
+		if (data.m_isAnyUnread!=null) {
+			out.writeBoolean(data.m_isAnyUnread.booleanValue());
+		}
+		if (data.m_indentLevels!=null) {
+			out.writeInt(data.m_indentLevels.intValue());
+		}
+		if (data.m_ftScore!=null) {
+			out.writeInt(data.m_ftScore.intValue());
+		}
+		if (data.m_isUnread!=null) {
+			out.writeBoolean(data.m_isUnread.booleanValue());
+		}
+		if (data.m_columnValues!=null) {
+			out.writeInt(data.m_columnValues.length);
+			for (int i=0; i<data.m_columnValues.length; i++) {
+				CollectionDataCacheStore.writeValue(out, data.m_columnValues[i]);
+			}
+		}
+		if (data.m_columnValueSizes!=null) {
+			CollectionDataCacheStore.writeIntArray(out, data.m_columnValueSizes);
+		}
+		if (data.m_summaryData!=null) {
+			out.writeInt(data.m_summaryData.size());
+			for (Entry<String,Object> currEntry : data.m_summaryData.entrySet()) {
+				CollectionDataCacheStore.writeString(out, currEntry.getKey());
+				CollectionDataCacheStore.writeValue(out, currEntry.getValue());
+			}
+		}
+		if (data.m_singleColumnLookupName!=null) {
+			CollectionDataCacheStore.writeString(out, data.m_singleColumnLookupName);
+		}
+	}
+	
+	/**
+	 * Reads the data of a cache entry written by {@link #writeCacheableData(CacheableViewEntryData, DataOutput)}
+	 * 
+	 * @param buf buffer positioned at the start of the entry data
+	 * @return cache entry data
+	 */
+	static CacheableViewEntryData readCacheableData(ByteBuffer buf) {
+		NotesViewEntryData entry = new NotesViewEntryData(null);
+		int flags = buf.getInt();
+		
+		if ((flags & (1 << 0)) != 0) {
+			entry.m_pos = CollectionDataCacheStore.readIntArray(buf);
+		}
+		if ((flags & (1 << 1)) != 0) {
+			entry.m_posStr = CollectionDataCacheStore.readString(buf);
+		}
+		if ((flags & (1 << 2)) != 0) {
+			entry.m_noteId = Integer.valueOf(buf.getInt());
+		}
+		if ((flags & (1 << 3)) != 0) {
+			entry.m_unid = CollectionDataCacheStore.readString(buf);
+		}
+		if ((flags & (1 << 4)) != 0) {
+			entry.m_unidAsLongs = new long[] {buf.getLong(), buf.getLong()};
+		}
+		if ((flags & (1 << 5)) != 0) {
+			entry.m_noteClass = Integer.valueOf(buf.getInt());
+		}
+		if ((flags & (1 << 6)) != 0) {
+			entry.m_siblingCount = Integer.valueOf(buf.getInt());
+		}
+		if ((flags & (1 << 7)) != 0) {
+			entry.m_childCount = Integer.valueOf(buf.getInt());
+		}
+		if ((flags & (1 << 8)) != 0) {
+			entry.m_descendantCount = Integer.valueOf(buf.getInt());
+		}
+		if ((flags & (1 << 9)) != 0) {
+			entry.m_isAnyUnread = Boolean.valueOf(buf.get() != 0);
+		}
+		if ((flags & (1 << 10)) != 0) {
+			entry.m_indentLevels = Integer.valueOf(buf.getInt());
+		}
+		if ((flags & (1 << 11)) != 0) {
+			entry.m_ftScore = Integer.valueOf(buf.getInt());
+		}
+		if ((flags & (1 << 12)) != 0) {
+			entry.m_isUnread = Boolean.valueOf(buf.get() != 0);
+		}
+		if ((flags & (1 << 13)) != 0) {
+			Object[] columnValues = new Object[CollectionDataCacheStore.readLength(buf, 1)];
+			for (int i=0; i<columnValues.length; i++) {
+				columnValues[i] = CollectionDataCacheStore.readValue(buf);
+			}
+			entry.m_columnValues = columnValues;
+		}
+		if ((flags & (1 << 14)) != 0) {
+			entry.m_columnValueSizes = CollectionDataCacheStore.readIntArray(buf);
+		}
+		if ((flags & (1 << 15)) != 0) {
+			int numItems = CollectionDataCacheStore.readLength(buf, 1);
+			Map<String,Object> summaryData = new CaseInsensitiveMap<String,Object>();
+			for (int i=0; i<numItems; i++) {
+				String itemName = CollectionDataCacheStore.readString(buf);
+				summaryData.put(itemName, CollectionDataCacheStore.readValue(buf));
+			}
+			entry.m_summaryData = summaryData;
+		}
+		if ((flags & (1 << 16)) != 0) {
+			entry.m_singleColumnLookupName = CollectionDataCacheStore.readString(buf);
+		}
+		return entry.getCacheableData();
+	}
+	
 	/**
 	 * Returns the parent collection
 	 * 
@@ -142,6 +346,16 @@ public class NotesViewEntryData {
 		return m_parentCollection;
 	}
 	
+	/**
+	 * Changes the parent collection, used when entries have been read with another
+	 * handle of the same collection
+	 * 
+	 * @param parentCollection new parent collection
+	 */
+	void setParent(NotesCollection parentCollection) {
+		m_parentCollection = parentCollection;
+	}
+	
 	/**
 	 * Method to check whether an entry is a conflict document. Can only returns a true value
 	 * if {@link ReadMask#SUMMARYVALUES} or {@link ReadMask#SUMMARY} is used for the lookup.
@@ -197,4 +197,13 @@ public class NotesViewLookupResultData {
 	public boolean hasAnyNonDataConflicts() {
 		return (m_signalFlags & NotesCAPI.SIGNAL_ANY_NONDATA_CONFLICT) != 0;
 	}
+	
+	/**
+	 * Returns the signal flags returned by NIF
+	 * 
+	 * @return flags
+	 */
+	short getSignalFlags() {
+		return m_signalFlags;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.mindoo.domino.jna;
+
+import java.util.List;
+
+/**
+ * Page of view entries returned by {@link NotesCollection#readPage(String, java.util.EnumSet, int, java.util.EnumSet)}
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesViewPage {
+	private List<NotesViewEntryData> m_entries;
+	private String m_nextPageToken;
+	private boolean m_anchorMoved;
+	
+	NotesViewPage(List<NotesViewEntryData> entries, String nextPageToken, boolean anchorMoved) {
+		m_entries = entries;
+		m_nextPageToken = nextPageToken;
+		m_anchorMoved = anchorMoved;
+	}
+	
+	/**
+	 * Returns the entries of the page
+	 * 
+	 * @return entries
+	 */
+	public List<NotesViewEntryData> getEntries() {
+		return m_entries;
+	}
+	
+	/**
+	 * Returns the opaque token to read the next page
+	 * 
+	 * @return token or null if there are no more entries
+	 */
+	public String getNextPageToken() {
+		return m_nextPageToken;
+	}
+	
+	/**
+	 * Checks if there are more entries after this page
+	 * 
+	 * @return true if more entries
+	 */
+	public boolean hasNextPage() {
+		return m_nextPageToken!=null;
+	}
+	
+	/**
+	 * Returns true if the last entry of the previous page could not be found at its
+	 * position any more, e.g. because it has been deleted or the view has been modified,
+	 * so the page has been read from the location of the note or its sort key value.
+	 * The page may then contain entries that have already been returned before.
+	 * 
+	 * @return true if the anchor has moved
+	 */
+	public boolean isAnchorMoved() {
+		return m_anchorMoved;
+	}
+	
+	@Override
+	public String toString() {
+		return "NotesViewPage [entries="+m_entries.size()+", hasNextPage="+hasNextPage()+", anchorMoved="+m_anchorMoved+"]";
+	}
+}
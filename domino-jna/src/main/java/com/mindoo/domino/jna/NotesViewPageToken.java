@@ -0,0 +1,186 @@
+package com.mindoo.domino.jna;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Continuation token of {@link NotesCollection#readPage(String, java.util.EnumSet, int, java.util.EnumSet)}
+ * with the position, note id and collation key value of the last entry of a page.
+ * Tokens are passed to clients as opaque hex strings.
+ * 
+ * @author Karsten Lehmann
+ */
+class NotesViewPageToken {
+	private static final int VERSION = 1;
+	
+	private static final byte KEY_NONE = 0;
+	private static final byte KEY_STRING = 1;
+	private static final byte KEY_NUMBER = 2;
+	private static final byte KEY_DATE = 3;
+	
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+	
+	private String m_viewUNID;
+	private short m_collation;
+	private short m_navMask;
+	private String m_position;
+	private int m_noteId;
+	private Object m_key;
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param viewUNID UNID of the view
+	 * @param collation collation used to read the page
+	 * @param navMask bitmask of the navigator used to read the page
+	 * @param position position of the last entry
+	 * @param noteId note id of the last entry
+	 * @param key value of the sort column of the last entry or null; only {@link String}, {@link Number}, {@link Calendar} or {@link Date} are stored
+	 */
+	NotesViewPageToken(String viewUNID, short collation, short navMask, String position, int noteId, Object key) {
+		m_viewUNID = viewUNID;
+		m_collation = collation;
+		m_navMask = navMask;
+		m_position = position;
+		m_noteId = noteId;
+		if (key instanceof Calendar) {
+			m_key = ((Calendar) key).getTime();
+		}
+		else if (key instanceof String || key instanceof Number || key instanceof Date) {
+			m_key = key;
+		}
+	}
+	
+	public String getViewUNID() {
+		return m_viewUNID;
+	}
+	
+	public short getCollation() {
+		return m_collation;
+	}
+	
+	public short getNavigatorMask() {
+		return m_navMask;
+	}
+	
+	public String getPosition() {
+		return m_position;
+	}
+	
+	public int getNoteId() {
+		return m_noteId;
+	}
+	
+	/**
+	 * Returns the value of the sort column of the last entry
+	 * 
+	 * @return {@link String}, {@link Double}, {@link Date} or null
+	 */
+	public Object getKey() {
+		return m_key;
+	}
+	
+	/**
+	 * Encodes the token as string
+	 * 
+	 * @return token string
+	 */
+	public String encode() {
+		try {
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			DataOutputStream dataOut = new DataOutputStream(bOut);
+			dataOut.writeByte(VERSION);
+			dataOut.writeUTF(m_viewUNID);
+			dataOut.writeShort(m_collation);
+			dataOut.writeShort(m_navMask);
+			dataOut.writeUTF(m_position);
+			dataOut.writeInt(m_noteId);
+			if (m_key instanceof String) {
+				dataOut.writeByte(KEY_STRING);
+				dataOut.writeUTF((String) m_key);
+			}
+			else if (m_key instanceof Number) {
+				dataOut.writeByte(KEY_NUMBER);
+				dataOut.writeDouble(((Number) m_key).doubleValue());
+			}
+			else if (m_key instanceof Date) {
+				dataOut.writeByte(KEY_DATE);
+				dataOut.writeLong(((Date) m_key).getTime());
+			}
+			else {
+				dataOut.writeByte(KEY_NONE);
+			}
+			dataOut.flush();
+			return toHex(bOut.toByteArray());
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Could not encode page token", e);
+		}
+	}
+	
+	/**
+	 * Decodes a token string
+	 * 
+	 * @param token token string produced by {@link #encode()}
+	 * @return token
+	 * @throws IllegalArgumentException if the token is invalid
+	 */
+	public static NotesViewPageToken decode(String token) {
+		try {
+			DataInputStream dataIn = new DataInputStream(new ByteArrayInputStream(fromHex(token)));
+			int version = dataIn.readByte();
+			if (version!=VERSION)
+				throw new IllegalArgumentException("Unsupported page token version: "+version);
+			
+			String viewUNID = dataIn.readUTF();
+			short collation = dataIn.readShort();
+			short navMask = dataIn.readShort();
+			String position = dataIn.readUTF();
+			int noteId = dataIn.readInt();
+			Object key = null;
+			byte keyType = dataIn.readByte();
+			if (keyType==KEY_STRING) {
+				key = dataIn.readUTF();
+			}
+			else if (keyType==KEY_NUMBER) {
+				key = Double.valueOf(dataIn.readDouble());
+			}
+			else if (keyType==KEY_DATE) {
+				key = new Date(dataIn.readLong());
+			}
+			return new NotesViewPageToken(viewUNID, collation, navMask, position, noteId, key);
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException("Invalid page token: "+token, e);
+		}
+	}
+	
+	private static String toHex(byte[] data) {
+		char[] chars = new char[data.length * 2];
+		for (int i=0; i<data.length; i++) {
+			chars[i*2] = HEX_CHARS[(data[i] >> 4) & 0xf];
+			chars[i*2+1] = HEX_CHARS[data[i] & 0xf];
+		}
+		return new String(chars);
+	}
+	
+	private static byte[] fromHex(String str) {
+		if (str.length() % 2 != 0)
+			throw new IllegalArgumentException("Invalid page token: "+str);
+		
+		byte[] data = new byte[str.length() / 2];
+		for (int i=0; i<data.length; i++) {
+			int high = Character.digit(str.charAt(i*2), 16);
+			int low = Character.digit(str.charAt(i*2+1), 16);
+			if (high==-1 || low==-1)
+				throw new IllegalArgumentException("Invalid page token: "+str);
+			data[i] = (byte) ((high << 4) | low);
+		}
+		return data;
+	}
+}
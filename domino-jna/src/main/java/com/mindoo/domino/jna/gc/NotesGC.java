@@ -41,6 +41,15 @@ public class NotesGC {
 		m_writeDebugMessages.set(Boolean.valueOf(enabled));
 	}
 	
+	/**
+	 * Checks if the current thread is running code in {@link #runWithAutoGC(Callable)}
+	 * 
+	 * @return true if auto GC is active
+	 */
+	public static boolean isAutoGCActive() {
+		return Boolean.TRUE.equals(m_activeAutoGC.get());
+	}
+	
 	/**
 	 * Method to get the current count of open Domino object handles
 	 * 
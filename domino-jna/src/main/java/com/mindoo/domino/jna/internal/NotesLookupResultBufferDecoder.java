@@ -11,6 +11,8 @@ import org.apache.commons.collections4.map.CaseInsensitiveMap;
 import com.mindoo.domino.jna.NotesCollection;
 import com.mindoo.domino.jna.NotesIDTable;
 import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesViewColumnarData;
+import com.mindoo.domino.jna.NotesViewColumnarData.ColumnData;
 import com.mindoo.domino.jna.NotesViewEntryData;
 import com.mindoo.domino.jna.NotesViewLookupResultData;
 import com.mindoo.domino.jna.constants.ReadMask;
@@ -50,8 +52,32 @@ public class NotesLookupResultBufferDecoder {
 	public static NotesViewLookupResultData b32_decodeCollectionLookupResultBuffer(NotesCollection parentCollection, int bufferHandle, int numEntriesSkipped, int numEntriesReturned,
 			EnumSet<ReadMask> returnMask, short signalFlags, String pos,
 			int indexModifiedSequenceNo, NotesTimeDate retDiffTime, boolean convertStringsLazily, String singleColumnLookupName) {
+		return b32_decodeCollectionLookupResultBuffer(parentCollection, bufferHandle, numEntriesSkipped, numEntriesReturned,
+				returnMask, signalFlags, pos, indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName, null);
+	}
+
+	/**
+	 * Decodes the buffer, 32 bit mode
+	 * 
+	 * @param parentCollection parent collection
+	 * @param bufferHandle buffer handle
+	 * @param numEntriesSkipped entries skipped during collection scan
+	 * @param numEntriesReturned entries read during collection scan
+	 * @param returnMask bitmask used to fill the buffer with data
+	 * @param signalFlags signal flags returned by NIFReadEntries, e.g. whether we have more data to read
+	 * @param pos position of first match, if returned by find method
+	 * @param indexModifiedSequenceNo index modified sequence no
+	 * @param retDiffTime only set in {@link NotesCollection#readEntriesExt(com.mindoo.domino.jna.structs.NotesCollectionPosition, java.util.EnumSet, int, java.util.EnumSet, int, java.util.EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * @param convertStringsLazily true to delay string conversion until the first use
+	 * @param singleColumnLookupName for single column lookups, programmatic name of lookup column
+	 * @param decodeColumns optional array with flags for the column values to decode; other column values are skipped and returned as null
+	 * @return collection data
+	 */
+	public static NotesViewLookupResultData b32_decodeCollectionLookupResultBuffer(NotesCollection parentCollection, int bufferHandle, int numEntriesSkipped, int numEntriesReturned,
+			EnumSet<ReadMask> returnMask, short signalFlags, String pos,
+			int indexModifiedSequenceNo, NotesTimeDate retDiffTime, boolean convertStringsLazily, String singleColumnLookupName, boolean[] decodeColumns) {
 		return b64_decodeCollectionLookupResultBuffer(parentCollection, bufferHandle, numEntriesSkipped, numEntriesReturned,
-				returnMask, signalFlags, pos, indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName);
+				returnMask, signalFlags, pos, indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName, decodeColumns);
 	}
 
 	/**
@@ -73,6 +99,30 @@ public class NotesLookupResultBufferDecoder {
 	public static NotesViewLookupResultData b64_decodeCollectionLookupResultBuffer(NotesCollection parentCollection, long bufferHandle, int numEntriesSkipped, int numEntriesReturned,
 			EnumSet<ReadMask> returnMask, short signalFlags, String pos, int indexModifiedSequenceNo, NotesTimeDate retDiffTime,
 			boolean convertStringsLazily, String singleColumnLookupName) {
+		return b64_decodeCollectionLookupResultBuffer(parentCollection, bufferHandle, numEntriesSkipped, numEntriesReturned,
+				returnMask, signalFlags, pos, indexModifiedSequenceNo, retDiffTime, convertStringsLazily, singleColumnLookupName, null);
+	}
+	
+	/**
+	 * Decodes the buffer, 64 bit mode
+	 * 
+	 * @param parentCollection parent collection
+	 * @param bufferHandle buffer handle
+	 * @param numEntriesSkipped entries skipped during collection scan
+	 * @param numEntriesReturned entries read during collection scan
+	 * @param returnMask bitmask used to fill the buffer with data
+	 * @param signalFlags signal flags returned by NIFReadEntries, e.g. whether we have more data to read
+	 * @param pos position to add to NotesViewLookupResultData object in case view data is read via {@link NotesCollection#findByKeyExtended2(EnumSet, EnumSet, Object...)}
+	 * @param indexModifiedSequenceNo index modified sequence no
+	 * @param retDiffTime only set in {@link NotesCollection#readEntriesExt(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet, NotesTimeDate, NotesIDTable, Integer)}
+	 * @param convertStringsLazily true to delay string conversion until the first use
+	 * @param singleColumnLookupName for single column lookups, programmatic name of lookup column
+	 * @param decodeColumns optional array with flags for the column values to decode; other column values are skipped and returned as null
+	 * @return collection data
+	 */
+	public static NotesViewLookupResultData b64_decodeCollectionLookupResultBuffer(NotesCollection parentCollection, long bufferHandle, int numEntriesSkipped, int numEntriesReturned,
+			EnumSet<ReadMask> returnMask, short signalFlags, String pos, int indexModifiedSequenceNo, NotesTimeDate retDiffTime,
+			boolean convertStringsLazily, String singleColumnLookupName, boolean[] decodeColumns) {
 		
 		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
 
@@ -208,7 +258,7 @@ public class NotesLookupResultBufferDecoder {
 					int startBufferPosOfSummaryValues = bufferPos;
 
 					Pointer itemValueTablePtr = bufferPtr.share(bufferPos);
-					ItemValueTableData itemTableData = decodeItemValueTable(itemValueTablePtr, gmtOffset, useDayLight, convertStringsLazily);
+					ItemValueTableData itemTableData = decodeItemValueTable(itemValueTablePtr, gmtOffset, useDayLight, convertStringsLazily, decodeColumns);
 					
 					//move to the end of the buffer
 					bufferPos = startBufferPosOfSummaryValues + itemTableData.getTotalBufferLength();
@@ -251,6 +301,188 @@ public class NotesLookupResultBufferDecoder {
 		
 	}
 
+	/**
+	 * Decodes the buffer into the column-oriented arrays of a {@link NotesViewColumnarData} object, 32 bit mode
+	 * 
+	 * @param bufferHandle buffer handle
+	 * @param numEntriesReturned entries read during collection scan
+	 * @param returnMask bitmask used to fill the buffer with data
+	 * @param decodeColumns optional array with flags for the column values to decode or null to decode all values
+	 * @param retData data object to append the rows to
+	 */
+	public static void b32_decodeCollectionLookupResultBufferColumnar(int bufferHandle, int numEntriesReturned, EnumSet<ReadMask> returnMask,
+			boolean[] decodeColumns, NotesViewColumnarData retData) {
+		b64_decodeCollectionLookupResultBufferColumnar(bufferHandle, numEntriesReturned, returnMask, decodeColumns, retData);
+	}
+	
+	/**
+	 * Decodes the buffer into the column-oriented arrays of a {@link NotesViewColumnarData} object, 64 bit mode.<br>
+	 * <br>
+	 * In contrast to {@link #b64_decodeCollectionLookupResultBuffer(NotesCollection, long, int, int, EnumSet, short, String, int, NotesTimeDate, boolean, String)},
+	 * no objects are created per view entry. Only the note id and the column values of {@link ReadMask#SUMMARYVALUES}
+	 * are stored, other data in the buffer is skipped. The buffer gets freed afterwards.
+	 * 
+	 * @param bufferHandle buffer handle
+	 * @param numEntriesReturned entries read during collection scan
+	 * @param returnMask bitmask used to fill the buffer with data
+	 * @param decodeColumns optional array with flags for the column values to decode or null to decode all values
+	 * @param retData data object to append the rows to
+	 */
+	public static void b64_decodeCollectionLookupResultBufferColumnar(long bufferHandle, int numEntriesReturned, EnumSet<ReadMask> returnMask,
+			boolean[] decodeColumns, NotesViewColumnarData retData) {
+		
+		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
+
+		Pointer bufferPtr;
+		if (NotesJNAContext.is64Bit()) {
+			bufferPtr = notesAPI.b64_OSLockObject(bufferHandle);
+		}
+		else {
+			bufferPtr = notesAPI.b32_OSLockObject((int) bufferHandle);
+		}
+
+		try {
+			int bufferPos = 0;
+			
+			if (returnMask.contains(ReadMask.COLLECTIONSTATS)) {
+				bufferPos += new NotesCollectionStats(bufferPtr).size();
+			}
+			
+			int gmtOffset = NotesDateTimeUtils.getGMTOffset();
+			boolean useDayLight = NotesDateTimeUtils.isDaylightTime();
+			
+			for (int i=0; i<numEntriesReturned; i++) {
+				int noteId = 0;
+				if (returnMask.contains(ReadMask.NOTEID)) {
+					noteId = bufferPtr.getInt(bufferPos);
+					bufferPos += 4;
+				}
+				if (returnMask.contains(ReadMask.NOTEUNID)) {
+					bufferPos += 16;
+				}
+				if (returnMask.contains(ReadMask.NOTECLASS)) {
+					bufferPos += 2;
+				}
+				if (returnMask.contains(ReadMask.INDEXSIBLINGS)) {
+					bufferPos += 4;
+				}
+				if (returnMask.contains(ReadMask.INDEXCHILDREN)) {
+					bufferPos += 4;
+				}
+				if (returnMask.contains(ReadMask.INDEXDESCENDANTS)) {
+					bufferPos += 4;
+				}
+				if (returnMask.contains(ReadMask.INDEXANYUNREAD)) {
+					bufferPos += 2;
+				}
+				if (returnMask.contains(ReadMask.INDENTLEVELS)) {
+					bufferPos += 2;
+				}
+				if (returnMask.contains(ReadMask.SCORE)) {
+					bufferPos += 2;
+				}
+				if (returnMask.contains(ReadMask.INDEXUNREAD)) {
+					bufferPos += 2;
+				}
+				if (returnMask.contains(ReadMask.INDEXPOSITION)) {
+					short level = bufferPtr.getShort(bufferPos);
+					bufferPos += 4 * (level + 2);
+				}
+				
+				int row = retData.addRow(noteId);
+				
+				if (returnMask.contains(ReadMask.SUMMARYVALUES)) {
+					int totalBufferLength = decodeItemValueTableColumnar(notesAPI, bufferPtr, bufferPos, gmtOffset, useDayLight,
+							decodeColumns, row, retData);
+					bufferPos += totalBufferLength;
+				}
+				if (returnMask.contains(ReadMask.SUMMARY)) {
+					//ITEM_TABLE starts with the total length like ITEM_VALUE_TABLE
+					int totalBufferLength = bufferPtr.getShort(bufferPos) & 0xffff;
+					bufferPos += totalBufferLength;
+				}
+			}
+		}
+		finally {
+			if (NotesJNAContext.is64Bit()) {
+				notesAPI.b64_OSUnlockObject(bufferHandle);
+				notesAPI.b64_OSMemFree(bufferHandle);
+			}
+			else {
+				notesAPI.b32_OSUnlockObject((int)bufferHandle);
+				notesAPI.b32_OSMemFree((int)bufferHandle);
+			}
+		}
+	}
+	
+	/**
+	 * Decodes the ITEM_VALUE_TABLE of one view entry into the column arrays. Numbers, date/time values
+	 * and strings are read directly from the buffer without creating value objects.
+	 * 
+	 * @param notesAPI Notes API
+	 * @param bufferPtr pointer to the buffer
+	 * @param tablePos position of the ITEM_VALUE_TABLE in the buffer
+	 * @param gmtOffset GMT offset ({@link NotesDateTimeUtils#getGMTOffset()}) to parse datetime lists
+	 * @param useDayLight DST ({@link NotesDateTimeUtils#isDaylightTime()}) to parse datetime lists
+	 * @param decodeColumns optional array with flags for the column values to decode or null to decode all values
+	 * @param row row index
+	 * @param retData data object
+	 * @return total length of the ITEM_VALUE_TABLE
+	 */
+	private static int decodeItemValueTableColumnar(NotesCAPI notesAPI, Pointer bufferPtr, int tablePos, int gmtOffset, boolean useDayLight,
+			boolean[] decodeColumns, int row, NotesViewColumnarData retData) {
+		int totalBufferLength = bufferPtr.getShort(tablePos) & 0xffff;
+		int itemsCount = bufferPtr.getShort(tablePos + 2) & 0xffff;
+		
+		int lengthPos = tablePos + NotesCAPI.itemValueTableSize;
+		int valuePos = lengthPos + 2 * itemsCount;
+		
+		for (int j=0; j<itemsCount; j++) {
+			int itemValueLength = bufferPtr.getShort(lengthPos + 2 * j) & 0xffff;
+			if (itemValueLength == 0) {
+				//empty value, e.g. in a response document
+				continue;
+			}
+			if (decodeColumns!=null && (j>=decodeColumns.length || !decodeColumns[j])) {
+				//value not requested; skip it without decoding
+				valuePos += itemValueLength;
+				continue;
+			}
+			
+			int dataType = bufferPtr.getShort(valuePos) & 0xffff;
+			int dataPos = valuePos + 2;
+			int dataSize = itemValueLength - 2;
+			ColumnData column = retData.getOrCreateColumn(j);
+			
+			if (dataType == NotesItem.TYPE_NUMBER) {
+				column.setNumber(row, bufferPtr.getDouble(dataPos));
+			}
+			else if (dataType == NotesItem.TYPE_TIME) {
+				int innard0 = bufferPtr.getInt(dataPos);
+				int innard1 = bufferPtr.getInt(dataPos + 4);
+				if (innard0!=0 || innard1!=0) {
+					column.setDate(row, NotesDateTimeUtils.innardsToEpochMillis(innard0, innard1));
+				}
+			}
+			else if (dataType == NotesItem.TYPE_TEXT) {
+				column.setString(row, new LMBCSString(bufferPtr.getByteArray(dataPos, dataSize)));
+			}
+			else if (dataType == NotesItem.TYPE_TEXT_LIST) {
+				column.setOtherValue(row, ItemDecoder.decodeTextListValue(notesAPI, bufferPtr.share(dataPos), dataSize, false));
+			}
+			else if (dataType == NotesItem.TYPE_NUMBER_RANGE) {
+				column.setOtherValue(row, ItemDecoder.decodeNumberList(notesAPI, bufferPtr.share(dataPos), dataSize));
+			}
+			else if (dataType == NotesItem.TYPE_TIME_RANGE) {
+				column.setOtherValue(row, ItemDecoder.decodeTimeDateList(notesAPI, bufferPtr.share(dataPos), dataSize, useDayLight, gmtOffset));
+			}
+			
+			valuePos += itemValueLength;
+		}
+		
+		return totalBufferLength;
+	}
+	
 	/**
 	 * Decodes an ITEM_VALUE_TABLE structure, which contains an ordered list of item values
 	 * 
@@ -261,6 +493,22 @@ public class NotesLookupResultBufferDecoder {
 	 * @return item value table data
 	 */
 	public static ItemValueTableData decodeItemValueTable(Pointer bufferPtr, int gmtOffset, boolean useDayLight, boolean convertStringsLazily) {
+		return decodeItemValueTable(bufferPtr, gmtOffset, useDayLight, convertStringsLazily, null);
+	}
+	
+	/**
+	 * Decodes an ITEM_VALUE_TABLE structure, which contains an ordered list of item values.
+	 * Values that are not flagged in <code>decodeItems</code> are skipped without decoding them.
+	 * 
+	 * @param bufferPtr pointer to a buffer
+	 * @param gmtOffset GMT offset ({@link NotesDateTimeUtils#getGMTOffset()}) to parse datetime values
+	 * @param useDayLight DST ({@link NotesDateTimeUtils#isDaylightTime()}) to parse datetime values
+	 * @param convertStringsLazily true to delay string conversion until the first use
+	 * @param decodeItems optional array with flags for the item values to decode or null to decode all values; skipped values are returned as null
+	 * @return item value table data
+	 */
+	public static ItemValueTableData decodeItemValueTable(Pointer bufferPtr, int gmtOffset, boolean useDayLight, boolean convertStringsLazily,
+			boolean[] decodeItems) {
 		int bufferPos = 0;
 		
 		//skip item value table header
@@ -300,7 +548,7 @@ public class NotesLookupResultBufferDecoder {
 		data.m_itemsCount = itemsCount;
 
 		Pointer itemValuePtr = bufferPtr.share(bufferPos);
-		populateItemValueTableData(itemValuePtr, gmtOffset, useDayLight, itemsCount, itemNameLengths, itemValueLengths, data, convertStringsLazily);
+		populateItemValueTableData(itemValuePtr, gmtOffset, useDayLight, itemsCount, itemNameLengths, itemValueLengths, data, convertStringsLazily, decodeItems);
 
 		return data;
 	}
@@ -315,8 +563,10 @@ public class NotesLookupResultBufferDecoder {
 	 * @param itemValueLengths lengths of the item values
 	 * @param retData data object to populate
 	 * @param convertStringsLazily true to delay string conversion until the first use
+	 * @param decodeItems optional array with flags for the item values to decode or null to decode all values
 	 */
-	private static void populateItemValueTableData(Pointer bufferPtr, int gmtOffset, boolean useDayLight, int itemsCount, int[] itemNameLengths, int[] itemValueLengths, ItemValueTableData retData, boolean convertStringsLazily) {
+	private static void populateItemValueTableData(Pointer bufferPtr, int gmtOffset, boolean useDayLight, int itemsCount, int[] itemNameLengths, int[] itemValueLengths, ItemValueTableData retData, boolean convertStringsLazily,
+			boolean[] decodeItems) {
 		NotesCAPI notesAPI = NotesJNAContext.getNotesAPI();
 		
 		int bufferPos = 0;
@@ -338,6 +588,12 @@ public class NotesLookupResultBufferDecoder {
 			}
 			
 			
+			if (decodeItems!=null && (j>=decodeItems.length || !decodeItems[j])) {
+				//value not requested; skip it without decoding
+				bufferPos += itemValueLengths[j];
+				continue;
+			}
+			
 			//read data type
 			if (itemValueLengths[j] == 0) {
 				/* If an item has zero length it indicates an "empty" item in the
@@ -564,7 +820,7 @@ public class NotesLookupResultBufferDecoder {
 		data.m_itemsCount = itemsCount;
 		
 		Pointer itemValuePtr = bufferPtr.share(bufferPos);
-		populateItemValueTableData(itemValuePtr, gmtOffset, useDayLight, itemsCount, itemNameLengths, itemValueLengths, data, convertStringsLazily);
+		populateItemValueTableData(itemValuePtr, gmtOffset, useDayLight, itemsCount, itemNameLengths, itemValueLengths, data, convertStringsLazily, null);
 		
 		return data;
 	}
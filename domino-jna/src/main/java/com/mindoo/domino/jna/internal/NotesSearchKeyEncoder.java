@@ -1,26 +1,41 @@
 package com.mindoo.domino.jna.internal;
 
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 
 import com.mindoo.domino.jna.NotesItem;
-import com.mindoo.domino.jna.structs.NotesItemValueTable;
-import com.mindoo.domino.jna.structs.NotesNumberPair;
-import com.mindoo.domino.jna.structs.NotesRange;
-import com.mindoo.domino.jna.structs.NotesTableItem;
-import com.mindoo.domino.jna.structs.NotesTimeDate;
-import com.mindoo.domino.jna.structs.NotesTimeDatePair;
 import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.sun.jna.Memory;
 import com.sun.jna.Pointer;
 
+/**
+ * Encoder for the search keys of NIFFindByKey and NIFFindByKeyExtended2.<br>
+ * <br>
+ * The keys are written as ITEM_VALUE_TABLE directly into a native buffer that is allocated
+ * once per thread and grown on demand. Strings that only contain printable ASCII characters
+ * are copied without calling the LMBCS conversion of the C API, because their LMBCS representation
+ * is identical.
+ * 
+ * @author Karsten Lehmann
+ */
 public class NotesSearchKeyEncoder {
-
+	/** initial size of the per-thread key buffer */
+	private static final int INITIAL_BUFFER_SIZE = 512;
+	/** maximum size of the key buffer, since its length is stored as WORD */
+	private static final int MAX_BUFFER_SIZE = 0xffff;
+	
+	private static final ThreadLocal<KeyBuffer> m_threadKeyBuffer = new ThreadLocal<KeyBuffer>() {
+		@Override
+		protected KeyBuffer initialValue() {
+			return new KeyBuffer();
+		}
+	};
+	
 	/**
 	 * Produces the keybuffer for NIFFindByKey
 	 * 
@@ -40,333 +55,327 @@ public class NotesSearchKeyEncoder {
 	 * @throws Exception in case of errors
 	 */
 	public static Memory b64_encodeKeys(Object[] keys) throws Exception {
-		ByteArrayOutputStream metaDataByteOut = new ByteArrayOutputStream();
-
-		ByteArrayOutputStream valueDataByteOut = new ByteArrayOutputStream();
+		KeyBuffer keyBuffer = m_threadKeyBuffer.get();
+		int length = encodeKeys(keyBuffer, keys);
 		
+		Memory mem = new Memory(length);
+		mem.write(0, keyBuffer.m_mem.getByteArray(0, length), 0, length);
+		return mem;
+	}
+	
+	/**
+	 * Produces the keybuffer for NIFFindByKey in a native buffer that is reused for all
+	 * calls in the current thread, so no memory gets allocated for the lookup.<br>
+	 * <br>
+	 * The returned buffer is only valid until the next call of this method in the same
+	 * thread and may be larger than the encoded keys. Use {@link #getEncodedLength(Pointer)}
+	 * to get the size of the data.
+	 * 
+	 * @param keys array of String, Double, Integer, Calendar, Date, Calendar[] (with two elements lower/upper), Date[] (with two elements lower/upper)
+	 * @return buffer with encoded keys
+	 */
+	public static Memory encodeKeysInThreadBuffer(Object[] keys) {
+		KeyBuffer keyBuffer = m_threadKeyBuffer.get();
+		encodeKeys(keyBuffer, keys);
+		return keyBuffer.m_mem;
+	}
+	
+	/**
+	 * Returns the size of encoded search keys, read from the ITEM_VALUE_TABLE header
+	 * 
+	 * @param keyBuffer buffer with encoded keys
+	 * @return size in bytes
+	 */
+	public static int getEncodedLength(Pointer keyBuffer) {
+		return keyBuffer.getShort(0) & 0xffff;
+	}
+	
+	/**
+	 * Writes the ITEM_VALUE_TABLE for the search keys into the buffer
+	 * 
+	 * @param keyBuffer buffer
+	 * @param keys search keys
+	 * @return total size of the encoded data
+	 */
+	private static int encodeKeys(KeyBuffer keyBuffer, Object[] keys) {
 		for (int i=0; i<keys.length; i++) {
 			if (keys[i] == null) {
 				throw new NullPointerException("Keys cannot be null. keys="+new ArrayList<Object>(Arrays.asList(keys)));
 			}
 		}
 		
-		//write placeholder for the total buffer size and the number of items, will be filled later
-		metaDataByteOut.write(0);
-		metaDataByteOut.write(0);
+		//ITEM_VALUE_TABLE header and one ITEM per key, followed by the key values
+		int valueOffset = 4 + keys.length * NotesCAPI.tableItemSize;
+		keyBuffer.ensureCapacity(valueOffset);
 		
-		metaDataByteOut.write(0);
-		metaDataByteOut.write(0);
-		
-
 		for (int i=0; i<keys.length; i++) {
-			Object currKey = keys[i];
+			int valueLength = writeKeyValue(keyBuffer, valueOffset, keys[i]);
 			
-			if (currKey instanceof String) {
-				addStringKey(metaDataByteOut, valueDataByteOut, (String) currKey);
-			}
-			else if (currKey instanceof Double) {
-				addNumberKey(metaDataByteOut, valueDataByteOut, ((Double) currKey).doubleValue());
-			}
-			else if (currKey instanceof Integer) {
-				addNumberKey(metaDataByteOut, valueDataByteOut, ((Integer) currKey).doubleValue());
-			}
-			else if (currKey instanceof Date) {
-				Calendar cal = Calendar.getInstance();
-				cal.setTime((Date) currKey);
-				addCalendarKey(metaDataByteOut, valueDataByteOut, cal);
-			}
-			else if (currKey instanceof Calendar) {
-				addCalendarKey(metaDataByteOut, valueDataByteOut, (Calendar) currKey);
-			}
-			else if (currKey instanceof Date[]) {
-				Date[] dateArr = (Date[]) currKey;
-				Calendar[] calArr = new Calendar[dateArr.length];
-				for (int j=0; j<dateArr.length; j++) {
-					calArr[j] = Calendar.getInstance();
-					calArr[j].setTime(dateArr[j]);
-				}
-				
-				addCalendarRangeKey(metaDataByteOut, valueDataByteOut, calArr);
-			}
-			else if (currKey instanceof Calendar[]) {
-				//date range
-				addCalendarRangeKey(metaDataByteOut, valueDataByteOut, (Calendar[]) currKey);
-			}
-//			else if (currKey instanceof Interval) {
-//				Interval interval = (Interval) currKey;
-//				DateTime startDateTime = interval.getStart();
-//				DateTime endDateTime = interval.getEnd();
-//				
-//				addCalendarRangeKey(metaDataByteOut, valueDataByteOut, new Calendar[] {startDateTime.toCalendar(Locale.getDefault()), endDateTime.toCalendar(Locale.getDefault())});
-//			}
-			else if (currKey instanceof double[]) {
-				//looks like this does not work (the C API documentation says it does not work either)
-				addNumberRangeKey(metaDataByteOut, valueDataByteOut, (double[]) currKey);
-			}
-			else if (currKey instanceof Double[]) {
-				Double[] objArr = (Double[]) currKey;
-				double[] doubleArr = new double[objArr.length];
-				for (int j=0; j<objArr.length; j++) {
-					if (objArr[j] != null) {
-						doubleArr[j] = objArr[j].doubleValue();
-					}
-				}
-				//looks like this does not work (the C API documentation says it does not work either)
-				addNumberRangeKey(metaDataByteOut, valueDataByteOut, doubleArr);
-			}
-			else {
-				throw new IllegalArgumentException("Unknown key type: "+currKey+", class="+(currKey==null ? "null" : currKey.getClass().getName()));
-			}
-		}		
-		
-		byte[] metaDataByteArr = metaDataByteOut.toByteArray();
-		byte[] valueDataByteArr = valueDataByteOut.toByteArray();
-		
-		Memory mem = new Memory(metaDataByteArr.length + valueDataByteArr.length);
-		
-		int offset = 0;
-		for (int i=0; i<metaDataByteArr.length; i++) {
-			mem.setByte(offset, metaDataByteArr[i]);
-			offset++;
+			int itemOffset = 4 + i * NotesCAPI.tableItemSize;
+			keyBuffer.m_buf.putShort(itemOffset, (short) 0);
+			keyBuffer.m_buf.putShort(itemOffset + 2, (short) (valueLength & 0xffff));
+			
+			valueOffset += valueLength;
 		}
 		
-		//update length value containing the total buffer size
-		short totalSize = (short) ((4 + (keys.length * 4) + valueDataByteArr.length)  & 0xffff);
+		if (valueOffset > MAX_BUFFER_SIZE)
+			throw new IllegalArgumentException("Encoded search keys exceed the maximum size of "+MAX_BUFFER_SIZE+" bytes: "+valueOffset);
 		
-		NotesItemValueTable itemTable = new NotesItemValueTable(mem);
-		itemTable.Length = totalSize;
-		itemTable.Items = (short) keys.length;
-		itemTable.write();
+		keyBuffer.m_buf.putShort(0, (short) (valueOffset & 0xffff));
+		keyBuffer.m_buf.putShort(2, (short) keys.length);
 		
-		for (int i=0; i<valueDataByteArr.length; i++) {
-			mem.setByte(offset, valueDataByteArr[i]);
-			offset++;
+		return valueOffset;
+	}
+	
+	/**
+	 * Writes the data type and value of a search key
+	 * 
+	 * @param keyBuffer buffer
+	 * @param offset offset of the value
+	 * @param currKey search key
+	 * @return number of bytes written
+	 */
+	private static int writeKeyValue(KeyBuffer keyBuffer, int offset, Object currKey) {
+		if (currKey instanceof String) {
+			return writeStringKey(keyBuffer, offset, (String) currKey);
+		}
+		else if (currKey instanceof Double) {
+			return writeNumberKey(keyBuffer, offset, ((Double) currKey).doubleValue());
+		}
+		else if (currKey instanceof Integer) {
+			return writeNumberKey(keyBuffer, offset, ((Integer) currKey).doubleValue());
+		}
+		else if (currKey instanceof Date) {
+			Calendar cal = Calendar.getInstance();
+			cal.setTime((Date) currKey);
+			return writeCalendarKey(keyBuffer, offset, cal);
+		}
+		else if (currKey instanceof Calendar) {
+			return writeCalendarKey(keyBuffer, offset, (Calendar) currKey);
+		}
+		else if (currKey instanceof Date[]) {
+			Date[] dateArr = (Date[]) currKey;
+			Calendar[] calArr = new Calendar[dateArr.length];
+			for (int j=0; j<dateArr.length; j++) {
+				calArr[j] = Calendar.getInstance();
+				calArr[j].setTime(dateArr[j]);
+			}
+			
+			return writeCalendarRangeKey(keyBuffer, offset, calArr);
+		}
+		else if (currKey instanceof Calendar[]) {
+			//date range
+			return writeCalendarRangeKey(keyBuffer, offset, (Calendar[]) currKey);
+		}
+		else if (currKey instanceof double[]) {
+			//looks like this does not work (the C API documentation says it does not work either)
+			return writeNumberRangeKey(keyBuffer, offset, (double[]) currKey);
+		}
+		else if (currKey instanceof Double[]) {
+			Double[] objArr = (Double[]) currKey;
+			double[] doubleArr = new double[objArr.length];
+			for (int j=0; j<objArr.length; j++) {
+				if (objArr[j] != null) {
+					doubleArr[j] = objArr[j].doubleValue();
+				}
+			}
+			//looks like this does not work (the C API documentation says it does not work either)
+			return writeNumberRangeKey(keyBuffer, offset, doubleArr);
+		}
+		else {
+			throw new IllegalArgumentException("Unknown key type: "+currKey+", class="+(currKey==null ? "null" : currKey.getClass().getName()));
 		}
-		
-//		System.out.println("Dumping meta data:");
-//		StringBuilder sb = new StringBuilder();
-//		for (int i=0; i<metaDataByteArr.length; i++) {
-//			if (sb.length()>0)
-//				sb.append(" ");
-//			sb.append(Integer.toString(mem.getByte(i), 16) + " ");
-//		}
-//		System.out.println(sb.toString());
-//		
-//		
-//		System.out.println("Dumping value data:");
-//		sb.setLength(0);
-//		for (int i=0; i<valueDataByteArr.length; i++) {
-//			if (sb.length()>0)
-//				sb.append(" ");
-//			sb.append(Integer.toString(mem.getByte(metaDataByteArr.length + i), 16) + " ");
-//		}
-//		System.out.println(sb.toString());
-//
-//		System.out.println("Dumping mem:");
-//		sb.setLength(0);
-//		for (int i=0; i<mem.size(); i++) {
-//			if (sb.length()>0)
-//				sb.append(" ");
-//			sb.append(Integer.toString(mem.getByte(i), 16) + " ");
-//		}
-//		System.out.println(sb.toString());
-
-		return mem;
 	}
-
+	
 	/**
-	 * Writes data for a time search key
+	 * Writes data for a string search key
 	 * 
-	 * @param itemOut output stream for ITEM structure
-	 * @param valueDataOut output stream for search key value
+	 * @param keyBuffer buffer
+	 * @param offset offset of the value
 	 * @param currKey search key
-	 * @throws Exception in case of errors
+	 * @return number of bytes written
 	 */
-	private static void addCalendarKey(OutputStream itemOut, OutputStream valueDataOut, Calendar currKey) throws Exception {
-		Memory itemMem = new Memory(NotesCAPI.tableItemSize);
-		NotesTableItem item = new NotesTableItem(itemMem);
-		item.NameLength = 0;
-		item.ValueLength = (short) (NotesCAPI.timeSize + 2);
-		item.write();
+	private static int writeStringKey(KeyBuffer keyBuffer, int offset, String currKey) {
+		int strLength = currKey.length();
 		
-		for (int i=0; i<NotesCAPI.tableItemSize; i++) {
-			itemOut.write(itemMem.getByte(i));
+		//LMBCS uses bytes below 0x20 as group prefixes, so printable ASCII characters
+		//are the only ones that can be copied 1:1
+		boolean isPrintableAscii = true;
+		for (int i=0; i<strLength; i++) {
+			char c = currKey.charAt(i);
+			if (c < 0x20 || c > 0x7e) {
+				isPrintableAscii = false;
+				break;
+			}
 		}
 		
-		//write data type
-		Memory valueMem = new Memory(2 + 8);
-		valueMem.setShort(0, (short) NotesItem.TYPE_TIME);
-		
-		boolean hasDate = NotesDateTimeUtils.hasDate(currKey);
-		boolean hasTime = NotesDateTimeUtils.hasTime(currKey);
-		
-		int[] innards = NotesDateTimeUtils.calendarToInnards(currKey, hasDate, hasTime);
-		Pointer timeDatePtr = valueMem.share(2);
-		NotesTimeDate timeDate = new NotesTimeDate(timeDatePtr);
-		timeDate.Innards[0] = innards[0];
-		timeDate.Innards[1] = innards[1];
-		timeDate.write();
-		
-		for (int i=0; i<valueMem.size(); i++) {
-			valueDataOut.write(valueMem.getByte(i));
+		if (isPrintableAscii) {
+			keyBuffer.ensureCapacity(offset + 2 + strLength);
+			ByteBuffer buf = keyBuffer.m_buf;
+			buf.putShort(offset, (short) NotesItem.TYPE_TEXT);
+			for (int i=0; i<strLength; i++) {
+				buf.put(offset + 2 + i, (byte) currKey.charAt(i));
+			}
+			return 2 + strLength;
 		}
+		else {
+			Memory strValueMem = NotesStringUtils.toLMBCS(currKey, false);
+			int lmbcsLength = strValueMem==null ? 0 : (int) strValueMem.size();
+			
+			keyBuffer.ensureCapacity(offset + 2 + lmbcsLength);
+			keyBuffer.m_buf.putShort(offset, (short) NotesItem.TYPE_TEXT);
+			if (lmbcsLength > 0) {
+				keyBuffer.m_mem.write(offset + 2, strValueMem.getByteArray(0, lmbcsLength), 0, lmbcsLength);
+			}
+			return 2 + lmbcsLength;
+		}
+	}
+	
+	/**
+	 * Writes data for a number search key
+	 * 
+	 * @param keyBuffer buffer
+	 * @param offset offset of the value
+	 * @param doubleValue search key
+	 * @return number of bytes written
+	 */
+	private static int writeNumberKey(KeyBuffer keyBuffer, int offset, double doubleValue) {
+		keyBuffer.ensureCapacity(offset + 2 + 8);
+		keyBuffer.m_buf.putShort(offset, (short) NotesItem.TYPE_NUMBER);
+		keyBuffer.m_buf.putDouble(offset + 2, doubleValue);
+		return 2 + 8;
+	}
+	
+	/**
+	 * Writes data for a time search key
+	 * 
+	 * @param keyBuffer buffer
+	 * @param offset offset of the value
+	 * @param currKey search key
+	 * @return number of bytes written
+	 */
+	private static int writeCalendarKey(KeyBuffer keyBuffer, int offset, Calendar currKey) {
+		keyBuffer.ensureCapacity(offset + 2 + NotesCAPI.timeDateSize);
+		keyBuffer.m_buf.putShort(offset, (short) NotesItem.TYPE_TIME);
+		writeTimeDate(keyBuffer, offset + 2, currKey);
+		return 2 + NotesCAPI.timeDateSize;
 	}
 	
 	/**
-	 * Searching with number range keys is not supported yet (R9), as the 
+	 * Searching with number range keys is not supported yet (R9), as the
 	 * <a href="http://www-12.lotus.com/ldd/doc/domino_notes/9.0/api90ref.nsf/70cfe734675fd140852561ce00718042/35abe18f9580ca2d8525622e0062c48d?OpenDocument">documentation</a> says.
 	 * 
-	 * @param itemOut output stream for ITEM structure
-	 * @param valueDataOut output stream for search key value
+	 * @param keyBuffer buffer
+	 * @param offset offset of the value
 	 * @param currKey search key
-	 * @throws Exception in case of errors
+	 * @return number of bytes written
 	 */
-	private static void addNumberRangeKey(OutputStream itemOut, OutputStream valueDataOut, double[] currKey) throws Exception {
+	private static int writeNumberRangeKey(KeyBuffer keyBuffer, int offset, double[] currKey) {
 		if (currKey.length!=2)
 			throw new IllegalArgumentException("Double search key array must have exactly 2 elements. We found "+currKey.length);
 		
-		Memory itemMem = new Memory(NotesCAPI.tableItemSize);
-		NotesTableItem item = new NotesTableItem(itemMem);
-		item.NameLength = 0;
-		item.ValueLength = (short) ((NotesCAPI.rangeSize + NotesCAPI.numberPairSize + 2) & 0xffff);
-		item.write();
-
-		for (int i=0; i<NotesCAPI.tableItemSize; i++) {
-			itemOut.write(itemMem.getByte(i));
-		}
-
-		Memory valueMem = new Memory(NotesCAPI.rangeSize + NotesCAPI.numberPairSize + 2);
-		valueMem.setShort(0, (short) NotesItem.TYPE_NUMBER_RANGE);
-
-		Pointer rangePtr = valueMem.share(2);
-		NotesRange range = new NotesRange(rangePtr);
-		range.ListEntries = 0;
-		range.RangeEntries = 1;
-		range.write();
-
-		Pointer pairPtr = rangePtr.share(NotesCAPI.rangeSize);
-		NotesNumberPair pair = new NotesNumberPair(pairPtr);
-		pair.Lower = currKey[0];
-		pair.Upper = currKey[1];
-		pair.write();
+		int valueLength = 2 + NotesCAPI.rangeSize + NotesCAPI.numberPairSize;
+		keyBuffer.ensureCapacity(offset + valueLength);
+		ByteBuffer buf = keyBuffer.m_buf;
+		buf.putShort(offset, (short) NotesItem.TYPE_NUMBER_RANGE);
 		
-		for (int i=0; i<valueMem.size(); i++) {
-			valueDataOut.write(valueMem.getByte(i));
-		}
+		int rangeOffset = offset + 2;
+		writeRange(buf, rangeOffset);
+		
+		int pairOffset = rangeOffset + NotesCAPI.rangeSize;
+		buf.putDouble(pairOffset, currKey[0]);
+		buf.putDouble(pairOffset + NotesCAPI.numberPairSize / 2, currKey[1]);
+		
+		return valueLength;
 	}
 	
 	/**
 	 * Writes data for a time range search key
 	 * 
-	 * @param itemOut output stream for ITEM structure
-	 * @param valueDataOut output stream for search key value
+	 * @param keyBuffer buffer
+	 * @param offset offset of the value
 	 * @param currKey search key, array with two values
-	 * @throws Exception in case of errors
+	 * @return number of bytes written
 	 */
-	private static void addCalendarRangeKey(OutputStream itemOut, OutputStream valueDataOut, Calendar[] currKey) throws Exception {
+	private static int writeCalendarRangeKey(KeyBuffer keyBuffer, int offset, Calendar[] currKey) {
 		if (currKey.length!=2)
 			throw new IllegalArgumentException("Calendar search key array must have exactly 2 elements. We found "+currKey.length);
 		
-		Memory itemMem = new Memory(NotesCAPI.tableItemSize);
-		NotesTableItem item = new NotesTableItem(itemMem);
-		item.NameLength = 0;
-		item.ValueLength = (short) ((NotesCAPI.rangeSize + NotesCAPI.timeDatePairSize + 2) & 0xffff);
-		item.write();
-
-		for (int i=0; i<NotesCAPI.tableItemSize; i++) {
-			itemOut.write(itemMem.getByte(i));
-		}
-
-		Memory valueMem = new Memory(NotesCAPI.rangeSize + NotesCAPI.timeDatePairSize + 2);
-		valueMem.setShort(0, (short) NotesItem.TYPE_TIME_RANGE);
-		
-		Pointer rangePtr = valueMem.share(2);
-		NotesRange range = new NotesRange(rangePtr);
-		range.ListEntries = 0;
-		range.RangeEntries = 1;
-		range.write();
+		int valueLength = 2 + NotesCAPI.rangeSize + NotesCAPI.timeDatePairSize;
+		keyBuffer.ensureCapacity(offset + valueLength);
+		keyBuffer.m_buf.putShort(offset, (short) NotesItem.TYPE_TIME_RANGE);
 		
-		Pointer pairPtr = rangePtr.share(NotesCAPI.rangeSize);
-		NotesTimeDatePair pair = new NotesTimeDatePair(pairPtr);
-		Calendar lowerBound = currKey[0];
-		Calendar upperBound = currKey[1];
-		NotesTimeDate lower = NotesDateTimeUtils.calendarToTimeDate(lowerBound);
-		NotesTimeDate upper = NotesDateTimeUtils.calendarToTimeDate(upperBound);
+		int rangeOffset = offset + 2;
+		writeRange(keyBuffer.m_buf, rangeOffset);
 		
-		pair.Lower = lower;
-		pair.Upper = upper;
-		pair.write();
+		int pairOffset = rangeOffset + NotesCAPI.rangeSize;
+		writeTimeDate(keyBuffer, pairOffset, currKey[0]);
+		writeTimeDate(keyBuffer, pairOffset + NotesCAPI.timeDatePairSize / 2, currKey[1]);
 		
-		for (int i=0; i<valueMem.size(); i++) {
-			valueDataOut.write(valueMem.getByte(i));
-		}
+		return valueLength;
 	}
-
+	
 	/**
-	 * Writes data for a string search key
+	 * Writes a RANGE structure with a single range entry
 	 * 
-	 * @param itemOut output stream for ITEM structure
-	 * @param valueDataOut output stream for search key value
-	 * @param currKey search key
-	 * @throws Exception in case of errors
+	 * @param buf buffer
+	 * @param offset offset
 	 */
-	private static void addStringKey(OutputStream itemOut, OutputStream valueDataOut, String currKey) throws Exception {
-		Memory strValueMem = NotesStringUtils.toLMBCS(currKey, false);
-		
-		Memory itemMem = new Memory(NotesCAPI.tableItemSize);
-		NotesTableItem item = new NotesTableItem(itemMem);
-		item.NameLength = 0;
-		item.ValueLength = (short) ((strValueMem.size() + 2) & 0xffff);
-		item.write();
-
-		for (int i=0; i<NotesCAPI.tableItemSize; i++) {
-			itemOut.write(itemMem.getByte(i));
-		}
-
-		Memory valueMem = new Memory(strValueMem.size() + 2);
-		short txtType = (short) NotesItem.TYPE_TEXT;
-		valueMem.setShort(0, txtType);
-
-		Pointer strValuePtr = valueMem.share(2);
-		
-		for (int i=0; i<strValueMem.size(); i++) {
-			strValuePtr.setByte(i, strValueMem.getByte(i));
-		}
+	private static void writeRange(ByteBuffer buf, int offset) {
+		//ListEntries
+		buf.putShort(offset, (short) 0);
+		//RangeEntries
+		buf.putShort(offset + 2, (short) 1);
+	}
+	
+	/**
+	 * Writes a TIMEDATE structure
+	 * 
+	 * @param keyBuffer buffer
+	 * @param offset offset
+	 * @param cal date/time value
+	 */
+	private static void writeTimeDate(KeyBuffer keyBuffer, int offset, Calendar cal) {
+		boolean hasDate = NotesDateTimeUtils.hasDate(cal);
+		boolean hasTime = NotesDateTimeUtils.hasTime(cal);
 		
-		for (int i=0; i<valueMem.size(); i++) {
-			valueDataOut.write(valueMem.getByte(i));
-		}
+		int[] innards = NotesDateTimeUtils.calendarToInnards(cal, hasDate, hasTime);
+		keyBuffer.m_buf.putInt(offset, innards[0]);
+		keyBuffer.m_buf.putInt(offset + 4, innards[1]);
 	}
-
+	
 	/**
-	 * Writes data for a number search key
+	 * Native buffer for the encoded search keys of one thread. The data is written
+	 * through a direct {@link ByteBuffer} on the native memory.
 	 * 
-	 * @param itemOut output stream for ITEM structure
-	 * @param valueDataOut output stream for search key value
-	 * @param doubleValue search key
-	 * @throws Exception in case of errors
+	 * @author Karsten Lehmann
 	 */
-	private static void addNumberKey(OutputStream itemOut, OutputStream valueDataOut, double doubleValue) throws Exception {
-		Memory itemMem = new Memory(NotesCAPI.tableItemSize);
-		NotesTableItem item = new NotesTableItem(itemMem);
-		item.NameLength = 0;
-		item.ValueLength = (short) (8 + 2);
-		item.write();
-
-		for (int i=0; i<NotesCAPI.tableItemSize; i++) {
-			itemOut.write(itemMem.getByte(i));
-		}
-
-		Memory valueMem = new Memory(8 + 2);
-		valueMem.setShort(0, (short) NotesItem.TYPE_NUMBER);
+	private static class KeyBuffer {
+		private Memory m_mem;
+		private ByteBuffer m_buf;
 		
-		Pointer doubleValPtr = valueMem.share(2);
-		doubleValPtr.setDouble(0, doubleValue);
+		public KeyBuffer() {
+			m_mem = new Memory(INITIAL_BUFFER_SIZE);
+			m_buf = m_mem.getByteBuffer(0, m_mem.size()).order(ByteOrder.nativeOrder());
+		}
 		
-		for (int i=0; i<valueMem.size(); i++) {
-			valueDataOut.write(valueMem.getByte(i));
+		/**
+		 * Grows the buffer if required, keeping the data already written
+		 * 
+		 * @param size required size
+		 */
+		public void ensureCapacity(int size) {
+			int currSize = (int) m_mem.size();
+			if (size <= currSize) {
+				return;
+			}
+			
+			int newSize = Math.max(size, Math.min(currSize * 2, MAX_BUFFER_SIZE));
+			Memory newMem = new Memory(newSize);
+			newMem.write(0, m_mem.getByteArray(0, currSize), 0, currSize);
+			
+			m_mem = newMem;
+			m_buf = m_mem.getByteBuffer(0, m_mem.size()).order(ByteOrder.nativeOrder());
 		}
 	}
-
-
 }
@@ -1,39 +1,84 @@
 package com.mindoo.domino.jna.queries.condition;
 
+import java.util.Arrays;
 import java.util.Calendar;
 
-public class ColumnLookup extends Criteria {
+import com.mindoo.domino.jna.queries.condition.internal.AbstractRelation;
 
-	private ColumnLookup(String columnName, Relation rel, String... value) {
+public class ColumnLookup extends Criteria {
+	private String m_columnName;
+	private Relation m_rel;
+	private Object[] m_values;
+	
+	private ColumnLookup(String columnName, Relation rel, Object[] values) {
+		if (!(rel instanceof AbstractRelation))
+			throw new IllegalArgumentException("Unsupported relation: "+rel);
+		if (values==null || values.length==0)
+			throw new IllegalArgumentException("No values specified for column "+columnName);
 		
+		m_columnName = columnName;
+		m_rel = rel;
+		m_values = values;
 	}
 	
-	private ColumnLookup(String columnName, Relation rel, int... value) {
-		
+	/**
+	 * Returns the programmatic column name or column title
+	 * 
+	 * @return column
+	 */
+	public String getColumnName() {
+		return m_columnName;
 	}
-
-	private ColumnLookup(String columnName, Relation rel, double... value) {
-		
+	
+	public Relation getRelation() {
+		return m_rel;
 	}
-
-	private ColumnLookup(String columnName, Relation rel, Calendar... value) {
-		
+	
+	/**
+	 * Returns the values to compare with, numbers are converted to {@link Double}
+	 * to match the view column values
+	 * 
+	 * @return values
+	 */
+	public Object[] getValues() {
+		return m_values;
 	}
-
+	
+	private static Double[] toDoubleArray(int[] values) {
+		Double[] doubleValues = new Double[values.length];
+		for (int i=0; i<values.length; i++) {
+			doubleValues[i] = Double.valueOf(values[i]);
+		}
+		return doubleValues;
+	}
+	
+	private static Double[] toDoubleArray(double[] values) {
+		Double[] doubleValues = new Double[values.length];
+		for (int i=0; i<values.length; i++) {
+			doubleValues[i] = Double.valueOf(values[i]);
+		}
+		return doubleValues;
+	}
+	
 	public static Criteria column(String columnName, Relation rel, String... values) {
 		return new ColumnLookup(columnName, rel, values);
 	}
 
 	public static Criteria column(String columnName, Relation rel, int... values) {
-		return new ColumnLookup(columnName, rel, values);
+		return new ColumnLookup(columnName, rel, toDoubleArray(values));
 	}
 
 	public static Criteria column(String columnName, Relation rel, double... values) {
-		return new ColumnLookup(columnName, rel, values);		
+		return new ColumnLookup(columnName, rel, toDoubleArray(values));		
 	}
 
 	public static Criteria column(String columnName, Relation rel, Calendar... values) {
 		return new ColumnLookup(columnName, rel, values);
 	}
 
+	@Override
+	public String toString() {
+		String relName = m_rel.getClass().getSimpleName().replace("Relation", "");
+		return "column("+m_columnName+" "+relName+" "+Arrays.toString(m_values)+")";
+	}
 }
@@ -15,6 +15,16 @@ public class Count implements Iterable<NotesViewEntryData> {
 		m_parentSelection.setCount(count);
 	}
 
+	/**
+	 * Returns the execution plan, see {@link Selection#explain(boolean)}
+	 * 
+	 * @param analyze true to execute the selection and add the actual costs
+	 * @return plan description
+	 */
+	public String explain(boolean analyze) {
+		return m_parentSelection.explain(analyze);
+	}
+	
 	@Override
 	public Iterator<NotesViewEntryData> iterator() {
 		return SelectionEvaluator.evaluate(m_parentSelection);
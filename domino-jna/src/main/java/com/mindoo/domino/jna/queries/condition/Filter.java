@@ -15,6 +15,10 @@ public class Filter implements Iterable<NotesViewEntryData> {
 		parentSelection.setFilter(this);
 	}
 	
+	public Criteria getCriteria() {
+		return m_crit;
+	}
+	
 	public Sorting orderBy(String columnName) {
 		return new Sorting(m_parentSelection, columnName);
 	}
@@ -23,6 +27,20 @@ public class Filter implements Iterable<NotesViewEntryData> {
 		return new Skip(m_parentSelection, entries);
 	}
 
+	public Count count(int entries) {
+		return new Count(m_parentSelection, entries);
+	}
+
+	/**
+	 * Returns the execution plan, see {@link Selection#explain(boolean)}
+	 * 
+	 * @param analyze true to execute the selection and add the actual costs
+	 * @return plan description
+	 */
+	public String explain(boolean analyze) {
+		return m_parentSelection.explain(analyze);
+	}
+	
 	@Override
 	public Iterator<NotesViewEntryData> iterator() {
 		return SelectionEvaluator.evaluate(m_parentSelection);
@@ -0,0 +1,34 @@
+package com.mindoo.domino.jna.queries.condition;
+
+/**
+ * Criteria that runs a selection formula on the documents via NSFSearch, e.g. to
+ * filter by item values that are not displayed in view columns
+ * 
+ * @author Karsten Lehmann
+ */
+public class FormulaLookup extends Criteria {
+	private String m_formula;
+	
+	private FormulaLookup(String formula) {
+		m_formula = formula;
+	}
+	
+	/**
+	 * Creates a criteria that matches documents selected by a formula
+	 * 
+	 * @param formula selection formula, e.g. SELECT form="Person" &amp; @Year(Birthday)=1970
+	 * @return criteria
+	 */
+	public static Criteria formula(String formula) {
+		return new FormulaLookup(formula);
+	}
+	
+	public String getFormula() {
+		return m_formula;
+	}
+	
+	@Override
+	public String toString() {
+		return "formula("+m_formula+")";
+	}
+}
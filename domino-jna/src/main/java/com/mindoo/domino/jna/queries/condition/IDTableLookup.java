@@ -1,6 +1,6 @@
 package com.mindoo.domino.jna.queries.condition;
 
-
+import java.util.Arrays;
 
 public class IDTableLookup extends Criteria {
 	private String[] m_noteIdsStr;
@@ -22,4 +22,24 @@ public class IDTableLookup extends Criteria {
 		return new IDTableLookup(values);
 	}
 
+	/**
+	 * Returns the note ids to look for
+	 * 
+	 * @return note ids, hex strings are converted to int
+	 */
+	public int[] getNoteIds() {
+		if (m_noteIdsInt==null) {
+			int[] noteIds = new int[m_noteIdsStr.length];
+			for (int i=0; i<m_noteIdsStr.length; i++) {
+				noteIds[i] = Integer.parseInt(m_noteIdsStr[i], 16);
+			}
+			m_noteIdsInt = noteIds;
+		}
+		return m_noteIdsInt;
+	}
+	
+	@Override
+	public String toString() {
+		return "noteIdsContain("+(m_noteIdsStr!=null ? Arrays.toString(m_noteIdsStr) : Arrays.toString(m_noteIdsInt))+")";
+	}
 }
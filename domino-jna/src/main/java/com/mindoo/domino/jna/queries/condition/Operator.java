@@ -1,6 +1,7 @@
 package com.mindoo.domino.jna.queries.condition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Operator extends Criteria {
@@ -14,9 +15,28 @@ public class Operator extends Criteria {
 		m_criteriaArr = criteriaArr;
 	}
 	
+	/**
+	 * Returns true for an AND operation, false for OR
+	 * 
+	 * @return true if AND
+	 */
+	public boolean isAnd() {
+		return m_type==OperatorType.AND;
+	}
+	
+	/**
+	 * Returns the combined criteria
+	 * 
+	 * @return criteria
+	 */
+	public Criteria[] getCriteria() {
+		return m_criteriaArr;
+	}
+	
 	public static Criteria and(Criteria crit1, Criteria crit2, Criteria... criteria) {
 		List<Criteria> criteriaList = new ArrayList<Criteria>();
 		criteriaList.add(crit1);
+		criteriaList.add(crit2);
 		if (criteria!=null) {
 			for (Criteria currCrit : criteria) {
 				criteriaList.add(currCrit);
@@ -28,6 +48,7 @@ public class Operator extends Criteria {
 	public static Criteria or(Criteria crit1, Criteria crit2, Criteria... criteria) {
 		List<Criteria> criteriaList = new ArrayList<Criteria>();
 		criteriaList.add(crit1);
+		criteriaList.add(crit2);
 		if (criteria!=null) {
 			for (Criteria currCrit : criteria) {
 				criteriaList.add(currCrit);
@@ -35,4 +56,9 @@ public class Operator extends Criteria {
 		}
 		return new Operator(OperatorType.OR, criteriaList.toArray(new Criteria[criteriaList.size()]));
 	}
+	
+	@Override
+	public String toString() {
+		return m_type.toString().toLowerCase()+Arrays.toString(m_criteriaArr);
+	}
 }
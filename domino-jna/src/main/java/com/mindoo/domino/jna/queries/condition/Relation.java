@@ -6,6 +6,7 @@ import com.mindoo.domino.jna.queries.condition.internal.GreaterThanIgnoreCaseRel
 import com.mindoo.domino.jna.queries.condition.internal.GreaterThanRelation;
 import com.mindoo.domino.jna.queries.condition.internal.LessThanIgnoreCaseRelation;
 import com.mindoo.domino.jna.queries.condition.internal.LessThanRelation;
+import com.mindoo.domino.jna.queries.condition.internal.NotEqualsIgnoreCaseRelation;
 import com.mindoo.domino.jna.queries.condition.internal.NotEqualsRelation;
 import com.mindoo.domino.jna.queries.condition.internal.NotStartsWithIgnoreCaseRelation;
 import com.mindoo.domino.jna.queries.condition.internal.NotStartsWithRelation;
@@ -22,7 +23,7 @@ public interface Relation {
 	public static final Relation Equals = new EqualsRelation();
 	public static final Relation EqualsIgnoreCase = new EqualsIgnoreCaseRelation();
 	public static final Relation NotEquals = new NotEqualsRelation();
-	public static final Relation NotEqualsIgnoreCase = new EqualsIgnoreCaseRelation();
+	public static final Relation NotEqualsIgnoreCase = new NotEqualsIgnoreCaseRelation();
 	
 	public static final Relation GreaterThan = new GreaterThanRelation();
 	public static final Relation GreaterThanIgnoreCase = new GreaterThanIgnoreCaseRelation();
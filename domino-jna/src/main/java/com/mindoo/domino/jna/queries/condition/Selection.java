@@ -2,21 +2,73 @@ package com.mindoo.domino.jna.queries.condition;
 
 import java.util.Iterator;
 
+import com.mindoo.domino.jna.NotesCollection;
 import com.mindoo.domino.jna.NotesViewEntryData;
 import com.mindoo.domino.jna.queries.condition.internal.SelectionEvaluator;
 
-
+/**
+ * Declarative query on a {@link NotesCollection}, created via {@link NotesCollection#select(String, String...)}.<br>
+ * <br>
+ * Iterating over the selection computes an execution plan that uses key lookups in the sort column
+ * of the current collation, ID tables and NSFSearch (for {@link FormulaLookup#formula(String)}) to find the
+ * candidate documents. Those are read from the view via the selected list in view order, so the
+ * query replaces the content of {@link NotesCollection#getSelectedList()}. Criteria that cannot use
+ * an index are checked while reading the view entries.
+ * 
+ * @author Karsten Lehmann
+ */
 public class Selection implements Iterable<NotesViewEntryData> {
+	private NotesCollection m_collection;
 	private String[] m_columns;
 	private Filter m_whereFilter;
 	private Sorting m_orderBySorting;
 	private int m_skip;
-	private int m_count;
+	private int m_count = Integer.MAX_VALUE;
 	
-	public Selection(String[] columns) {
+	public Selection(NotesCollection collection, String[] columns) {
+		m_collection = collection;
 		m_columns = columns;
 	}
 	
+	public NotesCollection getCollection() {
+		return m_collection;
+	}
+	
+	/**
+	 * Returns the columns to read
+	 * 
+	 * @return programmatic column names or column titles
+	 */
+	public String[] getColumns() {
+		return m_columns;
+	}
+	
+	/**
+	 * Returns the filter criteria
+	 * 
+	 * @return criteria or null to return all documents
+	 */
+	public Criteria getFilterCriteria() {
+		return m_whereFilter==null ? null : m_whereFilter.getCriteria();
+	}
+	
+	/**
+	 * Returns the column to sort the result by
+	 * 
+	 * @return column name or null to use the current collation
+	 */
+	public String getOrderByColumn() {
+		return m_orderBySorting==null ? null : m_orderBySorting.getColumnName();
+	}
+	
+	public int getSkip() {
+		return m_skip;
+	}
+	
+	public int getCount() {
+		return m_count;
+	}
+	
 	public Filter where(Operator operator) {
 		return new Filter(this, operator);
 	}
@@ -27,26 +79,27 @@ public class Selection implements Iterable<NotesViewEntryData> {
 	}
 
 	public Sorting orderBy(String columnName) {
-		m_orderBySorting = new Sorting(this, columnName);
-		return m_orderBySorting;
+		return new Sorting(this, columnName);
 	}
 
 	public Skip skip(int entries) {
-		m_skip = entries;
 		return new Skip(this, entries);
 	}
 
 	public Count count(int entries) {
-		m_count = entries;
 		return new Count(this, entries);
 	}
 
 	public Selection setSkip(int skip) {
+		if (skip < 0)
+			throw new IllegalArgumentException("Skip must not be negative: "+skip);
 		m_skip = skip;
 		return this;
 	}
 	
 	public Selection setCount(int count) {
+		if (count < 0)
+			throw new IllegalArgumentException("Count must not be negative: "+count);
 		m_count = count;
 		return this;
 	}
@@ -62,10 +115,26 @@ public class Selection implements Iterable<NotesViewEntryData> {
 	}
 	
 	public Selection setOrderBy(String columnName) {
-		m_orderBySorting = new Sorting(this, columnName);
+		new Sorting(this, columnName);
 		return this;
 	}
+	
+	void setSorting(Sorting sorting) {
+		m_orderBySorting = sorting;
+	}
 
+	/**
+	 * Returns the execution plan with the chosen access paths (key lookups, ID tables, NSFSearch
+	 * or view scan) and the estimated number of matches and NIF calls, computed from cached view
+	 * statistics. Note that computing the plan applies the sorting of the selection to the collection.
+	 * 
+	 * @param analyze true to execute the selection (entries are read and discarded) and add the actual number of matches and NIF calls
+	 * @return plan description
+	 */
+	public String explain(boolean analyze) {
+		return SelectionEvaluator.explain(this, analyze);
+	}
+	
 	@Override
 	public Iterator<NotesViewEntryData> iterator() {
 		return SelectionEvaluator.evaluate(this);
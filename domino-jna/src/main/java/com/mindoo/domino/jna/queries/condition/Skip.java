@@ -1,7 +1,11 @@
 package com.mindoo.domino.jna.queries.condition;
 
+import java.util.Iterator;
 
-public class Skip {
+import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.queries.condition.internal.SelectionEvaluator;
+
+public class Skip implements Iterable<NotesViewEntryData> {
 	private Selection m_parentSelection;
 	private int m_skip;
 	
@@ -15,5 +19,19 @@ public class Skip {
 		return new Count(m_parentSelection, entries);
 	}
 
+	/**
+	 * Returns the execution plan, see {@link Selection#explain(boolean)}
+	 * 
+	 * @param analyze true to execute the selection and add the actual costs
+	 * @return plan description
+	 */
+	public String explain(boolean analyze) {
+		return m_parentSelection.explain(analyze);
+	}
+	
+	@Override
+	public Iterator<NotesViewEntryData> iterator() {
+		return SelectionEvaluator.evaluate(m_parentSelection);
+	}
 	
 }
@@ -3,6 +3,7 @@ package com.mindoo.domino.jna.queries.condition;
 import java.util.Iterator;
 
 import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.queries.condition.internal.SelectionEvaluator;
 
 public class Sorting implements Iterable<NotesViewEntryData> {
 	private Selection m_parentSelection;
@@ -11,8 +12,18 @@ public class Sorting implements Iterable<NotesViewEntryData> {
 	public Sorting(Selection parentSelection, String columnName) {
 		m_parentSelection = parentSelection;
 		m_columnName = columnName;
+		m_parentSelection.setSorting(this);
 	}
 
+	/**
+	 * Returns the column to sort by in ascending order
+	 * 
+	 * @return programmatic column name
+	 */
+	public String getColumnName() {
+		return m_columnName;
+	}
+	
 	public Skip skip(int entries) {
 		return new Skip(m_parentSelection, entries);
 	}
@@ -21,10 +32,19 @@ public class Sorting implements Iterable<NotesViewEntryData> {
 		return new Count(m_parentSelection, entries);
 	}
 
+	/**
+	 * Returns the execution plan, see {@link Selection#explain(boolean)}
+	 * 
+	 * @param analyze true to execute the selection and add the actual costs
+	 * @return plan description
+	 */
+	public String explain(boolean analyze) {
+		return m_parentSelection.explain(analyze);
+	}
+	
 	@Override
 	public Iterator<NotesViewEntryData> iterator() {
-		// TODO Auto-generated method stub
-		return null;
+		return SelectionEvaluator.evaluate(m_parentSelection);
 	}
 	
 }
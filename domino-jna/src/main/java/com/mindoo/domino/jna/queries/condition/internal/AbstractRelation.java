@@ -1,9 +1,115 @@
 package com.mindoo.domino.jna.queries.condition.internal;
 
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.mindoo.domino.jna.constants.Find;
 import com.mindoo.domino.jna.queries.condition.Relation;
 
 public abstract class AbstractRelation implements Relation {
 	
 	public AbstractRelation() {
 	}
+	
+	/**
+	 * Checks if a column value matches the relation for one of the compare values.
+	 * Multi-value columns match if one of their values matches.
+	 * 
+	 * @param columnValue column value, e.g. {@link String}, {@link Double}, {@link Calendar} or {@link List}
+	 * @param compareValues values of the query
+	 * @return true if matching
+	 */
+	public boolean matches(Object columnValue, Object[] compareValues) {
+		if (columnValue instanceof List) {
+			for (Object currValue : (List<?>) columnValue) {
+				if (matchesAny(currValue, compareValues)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return matchesAny(columnValue, compareValues);
+	}
+	
+	private boolean matchesAny(Object value, Object[] compareValues) {
+		for (Object currCompareValue : compareValues) {
+			if (matchesValue(value, currCompareValue)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks if a single value matches the relation
+	 * 
+	 * @param value value
+	 * @param compareValue value of the query
+	 * @return true if matching
+	 */
+	protected abstract boolean matchesValue(Object value, Object compareValue);
+	
+	/**
+	 * Returns the find flags to compute candidates for this relation with a key lookup in the
+	 * sort column. The lookup may return more entries than matching the relation (e.g. it ignores
+	 * the case), but must not miss any matching entry.
+	 * 
+	 * @param compareValue value of the query
+	 * @return flags or null if key lookups cannot be used
+	 */
+	public EnumSet<Find> getKeyLookupFlags(Object compareValue) {
+		return null;
+	}
+	
+	/**
+	 * Compares two values of the same type
+	 * 
+	 * @param value value
+	 * @param compareValue value of the query
+	 * @param ignoreCase true to compare strings case insensitive
+	 * @return comparison result or null if the values cannot be compared
+	 */
+	protected static Integer compareValues(Object value, Object compareValue, boolean ignoreCase) {
+		if (value instanceof String && compareValue instanceof String) {
+			return ignoreCase ? ((String) value).compareToIgnoreCase((String) compareValue) : ((String) value).compareTo((String) compareValue);
+		}
+		else if (value instanceof Number && compareValue instanceof Number) {
+			return Double.compare(((Number) value).doubleValue(), ((Number) compareValue).doubleValue());
+		}
+		Long valueMillis = toMillis(value);
+		Long compareValueMillis = toMillis(compareValue);
+		if (valueMillis!=null && compareValueMillis!=null) {
+			return valueMillis.compareTo(compareValueMillis);
+		}
+		return null;
+	}
+	
+	private static Long toMillis(Object value) {
+		if (value instanceof Calendar) {
+			return ((Calendar) value).getTimeInMillis();
+		}
+		else if (value instanceof Date) {
+			return ((Date) value).getTime();
+		}
+		return null;
+	}
+	
+	/**
+	 * Checks if a string value starts with a prefix
+	 * 
+	 * @param value value
+	 * @param prefix prefix
+	 * @param ignoreCase true to compare case insensitive
+	 * @return true if value starts with prefix
+	 */
+	protected static boolean startsWith(Object value, Object prefix, boolean ignoreCase) {
+		if (value instanceof String && prefix instanceof String) {
+			String valueStr = (String) value;
+			String prefixStr = (String) prefix;
+			return valueStr.regionMatches(ignoreCase, 0, prefixStr, 0, prefixStr.length());
+		}
+		return false;
+	}
 }
@@ -1,9 +1,27 @@
 package com.mindoo.domino.jna.queries.condition.internal;
 
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.constants.Find;
+
 public final class EqualsIgnoreCaseRelation extends AbstractRelation {
 
 	public EqualsIgnoreCaseRelation() {
 		
 	}
 	
+	@Override
+	protected boolean matchesValue(Object value, Object compareValue) {
+		Integer result = compareValues(value, compareValue, true);
+		return result!=null && result.intValue()==0;
+	}
+	
+	@Override
+	public EnumSet<Find> getKeyLookupFlags(Object compareValue) {
+		if (compareValue instanceof String) {
+			return EnumSet.of(Find.EQUAL, Find.CASE_INSENSITIVE, Find.ACCENT_INSENSITIVE);
+		}
+		return EnumSet.of(Find.EQUAL);
+	}
+	
 }
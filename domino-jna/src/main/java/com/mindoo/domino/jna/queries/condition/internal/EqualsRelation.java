@@ -1,9 +1,28 @@
 package com.mindoo.domino.jna.queries.condition.internal;
 
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.constants.Find;
+
 public class EqualsRelation extends AbstractRelation {
 
 	public EqualsRelation() {
 		
 	}
 	
+	@Override
+	protected boolean matchesValue(Object value, Object compareValue) {
+		Integer result = compareValues(value, compareValue, false);
+		return result!=null && result.intValue()==0;
+	}
+	
+	@Override
+	public EnumSet<Find> getKeyLookupFlags(Object compareValue) {
+		if (compareValue instanceof String) {
+			//the lookup result is filtered again, so we can use the fastest key comparison
+			return EnumSet.of(Find.EQUAL, Find.CASE_INSENSITIVE, Find.ACCENT_INSENSITIVE);
+		}
+		return EnumSet.of(Find.EQUAL);
+	}
+	
 }
@@ -7,4 +7,10 @@ public final class LessThanIgnoreCaseRelation extends AbstractRelation {
 		
 	}
 	
+	@Override
+	protected boolean matchesValue(Object value, Object compareValue) {
+		Integer result = compareValues(value, compareValue, true);
+		return result!=null && result.intValue()<0;
+	}
+	
 }
@@ -1,9 +1,23 @@
 package com.mindoo.domino.jna.queries.condition.internal;
 
 public class NotEqualsRelation extends AbstractRelation {
+	private static final EqualsRelation POSITIVE = new EqualsRelation();
 
 	public NotEqualsRelation() {
 		
 	}
 	
+	/**
+	 * Negation of {@link EqualsRelation}: for multi-value columns, none of the values may match
+	 */
+	@Override
+	public boolean matches(Object columnValue, Object[] compareValues) {
+		return !POSITIVE.matches(columnValue, compareValues);
+	}
+	
+	@Override
+	protected boolean matchesValue(Object value, Object compareValue) {
+		return !POSITIVE.matchesValue(value, compareValue);
+	}
+	
 }
@@ -1,10 +1,23 @@
 package com.mindoo.domino.jna.queries.condition.internal;
 
-
 public final class NotStartsWithIgnoreCaseRelation extends AbstractRelation {
+	private static final StartsWithIgnoreCaseRelation POSITIVE = new StartsWithIgnoreCaseRelation();
 
 	public NotStartsWithIgnoreCaseRelation() {
 		
 	}
 	
+	/**
+	 * Negation of {@link StartsWithIgnoreCaseRelation}: for multi-value columns, none of the values may match
+	 */
+	@Override
+	public boolean matches(Object columnValue, Object[] compareValues) {
+		return !POSITIVE.matches(columnValue, compareValues);
+	}
+	
+	@Override
+	protected boolean matchesValue(Object value, Object compareValue) {
+		return !POSITIVE.matchesValue(value, compareValue);
+	}
+	
 }
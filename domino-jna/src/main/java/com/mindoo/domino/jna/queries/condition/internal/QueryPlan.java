@@ -0,0 +1,852 @@
+package com.mindoo.domino.jna.queries.condition.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesCollection.Direction;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.constants.Find;
+import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.queries.condition.ColumnLookup;
+import com.mindoo.domino.jna.queries.condition.Criteria;
+import com.mindoo.domino.jna.queries.condition.FormulaLookup;
+import com.mindoo.domino.jna.queries.condition.IDTableLookup;
+import com.mindoo.domino.jna.queries.condition.Operator;
+import com.mindoo.domino.jna.queries.condition.Selection;
+
+/**
+ * Execution plan of a {@link Selection}.<br>
+ * <br>
+ * The plan computes an ID table of candidate documents for the filter criteria:
+ * <ul>
+ * <li>column criteria on the sort column of the current collation use NIF key lookups</li>
+ * <li>note id criteria are converted to an ID table</li>
+ * <li>formula criteria run NSFSearch on the view documents or, if combined via AND, only on the candidates of the other criteria</li>
+ * <li>AND intersects the ID tables of its criteria, OR merges them if all of its criteria produced an ID table</li>
+ * </ul>
+ * The access paths are chosen based on {@link ViewStatistics}: key lookups are only used if reading
+ * their note ids costs less NIF calls than it saves when reading the view entries, and the criteria of
+ * an AND are applied in the order of their estimated number of matches.<br>
+ * <br>
+ * Key lookups ignore case and accents and other column criteria cannot use an index, so unless
+ * the candidates are exact, the view entries need to be checked with {@link #matches(NotesViewEntryData)}
+ * while reading them.
+ * 
+ * @author Karsten Lehmann
+ */
+public class QueryPlan {
+	/** part of the documents assumed to match a column criteria that cannot use a key lookup */
+	private static final double DEFAULT_FILTER_SELECTIVITY = 0.5;
+	/** costs of searching one document with NSFSearch, in NIF calls */
+	private static final double FORMULA_DOC_COSTS = 0.05;
+	
+	private enum NodeType {KEY_LOOKUP, ID_TABLE, FORMULA, FILTER, AND, OR};
+	
+	private Selection m_selection;
+	private NotesCollection m_collection;
+	private ViewStatistics m_stats;
+	private Criteria m_criteria;
+	private PlanNode m_root;
+	private String m_sortColumnName;
+	private int m_documentCount;
+	private long m_startCallCount;
+	private long m_statisticsCalls;
+	
+	private NotesIDTable m_candidates;
+	private boolean m_exact;
+	/** note ids matching ID table and formula criteria */
+	private Map<Criteria,Set<Integer>> m_idSets;
+	private List<String> m_filterColumns;
+	
+	private Navigate m_readNavigator;
+	private double m_estEntriesRead;
+	private double m_estReadCalls;
+	private int m_readCalls;
+	private int m_entriesRead;
+	private int m_entriesReturned;
+	
+	private QueryPlan(Selection selection) {
+		m_selection = selection;
+		m_collection = selection.getCollection();
+		m_criteria = selection.getFilterCriteria();
+		m_idSets = new IdentityHashMap<Criteria,Set<Integer>>();
+		m_filterColumns = new ArrayList<String>();
+	}
+	
+	/**
+	 * Resorts the collection if required and chooses the access paths for the criteria of the selection
+	 * 
+	 * @param selection selection
+	 * @return plan
+	 */
+	public static QueryPlan create(Selection selection) {
+		QueryPlan plan = new QueryPlan(selection);
+		plan.build();
+		return plan;
+	}
+	
+	private void build() {
+		m_startCallCount = m_collection.getNIFReadCallCount();
+		
+		String orderByColumn = m_selection.getOrderByColumn();
+		if (orderByColumn!=null) {
+			if (!orderByColumn.equalsIgnoreCase(m_collection.getPrimarySortColumnName()) ||
+					m_collection.getPrimarySortDirection()!=Direction.Ascending) {
+				m_collection.resortView(orderByColumn.toLowerCase(), Direction.Ascending);
+			}
+		}
+		
+		m_sortColumnName = m_collection.getPrimarySortColumnName();
+		m_stats = ViewStatistics.get(m_collection);
+		m_documentCount = m_stats.getDocumentCount(m_collection);
+		
+		if (m_criteria!=null) {
+			collectFilterColumns(m_criteria);
+			m_root = buildNode(m_criteria);
+			
+			if (m_root.m_restricting && !m_root.m_containsFormula &&
+					m_root.m_estCosts + 1 + readCosts(m_root.m_estCandidates) >= readCosts(m_documentCount)) {
+				//reading the whole view is cheaper than computing the candidates
+				demoteKeyLookups(m_root, "view scan is cheaper than key lookups");
+			}
+		}
+		m_statisticsCalls = m_collection.getNIFReadCallCount() - m_startCallCount;
+		
+		estimateRead();
+	}
+	
+	/**
+	 * Computes the candidates of the selection
+	 */
+	public void execute() {
+		if (m_root==null) {
+			m_exact = true;
+		}
+		else {
+			Candidates candidates = computeCandidates(m_root, null);
+			if (candidates==null) {
+				m_exact = false;
+			}
+			else {
+				m_candidates = candidates.m_table;
+				m_exact = candidates.m_exact;
+			}
+		}
+		m_readNavigator = m_candidates==null ? Navigate.NEXT_NONCATEGORY : Navigate.NEXT_SELECTED;
+	}
+	
+	public Selection getSelection() {
+		return m_selection;
+	}
+	
+	/**
+	 * Returns the candidate documents
+	 * 
+	 * @return ID table or null if the whole view needs to be read
+	 */
+	public NotesIDTable getCandidates() {
+		return m_candidates;
+	}
+	
+	/**
+	 * Returns true if the view entries need to be checked with {@link #matches(NotesViewEntryData)}
+	 * 
+	 * @return true if entries need to be filtered
+	 */
+	public boolean isFilterRequired() {
+		return !m_exact;
+	}
+	
+	/**
+	 * Returns the names of columns used in column criteria
+	 * 
+	 * @return column names
+	 */
+	public List<String> getFilterColumns() {
+		return m_filterColumns;
+	}
+	
+	/**
+	 * Returns the statistics of the view
+	 * 
+	 * @return statistics
+	 */
+	public ViewStatistics getStatistics() {
+		return m_stats;
+	}
+	
+	/**
+	 * Checks if a view entry matches the filter criteria. The entry must have been read with
+	 * the values of the columns returned by {@link #getFilterColumns()}.
+	 * 
+	 * @param entry entry
+	 * @return true if matching
+	 */
+	public boolean matches(NotesViewEntryData entry) {
+		return m_criteria==null || matches(m_criteria, entry);
+	}
+	
+	/**
+	 * Records a NIFReadEntries call while reading the result
+	 * 
+	 * @param entriesRead number of entries read
+	 */
+	void recordRead(int entriesRead) {
+		m_readCalls++;
+		m_entriesRead += entriesRead;
+	}
+	
+	/**
+	 * Records an entry returned to the caller
+	 */
+	void recordEntryReturned() {
+		m_entriesReturned++;
+	}
+	
+	/**
+	 * Recycles the ID table of candidates. The plan can still be used to filter entries.
+	 */
+	public void recycle() {
+		if (m_candidates!=null && !m_candidates.isRecycled()) {
+			m_candidates.recycle();
+		}
+	}
+	
+	private boolean matches(Criteria crit, NotesViewEntryData entry) {
+		if (crit instanceof ColumnLookup) {
+			ColumnLookup lookup = (ColumnLookup) crit;
+			AbstractRelation rel = (AbstractRelation) lookup.getRelation();
+			return rel.matches(entry.get(lookup.getColumnName()), lookup.getValues());
+		}
+		else if (crit instanceof IDTableLookup || crit instanceof FormulaLookup) {
+			//no ID set means that the criteria has been skipped, because its AND operation has no candidates
+			Set<Integer> noteIds = m_idSets.get(crit);
+			return noteIds!=null && noteIds.contains(entry.getNoteId());
+		}
+		else if (crit instanceof Operator) {
+			Operator op = (Operator) crit;
+			if (op.isAnd()) {
+				for (Criteria currCrit : op.getCriteria()) {
+					if (!matches(currCrit, entry)) {
+						return false;
+					}
+				}
+				return true;
+			}
+			else {
+				for (Criteria currCrit : op.getCriteria()) {
+					if (matches(currCrit, entry)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported criteria: "+crit);
+	}
+	
+	private void collectFilterColumns(Criteria crit) {
+		if (crit instanceof ColumnLookup) {
+			String columnName = ((ColumnLookup) crit).getColumnName();
+			if (!m_filterColumns.contains(columnName)) {
+				m_filterColumns.add(columnName);
+			}
+		}
+		else if (crit instanceof Operator) {
+			for (Criteria currCrit : ((Operator) crit).getCriteria()) {
+				collectFilterColumns(currCrit);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the estimated NIF calls to read view entries with column values
+	 * 
+	 * @param entries number of entries
+	 * @return calls
+	 */
+	private double readCosts(double entries) {
+		return entries / m_stats.getEntriesPerBuffer();
+	}
+	
+	private PlanNode buildNode(Criteria crit) {
+		if (crit instanceof ColumnLookup) {
+			return buildColumnNode((ColumnLookup) crit);
+		}
+		else if (crit instanceof IDTableLookup) {
+			PlanNode node = new PlanNode(crit, NodeType.ID_TABLE);
+			node.m_estRows = Math.min(((IDTableLookup) crit).getNoteIds().length, m_documentCount);
+			node.m_estCandidates = node.m_estRows;
+			return node;
+		}
+		else if (crit instanceof FormulaLookup) {
+			PlanNode node = new PlanNode(crit, NodeType.FORMULA);
+			estimateFormula(node, m_documentCount, true);
+			return node;
+		}
+		else if (crit instanceof Operator) {
+			Operator op = (Operator) crit;
+			List<PlanNode> children = new ArrayList<PlanNode>();
+			for (Criteria currCrit : op.getCriteria()) {
+				children.add(buildNode(currCrit));
+			}
+			if (op.isAnd()) {
+				return planAnd(crit, children);
+			}
+			else {
+				return planOr(crit, children);
+			}
+		}
+		throw new IllegalArgumentException("Unsupported criteria: "+crit);
+	}
+	
+	private void estimateFormula(PlanNode node, double scopeSize, boolean readViewIds) {
+		node.m_estDocsSearched = scopeSize;
+		node.m_estRows = scopeSize * m_stats.getFormulaSelectivity();
+		node.m_estCandidates = node.m_estRows;
+		node.m_estCalls = readViewIds ? 1 : 0;
+		node.m_estCosts = node.m_estCalls + scopeSize * FORMULA_DOC_COSTS;
+	}
+	
+	private PlanNode buildColumnNode(ColumnLookup lookup) {
+		PlanNode node = new PlanNode(lookup, NodeType.FILTER);
+		node.m_estRows = m_documentCount * DEFAULT_FILTER_SELECTIVITY;
+		
+		if (!isSortColumn(lookup.getColumnName())) {
+			node.m_note = m_sortColumnName==null ? "view is not sorted" : "sort column is "+m_sortColumnName;
+			return node;
+		}
+		
+		AbstractRelation rel = (AbstractRelation) lookup.getRelation();
+		double rows = 0;
+		double calls = 0;
+		for (Object currValue : lookup.getValues()) {
+			EnumSet<Find> findFlags = rel.getKeyLookupFlags(currValue);
+			if (findFlags==null) {
+				node.m_note = "relation cannot use key lookups";
+				return node;
+			}
+			int matches = m_stats.getKeyMatches(m_collection, findFlags, currValue);
+			double currRows = matches==-1 ? m_documentCount * DEFAULT_FILTER_SELECTIVITY : matches;
+			rows += currRows;
+			calls += 1 + Math.ceil(currRows / ViewStatistics.NOTEIDS_PER_BUFFER);
+		}
+		node.m_type = NodeType.KEY_LOOKUP;
+		node.m_restricting = true;
+		node.m_estRows = Math.min(rows, m_documentCount);
+		node.m_estCandidates = node.m_estRows;
+		node.m_estCalls = calls;
+		node.m_estCosts = calls;
+		return node;
+	}
+	
+	/**
+	 * Orders the criteria of an AND operation: key lookups, ID tables and nested operations
+	 * by their estimated number of matches, then formulas so that NSFSearch only needs to scan
+	 * the candidates of the other criteria, then criteria that need to be checked while reading
+	 * the view. Key lookups are skipped if reading their note ids costs more than reading the
+	 * entries that they would remove from the candidates.
+	 */
+	private PlanNode planAnd(Criteria crit, List<PlanNode> children) {
+		PlanNode node = new PlanNode(crit, NodeType.AND);
+		
+		List<PlanNode> restrictingChildren = new ArrayList<PlanNode>();
+		List<PlanNode> formulaChildren = new ArrayList<PlanNode>();
+		List<PlanNode> filterChildren = new ArrayList<PlanNode>();
+		double selectivity = 1;
+		for (PlanNode currChild : children) {
+			if (currChild.m_containsFormula) {
+				formulaChildren.add(currChild);
+			}
+			else if (currChild.m_restricting) {
+				restrictingChildren.add(currChild);
+			}
+			else {
+				filterChildren.add(currChild);
+				selectivity *= getSelectivity(currChild);
+			}
+		}
+		Collections.sort(restrictingChildren, new Comparator<PlanNode>() {
+			
+			@Override
+			public int compare(PlanNode o1, PlanNode o2) {
+				return Double.compare(o1.m_estRows, o2.m_estRows);
+			}
+		});
+		
+		double candidates = m_documentCount;
+		boolean restricting = false;
+		double costs = 0;
+		double calls = 0;
+		
+		for (PlanNode currChild : restrictingChildren) {
+			double childSelectivity = getSelectivity(currChild);
+			if (currChild.m_type==NodeType.KEY_LOOKUP) {
+				double newCandidates = candidates * childSelectivity;
+				double savedCosts = readCosts(candidates - newCandidates);
+				if (!formulaChildren.isEmpty()) {
+					savedCosts += (candidates - newCandidates) * FORMULA_DOC_COSTS * formulaChildren.size();
+				}
+				if (currChild.m_estCosts >= savedCosts) {
+					demoteKeyLookups(currChild, "filtering "+Math.round(candidates)+" candidates is cheaper");
+					filterChildren.add(currChild);
+					selectivity *= childSelectivity;
+					continue;
+				}
+			}
+			candidates = restricting ? candidates * childSelectivity : Math.min(candidates, currChild.m_estCandidates);
+			selectivity *= childSelectivity;
+			restricting = true;
+			costs += currChild.m_estCosts;
+			calls += currChild.m_estCalls;
+		}
+		restrictingChildren.removeAll(filterChildren);
+		
+		for (PlanNode currChild : formulaChildren) {
+			if (currChild.m_type==NodeType.FORMULA) {
+				estimateFormula(currChild, candidates, !restricting);
+			}
+			double childSelectivity = getSelectivity(currChild);
+			if (currChild.m_restricting) {
+				candidates = restricting ? candidates * childSelectivity : Math.min(candidates, currChild.m_estCandidates);
+				restricting = true;
+			}
+			selectivity *= childSelectivity;
+			costs += currChild.m_estCosts;
+			calls += currChild.m_estCalls;
+		}
+		node.m_children.addAll(restrictingChildren);
+		node.m_children.addAll(formulaChildren);
+		node.m_children.addAll(filterChildren);
+		node.m_restricting = restricting;
+		node.m_containsFormula = !formulaChildren.isEmpty();
+		node.m_estCandidates = restricting ? candidates : m_documentCount;
+		node.m_estRows = m_documentCount * selectivity;
+		node.m_estCosts = costs;
+		node.m_estCalls = calls;
+		return node;
+	}
+	
+	private double getSelectivity(PlanNode node) {
+		return m_documentCount==0 ? 0 : Math.min(1, node.m_estRows / m_documentCount);
+	}
+	
+	/**
+	 * An OR operation can only restrict the candidates if all of its criteria do, otherwise only
+	 * the formulas need to be evaluated to filter the view entries
+	 */
+	private PlanNode planOr(Criteria crit, List<PlanNode> children) {
+		PlanNode node = new PlanNode(crit, NodeType.OR);
+		node.m_children.addAll(children);
+		
+		boolean restricting = true;
+		double rows = 0;
+		for (PlanNode currChild : children) {
+			restricting &= currChild.m_restricting;
+			node.m_containsFormula |= currChild.m_containsFormula;
+			rows += currChild.m_estRows;
+		}
+		node.m_restricting = restricting;
+		node.m_estRows = Math.min(rows, m_documentCount);
+		
+		if (!restricting) {
+			for (PlanNode currChild : children) {
+				if (!currChild.m_containsFormula) {
+					demoteKeyLookups(currChild, "OR contains criteria without index");
+				}
+			}
+		}
+		double candidates = 0;
+		for (PlanNode currChild : children) {
+			node.m_estCosts += currChild.m_estCosts;
+			node.m_estCalls += currChild.m_estCalls;
+			candidates += currChild.m_estCandidates;
+		}
+		node.m_estCandidates = restricting ? Math.min(candidates, m_documentCount) : m_documentCount;
+		return node;
+	}
+	
+	/**
+	 * Changes key lookups to criteria that are checked while reading the view
+	 * 
+	 * @param node node
+	 * @param reason reason for explain output
+	 */
+	private void demoteKeyLookups(PlanNode node, String reason) {
+		if (node.m_type==NodeType.KEY_LOOKUP) {
+			node.m_type = NodeType.FILTER;
+			node.m_restricting = false;
+			node.m_estCalls = 0;
+			node.m_estCosts = 0;
+			node.m_estCandidates = m_documentCount;
+			node.m_note = reason;
+		}
+		else if (node.m_type==NodeType.AND || node.m_type==NodeType.OR) {
+			boolean and = node.m_type==NodeType.AND;
+			boolean restricting = !and;
+			node.m_estCalls = 0;
+			node.m_estCosts = 0;
+			for (PlanNode currChild : node.m_children) {
+				demoteKeyLookups(currChild, reason);
+				restricting = and ? restricting | currChild.m_restricting : restricting & currChild.m_restricting;
+				node.m_estCalls += currChild.m_estCalls;
+				node.m_estCosts += currChild.m_estCosts;
+			}
+			node.m_restricting = restricting;
+			if (!restricting) {
+				node.m_estCandidates = m_documentCount;
+			}
+		}
+	}
+	
+	/**
+	 * Estimates the NIF calls to read the result
+	 */
+	private void estimateRead() {
+		boolean restricting = m_root!=null && m_root.m_restricting;
+		double candidates = restricting ? m_root.m_estCandidates : m_documentCount;
+		double rows = m_root==null ? m_documentCount : m_root.m_estRows;
+		double needed = (double) m_selection.getSkip() + m_selection.getCount();
+		
+		if (m_root==null || isExact(m_root)) {
+			//skipping is done by NIF without reading the entries
+			m_estEntriesRead = Math.min(Math.max(0, candidates - m_selection.getSkip()), m_selection.getCount());
+		}
+		else {
+			double matchingPart = candidates==0 ? 1 : Math.max(rows / candidates, 0.0001);
+			m_estEntriesRead = Math.min(candidates, needed / matchingPart);
+		}
+		m_estReadCalls = Math.max(1, Math.ceil(readCosts(m_estEntriesRead)));
+		if (restricting) {
+			//NIFUpdateFilters for the selected list
+			m_estReadCalls++;
+		}
+	}
+	
+	private boolean isExact(PlanNode node) {
+		switch (node.m_type) {
+		case KEY_LOOKUP:
+		case FILTER:
+			return false;
+		case AND:
+		case OR:
+			for (PlanNode currChild : node.m_children) {
+				if (!isExact(currChild)) {
+					return false;
+				}
+			}
+			return true;
+		default:
+			return true;
+		}
+	}
+	
+	/**
+	 * Computes the candidates for a plan node
+	 * 
+	 * @param node node
+	 * @param scope documents that formulas need to be evaluated on, null for all view documents; documents outside the scope are known to not match the selection
+	 * @return candidates or null if the node cannot restrict the documents to read
+	 */
+	private Candidates computeCandidates(PlanNode node, NotesIDTable scope) {
+		long callsBefore = m_collection.getNIFReadCallCount();
+		Candidates candidates;
+		
+		switch (node.m_type) {
+		case KEY_LOOKUP:
+			candidates = lookupKeys((ColumnLookup) node.m_crit);
+			break;
+		case ID_TABLE:
+			int[] noteIds = ((IDTableLookup) node.m_crit).getNoteIds();
+			Set<Integer> noteIdsSet = new HashSet<Integer>();
+			for (int currNoteId : noteIds) {
+				noteIdsSet.add(currNoteId);
+			}
+			addIdSet(node.m_crit, noteIdsSet);
+			candidates = new Candidates(new NotesIDTable(noteIds), true);
+			break;
+		case FORMULA:
+			candidates = searchFormula(node, scope);
+			break;
+		case AND:
+			candidates = computeAndCandidates(node, scope);
+			break;
+		case OR:
+			candidates = computeOrCandidates(node, scope);
+			break;
+		default:
+			//checked while reading the view
+			return null;
+		}
+		
+		node.m_actualCalls = m_collection.getNIFReadCallCount() - callsBefore;
+		if (candidates!=null) {
+			node.m_actualRows = candidates.m_table.getCount();
+		}
+		return candidates;
+	}
+	
+	private void addIdSet(Criteria crit, Set<Integer> noteIds) {
+		Set<Integer> existingNoteIds = m_idSets.get(crit);
+		if (existingNoteIds==null) {
+			m_idSets.put(crit, noteIds);
+		}
+		else {
+			//same criteria used twice in the query with a different scope
+			existingNoteIds.addAll(noteIds);
+		}
+	}
+	
+	private Candidates computeAndCandidates(PlanNode node, NotesIDTable scope) {
+		NotesIDTable result = null;
+		boolean exact = true;
+		
+		for (PlanNode currChild : node.m_children) {
+			if (!currChild.m_restricting && !currChild.m_containsFormula) {
+				//checked while reading the view, but may contain ID table criteria
+				computeIdSets(currChild, result!=null ? result : scope);
+				exact = false;
+				continue;
+			}
+			if (result!=null && result.isEmpty()) {
+				//no need to evaluate the remaining criteria
+				break;
+			}
+			Candidates currCandidates = computeCandidates(currChild, result!=null ? result : scope);
+			if (currCandidates==null) {
+				exact = false;
+			}
+			else {
+				exact &= currCandidates.m_exact;
+				result = intersect(result, currCandidates.m_table);
+			}
+		}
+		return result==null ? null : new Candidates(result, exact);
+	}
+	
+	private Candidates computeOrCandidates(PlanNode node, NotesIDTable scope) {
+		if (!node.m_restricting) {
+			//only compute the ID table and formula results needed to filter the view entries
+			for (PlanNode currChild : node.m_children) {
+				computeIdSets(currChild, scope);
+			}
+			return null;
+		}
+		
+		NotesIDTable result = null;
+		boolean exact = true;
+		for (PlanNode currChild : node.m_children) {
+			Candidates currCandidates = computeCandidates(currChild, scope);
+			exact &= currCandidates.m_exact;
+			if (result==null) {
+				result = currCandidates.m_table;
+			}
+			else {
+				result.addTable(currCandidates.m_table);
+				currCandidates.m_table.recycle();
+			}
+		}
+		return new Candidates(result, exact);
+	}
+	
+	/**
+	 * Computes the note ids of all ID table and formula criteria of a node that is checked
+	 * with {@link #matches(NotesViewEntryData)} while reading the view
+	 * 
+	 * @param node node
+	 * @param scope documents that formulas need to be evaluated on, null for all view documents
+	 */
+	private void computeIdSets(PlanNode node, NotesIDTable scope) {
+		if (node.m_restricting || node.m_containsFormula) {
+			Candidates candidates = computeCandidates(node, scope);
+			if (candidates!=null) {
+				candidates.m_table.recycle();
+			}
+		}
+		else {
+			for (PlanNode currChild : node.m_children) {
+				computeIdSets(currChild, scope);
+			}
+		}
+	}
+	
+	/**
+	 * Intersects two ID tables and recycles them
+	 * 
+	 * @param table1 first table or null
+	 * @param table2 second table
+	 * @return intersection
+	 */
+	private NotesIDTable intersect(NotesIDTable table1, NotesIDTable table2) {
+		if (table1==null) {
+			return table2;
+		}
+		NotesIDTable result = table1.intersect(table2);
+		table1.recycle();
+		table2.recycle();
+		return result;
+	}
+	
+	private Candidates lookupKeys(ColumnLookup lookup) {
+		AbstractRelation rel = (AbstractRelation) lookup.getRelation();
+		Set<Integer> noteIds = new TreeSet<Integer>();
+		for (Object currValue : lookup.getValues()) {
+			noteIds.addAll(m_collection.getAllIdsByKey(rel.getKeyLookupFlags(currValue), currValue));
+		}
+		return new Candidates(new NotesIDTable(noteIds), false);
+	}
+	
+	private boolean isSortColumn(String columnName) {
+		if (m_sortColumnName==null) {
+			return false;
+		}
+		int colValuesIndex = m_collection.getColumnValuesIndex(columnName);
+		return colValuesIndex!=-1 && colValuesIndex==m_collection.getColumnValuesIndex(m_sortColumnName);
+	}
+	
+	private Candidates searchFormula(PlanNode node, NotesIDTable scope) {
+		String formula = ((FormulaLookup) node.m_crit).getFormula();
+		NotesIDTable table;
+		
+		if (scope!=null) {
+			node.m_actualDocsSearched = scope.getCount();
+			table = scope.isEmpty() ? new NotesIDTable() : scope.filter(m_collection.getParent(), formula);
+		}
+		else {
+			NotesIDTable viewIds = new NotesIDTable();
+			try {
+				m_collection.getAllIds(Navigate.NEXT_NONCATEGORY, true, viewIds);
+				node.m_actualDocsSearched = viewIds.getCount();
+				table = viewIds.isEmpty() ? new NotesIDTable() : viewIds.filter(m_collection.getParent(), formula);
+			}
+			finally {
+				viewIds.recycle();
+			}
+		}
+		
+		List<Integer> noteIds = table.toList();
+		m_stats.recordFormulaSearch(node.m_actualDocsSearched, noteIds.size());
+		addIdSet(node.m_crit, new HashSet<Integer>(noteIds));
+		return new Candidates(table, true);
+	}
+	
+	/**
+	 * Returns a description of the plan with the chosen access paths, the estimated
+	 * and, if the selection has been executed, the actual number of matches and NIF calls
+	 * 
+	 * @return plan description
+	 */
+	public String explain() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("VIEW ").append(m_collection.getName()).append(": ").append(m_documentCount).append(" documents, sort column ")
+		.append(m_sortColumnName).append(", ").append(m_statisticsCalls).append(" NIF calls for statistics\n");
+		
+		double estCalls = m_estReadCalls;
+		if (m_root!=null) {
+			explain(m_root, 1, sb);
+			estCalls += m_root.m_estCalls;
+		}
+		
+		sb.append("READ ").append(m_readNavigator==null ? (m_root!=null && m_root.m_restricting ? Navigate.NEXT_SELECTED : Navigate.NEXT_NONCATEGORY) : m_readNavigator)
+		.append(m_root!=null && !isExact(m_root) ? " with filter" : "")
+		.append(": est. entries=").append(Math.round(m_estEntriesRead))
+		.append(", est. NIF calls=").append(Math.round(m_estReadCalls));
+		if (m_readNavigator!=null) {
+			sb.append(" | actual entries=").append(m_entriesRead).append(", returned=").append(m_entriesReturned)
+			.append(", NIF calls=").append(m_readCalls);
+		}
+		sb.append("\n");
+		
+		sb.append("TOTAL: est. NIF calls=").append(Math.round(estCalls));
+		if (m_readNavigator!=null) {
+			sb.append(" | actual NIF calls=").append(m_collection.getNIFReadCallCount() - m_startCallCount - m_statisticsCalls);
+		}
+		return sb.toString();
+	}
+	
+	private void explain(PlanNode node, int level, StringBuilder sb) {
+		for (int i=0; i<level; i++) {
+			sb.append("  ");
+		}
+		sb.append(node.m_type.toString().replace('_', ' '));
+		if (node.m_type!=NodeType.AND && node.m_type!=NodeType.OR) {
+			sb.append(" ").append(node.m_crit);
+		}
+		sb.append(": est. rows=").append(Math.round(node.m_estRows));
+		if (node.m_restricting) {
+			sb.append(", est. NIF calls=").append(Math.round(node.m_estCalls));
+		}
+		if (node.m_type==NodeType.FORMULA) {
+			sb.append(", est. docs searched=").append(Math.round(node.m_estDocsSearched));
+		}
+		if (node.m_actualCalls!=-1) {
+			sb.append(" | actual rows=").append(node.m_actualRows).append(", NIF calls=").append(node.m_actualCalls);
+			if (node.m_type==NodeType.FORMULA) {
+				sb.append(", docs searched=").append(node.m_actualDocsSearched);
+			}
+		}
+		if (node.m_note!=null) {
+			sb.append(" (").append(node.m_note).append(")");
+		}
+		sb.append("\n");
+		
+		for (PlanNode currChild : node.m_children) {
+			explain(currChild, level+1, sb);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return explain();
+	}
+	
+	private static class PlanNode {
+		private Criteria m_crit;
+		private NodeType m_type;
+		private List<PlanNode> m_children;
+		/** true if the node computes an ID table of candidates */
+		private boolean m_restricting;
+		private boolean m_containsFormula;
+		private String m_note;
+		/** estimated number of matching documents */
+		private double m_estRows;
+		/** estimated size of the ID table of candidates */
+		private double m_estCandidates;
+		private double m_estCalls;
+		/** estimated NIF calls and NSFSearch costs */
+		private double m_estCosts;
+		private double m_estDocsSearched;
+		private int m_actualRows = -1;
+		private long m_actualCalls = -1;
+		private int m_actualDocsSearched = -1;
+		
+		public PlanNode(Criteria crit, NodeType type) {
+			m_crit = crit;
+			m_type = type;
+			m_children = new ArrayList<PlanNode>();
+			m_restricting = type==NodeType.ID_TABLE || type==NodeType.FORMULA;
+			m_containsFormula = type==NodeType.FORMULA;
+		}
+	}
+	
+	private static class Candidates {
+		private NotesIDTable m_table;
+		/** true if all candidates match the criteria */
+		private boolean m_exact;
+		
+		public Candidates(NotesIDTable table, boolean exact) {
+			m_table = table;
+			m_exact = exact;
+		}
+	}
+}
@@ -1,13 +1,254 @@
 package com.mindoo.domino.jna.queries.condition.internal;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesIDTable;
 import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.NotesViewLookupResultData;
+import com.mindoo.domino.jna.constants.Navigate;
+import com.mindoo.domino.jna.constants.ReadMask;
+import com.mindoo.domino.jna.constants.UpdateCollectionFilters;
+import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.queries.condition.Selection;
+import com.mindoo.domino.jna.structs.NotesCollectionPosition;
 
 public class SelectionEvaluator {
 
+	/**
+	 * Computes the {@link QueryPlan} for the selection and returns an iterator that
+	 * reads the matching view entries buffer by buffer
+	 * 
+	 * @param sel selection
+	 * @return iterator
+	 */
 	public static Iterator<NotesViewEntryData> evaluate(Selection sel) {
-		return null;
+		if (sel.getCount()==0) {
+			return Collections.<NotesViewEntryData>emptyList().iterator();
+		}
+		return execute(QueryPlan.create(sel));
+	}
+	
+	/**
+	 * Returns the execution plan of the selection, see {@link QueryPlan#explain()}
+	 * 
+	 * @param sel selection
+	 * @param analyze true to execute the selection and include the actual costs
+	 * @return plan description
+	 */
+	public static String explain(Selection sel, boolean analyze) {
+		QueryPlan plan = QueryPlan.create(sel);
+		if (analyze && sel.getCount()>0) {
+			Iterator<NotesViewEntryData> entries = execute(plan);
+			while (entries.hasNext()) {
+				entries.next();
+			}
+		}
+		return plan.explain();
+	}
+	
+	private static Iterator<NotesViewEntryData> execute(QueryPlan plan) {
+		Selection sel = plan.getSelection();
+		NotesCollection col = sel.getCollection();
+		EnumSet<Navigate> nav;
+		try {
+			plan.execute();
+			
+			NotesIDTable candidates = plan.getCandidates();
+			if (candidates==null) {
+				nav = EnumSet.of(Navigate.NEXT_NONCATEGORY);
+			}
+			else {
+				if (candidates.isEmpty()) {
+					return Collections.<NotesViewEntryData>emptyList().iterator();
+				}
+				//read the candidates in view order
+				NotesIDTable selectedList = col.getSelectedList();
+				selectedList.clear();
+				selectedList.addTable(candidates);
+				col.updateFilters(EnumSet.of(UpdateCollectionFilters.FILTER_SELECTED));
+				nav = EnumSet.of(Navigate.NEXT_SELECTED);
+			}
+		}
+		finally {
+			plan.recycle();
+		}
+		
+		List<String> columns = new ArrayList<String>();
+		for (String currColumn : sel.getColumns()) {
+			columns.add(currColumn);
+		}
+		if (plan.isFilterRequired()) {
+			columns.addAll(plan.getFilterColumns());
+		}
+		boolean[] decodeColumns = col.getColumnsToDecode(columns.toArray(new String[columns.size()]));
+		
+		return new SelectionIterator(col, nav, plan, decodeColumns, sel.getSkip(), sel.getCount());
+	}
+	
+	/**
+	 * Iterator that reads view entries buffer by buffer, filters them and applies skip and count.<br>
+	 * <br>
+	 * If the view index changes before the first entry has been read, the view is updated and reading
+	 * is restarted. If it changes later (and {@link NotesCollection#isAutoUpdate()} is true), the view
+	 * is updated and reading continues after the last entry read, which is searched by its note id;
+	 * documents already returned are skipped. Like for lookups that resume after an index change,
+	 * documents moved before the resume position are missed.
+	 */
+	private static class SelectionIterator implements Iterator<NotesViewEntryData> {
+		private static final EnumSet<ReadMask> RETURN_MASK = EnumSet.of(ReadMask.NOTEID, ReadMask.NOTEUNID, ReadMask.SUMMARYVALUES);
+		
+		private NotesCollection m_col;
+		private EnumSet<Navigate> m_nav;
+		private QueryPlan m_plan;
+		private boolean m_filter;
+		private boolean[] m_decodeColumns;
+		private NotesCollectionPosition m_pos;
+		private int m_firstSkipCount;
+		private boolean m_firstRead;
+		private boolean m_moreToRead;
+		/** number of matching entries to skip in memory */
+		private int m_skip;
+		private int m_remaining;
+		private Iterator<NotesViewEntryData> m_buffer;
+		private NotesViewEntryData m_next;
+		/** note id of the last entry read or 0 */
+		private int m_lastNoteId;
+		/** note ids of the entries passed to the skip and count logic, to skip them after a resume */
+		private Set<Integer> m_processedNoteIds;
+		private boolean m_resumed;
+		
+		public SelectionIterator(NotesCollection col, EnumSet<Navigate> nav, QueryPlan plan, boolean[] decodeColumns,
+				int skip, int count) {
+			m_col = col;
+			m_nav = nav;
+			m_plan = plan;
+			m_filter = plan.isFilterRequired();
+			m_decodeColumns = decodeColumns;
+			m_pos = NotesCollectionPosition.toPosition("0");
+			m_firstRead = true;
+			m_moreToRead = true;
+			m_remaining = count;
+			m_processedNoteIds = new HashSet<Integer>();
+			
+			if (m_filter) {
+				m_firstSkipCount = 1;
+				m_skip = skip;
+			}
+			else {
+				//all entries match, so NIF can skip them
+				m_firstSkipCount = skip==Integer.MAX_VALUE ? skip : skip+1;
+				m_skip = 0;
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			while (m_next==null) {
+				if (m_remaining<=0) {
+					return false;
+				}
+				
+				if (m_buffer!=null && m_buffer.hasNext()) {
+					NotesViewEntryData currEntry = m_buffer.next();
+					if (m_filter && !m_plan.matches(currEntry)) {
+						continue;
+					}
+					if (!m_processedNoteIds.add(currEntry.getNoteId()) && m_resumed) {
+						//already processed before the view index change
+						continue;
+					}
+					if (m_skip>0) {
+						m_skip--;
+						continue;
+					}
+					m_next = currEntry;
+				}
+				else if (m_moreToRead) {
+					readNextBuffer();
+				}
+				else {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		private void readNextBuffer() {
+			NotesViewLookupResultData data;
+			while (true) {
+				int skipCount = m_firstRead ? m_firstSkipCount : 1;
+				//without filter we know exactly how many entries we need
+				int returnCount = m_filter ? Integer.MAX_VALUE : m_remaining;
+				
+				data = m_col.readEntries(m_pos, m_nav, skipCount, m_nav, returnCount, RETURN_MASK, m_decodeColumns);
+				
+				if ((m_firstRead || m_col.isAutoUpdate()) && data.hasAnyNonDataConflicts()) {
+					m_plan.recordRead(data.getEntries().size());
+					//refresh the view and continue after the last entry read, or restart if there is none
+					m_col.update();
+					m_pos = findResumePosition();
+					continue;
+				}
+				break;
+			}
+			m_firstRead = false;
+			m_moreToRead = data.hasMoreToDo();
+			List<NotesViewEntryData> entries = data.getEntries();
+			m_buffer = entries.iterator();
+			if (!entries.isEmpty()) {
+				m_lastNoteId = entries.get(entries.size()-1).getNoteId();
+			}
+			
+			m_plan.recordRead(entries.size());
+			if (m_moreToRead) {
+				//the buffer is full, so we learn how many entries fit into it
+				m_plan.getStatistics().recordBuffer(entries.size());
+			}
+		}
+		
+		/**
+		 * Computes the position to continue reading after a view index change
+		 * 
+		 * @return position of the last entry read in the changed view or the start position
+		 */
+		private NotesCollectionPosition findResumePosition() {
+			if (m_lastNoteId!=0) {
+				m_resumed = true;
+				try {
+					return NotesCollectionPosition.toPosition(m_col.locateNote(m_lastNoteId));
+				}
+				catch (NotesError e) {
+					//document has been deleted or does not match the view selection any more
+				}
+			}
+			//start again, documents already processed are skipped
+			m_firstRead = true;
+			return NotesCollectionPosition.toPosition("0");
+		}
+
+		@Override
+		public NotesViewEntryData next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			NotesViewEntryData entry = m_next;
+			m_next = null;
+			m_remaining--;
+			m_plan.recordEntryReturned();
+			return entry;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 }
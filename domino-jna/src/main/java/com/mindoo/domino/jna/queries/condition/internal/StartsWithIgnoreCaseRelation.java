@@ -1,5 +1,8 @@
 package com.mindoo.domino.jna.queries.condition.internal;
 
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.constants.Find;
 
 public final class StartsWithIgnoreCaseRelation extends AbstractRelation {
 
@@ -7,4 +10,17 @@ public final class StartsWithIgnoreCaseRelation extends AbstractRelation {
 		
 	}
 	
+	@Override
+	protected boolean matchesValue(Object value, Object compareValue) {
+		return startsWith(value, compareValue, true);
+	}
+	
+	@Override
+	public EnumSet<Find> getKeyLookupFlags(Object compareValue) {
+		if (compareValue instanceof String) {
+			return EnumSet.of(Find.EQUAL, Find.PARTIAL, Find.CASE_INSENSITIVE, Find.ACCENT_INSENSITIVE);
+		}
+		return null;
+	}
+	
 }
@@ -0,0 +1,206 @@
+package com.mindoo.domino.jna.queries.condition.internal;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesCollection.FindResult;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.constants.Find;
+import com.mindoo.domino.jna.constants.Navigate;
+
+/**
+ * Cheap statistics about a view of a database, used by the {@link QueryPlan} to estimate
+ * the costs of access paths: the number of documents in the view, the number of matches
+ * of key lookups (from NIFFindByKey), the number of entries NIFReadEntries returns per
+ * buffer and the selectivity of formula searches.<br>
+ * <br>
+ * Statistics are shared by all collections of a view and are discarded when the
+ * view index changes, except the buffer and formula statistics, which are running averages.
+ * 
+ * @author Karsten Lehmann
+ */
+public class ViewStatistics {
+	/** approximate number of note ids NIFReadEntries returns in one 64K buffer */
+	public static final int NOTEIDS_PER_BUFFER = 16000;
+	/** assumed number of entries with column values per buffer until we have measured it */
+	private static final int DEFAULT_ENTRIES_PER_BUFFER = 200;
+	/** assumed part of the documents matching a formula until we have measured it */
+	private static final double DEFAULT_FORMULA_SELECTIVITY = 0.5;
+	private static final int MAX_CACHED_VIEWS = 100;
+	private static final int MAX_CACHED_KEYS = 1000;
+	
+	private static final Map<String,ViewStatistics> m_statsByView = new LinkedHashMap<String,ViewStatistics>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String,ViewStatistics> eldest) {
+			return size() > MAX_CACHED_VIEWS;
+		}
+	};
+	
+	private Integer m_indexModifiedSequenceNo;
+	private int m_documentCount = -1;
+	private Map<String,Integer> m_keyMatches;
+	private long m_bufferEntries;
+	private long m_buffers;
+	private long m_formulaDocsSearched;
+	private long m_formulaDocsFound;
+	
+	private ViewStatistics() {
+		m_keyMatches = new LinkedHashMap<String,Integer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,Integer> eldest) {
+				return size() > MAX_CACHED_KEYS;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the statistics for the view of a collection
+	 * 
+	 * @param col collection
+	 * @return statistics
+	 */
+	public static ViewStatistics get(NotesCollection col) {
+		NotesDatabase db = col.getParent();
+		String key = db.getServer()+"!!"+db.getRelativeFilePath()+"!"+col.getNoteId();
+		synchronized (m_statsByView) {
+			ViewStatistics stats = m_statsByView.get(key);
+			if (stats==null) {
+				stats = new ViewStatistics();
+				m_statsByView.put(key, stats);
+			}
+			return stats;
+		}
+	}
+	
+	/**
+	 * Discards the view dependent values if the view index has changed
+	 * 
+	 * @param col collection
+	 */
+	private void validate(NotesCollection col) {
+		int indexModifiedSequenceNo = col.getIndexModifiedSequenceNo();
+		if (m_indexModifiedSequenceNo==null || m_indexModifiedSequenceNo.intValue()!=indexModifiedSequenceNo) {
+			m_indexModifiedSequenceNo = indexModifiedSequenceNo;
+			m_documentCount = -1;
+			m_keyMatches.clear();
+		}
+	}
+	
+	/**
+	 * Returns the number of documents in the view
+	 * 
+	 * @param col collection
+	 * @return count
+	 */
+	public synchronized int getDocumentCount(NotesCollection col) {
+		validate(col);
+		if (m_documentCount==-1) {
+			NotesIDTable idTable = new NotesIDTable();
+			try {
+				col.getAllIds(Navigate.NEXT_NONCATEGORY, true, idTable);
+				m_documentCount = idTable.getCount();
+			}
+			finally {
+				idTable.recycle();
+			}
+		}
+		return m_documentCount;
+	}
+	
+	/**
+	 * Returns the number of entries matching a key in the sort column of the current collation
+	 * 
+	 * @param col collection
+	 * @param findFlags find flags of the lookup
+	 * @param key lookup key
+	 * @return number of matches or -1 if NIF cannot count them for these find flags
+	 */
+	public synchronized int getKeyMatches(NotesCollection col, EnumSet<Find> findFlags, Object key) {
+		validate(col);
+		
+		EnumSet<Find> countFlags = findFlags.clone();
+		countFlags.add(Find.RETURN_DWORD);
+		
+		String cacheKey = col.getPrimarySortColumnName()+"|"+col.getPrimarySortDirection()+"|"+
+				Find.toBitMask(countFlags)+"|"+toKeyString(key);
+		Integer matches = m_keyMatches.get(cacheKey);
+		if (matches==null) {
+			FindResult findResult = col.findByKey(countFlags, key);
+			if (findResult.getEntriesFound()>0 && !findResult.hasExactNumberOfMatches()) {
+				matches = -1;
+			}
+			else {
+				matches = findResult.getEntriesFound();
+			}
+			m_keyMatches.put(cacheKey, matches);
+		}
+		return matches.intValue();
+	}
+	
+	private static String toKeyString(Object key) {
+		if (key instanceof Calendar) {
+			return "D"+((Calendar) key).getTimeInMillis();
+		}
+		else if (key instanceof Date) {
+			return "D"+((Date) key).getTime();
+		}
+		else if (key instanceof Number) {
+			return "N"+((Number) key).doubleValue();
+		}
+		return "S"+key;
+	}
+	
+	/**
+	 * Records the number of entries in a full NIFReadEntries buffer with column values
+	 * 
+	 * @param entries number of entries
+	 */
+	public synchronized void recordBuffer(int entries) {
+		m_bufferEntries += entries;
+		m_buffers++;
+	}
+	
+	/**
+	 * Returns the average number of entries with column values in a NIFReadEntries buffer
+	 * 
+	 * @return entries
+	 */
+	public synchronized double getEntriesPerBuffer() {
+		if (m_buffers==0) {
+			return DEFAULT_ENTRIES_PER_BUFFER;
+		}
+		return Math.max(1, (double) m_bufferEntries / m_buffers);
+	}
+	
+	/**
+	 * Records the result of a formula search
+	 * 
+	 * @param docsSearched number of documents searched
+	 * @param docsFound number of matching documents
+	 */
+	public synchronized void recordFormulaSearch(int docsSearched, int docsFound) {
+		m_formulaDocsSearched += docsSearched;
+		m_formulaDocsFound += docsFound;
+	}
+	
+	/**
+	 * Returns the average part of the searched documents matching formula criteria
+	 * 
+	 * @return selectivity between 0 and 1
+	 */
+	public synchronized double getFormulaSelectivity() {
+		if (m_formulaDocsSearched==0) {
+			return DEFAULT_FORMULA_SELECTIVITY;
+		}
+		return (double) m_formulaDocsFound / m_formulaDocsSearched;
+	}
+}
@@ -1,5 +1,44 @@
 package com.mindoo.domino.jna.utils;
 
+import java.util.Arrays;
+
+/**
+ * Wrapper for a byte array that can be used as key in hash maps, comparing the
+ * array content instead of the array identity
+ * 
+ * @author Karsten Lehmann
+ */
 public class ByteArrayHashKey {
+	private byte[] m_data;
+	private int m_hashCode;
+	
+	/**
+	 * Creates a new instance
+	 * 
+	 * @param data data, must not be modified afterwards
+	 */
+	public ByteArrayHashKey(byte[] data) {
+		m_data = data;
+		m_hashCode = Arrays.hashCode(data);
+	}
+	
+	public byte[] getData() {
+		return m_data;
+	}
+	
+	@Override
+	public int hashCode() {
+		return m_hashCode;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ByteArrayHashKey))
+			return false;
+		ByteArrayHashKey other = (ByteArrayHashKey) obj;
+		return m_hashCode==other.m_hashCode && Arrays.equals(m_data, other.m_data);
+	}
 
 }
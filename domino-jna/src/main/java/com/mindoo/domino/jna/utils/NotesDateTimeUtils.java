@@ -345,6 +345,33 @@ public class NotesDateTimeUtils {
         return cal;
 	}
 	
+	/**
+	 * Converts C API innard values to milliseconds since 1970-01-01 00:00 GMT without
+	 * calling the C API, e.g. to store many values in a compact form.<br>
+	 * <br>
+	 * Values with date only return midnight GMT of that day, values with time only
+	 * the milliseconds since midnight GMT.
+	 * 
+	 * @param innard0 first innard value with the time in 1/100 seconds since midnight GMT or {@link NotesCAPI#ALLDAY}
+	 * @param innard1 second innard value with the julian day in the lower 24 bits or {@link NotesCAPI#ANYDAY}
+	 * @return milliseconds
+	 */
+	public static long innardsToEpochMillis(int innard0, int innard1) {
+		boolean hasTime = innard0!=NotesCAPI.ALLDAY;
+		boolean hasDate = innard1!=NotesCAPI.ANYDAY;
+		
+		long millis = 0;
+		if (hasDate) {
+			//julian day 2440588 is 1970-01-01
+			int julianDay = innard1 & 0xffffff;
+			millis += (julianDay - 2440588) * 86400000L;
+		}
+		if (hasTime) {
+			millis += innard0 * 10L;
+		}
+		return millis;
+	}
+	
 	/**
 	 * Method to clear the {@link NotesTimeDate} value
 	 * 
@@ -1,8 +1,10 @@
 package com.mindoo.domino.jna.test;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -13,7 +15,15 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.mindoo.domino.jna.CollectionDataCache;
+import com.mindoo.domino.jna.CollectionDataCacheRegistry;
+import com.mindoo.domino.jna.CollectionDataCacheStats;
+import com.mindoo.domino.jna.CollectionDataCacheStore;
+import com.mindoo.domino.jna.NotesCategoryCount;
+import com.mindoo.domino.jna.NotesCategoryTree;
+import com.mindoo.domino.jna.NotesCategoryTree.CategoryNode;
 import com.mindoo.domino.jna.NotesCollection;
+import com.mindoo.domino.jna.NotesCollectionChanges;
+import com.mindoo.domino.jna.NotesCollectionCheckpoint;
 import com.mindoo.domino.jna.NotesDatabase;
 import com.mindoo.domino.jna.NotesIDTable;
 import com.mindoo.domino.jna.NotesIDTable.IEnumerateCallback;
@@ -100,6 +110,54 @@ public class TestExtendedViewTraversal extends BaseJNATestClass {
 		});
 	}
 	
+	/**
+	 * Reads a single view column twice with a {@link CollectionDataCache}, so that the second
+	 * lookup uses differential view reads
+	 */
+	@Test
+	public void testExtViewTraversal_readSingleColumnCached() {
+		runWithSession(new IDominoCallable<Object>() {
+			
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				final NotesCollection colFromDbData = dbData.openCollectionByName("Companies");
+				colFromDbData.update();
+				
+				final String colName = "$22";
+				final EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES);
+				final CollectionDataCacheRegistry registry = new CollectionDataCacheRegistry();
+				
+				Set<String> lastNamesFirstRun = null;
+				for (int i=0; i<2; i++) {
+					CollectionDataCache cache = registry.getCache(colFromDbData, returnMask, colName);
+					cache.enableUsageStats();
+					cache.resetCacheUsageStats();
+					
+					Set<String> lastNames = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT), Integer.MAX_VALUE,
+							returnMask, new NotesCollection.ReadSingleColumnValues(colName, Locale.getDefault()) {
+						@Override
+						public CollectionDataCache createDataCache() {
+							return registry.getCache(colFromDbData, returnMask, colName);
+						}
+					});
+					System.out.println("Run "+(i+1)+": read "+lastNames.size()+" unique lastnames, "+cache.getCacheUsageStats()+" entries from cache");
+					
+					if (lastNamesFirstRun==null) {
+						lastNamesFirstRun = lastNames;
+					}
+					else {
+						Assert.assertEquals("Cached lookup returns the same values", lastNamesFirstRun, lastNames);
+					}
+				}
+				
+				Assert.assertTrue("Cache contains single column data", registry.getCache(colFromDbData, returnMask, colName).size() > 0);
+				return null;
+			}
+		});
+	}
+	
 	/**
 	 * Tests the differential view read feature of NIF using low level APIs
 	 */
@@ -247,6 +305,248 @@ public class TestExtendedViewTraversal extends BaseJNATestClass {
 		});
 	}
 	
+	/**
+	 * Stores the content of a {@link CollectionDataCache} on disk with {@link CollectionDataCacheStore}
+	 * and uses the loaded cache for a differential view read
+	 */
+	@Test
+	public void testExtViewTraversal_persistentDataCache() {
+		runWithSession(new IDominoCallable<Object>() {
+			
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSortSingleValue");
+				colFromDbData.update();
+				
+				final int numEntriesToRead = 20;
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.SUMMARYVALUES, ReadMask.NOTEID);
+				
+				File storeDir = File.createTempFile("viewcache", "");
+				storeDir.delete();
+				CollectionDataCacheStore store = new CollectionDataCacheStore(storeDir);
+				
+				final CollectionDataCache collectionDataCache = new CollectionDataCache();
+				List<NotesViewEntryData> entriesFirstRun = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT), numEntriesToRead,
+						returnMask, new NotesCollection.EntriesAsListCallback(numEntriesToRead) {
+					@Override
+					public CollectionDataCache createDataCache() {
+						return collectionDataCache;
+					}
+				});
+				
+				Assert.assertTrue("Cache has been saved", store.save(colFromDbData, collectionDataCache));
+				Assert.assertTrue("Cache file exists", store.getCacheFile(dbData.getReplicaID(), colFromDbData.getUNID(), returnMask).exists());
+				
+				//simulate a restart with an empty cache
+				final CollectionDataCache loadedCache = new CollectionDataCache();
+				Assert.assertTrue("Cache has been loaded", store.load(colFromDbData, returnMask, loadedCache));
+				loadedCache.enableUsageStats();
+				
+				List<NotesViewEntryData> entriesSecondRun = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT), numEntriesToRead,
+						returnMask, new NotesCollection.EntriesAsListCallback(numEntriesToRead) {
+					@Override
+					public CollectionDataCache createDataCache() {
+						return loadedCache;
+					}
+				});
+				
+				Assert.assertEquals("Same number of entries", entriesFirstRun.size(), entriesSecondRun.size());
+				for (int i=0; i<entriesFirstRun.size(); i++) {
+					Assert.assertEquals("Same note id", entriesFirstRun.get(i).getNoteId(), entriesSecondRun.get(i).getNoteId());
+					Assert.assertEquals("Same column values", entriesFirstRun.get(i).getColumnDataAsMap(), entriesSecondRun.get(i).getColumnDataAsMap());
+				}
+				System.out.println("Entries restored from disk cache: "+loadedCache.getCacheUsageStats());
+				
+				//saving again must not replace the file that is still mapped by the loaded cache
+				File mappedFile = store.getCacheFile(dbData.getReplicaID(), colFromDbData.getUNID(), returnMask);
+				Assert.assertTrue("Cache has been saved while mapped", store.save(colFromDbData, loadedCache));
+				File newFile = store.getCacheFile(dbData.getReplicaID(), colFromDbData.getUNID(), returnMask);
+				Assert.assertFalse("New cache file has been written", mappedFile.equals(newFile));
+				Assert.assertTrue("New cache file exists", newFile.exists());
+				
+				store.delete(dbData.getReplicaID(), colFromDbData.getUNID(), returnMask);
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Checks that lookups share the {@link CollectionDataCache} of the {@link CollectionDataCacheRegistry}
+	 */
+	@Test
+	public void testExtViewTraversal_sharedDataCache() {
+		runWithSession(new IDominoCallable<Object>() {
+			
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				final NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSortSingleValue");
+				colFromDbData.update();
+				
+				final int numEntriesToRead = 20;
+				final EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.SUMMARYVALUES, ReadMask.NOTEID);
+				
+				final CollectionDataCacheRegistry registry = new CollectionDataCacheRegistry();
+				
+				for (int i=0; i<2; i++) {
+					List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT), numEntriesToRead,
+							returnMask, new NotesCollection.EntriesAsListCallback(numEntriesToRead) {
+						@Override
+						public CollectionDataCache createDataCache() {
+							return registry.getCache(colFromDbData, returnMask);
+						}
+					});
+					Assert.assertEquals("All entries have been read", numEntriesToRead, entries.size());
+					for (NotesViewEntryData currEntry : entries) {
+						Assert.assertTrue("Entry has column values", currEntry.hasAnyColumnValues());
+					}
+				}
+				
+				Assert.assertEquals("Both lookups used one cache", 1, registry.getNumberOfCaches());
+				CollectionDataCache cache = registry.getCache(colFromDbData, returnMask);
+				Assert.assertEquals("Cache contains the read entries", numEntriesToRead, cache.size());
+				
+				CollectionDataCacheStats stats = cache.getStats();
+				System.out.println(stats);
+				Assert.assertEquals("Stats count entries of both lookups", 2*numEntriesToRead, stats.getEntriesRead());
+				Assert.assertEquals("Stats are returned by the registry", 1, registry.getStats().size());
+				
+				registry.setMaxTotalSizeInBytes(1);
+				Assert.assertEquals("Entries have been evicted to meet the memory budget", 0, registry.getTotalSizeInBytes());
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Compares the outline of a fully expanded category tree with a sequential read of the view
+	 */
+	@Test
+	public void testExtViewTraversal_categoryTree() {
+		runWithSession(new IDominoCallable<Object>() {
+			
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("Companies");
+				colFromDbData.update();
+				
+				List<NotesViewEntryData> allEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT),
+						Integer.MAX_VALUE, EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION),
+						new NotesCollection.EntriesAsListCallback(Integer.MAX_VALUE));
+				
+				NotesCategoryTree tree = new NotesCategoryTree(colFromDbData);
+				List<CategoryNode> rootCategories = tree.getRootCategories();
+				Assert.assertFalse("View has categories", rootCategories.isEmpty());
+				
+				CategoryNode firstCategory = rootCategories.get(0);
+				Assert.assertSame("Category found by path", firstCategory, tree.findCategory(firstCategory.getPath()));
+				
+				tree.expandAll();
+				List<NotesViewEntryData> visibleEntries = tree.getVisibleEntries(EnumSet.of(ReadMask.NOTEID));
+				
+				Assert.assertEquals("Same number of entries", allEntries.size(), visibleEntries.size());
+				for (int i=0; i<allEntries.size(); i++) {
+					Assert.assertEquals("Same position", allEntries.get(i).getPositionStr(), visibleEntries.get(i).getPositionStr());
+				}
+				
+				tree.collapseAll();
+				Assert.assertEquals("Only top level categories visible", rootCategories.size(),
+						tree.getVisibleEntries(EnumSet.of(ReadMask.NOTEID)).size());
+				
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Compares the document counts computed from the category entries with a read of all documents
+	 */
+	@Test
+	public void testExtViewTraversal_categoryCounts() {
+		runWithSession(new IDominoCallable<Object>() {
+			
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("Companies");
+				colFromDbData.update();
+				
+				List<NotesViewEntryData> docEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION),
+						new NotesCollection.EntriesAsListCallback(Integer.MAX_VALUE));
+				
+				Map<String,Integer> docCountsByTopLevelPosition = new HashMap<String,Integer>();
+				int docCount = 0;
+				for (NotesViewEntryData currEntry : docEntries) {
+					if (currEntry.isTotal()) {
+						continue;
+					}
+					docCount++;
+					String topLevelPos = Integer.toString(currEntry.getPosition()[0]);
+					Integer count = docCountsByTopLevelPosition.get(topLevelPos);
+					docCountsByTopLevelPosition.put(topLevelPos, count==null ? 1 : count.intValue()+1);
+				}
+				
+				long t0=System.currentTimeMillis();
+				List<NotesCategoryCount> topLevelCategories = colFromDbData.getCategoryCounts(0);
+				long t1=System.currentTimeMillis();
+				System.out.println("Computing counts of "+topLevelCategories.size()+" top level categories took "+(t1-t0)+"ms");
+				
+				Assert.assertFalse("View has categories", topLevelCategories.isEmpty());
+				
+				int sumDocCount = 0;
+				for (NotesCategoryCount currCategory : topLevelCategories) {
+					Assert.assertEquals("Top level category", 0, currCategory.getLevel());
+					Integer expectedCount = docCountsByTopLevelPosition.get(currCategory.getPosition());
+					Assert.assertEquals("Document count of "+currCategory.getPath(), expectedCount==null ? 0 : expectedCount.intValue(),
+							currCategory.getDocumentCount());
+					sumDocCount += currCategory.getDocumentCount();
+				}
+				Assert.assertEquals("All documents counted", docCount, sumDocCount);
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testExtViewTraversal_changeFeed() {
+		runWithSession(new IDominoCallable<Object>() {
+			
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSortSingleValue");
+				colFromDbData.update();
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.SUMMARYVALUES, ReadMask.NOTEID);
+				
+				NotesCollectionChanges initialChanges = colFromDbData.getChanges(null, returnMask, 1000);
+				Assert.assertTrue("First read returns all entries", initialChanges.isFullRead());
+				Assert.assertEquals("No removed entries in first read", 0, initialChanges.getRemovedNoteIds().length);
+				
+				NotesCollectionCheckpoint checkpoint = initialChanges.getCheckpoint();
+				Assert.assertEquals("Checkpoint contains all documents", initialChanges.getAddedOrChangedEntries().size(),
+						checkpoint.getNoteCount());
+				
+				NotesCollectionChanges nextChanges = colFromDbData.getChanges(checkpoint, returnMask, 1000);
+				Assert.assertFalse("Differential read", nextChanges.isFullRead());
+				Assert.assertFalse("No changes since checkpoint", nextChanges.hasChanges());
+				Assert.assertEquals("Same documents in new checkpoint", checkpoint.getNoteCount(),
+						nextChanges.getCheckpoint().getNoteCount());
+				
+				return null;
+			}
+		});
+	}
+	
 	@Test
 	public void testViewTraversal_selectViaFormula() {
 		runWithSession(new IDominoCallable<Object>() {
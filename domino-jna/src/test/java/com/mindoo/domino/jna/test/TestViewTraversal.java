@@ -1,9 +1,16 @@
 package com.mindoo.domino.jna.test;
 
+import static com.mindoo.domino.jna.queries.condition.ColumnLookup.column;
+import static com.mindoo.domino.jna.queries.condition.IDTableLookup.noteIdsContain;
+import static com.mindoo.domino.jna.queries.condition.Operator.and;
+import static com.mindoo.domino.jna.queries.condition.Operator.or;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -14,14 +21,29 @@ import org.junit.Test;
 import com.mindoo.domino.jna.NotesCollection;
 import com.mindoo.domino.jna.NotesCollection.Direction;
 import com.mindoo.domino.jna.NotesCollection.EntriesAsListCallback;
+import com.mindoo.domino.jna.NotesCollection.FindResult;
+import com.mindoo.domino.jna.NotesCollection.ViewCursorCallback;
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback;
+import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback.Action;
+import com.mindoo.domino.jna.NotesCollectionIterator;
+import com.mindoo.domino.jna.NotesCollectionLookupCache;
+import com.mindoo.domino.jna.NotesCollectionPool;
+import com.mindoo.domino.jna.NotesCollectionPositionIndex;
 import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesDatabasePool;
 import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesSearchKey;
+import com.mindoo.domino.jna.NotesViewColumnarData;
+import com.mindoo.domino.jna.NotesViewColumnarData.ColumnData;
+import com.mindoo.domino.jna.NotesViewEntryCursor;
 import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.NotesViewLookupResultData;
+import com.mindoo.domino.jna.NotesViewPage;
 import com.mindoo.domino.jna.constants.Find;
 import com.mindoo.domino.jna.constants.Navigate;
 import com.mindoo.domino.jna.constants.ReadMask;
 import com.mindoo.domino.jna.constants.UpdateCollectionFilters;
+import com.mindoo.domino.jna.queries.condition.Relation;
 
 import lotus.domino.Database;
 import lotus.domino.Document;
@@ -501,6 +523,620 @@ public class TestViewTraversal extends BaseJNATestClass {
 		});
 	}
 	
+	@Test
+	public void testViewTraversal_lookupCache() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+
+				colFromDbData.resortView("Lastname", Direction.Ascending);
+				
+				NotesCollectionLookupCache lookupCache = new NotesCollectionLookupCache(100);
+				colFromDbData.setLookupCache(lookupCache);
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.SUMMARY, ReadMask.NOTEID);
+				List<NotesViewEntryData> entriesFirstLookup = colFromDbData.getAllEntriesByKey(EnumSet.of(Find.PARTIAL),
+						returnMask, new EntriesAsListCallback(Integer.MAX_VALUE), "A");
+				Assert.assertEquals("First lookup is not cached", 0, lookupCache.getHits());
+				
+				List<NotesViewEntryData> entriesSecondLookup = colFromDbData.getAllEntriesByKey(EnumSet.of(Find.PARTIAL),
+						returnMask, new EntriesAsListCallback(Integer.MAX_VALUE), "A");
+				Assert.assertEquals("Second lookup is read from the cache", 1, lookupCache.getHits());
+				
+				Assert.assertEquals("Same number of entries", entriesFirstLookup.size(), entriesSecondLookup.size());
+				for (int i=0; i<entriesFirstLookup.size(); i++) {
+					Assert.assertEquals("Same note id", entriesFirstLookup.get(i).getNoteId(), entriesSecondLookup.get(i).getNoteId());
+					Assert.assertEquals("Same lastname", entriesFirstLookup.get(i).get("lastname"), entriesSecondLookup.get(i).get("lastname"));
+				}
+				
+				FindResult findResult1 = colFromDbData.findByKey(EnumSet.of(Find.PARTIAL), "A");
+				FindResult findResult2 = colFromDbData.findByKey(EnumSet.of(Find.PARTIAL), "A");
+				Assert.assertSame("Find result is read from the cache", findResult1, findResult2);
+				
+				colFromDbData.resortView("firstname", Direction.Ascending);
+				FindResult findResult3 = colFromDbData.findByKey(EnumSet.of(Find.PARTIAL), "A");
+				Assert.assertNotSame("Cache is cleared when the view is resorted", findResult1, findResult3);
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_entryCountByKey() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+
+				colFromDbData.resortView("lastname", Direction.Ascending);
+				
+				Set<Integer> partialMatchIds = colFromDbData.getAllIdsByKey(EnumSet.of(Find.PARTIAL), "A");
+				Assert.assertEquals("Exact count of partial matches", partialMatchIds.size(),
+						colFromDbData.getEntryCountByKey(EnumSet.of(Find.PARTIAL), "A"));
+				
+				Set<Integer> rangeIds = colFromDbData.getAllIdsByKey(EnumSet.of(Find.GREATER_THAN, Find.EQUAL), "D");
+				Assert.assertEquals("Count of inequality matches", rangeIds.size(),
+						colFromDbData.getEntryCountByKey(EnumSet.of(Find.GREATER_THAN, Find.EQUAL), "D"));
+				
+				long nifCallsBefore = colFromDbData.getNIFReadCallCount();
+				Assert.assertEquals("Count is cached", rangeIds.size(),
+						colFromDbData.getEntryCountByKey(EnumSet.of(Find.GREATER_THAN, Find.EQUAL), "D"));
+				Assert.assertEquals("No NIF calls for cached count", nifCallsBefore, colFromDbData.getNIFReadCallCount());
+				
+				colFromDbData.resortView("firstname", Direction.Ascending);
+				Set<Integer> firstnameMatchIds = colFromDbData.getAllIdsByKey(EnumSet.of(Find.PARTIAL), "A");
+				Assert.assertEquals("Count uses the new sort column", firstnameMatchIds.size(),
+						colFromDbData.getEntryCountByKey(EnumSet.of(Find.PARTIAL), "A"));
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_collectionPool() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollectionPool pool = new NotesCollectionPool(2, 60*1000);
+				
+				NotesCollection col1 = pool.lease(dbData, "PeopleFlatMultiColumnSort");
+				col1.resortView("lastname", Direction.Ascending);
+				Assert.assertNotNull("View is resorted", col1.getCurrentSortDirection());
+				pool.release(col1);
+				Assert.assertEquals("Collection is idle", 1, pool.getIdleCount());
+				
+				NotesCollection col2 = pool.lease(dbData, "PeopleFlatMultiColumnSort");
+				Assert.assertSame("Idle collection is reused", col1, col2);
+				Assert.assertNull("Sorting has been reset", col2.getCurrentSortDirection());
+				Assert.assertEquals("Collection has only been opened once", 1, pool.getOpenCount());
+				pool.release(col2);
+				
+				pool.clear();
+				Assert.assertEquals("No idle collections", 0, pool.getIdleCount());
+				Assert.assertTrue("Idle collection has been closed", col2.isRecycled());
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_collectionPoolAcrossGCBlocks() {
+		final NotesDatabasePool dbPool = new NotesDatabasePool(2, 60*1000);
+		final NotesCollectionPool colPool = new NotesCollectionPool(2, 60*1000);
+		dbPool.setCollectionPool(colPool);
+		final NotesCollection[] pooledCol = new NotesCollection[1];
+		
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = dbPool.lease(session, "", DBPATH_FAKENAMES_NSF);
+				NotesCollection colFromDbData = colPool.lease(dbData, "PeopleFlatMultiColumnSort");
+				pooledCol[0] = colFromDbData;
+				colPool.release(colFromDbData);
+				dbPool.release(dbData);
+				return null;
+			}
+		});
+		
+		Assert.assertFalse("Pooled collection is not recycled by the NotesGC block", pooledCol[0].isRecycled());
+		Assert.assertFalse("Unread table of pooled collection is not recycled by the NotesGC block",
+				pooledCol[0].getUnreadTable().isRecycled());
+		
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = dbPool.lease(session, "", DBPATH_FAKENAMES_NSF);
+				NotesCollection colFromDbData = colPool.lease(dbData, "PeopleFlatMultiColumnSort");
+				Assert.assertSame("Idle collection is reused in another NotesGC block", pooledCol[0], colFromDbData);
+				
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT), 10,
+						EnumSet.of(ReadMask.NOTEID), new EntriesAsListCallback(10));
+				Assert.assertFalse("Pooled collection can be read", entries.isEmpty());
+				
+				colPool.release(colFromDbData);
+				dbPool.release(dbData);
+				
+				//closing the database closes its idle collections first
+				dbPool.clear();
+				Assert.assertTrue("Idle collection has been closed", colFromDbData.isRecycled());
+				Assert.assertEquals("No idle collections", 0, colPool.getIdleCount());
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_databasePool() {
+		final NotesDatabasePool pool = new NotesDatabasePool(2, 60*1000);
+		final NotesDatabase[] pooledDb = new NotesDatabase[1];
+		
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = pool.lease(session, "", DBPATH_FAKENAMES_NSF);
+				pooledDb[0] = dbData;
+				pool.release(dbData);
+				Assert.assertEquals("Database is idle", 1, pool.getIdleCount());
+				return null;
+			}
+		});
+		
+		Assert.assertFalse("Pooled database is not recycled by the NotesGC block", pooledDb[0].isRecycled());
+		
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = pool.lease(session, "", DBPATH_FAKENAMES_NSF);
+				Assert.assertSame("Idle database is reused", pooledDb[0], dbData);
+				Assert.assertEquals("Database has only been opened once", 1, pool.getOpenCount());
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				Assert.assertTrue("Pooled database can be used", colFromDbData.getNoteId()!=0);
+				colFromDbData.recycle();
+				
+				pool.release(dbData);
+				pool.clear();
+				Assert.assertTrue("Idle database has been closed", dbData.isRecycled());
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_precompiledSearchKey() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+
+				colFromDbData.resortView("Lastname", Direction.Ascending);
+				
+				//ASCII fast path and LMBCS conversion must produce the same results as precompiled keys
+				for (String currKey : new String[] {"A", "Ab", "M\u00fcller"}) {
+					NotesSearchKey searchKey = new NotesSearchKey(currKey);
+					
+					for (int i=0; i<2; i++) {
+						FindResult findResult = colFromDbData.findByKey(EnumSet.of(Find.PARTIAL), currKey);
+						FindResult findResultPrecompiled = colFromDbData.findByKey(EnumSet.of(Find.PARTIAL), searchKey);
+						
+						Assert.assertEquals("Same number of matches for key "+currKey, findResult.getEntriesFound(), findResultPrecompiled.getEntriesFound());
+						Assert.assertEquals("Same position for key "+currKey, findResult.getPosition(), findResultPrecompiled.getPosition());
+					}
+				}
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_columnarData() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARYVALUES);
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+				
+				NotesViewColumnarData columnarData = colFromDbData.getAllEntriesColumnar("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, returnMask, null);
+				
+				Assert.assertEquals("Same number of rows", entries.size(), columnarData.getRowCount());
+				
+				int lastnameIdx = colFromDbData.getColumnValuesIndex("lastname");
+				ColumnData lastnameColumn = columnarData.getColumn(lastnameIdx);
+				for (int i=0; i<entries.size(); i++) {
+					NotesViewEntryData currEntry = entries.get(i);
+					Assert.assertEquals("Same note id", currEntry.getNoteId(), columnarData.getNoteId(i));
+					Assert.assertEquals("Same lastname", currEntry.get("lastname"), lastnameColumn.getString(i));
+				}
+				Assert.assertTrue("String values are dictionary encoded",
+						lastnameColumn.getStringDictionary().size() <= columnarData.getRowCount());
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_resumeOnViewIndexChange() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY);
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						100, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+				
+				//without index changes, resuming lookups must return the same entries
+				List<NotesViewEntryData> resumableEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						100, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE) {
+					@Override
+					public boolean isResumeOnViewIndexChange() {
+						return true;
+					}
+				});
+				
+				Assert.assertEquals("Same number of entries", entries.size(), resumableEntries.size());
+				for (int i=0; i<entries.size(); i++) {
+					Assert.assertEquals("Same note id", entries.get(i).getNoteId(), resumableEntries.get(i).getNoteId());
+				}
+				
+				colFromDbData.resortView("Lastname", Direction.Ascending);
+				String lastname = (String) entries.get(0).get("lastname");
+				
+				List<NotesViewEntryData> keyEntries = colFromDbData.getAllEntriesByKey(EnumSet.of(Find.PARTIAL), returnMask,
+						new EntriesAsListCallback(Integer.MAX_VALUE), lastname);
+				List<NotesViewEntryData> resumableKeyEntries = colFromDbData.getAllEntriesByKey(EnumSet.of(Find.PARTIAL), returnMask,
+						new EntriesAsListCallback(Integer.MAX_VALUE) {
+					@Override
+					public boolean isResumeOnViewIndexChange() {
+						return true;
+					}
+				}, lastname);
+				
+				Assert.assertEquals("Same number of key matches", keyEntries.size(), resumableKeyEntries.size());
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_positionIndex() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION);
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+				
+				NotesCollectionPositionIndex positionIndex = new NotesCollectionPositionIndex(colFromDbData,
+						EnumSet.of(Navigate.NEXT_NONCATEGORY), 10);
+				
+				Assert.assertEquals("Same number of entries", entries.size(), positionIndex.getEntryCount());
+				if (!entries.isEmpty()) {
+					Assert.assertEquals("Same last position", entries.get(entries.size()-1).getPositionStr(), positionIndex.getLastPosition());
+				}
+				
+				//jump to some entries and compare with the sequential scan
+				for (int i=entries.size()-1; i>=0; i-=7) {
+					Assert.assertEquals("Same position for entry "+i, entries.get(i).getPositionStr(), positionIndex.getPosition(i));
+					
+					NotesViewLookupResultData page = positionIndex.readEntries(i, 5, returnMask, null);
+					List<NotesViewEntryData> pageEntries = page.getEntries();
+					Assert.assertEquals("Page size at entry "+i, Math.min(5, entries.size()-i), pageEntries.size());
+					for (int j=0; j<pageEntries.size(); j++) {
+						Assert.assertEquals("Same note id", entries.get(i+j).getNoteId(), pageEntries.get(j).getNoteId());
+					}
+				}
+				Assert.assertNull("No position after the last entry", positionIndex.getPosition(entries.size()));
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_keysetPaging() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY);
+				List<NotesViewEntryData> entries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, returnMask, new EntriesAsListCallback(Integer.MAX_VALUE));
+				
+				//read the view page by page using the continuation tokens
+				List<NotesViewEntryData> pagedEntries = new ArrayList<NotesViewEntryData>();
+				String pageToken = null;
+				do {
+					NotesViewPage page = colFromDbData.readPage(pageToken, EnumSet.of(Navigate.NEXT_NONCATEGORY), 17, returnMask);
+					Assert.assertFalse("Anchor has not moved", page.isAnchorMoved());
+					pagedEntries.addAll(page.getEntries());
+					pageToken = page.getNextPageToken();
+				}
+				while (pageToken!=null);
+				
+				Assert.assertEquals("Same number of entries", entries.size(), pagedEntries.size());
+				for (int i=0; i<entries.size(); i++) {
+					Assert.assertEquals("Same note id", entries.get(i).getNoteId(), pagedEntries.get(i).getNoteId());
+				}
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_query() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+				
+				//compute the expected result by filtering all entries
+				colFromDbData.resortView("lastname", Direction.Ascending);
+				List<NotesViewEntryData> allEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY), new EntriesAsListCallback(Integer.MAX_VALUE));
+				List<Integer> expectedNoteIds = new ArrayList<Integer>();
+				for (NotesViewEntryData currEntry : allEntries) {
+					String lastName = currEntry.getAsString("lastname", "");
+					String firstName = currEntry.getAsString("firstname", "");
+					if (lastName.startsWith("B") && !firstName.startsWith("A")) {
+						expectedNoteIds.add(currEntry.getNoteId());
+					}
+				}
+				expectedNoteIds = expectedNoteIds.subList(Math.min(2, expectedNoteIds.size()), Math.min(12, expectedNoteIds.size()));
+				
+				colFromDbData.resetViewSortingToDefault();
+				
+				//the lastname criteria uses a key lookup, the firstname criteria filters the entries while reading
+				Iterator<NotesViewEntryData> queryEntries = colFromDbData.select("lastname", "firstname")
+						.where(
+								and(
+										column("lastname", Relation.StartsWith, "B"),
+										column("firstname", Relation.NotStartsWith, "A")
+										)
+								)
+						.orderBy("lastname")
+						.skip(2)
+						.count(10)
+						.iterator();
+				
+				List<Integer> queryNoteIds = new ArrayList<Integer>();
+				while (queryEntries.hasNext()) {
+					queryNoteIds.add(queryEntries.next().getNoteId());
+				}
+				Assert.assertEquals("Query returns the filtered entries in view order", expectedNoteIds, queryNoteIds);
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_queryExplain() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+				colFromDbData.resortView("lastname", Direction.Ascending);
+				
+				List<NotesViewEntryData> firstEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), 1,
+						EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY), new EntriesAsListCallback(1));
+				String lastName = firstEntries.get(0).getAsString("lastname", "");
+				
+				//the selective lastname criteria should be applied with a key lookup, the firstname criteria while reading the entries
+				String plan = colFromDbData.select("lastname", "firstname")
+						.where(
+								and(
+										column("firstname", Relation.NotEquals, "XXXXXXXXXXXXXXXX"),
+										column("lastname", Relation.Equals, lastName)
+										)
+								)
+						.explain(true);
+				System.out.println(plan);
+				
+				Assert.assertTrue("Plan uses key lookup", plan.contains("KEY LOOKUP column(lastname"));
+				Assert.assertTrue("Plan filters firstname", plan.contains("FILTER column(firstname"));
+				Assert.assertTrue("Plan reads selected entries", plan.contains("READ NEXT_SELECTED"));
+				Assert.assertTrue("Plan contains actual costs", plan.contains("actual NIF calls="));
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_queryOrWithNoteIds() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+				
+				//pick a few documents that only match via their note id
+				colFromDbData.resortView("lastname", Direction.Ascending);
+				List<NotesViewEntryData> allEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY), new EntriesAsListCallback(Integer.MAX_VALUE));
+				List<Integer> idsToFind = new ArrayList<Integer>();
+				for (NotesViewEntryData currEntry : allEntries) {
+					if (!currEntry.getAsString("firstname", "").startsWith("A")) {
+						idsToFind.add(currEntry.getNoteId());
+						if (idsToFind.size()==3) {
+							break;
+						}
+					}
+				}
+				int[] idsToFindArr = new int[idsToFind.size()];
+				for (int i=0; i<idsToFindArr.length; i++) {
+					idsToFindArr[i] = idsToFind.get(i).intValue();
+				}
+				
+				List<Integer> expectedNoteIds = new ArrayList<Integer>();
+				for (NotesViewEntryData currEntry : allEntries) {
+					if (currEntry.getAsString("firstname", "").startsWith("A") || idsToFind.contains(currEntry.getNoteId())) {
+						expectedNoteIds.add(currEntry.getNoteId());
+					}
+				}
+				Assert.assertFalse("Note ids have been found", idsToFind.isEmpty());
+				
+				colFromDbData.resetViewSortingToDefault();
+				
+				//firstname is not the sort column, so the OR cannot restrict the candidates
+				Iterator<NotesViewEntryData> queryEntries = colFromDbData.select("lastname", "firstname")
+						.where(
+								or(
+										noteIdsContain(idsToFindArr),
+										column("firstname", Relation.StartsWith, "A")
+										)
+								)
+						.orderBy("lastname")
+						.iterator();
+				
+				List<Integer> queryNoteIds = new ArrayList<Integer>();
+				while (queryEntries.hasNext()) {
+					queryNoteIds.add(queryEntries.next().getNoteId());
+				}
+				Assert.assertEquals("OR returns documents matching the note ids", expectedNoteIds, queryNoteIds);
+				
+				//same with the note ids nested in an AND
+				queryEntries = colFromDbData.select("lastname", "firstname")
+						.where(
+								or(
+										and(
+												noteIdsContain(idsToFindArr),
+												column("firstname", Relation.NotStartsWith, "A")
+												),
+										column("firstname", Relation.StartsWith, "A")
+										)
+								)
+						.orderBy("lastname")
+						.iterator();
+				
+				queryNoteIds = new ArrayList<Integer>();
+				while (queryEntries.hasNext()) {
+					queryNoteIds.add(queryEntries.next().getNoteId());
+				}
+				Assert.assertEquals("Nested AND returns documents matching the note ids", expectedNoteIds, queryNoteIds);
+				
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testViewTraversal_batchKeyLookup() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection colFromDbData = dbData.openCollectionByName("PeopleFlatMultiColumnSort");
+				colFromDbData.update();
+
+				colFromDbData.resortView("Lastname", Direction.Ascending);
+				
+				//collect some lastnames in reverse order and add a key without matches
+				List<NotesViewEntryData> firstEntries = colFromDbData.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), 100,
+						EnumSet.of(ReadMask.SUMMARY, ReadMask.NOTEID), new EntriesAsListCallback(100));
+				List<Object> keys = new ArrayList<Object>();
+				for (int i=firstEntries.size()-1; i>=0; i-=5) {
+					keys.add(firstEntries.get(i).get("lastname"));
+				}
+				keys.add("XXXXXXXXXXXXXXXX");
+				
+				EnumSet<ReadMask> returnMask = EnumSet.of(ReadMask.SUMMARY, ReadMask.NOTEID);
+				List<List<NotesViewEntryData>> batchResults = colFromDbData.getAllEntriesByKeys(EnumSet.of(Find.EQUAL), returnMask, 50, keys);
+				
+				Assert.assertEquals("One result per key", keys.size(), batchResults.size());
+				for (int i=0; i<keys.size(); i++) {
+					List<NotesViewEntryData> singleResult = colFromDbData.getAllEntriesByKey(EnumSet.of(Find.EQUAL), returnMask,
+							new EntriesAsListCallback(Integer.MAX_VALUE), keys.get(i));
+					List<NotesViewEntryData> batchResult = batchResults.get(i);
+					
+					Assert.assertEquals("Same number of matches for key "+keys.get(i), singleResult.size(), batchResult.size());
+					for (int j=0; j<singleResult.size(); j++) {
+						Assert.assertEquals("Same note id", singleResult.get(j).getNoteId(), batchResult.get(j).getNoteId());
+					}
+				}
+				Assert.assertTrue("No matches for unknown key", batchResults.get(keys.size()-1).isEmpty());
+				
+				return null;
+			}
+		});
+	}
+	
 	@Test
 	public void testViewTraversal_readDatatypes() {
 		runWithSession(new IDominoCallable<Object>() {
@@ -652,6 +1288,191 @@ public class TestViewTraversal extends BaseJNATestClass {
 		});
 	}
 
+	/**
+	 * Checks that reading with prefetching enabled produces the same entries in the same
+	 * order as a standard view read
+	 */
+	@Test
+	public void testViewTraversal_allEntriesWithPrefetch() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection col = dbData.openCollectionByName("People");
+				col.update();
+				
+				//small buffers to force many reads
+				int preloadBufferEntries = 50;
+				
+				long t0=System.currentTimeMillis();
+				List<NotesViewEntryData> entriesWithoutPrefetch = col.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), preloadBufferEntries,
+						EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY), new EntriesAsListCallback(Integer.MAX_VALUE));
+				long t1=System.currentTimeMillis();
+				System.out.println("Read "+entriesWithoutPrefetch.size()+" entries without prefetch in "+(t1-t0)+"ms");
+				
+				t0=System.currentTimeMillis();
+				List<NotesViewEntryData> entriesWithPrefetch = col.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), preloadBufferEntries,
+						EnumSet.of(ReadMask.NOTEID, ReadMask.SUMMARY), new EntriesAsListCallback(Integer.MAX_VALUE) {
+					
+					@Override
+					public boolean isPrefetchEnabled() {
+						return true;
+					}
+				});
+				t1=System.currentTimeMillis();
+				System.out.println("Read "+entriesWithPrefetch.size()+" entries with prefetch in "+(t1-t0)+"ms");
+				
+				Assert.assertEquals("Same number of entries read with and without prefetch", entriesWithoutPrefetch.size(), entriesWithPrefetch.size());
+				for (int i=0; i<entriesWithoutPrefetch.size(); i++) {
+					Assert.assertEquals("Same note id at index "+i, entriesWithoutPrefetch.get(i).getNoteId(), entriesWithPrefetch.get(i).getNoteId());
+				}
+				
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Checks that a parallel read of a view returns the same entries in the same order
+	 * as a standard view read
+	 */
+	@Test
+	public void testViewTraversal_allEntriesParallel() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection col = dbData.openCollectionByName("People");
+				col.update();
+				
+				long t0=System.currentTimeMillis();
+				LinkedHashSet<Integer> idsSequential = col.getAllIds(Navigate.NEXT_NONCATEGORY);
+				long t1=System.currentTimeMillis();
+				System.out.println("Read "+idsSequential.size()+" entries sequentially in "+(t1-t0)+"ms");
+				
+				t0=System.currentTimeMillis();
+				List<NotesViewEntryData> entriesParallel = col.getAllEntriesParallel(4, EnumSet.of(Navigate.NEXT_NONCATEGORY), Integer.MAX_VALUE,
+						EnumSet.of(ReadMask.NOTEID), new EntriesAsListCallback(Integer.MAX_VALUE));
+				t1=System.currentTimeMillis();
+				System.out.println("Read "+entriesParallel.size()+" entries in parallel in "+(t1-t0)+"ms");
+				
+				Assert.assertEquals("Same number of entries read sequentially and in parallel", idsSequential.size(), entriesParallel.size());
+				int idx=0;
+				for (Integer currNoteId : idsSequential) {
+					NotesViewEntryData currEntry = entriesParallel.get(idx);
+					Assert.assertEquals("Same note id at index "+idx, currNoteId.intValue(), currEntry.getNoteId());
+					Assert.assertTrue("Entry has the calling collection as parent", currEntry.getParent()==col);
+					idx++;
+				}
+				
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Checks that the lazy collection iterator returns the same entries as a standard view read
+	 * and stops reading when closed
+	 */
+	@Test
+	public void testViewTraversal_allEntriesIterator() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection col = dbData.openCollectionByName("People");
+				col.update();
+				
+				LinkedHashSet<Integer> idsFromView = col.getAllIds(Navigate.NEXT_NONCATEGORY);
+				
+				int bufferSize = 100;
+				NotesCollectionIterator it = col.getAllEntriesIterator("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), bufferSize, EnumSet.of(ReadMask.NOTEID));
+				Iterator<Integer> idsFromViewIt = idsFromView.iterator();
+				int cnt = 0;
+				while (it.hasNext()) {
+					NotesViewEntryData currEntry = it.next();
+					Assert.assertTrue("View has more ids", idsFromViewIt.hasNext());
+					Assert.assertEquals("Same note id at index "+cnt, idsFromViewIt.next().intValue(), currEntry.getNoteId());
+					cnt++;
+				}
+				Assert.assertEquals("Iterator returned all entries", idsFromView.size(), cnt);
+				
+				//read a few entries and close the iterator
+				it = col.getAllEntriesIterator("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY), bufferSize, EnumSet.of(ReadMask.NOTEID));
+				for (int i=0; i<10 && it.hasNext(); i++) {
+					it.next();
+				}
+				it.close();
+				Assert.assertFalse("Closed iterator has no more entries", it.hasNext());
+				Assert.assertTrue("Only one buffer has been read", it.getNumEntriesRead() <= bufferSize);
+				
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testViewTraversal_allEntriesWithCursor() {
+
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase dbData = getFakeNamesDb();
+				
+				NotesCollection col = dbData.openCollectionByName("People");
+				col.update();
+				
+				final List<NotesViewEntryData> entriesFromDecoder = col.getAllEntries("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION, ReadMask.SUMMARYVALUES),
+						new EntriesAsListCallback(Integer.MAX_VALUE));
+				
+				List<NotesViewEntryData> entriesFromCursor = col.getAllEntriesWithCursor("0", 1, EnumSet.of(Navigate.NEXT_NONCATEGORY),
+						Integer.MAX_VALUE, EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION, ReadMask.SUMMARYVALUES),
+						new ViewCursorCallback<List<NotesViewEntryData>>() {
+
+					@Override
+					public List<NotesViewEntryData> startingLookup() {
+						return new ArrayList<NotesViewEntryData>();
+					}
+
+					@Override
+					public Action entryRead(List<NotesViewEntryData> result, NotesViewEntryCursor cursor) {
+						NotesViewEntryData expectedEntry = entriesFromDecoder.get(result.size());
+						Assert.assertEquals("Same note id", expectedEntry.getNoteId(), cursor.getNoteId());
+						Assert.assertEquals("Same position", expectedEntry.getPositionStr(), cursor.getPositionStr());
+						Assert.assertEquals("Same number of columns", expectedEntry.getNumberOfColumnsWithValues(), cursor.getNumberOfColumnsWithValues());
+						
+						result.add(cursor.toEntryData());
+						return Action.Continue;
+					}
+
+					@Override
+					public List<NotesViewEntryData> lookupDone(List<NotesViewEntryData> result) {
+						return result;
+					}
+				});
+				
+				Assert.assertEquals("Cursor returned all entries", entriesFromDecoder.size(), entriesFromCursor.size());
+				for (int i=0; i<entriesFromDecoder.size(); i++) {
+					Assert.assertEquals("Same column values at index "+i, entriesFromDecoder.get(i).getColumnDataAsMap(),
+							entriesFromCursor.get(i).getColumnDataAsMap());
+				}
+				
+				return null;
+			}
+		});
+	}
+
 	@Test
 	public void testViewTraversal_idScan() {
 		runWithSession(new IDominoCallable<Object>() {